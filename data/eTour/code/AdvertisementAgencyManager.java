@@ -7,6 +7,8 @@ import java.util.ArrayList;
 
 import unisa.gps.etour.bean.BeanNews;/*Import the stub*/
 import unisa.gps.etour.control.AdvertisementManager.test.stubs.DBNews;
+import unisa.gps.etour.repository.CatalogChange;
+import unisa.gps.etour.repository.CatalogPublisher;
 import unisa.gps.etour.repository.IDBNews;
 import unisa.gps.etour.util.ControlData;
 import unisa.gps.etour.util.ErrorMessage;
@@ -47,7 +49,7 @@ public class AdvertisementAgencyManager extends AdvertisementManager implements
         try {
             /* Check that the ID is valid */
             if (pNewsID > 0) {
-                return (dbNews.clearNews(pNewsID));
+                return publishNews(dbNews.clearNews(pNewsID));
             } else {
                 return false;
             }
@@ -81,7 +83,7 @@ public class AdvertisementAgencyManager extends AdvertisementManager implements
             int numNews = dbNews.getNews().size();
             if (numNews < GlobalConstants.MAX_NEWS_ACTIVE) {
                 /* Possible inclusion */
-                return (dbNews.insertNews(pNews));
+                return publishNews(dbNews.insertNews(pNews));
             } else {
                 /*
                  * 
@@ -111,7 +113,7 @@ public class AdvertisementAgencyManager extends AdvertisementManager implements
             if (!ControlData.checkBeanNews(pNews)) {
                 throw new RemoteException(ErrorMessage.ERROR_DATA);
             }
-            return (dbNews.modifyNews(pNews));
+            return publishNews(dbNews.modifyNews(pNews));
         }
 
         catch (SQLException e) {
@@ -138,4 +140,22 @@ public class AdvertisementAgencyManager extends AdvertisementManager implements
             throw new RemoteException(ErrorMessage.ERROR_CONNECTION_DBMS);
         }
     }
+    /**
+     * Method that publishes the whole list of news to the replicas of the
+     * catalog after a successful write, if the publisher is started. The
+     * write is already in the database, so an error is only logged.
+     *
+     * @Param pResult result of the write.
+     * @Return the result of the write.
+     */
+    private boolean publishNews(boolean pResult) {
+        if (pResult && CatalogPublisher.isStarted()) {
+            try {
+                CatalogPublisher.publish(CatalogChange.NEWS, 0, dbNews.getNews());
+            } catch (Exception e) {
+                System.out.println("Error in method publishNews:" + e.toString());
+            }
+        }
+        return pResult;
+    }
 }
\ No newline at end of file
@@ -16,7 +16,7 @@ import javax.swing.ImageIcon;
 import unisa.gps.etour.bean.BeanBanner;
 import unisa.gps.etour.bean.BeanConvention;
 import unisa.gps.etour.control.AdvertisementManager.test.stubs.DBBanner;
-import unisa.gps.etour.repository.DBConvention;
+import unisa.gps.etour.repository.ConventionRegistry;
 import unisa.gps.etour.repository.IDBBanner;
 import unisa.gps.etour.repository.IDBConvention;
 import unisa.gps.etour.util.ControlData;
@@ -42,6 +42,17 @@ public class AdvertisementManager extends UnicastRemoteObject implements IAdvert
         dbBanner = new DBBanner();
     }
 
+    /**
+     * Constructor on a given object for the operations on the banners, for
+     * example in memory
+     *
+     * @Param pDbBanner operations on the banners
+     */
+    public AdvertisementManager(IDBBanner pDbBanner) throws RemoteException {
+        super();
+        dbBanner = pDbBanner;
+    }
+
     /**
      * Delete a banner and the image associated with the system.
      *
@@ -156,8 +167,8 @@ public class AdvertisementManager extends UnicastRemoteObject implements IAdvert
             if (!ControlData.checkImmagine(pImageBanner)) {
                 throw new RemoteException(ErrorMessage.ERROR_DATA);
             }
-            /* Create an object that handles the conventions */
-            IDBConvention dbConvention = new DBConvention();
+            /* Get the registry of the active conventions */
+            IDBConvention dbConvention = ConventionRegistry.getInstance();
             /* Load the data of the convention of a refreshment point */
             BeanConvention convention = dbConvention.getConventionActive(pIdRefreshmentPoint);
             /* Get the number of banners displayed by the Convention Masssimo */
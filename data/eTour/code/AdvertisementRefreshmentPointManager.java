@@ -2,6 +2,8 @@
 
 import java.rmi.RemoteException;
 
+import unisa.gps.etour.repository.IDBBanner;
+
 /**
  * Class that implements management services of the advertisement For the operator
  * eating place.
@@ -21,4 +23,15 @@ public class AdvertisementRefreshmentPointManager extends AdvertisementManager
         super();
     }
 
+    /**
+     * Constructor on a given object for the operations on the banners, for
+     * example in memory
+     *
+     * @Param pDbBanner operations on the banners
+     * @Throws RemoteException
+     */
+    public AdvertisementRefreshmentPointManager(IDBBanner pDbBanner) throws RemoteException {
+        super(pDbBanner);
+    }
+
 }
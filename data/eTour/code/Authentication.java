@@ -4,8 +4,6 @@ import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.sql.SQLException;
 
-import unisa.gps.etour.bean.BeanTourist;
-import unisa.gps.etour.repository.DBTourist;
 import unisa.gps.etour.util.ControlData;
 import unisa.gps.etour.util.ErrorMessage;
 
@@ -14,38 +12,26 @@ public class Authentication extends UnicastRemoteObject implements IAuthenticati
     private static final long serialVersionUID = 0L;
 
     public Authentication() throws RemoteException {
+        this(SessionManager.getInstance());
+    }
+
+    // Constructor on a given session manager, for example on tourists in
+    // Memory
+    public Authentication(SessionManager pSessions) throws RemoteException {
         super();
+        sessions = pSessions;
     }
 
-    // Objects to manipulate data Tourist
-    private DBTourist tourist = new DBTourist();
-    private BeanTourist bTourist;
+    // Sessions and credentials of the users, shared by all the calls
+    private SessionManager sessions;
 
     public int login(String pUsername, String pPassword, byte pUsertype) throws RemoteException {
         // Check if the String username and password
-        if(ControlData.checkString(pUsername, true, true, "_-", null, 6, 12) 
-                && ControlData.checkString(pPassword, true, true, "_-", null, 5, 12)) {
+        if(checkCredentials(pUsername, pPassword)) {
             try {
-                switch (pUsertype) {
-                // If the type is Tourist
-                case VISITORS:
-                    // Invoke the method to obtain the Bean del Tourist
-                    // Given the username
-                    bTourist = tourist.getTourist(pUsername);
-                    // Check that the Bean is not null and
-                    // Passwords match
-                    if (bTourist != null && bTourist.getPassword().equals(pPassword)) {
-                        return bTourist.getId();
-                    }
-                // If the type and eateries
-                case OP_PUNTO_DI_RISTORO:
-                    // Not implemented was the operational point of
-                    // Refreshment
-                    return -1;
-                // If not match any known type
-                default:
-                    return -1;
-                }
+                // The credentials are verified on the cache or on the
+                // Database, the operators of refreshment point get -1
+                return sessions.authenticate(pUsername, pPassword, pUsertype);
             } catch(SQLException e) {
                 throw new RemoteException(ErrorMessage.ERROR_DBMS);
             } catch (Exception e) {
@@ -56,4 +42,35 @@ public class Authentication extends UnicastRemoteObject implements IAuthenticati
      // If the data are incorrect returns -1
         return -1;
     }
+
+    public String openSession(String pUsername, String pPassword, byte pUsertype) throws RemoteException {
+        if(checkCredentials(pUsername, pPassword)) {
+            try {
+                return sessions.openSession(pUsername, pPassword, pUsertype);
+            } catch(SQLException e) {
+                throw new RemoteException(ErrorMessage.ERROR_DBMS);
+            } catch (Exception e) {
+                throw new RemoteException(ErrorMessage.ERROR_UNKNOWN);
+            }
+        }
+        return null;
+    }
+
+    public int checkSession(String pToken) throws RemoteException {
+        // The token is validated in memory
+        SessionManager.Session session = sessions.getSession(pToken);
+        if (session == null) {
+            return -1;
+        }
+        return session.getIdUser();
+    }
+
+    public boolean logout(String pToken) throws RemoteException {
+        return sessions.closeSession(pToken);
+    }
+
+    private boolean checkCredentials(String pUsername, String pPassword) {
+        return ControlData.checkString(pUsername, true, true, "_-", null, 6, 12) 
+                && ControlData.checkString(pPassword, true, true, "_-", null, 5, 12);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,539 @@
+package unisa.gps.etour.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import unisa.gps.etour.bean.BeanConvention;
+import unisa.gps.etour.bean.BeanCulturalHeritage;
+import unisa.gps.etour.bean.BeanDish;
+import unisa.gps.etour.bean.BeanMenu;
+import unisa.gps.etour.bean.BeanNews;
+import unisa.gps.etour.bean.BeanRefreshmentPoint;
+import unisa.gps.etour.bean.BeanTag;
+import unisa.gps.etour.bean.BeanTourist;
+import unisa.gps.etour.bean.BeanVisitBC;
+import unisa.gps.etour.bean.BeanVisitPR;
+import unisa.gps.etour.bean.BeanWeeklyMenu;
+
+/**
+ * Compact binary codec for lists of beans. Every bean class has a schema with
+ * a type and a version, written once per list; the fields are written in the
+ * order of the schema without names, the integers with a variable length,
+ * and every string is written only the first time it appears in the list,
+ * then referred to by its index. A reader accepts the lists written with
+ * an older version of a schema, so the client and the server can be updated
+ * at different times.
+ *
+ */
+public class BeanCodec {
+// Identifies the format of the list
+    private static final int MAGIC = 0xE7C0;
+    private static final int FORMAT_VERSION = 1;
+    private static final Map<Class<?>, Schema<?>> schemasByClass = new HashMap<Class<?>, Schema<?>>();
+    private static final Map<Integer, Schema<?>> schemasByType = new HashMap<Integer, Schema<?>>();
+
+    /**
+     * Encoding of a bean class. The type identifies the class and must never
+     * change; the version grows when fields are added, and read must
+     * accept all the previous versions.
+     */
+    public abstract static class Schema<T> {
+        private final int type;
+        private final int version;
+        private final Class<T> beanClass;
+
+        /**
+         * Parameterized constructor
+         *
+         * @Param pType identifier of the class in the lists
+         * @Param pVersion current version of the schema
+         * @Param pBeanClass class of the bean
+         */
+        protected Schema(int pType, int pVersion, Class<T> pBeanClass) {
+            type = pType;
+            version = pVersion;
+            beanClass = pBeanClass;
+        }
+
+        /**
+         * Writes the fields of a bean with the current version
+         */
+        protected abstract void write(T pBean, Writer pOut) throws IOException;
+
+        /**
+         * Reads a bean written with a given version
+         */
+        protected abstract T read(Reader pIn, int pVersion) throws IOException;
+    }
+
+    /**
+     * Output of a list, with the table of the strings already written
+     */
+    public static class Writer {
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+        private Writer(DataOutputStream pOut) {
+            out = pOut;
+        }
+
+        public void writeInt(int pValue) throws IOException {
+// Zig-zag, so the small negative numbers are short too
+            int value = (pValue << 1) ^ (pValue >> 31);
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        public void writeDouble(double pValue) throws IOException {
+            out.writeDouble(pValue);
+        }
+
+        public void writeBoolean(boolean pValue) throws IOException {
+            out.writeBoolean(pValue);
+        }
+
+        /**
+         * Writes a string: 0 for null, the index plus 1 of a string already
+         * written, or -1 followed by the UTF-8 bytes of a new string
+         */
+        public void writeString(String pValue) throws IOException {
+            if (pValue == null) {
+                writeInt(0);
+                return;
+            }
+            Integer index = strings.get(pValue);
+            if (index != null) {
+                writeInt(index.intValue() + 1);
+                return;
+            }
+            strings.put(pValue, strings.size());
+            writeInt(-1);
+            byte[] bytes = pValue.getBytes("UTF-8");
+            writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        public void writeDate(Date pValue) throws IOException {
+            out.writeBoolean(pValue != null);
+            if (pValue != null) {
+                out.writeLong(pValue.getTime());
+            }
+        }
+
+        public void writePoint(Point3D pValue) throws IOException {
+            out.writeBoolean(pValue != null);
+            if (pValue != null) {
+                out.writeDouble(pValue.getLatitude());
+                out.writeDouble(pValue.getLongitude());
+                out.writeDouble(pValue.getAltitude());
+            }
+        }
+    }
+
+    /**
+     * Input of a list, with the table of the strings already read
+     */
+    public static class Reader {
+        private final DataInputStream in;
+        private final ArrayList<String> strings = new ArrayList<String>();
+
+        private Reader(DataInputStream pIn) {
+            in = pIn;
+        }
+
+        public int readInt() throws IOException {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (shift > 28) {
+                    throw new IOException(ErrorMessage.ERROR_FORMAT_BEAN);
+                }
+                b = in.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        public double readDouble() throws IOException {
+            return in.readDouble();
+        }
+
+        public boolean readBoolean() throws IOException {
+            return in.readBoolean();
+        }
+
+        public String readString() throws IOException {
+            int index = readInt();
+            if (index == 0) {
+                return null;
+            }
+            if (index == -1) {
+                int length = readInt();
+                if (length < 0) {
+                    throw new IOException(ErrorMessage.ERROR_FORMAT_BEAN);
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                String value = new String(bytes, "UTF-8");
+                strings.add(value);
+                return value;
+            }
+            if (index < 0 || index > strings.size()) {
+                throw new IOException(ErrorMessage.ERROR_FORMAT_BEAN);
+            }
+            return strings.get(index - 1);
+        }
+
+        public Date readDate() throws IOException {
+            return in.readBoolean() ? new Date(in.readLong()) : null;
+        }
+
+        public Point3D readPoint() throws IOException {
+            if (!in.readBoolean()) {
+                return null;
+            }
+            return new Point3D(in.readDouble(), in.readDouble(), in.readDouble());
+        }
+    }
+
+    /**
+     * Registers the schema of a bean class
+     *
+     * @Param pSchema schema to register
+     */
+    public static synchronized void register(Schema<?> pSchema) {
+        schemasByClass.put(pSchema.beanClass, pSchema);
+        schemasByType.put(pSchema.type, pSchema);
+    }
+
+    /**
+     * Checks if all the elements of a list can be encoded
+     *
+     * @Param pBeans list to check
+     * @Return true if every element is a bean with a schema
+     */
+    public static synchronized boolean supports(List<?> pBeans) {
+        for (Object bean : pBeans) {
+            if (bean == null || !schemasByClass.containsKey(bean.getClass())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encodes a list of beans
+     *
+     * @Param pBeans beans to encode, all with a schema
+     * @Return bytes of the list
+     * @throws IOException if a bean has no schema
+     */
+    @SuppressWarnings("unchecked")
+    public static byte[] encode(List<?> pBeans) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 32 * pBeans.size());
+        DataOutputStream data = new DataOutputStream(bytes);
+        Writer out = new Writer(data);
+        data.writeShort(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(pBeans.size());
+// The version of a schema is written with its first bean
+        HashMap<Integer, Boolean> written = new HashMap<Integer, Boolean>();
+        for (Object bean : pBeans) {
+            Schema<Object> schema = (Schema<Object>) getSchema(bean);
+            out.writeInt(schema.type);
+            if (written.put(schema.type, Boolean.TRUE) == null) {
+                out.writeInt(schema.version);
+            }
+            schema.write(bean, out);
+        }
+        data.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a list of beans
+     *
+     * @Param pBytes bytes written by encode
+     * @Return beans of the list
+     * @throws IOException if the bytes are not a valid list
+     */
+    public static ArrayList<Object> decode(byte[] pBytes) throws IOException {
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(pBytes));
+        Reader in = new Reader(data);
+        if (data.readUnsignedShort() != MAGIC || in.readInt() > FORMAT_VERSION) {
+            throw new IOException(ErrorMessage.ERROR_FORMAT_BEAN);
+        }
+        int size = in.readInt();
+        ArrayList<Object> beans = new ArrayList<Object>(Math.max(0, Math.min(size, pBytes.length)));
+        HashMap<Integer, Integer> versions = new HashMap<Integer, Integer>();
+        for (int i = 0; i < size; i++) {
+            int type = in.readInt();
+            Schema<?> schema;
+            synchronized (BeanCodec.class) {
+                schema = schemasByType.get(type);
+            }
+            if (schema == null) {
+                throw new IOException(ErrorMessage.ERROR_FORMAT_BEAN);
+            }
+            Integer version = versions.get(type);
+            if (version == null) {
+                version = in.readInt();
+                if (version.intValue() > schema.version) {
+                    throw new IOException(ErrorMessage.ERROR_FORMAT_BEAN);
+                }
+                versions.put(type, version);
+            }
+            beans.add(schema.read(in, version.intValue()));
+        }
+        return beans;
+    }
+
+    private static synchronized Schema<?> getSchema(Object pBean) throws IOException {
+        Schema<?> schema = pBean == null ? null : schemasByClass.get(pBean.getClass());
+        if (schema == null) {
+            throw new IOException(ErrorMessage.ERROR_FORMAT_BEAN);
+        }
+        return schema;
+    }
+
+// Schemas of the beans sent to the clients. The types must not be reused.
+    static {
+        register(new Schema<BeanTag>(1, 1, BeanTag.class) {
+            protected void write(BeanTag pBean, Writer pOut) throws IOException {
+                pOut.writeInt(pBean.getId());
+                pOut.writeString(pBean.getName());
+                pOut.writeString(pBean.getDescription());
+            }
+
+            protected BeanTag read(Reader pIn, int pVersion) throws IOException {
+                return new BeanTag(pIn.readInt(), pIn.readString(), pIn.readString());
+            }
+        });
+        register(new Schema<BeanTourist>(2, 1, BeanTourist.class) {
+            protected void write(BeanTourist pBean, Writer pOut) throws IOException {
+                pOut.writeInt(pBean.getId());
+                pOut.writeString(pBean.getUserName());
+                pOut.writeString(pBean.getName());
+                pOut.writeString(pBean.getSurname());
+                pOut.writeString(pBean.getCityNascita());
+                pOut.writeString(pBean.getCityResidenza());
+                pOut.writeString(pBean.getPhone());
+                pOut.writeString(pBean.getCap());
+                pOut.writeString(pBean.getStreet());
+                pOut.writeString(pBean.getProvince());
+                pOut.writeString(pBean.getEmail());
+                pOut.writeString(pBean.getPassword());
+                pOut.writeDate(pBean.getDateOfBirth());
+                pOut.writeDate(pBean.getDataRegistration());
+                pOut.writeBoolean(pBean.isActive());
+            }
+
+            protected BeanTourist read(Reader pIn, int pVersion) throws IOException {
+                return new BeanTourist(pIn.readInt(), pIn.readString(), pIn.readString(), pIn.readString(),
+                        pIn.readString(), pIn.readString(), pIn.readString(), pIn.readString(), pIn.readString(),
+                        pIn.readString(), pIn.readString(), pIn.readString(), pIn.readDate(), pIn.readDate(),
+                        pIn.readBoolean());
+            }
+        });
+        register(new Schema<BeanRefreshmentPoint>(3, 1, BeanRefreshmentPoint.class) {
+            protected void write(BeanRefreshmentPoint pBean, Writer pOut) throws IOException {
+                pOut.writeInt(pBean.getId());
+                pOut.writeInt(pBean.getRatingNumber());
+                pOut.writeDouble(pBean.getAverageRating());
+                pOut.writeString(pBean.getName());
+                pOut.writeString(pBean.getDescription());
+                pOut.writeString(pBean.getPhone());
+                pOut.writeString(pBean.getLocation());
+                pOut.writeString(pBean.getCity());
+                pOut.writeString(pBean.getStreet());
+                pOut.writeString(pBean.getCap());
+                pOut.writeString(pBean.getProvince());
+                pOut.writeString(pBean.getParty());
+                pOut.writePoint(pBean.getPosition());
+                pOut.writeDate(pBean.getOpeningTime());
+                pOut.writeDate(pBean.getClosingTime());
+                pOut.writeString(pBean.getClosingDay());
+            }
+
+            protected BeanRefreshmentPoint read(Reader pIn, int pVersion) throws IOException {
+                BeanRefreshmentPoint bean = new BeanRefreshmentPoint();
+                bean.setId(pIn.readInt());
+                bean.setRatingNumber(pIn.readInt());
+                bean.setAverageRating(pIn.readDouble());
+                bean.setName(pIn.readString());
+                bean.setDescription(pIn.readString());
+                bean.setPhone(pIn.readString());
+                bean.setLocation(pIn.readString());
+                bean.setCity(pIn.readString());
+                bean.setStreet(pIn.readString());
+                bean.setCap(pIn.readString());
+                bean.setProvince(pIn.readString());
+                bean.setParty(pIn.readString());
+                bean.setPosition(pIn.readPoint());
+                bean.setOpeningTime(pIn.readDate());
+                bean.setClosingTime(pIn.readDate());
+                bean.setClosingDay(pIn.readString());
+                return bean;
+            }
+        });
+        register(new Schema<BeanCulturalHeritage>(4, 1, BeanCulturalHeritage.class) {
+            protected void write(BeanCulturalHeritage pBean, Writer pOut) throws IOException {
+                pOut.writeInt(pBean.getId());
+                pOut.writeInt(pBean.getRatingNumber());
+                pOut.writeDouble(pBean.getAverageRating());
+                pOut.writeString(pBean.getName());
+                pOut.writeString(pBean.getDescription());
+                pOut.writeString(pBean.getPhone());
+                pOut.writeString(pBean.getLocation());
+                pOut.writeString(pBean.getCity());
+                pOut.writeString(pBean.getStreet());
+                pOut.writeString(pBean.getCap());
+                pOut.writeString(pBean.getProvince());
+                pOut.writePoint(pBean.getPosition());
+                pOut.writeDate(pBean.getOpeningTime());
+                pOut.writeDate(pBean.getClosingTime());
+                pOut.writeString(pBean.getClosingDay());
+                pOut.writeDouble(pBean.getTicketCost());
+            }
+
+            protected BeanCulturalHeritage read(Reader pIn, int pVersion) throws IOException {
+                BeanCulturalHeritage bean = new BeanCulturalHeritage();
+                bean.setId(pIn.readInt());
+                bean.setRatingNumber(pIn.readInt());
+                bean.setAverageRating(pIn.readDouble());
+                bean.setName(pIn.readString());
+                bean.setDescription(pIn.readString());
+                bean.setPhone(pIn.readString());
+                bean.setLocation(pIn.readString());
+                bean.setCity(pIn.readString());
+                bean.setStreet(pIn.readString());
+                bean.setCap(pIn.readString());
+                bean.setProvince(pIn.readString());
+                bean.setPosition(pIn.readPoint());
+                bean.setOpeningTime(pIn.readDate());
+                bean.setClosingTime(pIn.readDate());
+                bean.setClosingDay(pIn.readString());
+                bean.setTicketCost(pIn.readDouble());
+                return bean;
+            }
+        });
+        register(new Schema<BeanVisitPR>(5, 1, BeanVisitPR.class) {
+            protected void write(BeanVisitPR pBean, Writer pOut) throws IOException {
+                pOut.writeInt(pBean.getRating());
+                pOut.writeInt(pBean.getIdRefreshmentPoint());
+                pOut.writeString(pBean.getComment());
+                pOut.writeInt(pBean.getIdTourist());
+                pOut.writeDate(pBean.getDataVisit());
+            }
+
+            protected BeanVisitPR read(Reader pIn, int pVersion) throws IOException {
+                return new BeanVisitPR(pIn.readInt(), pIn.readInt(), pIn.readString(), pIn.readInt(),
+                        pIn.readDate());
+            }
+        });
+        register(new Schema<BeanVisitBC>(6, 1, BeanVisitBC.class) {
+            protected void write(BeanVisitBC pBean, Writer pOut) throws IOException {
+                pOut.writeInt(pBean.getRating());
+                pOut.writeInt(pBean.getIdCulturalHeritage());
+                pOut.writeString(pBean.getComment());
+                pOut.writeInt(pBean.getIdTourist());
+                pOut.writeDate(pBean.getDataVisit());
+            }
+
+            protected BeanVisitBC read(Reader pIn, int pVersion) throws IOException {
+                BeanVisitBC bean = new BeanVisitBC();
+                bean.setRating(pIn.readInt());
+                bean.setIdCulturalHeritage(pIn.readInt());
+                bean.setComment(pIn.readString());
+                bean.setIdTourist(pIn.readInt());
+                bean.setDataVisit(pIn.readDate());
+                return bean;
+            }
+        });
+        register(new Schema<BeanNews>(7, 1, BeanNews.class) {
+            protected void write(BeanNews pBean, Writer pOut) throws IOException {
+                pOut.writeInt(pBean.getId());
+                pOut.writeString(pBean.getNews());
+                pOut.writeDate(pBean.getDataPublication());
+                pOut.writeDate(pBean.getDataDeadline());
+                pOut.writeInt(pBean.getPriority());
+            }
+
+            protected BeanNews read(Reader pIn, int pVersion) throws IOException {
+                BeanNews bean = new BeanNews();
+                bean.setId(pIn.readInt());
+                bean.setNews(pIn.readString());
+                bean.setDataPublication(pIn.readDate());
+                bean.setDataDeadline(pIn.readDate());
+                bean.setPriority(pIn.readInt());
+                return bean;
+            }
+        });
+        register(new Schema<BeanWeeklyMenu>(8, 1, BeanWeeklyMenu.class) {
+            protected void write(BeanWeeklyMenu pBean, Writer pOut) throws IOException {
+                pOut.writeInt(pBean.getIdRefreshmentPoint());
+                pOut.writeInt(pBean.getMenus().size());
+                for (BeanMenu menu : pBean.getMenus()) {
+                    pOut.writeInt(menu.getId());
+                    pOut.writeString(menu.getDay());
+                    pOut.writeInt(menu.getIdRefreshmentPoint());
+                    List<BeanDish> dishes = pBean.getDishes(menu.getId());
+                    pOut.writeInt(dishes.size());
+                    for (BeanDish dish : dishes) {
+                        pOut.writeInt(dish.getId());
+                        pOut.writeString(dish.getName());
+                        pOut.writeDouble(dish.getPrice());
+                        pOut.writeInt(dish.getIdMenu());
+                    }
+                }
+            }
+
+            protected BeanWeeklyMenu read(Reader pIn, int pVersion) throws IOException {
+                int idRefreshmentPoint = pIn.readInt();
+                int menuCount = pIn.readInt();
+                List<BeanMenu> menus = new ArrayList<BeanMenu>(menuCount);
+                Map<Integer, List<BeanDish>> dishes = new HashMap<Integer, List<BeanDish>>();
+                for (int i = 0; i < menuCount; i++) {
+                    BeanMenu menu = new BeanMenu(pIn.readInt(), pIn.readString(), pIn.readInt());
+                    int dishCount = pIn.readInt();
+                    List<BeanDish> list = new ArrayList<BeanDish>(dishCount);
+                    for (int j = 0; j < dishCount; j++) {
+                        list.add(new BeanDish(pIn.readInt(), pIn.readString(), pIn.readDouble(), pIn.readInt()));
+                    }
+                    menus.add(menu);
+                    dishes.put(menu.getId(), list);
+                }
+                return new BeanWeeklyMenu(idRefreshmentPoint, menus, dishes);
+            }
+        });
+        register(new Schema<BeanConvention>(9, 1, BeanConvention.class) {
+            protected void write(BeanConvention pBean, Writer pOut) throws IOException {
+                pOut.writeInt(pBean.getId());
+                pOut.writeInt(pBean.getMaxBanner());
+                pOut.writeDate(pBean.getDataStart());
+                pOut.writeDate(pBean.getDataEnd());
+                pOut.writeDouble(pBean.getPrice());
+                pOut.writeBoolean(pBean.isActive());
+                pOut.writeInt(pBean.getIdRefreshmentPoint());
+            }
+
+            protected BeanConvention read(Reader pIn, int pVersion) throws IOException {
+                return new BeanConvention(pIn.readInt(), pIn.readInt(), pIn.readDate(), pIn.readDate(),
+                        pIn.readDouble(), pIn.readBoolean(), pIn.readInt());
+            }
+        });
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Benchmark of BeanCodec against the default serialization
+ *
+ *  2007 eTour Project - Copyright by DMI SE @ SA Lab - University of Salerno
+ */
+package unisa.gps.etour.util.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Random;
+
+import unisa.gps.etour.bean.BeanRefreshmentPoint;
+import unisa.gps.etour.bean.BeanTourist;
+import unisa.gps.etour.bean.BeanVisitPR;
+import unisa.gps.etour.util.BeanList;
+import unisa.gps.etour.util.Point3D;
+
+/**
+ * Serializes pages of beans as a plain ArrayList and as a BeanList, as RMI
+ * does, and prints for each the size of the payload and the time to
+ * serialize and deserialize it.
+ *
+ * Usage: java unisa.gps.etour.util.test.BeanCodecBenchmark [elements] [rounds]
+ */
+public class BeanCodecBenchmark {
+    private static final String[] CITIES = { "Salerno", "Naples", "Avellino", "Caserta", "Benevento" };
+    private static final String[] PROVINCES = { "SA", "NA", "AV", "CE", "BN" };
+
+    public static void main(String[] args) throws Exception {
+        int elements = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        Random random = new Random(1);
+        ArrayList<Object> tourists = new ArrayList<Object>();
+        ArrayList<Object> refreshmentPoints = new ArrayList<Object>();
+        ArrayList<Object> visits = new ArrayList<Object>();
+        for (int i = 0; i < elements; i++) {
+            int city = random.nextInt(CITIES.length);
+            tourists.add(new BeanTourist(i, "user" + i, "Name" + i, "Surname" + i, CITIES[city],
+                    CITIES[random.nextInt(CITIES.length)], "089" + random.nextInt(1000000), "8410" + city,
+                    "Street " + i, PROVINCES[city], "user" + i + "@etour.it", "password" + i, new Date(),
+                    new Date(), random.nextBoolean()));
+            BeanRefreshmentPoint refreshmentPoint = new BeanRefreshmentPoint();
+            refreshmentPoint.setId(i);
+            refreshmentPoint.setName("Refreshment point " + i);
+            refreshmentPoint.setDescription("Typical food of " + CITIES[city] + " with a view of the sea");
+            refreshmentPoint.setCity(CITIES[city]);
+            refreshmentPoint.setProvince(PROVINCES[city]);
+            refreshmentPoint.setLocation(CITIES[city]);
+            refreshmentPoint.setStreet("Street " + i);
+            refreshmentPoint.setCap("8410" + city);
+            refreshmentPoint.setPhone("089" + random.nextInt(1000000));
+            refreshmentPoint.setParty("IT" + random.nextInt(100000000));
+            refreshmentPoint.setClosingDay("Monday");
+            refreshmentPoint.setPosition(new Point3D(0.7 + random.nextDouble() / 100, 0.25 + random.nextDouble() / 100,
+                    random.nextInt(500)));
+            refreshmentPoint.setOpeningTime(new Date());
+            refreshmentPoint.setClosingTime(new Date());
+            refreshmentPoint.setAverageRating(random.nextInt(50) / 10.0);
+            refreshmentPoint.setRatingNumber(random.nextInt(500));
+            refreshmentPoints.add(refreshmentPoint);
+            visits.add(new BeanVisitPR(1 + random.nextInt(5), random.nextInt(20), random.nextBoolean() ? "Very good"
+                    : "Not bad", i, new Date()));
+        }
+        run("BeanTourist", tourists, rounds);
+        run("BeanRefreshmentPoint", refreshmentPoints, rounds);
+        run("BeanVisitPR", visits, rounds);
+    }
+
+    private static void run(String pName, ArrayList<Object> pBeans, int pRounds) throws Exception {
+        System.out.println(pName + ", " + pBeans.size() + " elements");
+        measure("  default", pBeans, pRounds);
+        measure("  BeanList", new BeanList<Object>(pBeans), pRounds);
+    }
+
+    private static void measure(String pName, Object pList, int pRounds) throws Exception {
+        byte[] bytes = null;
+// Warm up
+        for (int i = 0; i < pRounds / 4; i++) {
+            deserialize(serialize(pList));
+        }
+        long serializeTime = 0;
+        long deserializeTime = 0;
+        for (int i = 0; i < pRounds; i++) {
+            long start = System.nanoTime();
+            bytes = serialize(pList);
+            long middle = System.nanoTime();
+            deserialize(bytes);
+            serializeTime += middle - start;
+            deserializeTime += System.nanoTime() - middle;
+        }
+        System.out.println(pName + ": " + bytes.length + " bytes, serialize " + serializeTime / pRounds / 1000
+                + " us, deserialize " + deserializeTime / pRounds / 1000 + " us");
+    }
+
+    private static byte[] serialize(Object pObject) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(pObject);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] pBytes) throws Exception {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(pBytes));
+        Object object = in.readObject();
+        in.close();
+        return object;
+    }
+}
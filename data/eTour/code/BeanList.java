@@ -0,0 +1,72 @@
+package unisa.gps.etour.util;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * List of beans that travels on RMI encoded with BeanCodec. It can be
+ * returned by every remote method declared with an ArrayList of beans: the
+ * list is replaced in the stream by its encoding and rebuilt on the client.
+ * A list with elements without a schema travels as a plain ArrayList.
+ *
+ */
+public class BeanList<T> extends ArrayList<T> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Empty constructor
+     */
+    public BeanList() {
+        super();
+    }
+
+    /**
+     * Parameterized constructor
+     *
+     * @Param pBeans beans of the list
+     */
+    public BeanList(Collection<? extends T> pBeans) {
+        super(pBeans);
+    }
+
+    /**
+     * Replaces the list with its encoding when it is serialized
+     */
+    protected Object writeReplace() throws ObjectStreamException {
+        if (!BeanCodec.supports(this)) {
+            return new ArrayList<T>(this);
+        }
+        try {
+            return new Encoded(BeanCodec.encode(this));
+        } catch (IOException e) {
+            return new ArrayList<T>(this);
+        }
+    }
+
+    /**
+     * Encoding of a list in the stream
+     */
+    private static class Encoded implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final byte[] bytes;
+
+        private Encoded(byte[] pBytes) {
+            bytes = pBytes;
+        }
+
+        /**
+         * Rebuilds the list when it is deserialized
+         */
+        private Object readResolve() throws ObjectStreamException {
+            try {
+                return new BeanList<Object>(BeanCodec.decode(bytes));
+            } catch (IOException e) {
+                throw new InvalidObjectException(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package unisa.gps.etour.bean;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable bean containing what the home of a tourist shows: the favorite
+ * cultural heritage and refreshment points, the last visits with the sites
+ * visited and the rating given by the tourist to each site visited. The
+ * beans contained must be treated as read-only.
+ *
+ */
+public final class BeanTouristHome implements Serializable {
+    private static final long serialVersionUID = -3120645389117224672L;
+    private final int idTourist;
+    private final Date created;
+    private final List<BeanCulturalHeritage> favoriteCulturalHeritage;
+    private final List<BeanRefreshmentPoint> favoriteRefreshmentPoints;
+    private final List<BeanVisitBC> visitsCulturalHeritage;
+    private final List<BeanVisitPR> visitsRefreshmentPoints;
+    private final Map<Integer, BeanCulturalHeritage> visitedCulturalHeritage;
+    private final Map<Integer, BeanRefreshmentPoint> visitedRefreshmentPoints;
+    private final Map<Integer, Integer> ratingsCulturalHeritage;
+    private final Map<Integer, Integer> ratingsRefreshmentPoints;
+
+    /**
+     * Parameterized constructor
+     *
+     * @Param pIdTourist ID of the tourist
+     * @Param pFavoriteCulturalHeritage favorite cultural heritage
+     * @Param pFavoriteRefreshmentPoints favorite refreshment points
+     * @Param pVisitsCulturalHeritage last visits to cultural heritage, the
+     *        most recent first
+     * @Param pVisitsRefreshmentPoints last visits to refreshment points, the
+     *        most recent first
+     * @Param pVisitedCulturalHeritage cultural heritage of the last visits, by
+     *        id
+     * @Param pVisitedRefreshmentPoints refreshment points of the last visits,
+     *        by id
+     * @Param pRatingsCulturalHeritage rating given to every cultural good
+     *        visited, by id
+     * @Param pRatingsRefreshmentPoints rating given to every refreshment point
+     *        visited, by id
+     */
+    public BeanTouristHome(int pIdTourist, List<BeanCulturalHeritage> pFavoriteCulturalHeritage,
+            List<BeanRefreshmentPoint> pFavoriteRefreshmentPoints, List<BeanVisitBC> pVisitsCulturalHeritage,
+            List<BeanVisitPR> pVisitsRefreshmentPoints, Map<Integer, BeanCulturalHeritage> pVisitedCulturalHeritage,
+            Map<Integer, BeanRefreshmentPoint> pVisitedRefreshmentPoints, Map<Integer, Integer> pRatingsCulturalHeritage,
+            Map<Integer, Integer> pRatingsRefreshmentPoints) {
+        idTourist = pIdTourist;
+        created = new Date();
+        favoriteCulturalHeritage = Collections.unmodifiableList(new ArrayList<BeanCulturalHeritage>(
+                pFavoriteCulturalHeritage));
+        favoriteRefreshmentPoints = Collections.unmodifiableList(new ArrayList<BeanRefreshmentPoint>(
+                pFavoriteRefreshmentPoints));
+        visitsCulturalHeritage = Collections.unmodifiableList(new ArrayList<BeanVisitBC>(pVisitsCulturalHeritage));
+        visitsRefreshmentPoints = Collections.unmodifiableList(new ArrayList<BeanVisitPR>(
+                pVisitsRefreshmentPoints));
+        visitedCulturalHeritage = Collections.unmodifiableMap(new HashMap<Integer, BeanCulturalHeritage>(
+                pVisitedCulturalHeritage));
+        visitedRefreshmentPoints = Collections.unmodifiableMap(new HashMap<Integer, BeanRefreshmentPoint>(
+                pVisitedRefreshmentPoints));
+        ratingsCulturalHeritage = Collections.unmodifiableMap(new HashMap<Integer, Integer>(
+                pRatingsCulturalHeritage));
+        ratingsRefreshmentPoints = Collections.unmodifiableMap(new HashMap<Integer, Integer>(
+                pRatingsRefreshmentPoints));
+    }
+
+    /**
+     * Returns the value of idTourist
+     *
+     * @Return value idTourist.
+     */
+    public int getIdTourist() {
+        return idTourist;
+    }
+
+    /**
+     * Returns when the home was assembled
+     *
+     * @Return date of creation
+     */
+    public Date getCreated() {
+        return new Date(created.getTime());
+    }
+
+    /**
+     * Returns the favorite cultural heritage
+     *
+     * @Return read-only list of cultural heritage
+     */
+    public List<BeanCulturalHeritage> getFavoriteCulturalHeritage() {
+        return favoriteCulturalHeritage;
+    }
+
+    /**
+     * Returns the favorite refreshment points
+     *
+     * @Return read-only list of refreshment points
+     */
+    public List<BeanRefreshmentPoint> getFavoriteRefreshmentPoints() {
+        return favoriteRefreshmentPoints;
+    }
+
+    /**
+     * Returns the last visits to cultural heritage, the most recent first
+     *
+     * @Return read-only list of visits
+     */
+    public List<BeanVisitBC> getVisitsCulturalHeritage() {
+        return visitsCulturalHeritage;
+    }
+
+    /**
+     * Returns the last visits to refreshment points, the most recent first
+     *
+     * @Return read-only list of visits
+     */
+    public List<BeanVisitPR> getVisitsRefreshmentPoints() {
+        return visitsRefreshmentPoints;
+    }
+
+    /**
+     * Returns the cultural good of one of the last visits
+     *
+     * @Param pIdCulturalHeritage ID of the cultural good
+     * @Return cultural good, null if not among the last visits
+     */
+    public BeanCulturalHeritage getVisitedCulturalHeritage(int pIdCulturalHeritage) {
+        return visitedCulturalHeritage.get(pIdCulturalHeritage);
+    }
+
+    /**
+     * Returns the refreshment point of one of the last visits
+     *
+     * @Param pIdRefreshmentPoint ID of the refreshment point
+     * @Return refreshment point, null if not among the last visits
+     */
+    public BeanRefreshmentPoint getVisitedRefreshmentPoint(int pIdRefreshmentPoint) {
+        return visitedRefreshmentPoints.get(pIdRefreshmentPoint);
+    }
+
+    /**
+     * Returns the rating given by the tourist to a cultural good
+     *
+     * @Param pIdCulturalHeritage ID of the cultural good
+     * @Return rating, 0 if the tourist did not visit it
+     */
+    public int getRatingCulturalHeritage(int pIdCulturalHeritage) {
+        Integer rating = ratingsCulturalHeritage.get(pIdCulturalHeritage);
+        return rating == null ? 0 : rating.intValue();
+    }
+
+    /**
+     * Returns the rating given by the tourist to a refreshment point
+     *
+     * @Param pIdRefreshmentPoint ID of the refreshment point
+     * @Return rating, 0 if the tourist did not visit it
+     */
+    public int getRatingRefreshmentPoint(int pIdRefreshmentPoint) {
+        Integer rating = ratingsRefreshmentPoints.get(pIdRefreshmentPoint);
+        return rating == null ? 0 : rating.intValue();
+    }
+}
@@ -0,0 +1,109 @@
+﻿package unisa.gps.etour.bean;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable bean containing the menus of the week of a refreshment point
+ * together with the dishes of each menu. The beans contained are copies
+ * made at construction time and must be treated as read-only.
+ *
+ */
+public final class BeanWeeklyMenu implements Serializable {
+    private static final long serialVersionUID = 4482731905521776113L;
+    private final int idRefreshmentPoint;
+    private final List<BeanMenu> menus;
+    private final Map<Integer, List<BeanDish>> dishes;
+
+    /**
+     * Parameterized constructor
+     *
+     * @Param pIdRefreshmentPoint point identification Refreshments
+     * @Param pMenus menus of the refreshment point
+     * @Param pDishes dishes of each menu, keyed by menu id
+     */
+    public BeanWeeklyMenu(int pIdRefreshmentPoint, List<BeanMenu> pMenus, Map<Integer, List<BeanDish>> pDishes) {
+        idRefreshmentPoint = pIdRefreshmentPoint;
+        List<BeanMenu> menuCopy = new ArrayList<BeanMenu>(pMenus.size());
+        Map<Integer, List<BeanDish>> dishCopy = new HashMap<Integer, List<BeanDish>>();
+        for (BeanMenu menu : pMenus) {
+            menuCopy.add(new BeanMenu(menu.getId(), menu.getDay(), menu.getIdRefreshmentPoint()));
+            List<BeanDish> source = pDishes.get(menu.getId());
+            List<BeanDish> list = new ArrayList<BeanDish>(source == null ? 0 : source.size());
+            if (source != null) {
+                for (BeanDish dish : source) {
+                    list.add(new BeanDish(dish.getId(), dish.getName(), dish.getPrice(), dish.getIdMenu()));
+                }
+            }
+            dishCopy.put(menu.getId(), Collections.unmodifiableList(list));
+        }
+        menus = Collections.unmodifiableList(menuCopy);
+        dishes = Collections.unmodifiableMap(dishCopy);
+    }
+
+    /**
+     * Returns the value of idRefreshmentPoint
+     *
+     * @Return value idRefreshmentPoint.
+     */
+    public int getIdRefreshmentPoint() {
+        return idRefreshmentPoint;
+    }
+
+    /**
+     * Returns the menus of the week
+     *
+     * @Return read-only list of menus
+     */
+    public List<BeanMenu> getMenus() {
+        return menus;
+    }
+
+    /**
+     * Returns the menu of a given day
+     *
+     * @Param pDay Day of the week
+     * @Return menu of the day, null if not present
+     */
+    public BeanMenu getMenuOfDay(String pDay) {
+        for (BeanMenu menu : menus) {
+            if (menu.getDay() != null && menu.getDay().trim().equalsIgnoreCase(pDay.trim())) {
+                return menu;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the dishes of a menu
+     *
+     * @Param pIdMenu ID of the menu
+     * @Return read-only list of dishes, empty if the menu is not present
+     */
+    public List<BeanDish> getDishes(int pIdMenu) {
+        List<BeanDish> list = dishes.get(pIdMenu);
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        return list;
+    }
+
+    /**
+     * Returns the dishes of the menu of a given day
+     *
+     * @Param pDay Day of the week
+     * @Return read-only list of dishes, empty if there is no menu that day
+     */
+    public List<BeanDish> getDishesOfDay(String pDay) {
+        BeanMenu menu = getMenuOfDay(pDay);
+        if (menu == null) {
+            return Collections.emptyList();
+        }
+        return getDishes(menu.getId());
+    }
+
+}
@@ -0,0 +1,94 @@
+package unisa.gps.etour.repository;
+
+import java.io.Serializable;
+
+/**
+ * Change of the catalog streamed by the agency node to the replicas. Every
+ * change carries the new value of one entry of the catalog, identified by
+ * its kind and its id; a null value removes the entry. A change of kind
+ * RESET tells the replica to empty its catalog before the changes that
+ * follow.
+ *
+ */
+public class CatalogChange implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+// Kinds of entry
+    public static final byte RESET = 0;
+    public static final byte CULTURAL_HERITAGE = 1;
+    public static final byte REFRESHMENT_POINT = 2;
+// Tags and news are small lists, replicated whole with id 0
+    public static final byte TAGS = 3;
+    public static final byte NEWS = 4;
+// Weekly menu and active convention, by id of the refreshment point
+    public static final byte MENU = 5;
+    public static final byte CONVENTION = 6;
+// Convention not yet started, by id of the convention; kept only in the
+// Snapshot, never streamed to the replicas
+    public static final byte PENDING_CONVENTION = 7;
+
+    private final long sequence;
+    private final byte kind;
+    private final int id;
+    private final Serializable value;
+
+    /**
+     * Parameterized constructor
+     *
+     * @Param pSequence position of the change in the stream
+     * @Param pKind kind of entry
+     * @Param pId ID of the entry
+     * @Param pValue new value of the entry, null if removed
+     */
+    public CatalogChange(long pSequence, byte pKind, int pId, Serializable pValue) {
+        sequence = pSequence;
+        kind = pKind;
+        id = pId;
+        value = pValue;
+    }
+
+    /**
+     * Returns the position of the change in the stream
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the kind of entry
+     */
+    public byte getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the ID of the entry
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the new value of the entry, null if removed
+     */
+    public Serializable getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the key of the entry in a map of the catalog
+     */
+    public long getKey() {
+        return key(kind, id);
+    }
+
+    /**
+     * Returns the key of an entry in a map of the catalog
+     *
+     * @Param pKind kind of entry
+     * @Param pId ID of the entry
+     */
+    public static long key(byte pKind, int pId) {
+        return ((long) pKind << 32) | (pId & 0xffffffffL);
+    }
+}
@@ -0,0 +1,785 @@
+package unisa.gps.etour.repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import unisa.gps.etour.bean.BeanConvention;
+import unisa.gps.etour.bean.BeanCulturalHeritage;
+import unisa.gps.etour.bean.BeanDish;
+import unisa.gps.etour.bean.BeanMenu;
+import unisa.gps.etour.bean.BeanRefreshmentPoint;
+import unisa.gps.etour.bean.BeanWeeklyMenu;
+
+/**
+ * Streams the changes of the catalog from the agency node to the read-only
+ * replicas. The publisher keeps the last value of every entry of the catalog
+ * and a bounded log of the most recent changes. A replica connects on a
+ * socket sending the epoch and the sequence of the last change it applied:
+ * if the log still covers it, it receives only the changes it missed,
+ * otherwise a RESET followed by the whole catalog. Then it receives the new
+ * changes in batches, and an empty batch at every heartbeat when nothing
+ * changes. The repository classes call publish after every write; when the
+ * publisher is not started the call does nothing.
+ *
+ * With a snapshot file the catalog is written to it periodically and at
+ * shutdown. At the next start the catalog is read from the snapshot instead
+ * of the database, the caches of the server are filled from it, and the
+ * differences with the database are published in the background.
+ *
+ */
+public class CatalogPublisher {
+    private static final int LOG_SIZE = 10000;
+    public static final long HEARTBEAT_MILLIS = 5000L;
+    private static final long SNAPSHOT_MINUTES = 10;
+    private static CatalogPublisher instance;
+
+// Identifies the run of the publisher, the sequences restart at every run
+    private final long epoch;
+    private long sequence;
+// Last change of every entry, by key of the entry
+    private final Map<Long, CatalogChange> state;
+    private final ArrayDeque<CatalogChange> log;
+    private final ServerSocket server;
+// Reloads the entries that depend on the database after a write and
+// Writes the snapshots, one task at a time
+    private final ScheduledExecutorService loader;
+    private final File snapshotFile;
+// Writes the snapshot when the JVM exits without a call to stop
+    private Thread shutdownHook;
+    private volatile boolean running;
+// Age of the snapshot read at the start and time taken to load it
+    private long snapshotAge;
+    private long snapshotLoadMillis;
+
+    private CatalogPublisher(int pPort, File pSnapshotFile) throws IOException {
+        epoch = System.currentTimeMillis();
+        state = new LinkedHashMap<Long, CatalogChange>();
+        log = new ArrayDeque<CatalogChange>(LOG_SIZE);
+        server = pPort > 0 ? new ServerSocket(pPort) : null;
+        loader = Executors.newSingleThreadScheduledExecutor(daemon("CatalogLoader"));
+        snapshotFile = pSnapshotFile;
+        snapshotAge = -1;
+        snapshotLoadMillis = -1;
+        running = true;
+    }
+
+    /**
+     * Starts the publisher: loads the catalog and accepts the replicas on a
+     * port
+     *
+     * @Param pPort port on which the replicas connect
+     * @throws IOException if the port cannot be opened
+     */
+    public static void start(int pPort) throws IOException {
+        start(pPort, null);
+    }
+
+    /**
+     * Starts the publisher: loads the catalog from the snapshot, or from the
+     * database if there is no valid snapshot, and accepts the replicas on a
+     * port
+     *
+     * @Param pPort port on which the replicas connect, 0 to keep only the
+     *        catalog and its snapshots
+     * @Param pSnapshotFile file of the snapshot, null to always load the
+     *        catalog from the database
+     * @throws IOException if the port cannot be opened
+     */
+    public static synchronized void start(int pPort, File pSnapshotFile) throws IOException {
+        if (instance != null) {
+            return;
+        }
+        final CatalogPublisher publisher = new CatalogPublisher(pPort, pSnapshotFile);
+        if (publisher.restore()) {
+            publisher.loader.execute(new Runnable() {
+                public void run() {
+                    publisher.catchUp();
+                }
+            });
+        } else {
+            publisher.load();
+        }
+        instance = publisher;
+        if (publisher.server != null) {
+            daemon("CatalogPublisher").newThread(new Runnable() {
+                public void run() {
+                    publisher.accept();
+                }
+            }).start();
+        }
+        if (pSnapshotFile != null) {
+            Runnable snapshot = new Runnable() {
+                public void run() {
+                    publisher.writeSnapshot();
+                }
+            };
+            publisher.loader.scheduleWithFixedDelay(snapshot, SNAPSHOT_MINUTES, SNAPSHOT_MINUTES, TimeUnit.MINUTES);
+            publisher.shutdownHook = new Thread(snapshot, "CatalogSnapshot");
+            Runtime.getRuntime().addShutdownHook(publisher.shutdownHook);
+        }
+    }
+
+    /**
+     * Stops the publisher, writes the snapshot and disconnects the replicas
+     */
+    public static synchronized void stop() {
+        if (instance == null) {
+            return;
+        }
+// The snapshot is written once, here or by the shutdown hook
+        if (instance.removeShutdownHook()) {
+            instance.writeSnapshot();
+        }
+        instance.close();
+        instance = null;
+    }
+
+    /**
+     * Returns the age of the snapshot read at the start, in milliseconds
+     *
+     * @Return age of the snapshot when it was read, -1 if the catalog was
+     *         loaded from the database
+     */
+    public static long getSnapshotAge() {
+        CatalogPublisher publisher = instance;
+        return publisher == null ? -1 : publisher.snapshotAge;
+    }
+
+    /**
+     * Returns the time taken to load the snapshot at the start
+     *
+     * @Return milliseconds from the reading of the snapshot to the caches
+     *         filled, -1 if the catalog was loaded from the database
+     */
+    public static long getSnapshotLoadMillis() {
+        CatalogPublisher publisher = instance;
+        return publisher == null ? -1 : publisher.snapshotLoadMillis;
+    }
+
+    /**
+     * Tells whether the publisher is started
+     */
+    public static boolean isStarted() {
+        return instance != null;
+    }
+
+    /**
+     * Returns the sequence of the last change published, -1 if the publisher
+     * is not started
+     */
+    public static long getSequence() {
+        CatalogPublisher publisher = instance;
+        if (publisher == null) {
+            return -1;
+        }
+        synchronized (publisher) {
+            return publisher.sequence;
+        }
+    }
+
+    /**
+     * Publishes the new value of an entry of the catalog
+     *
+     * @Param pKind kind of entry, one of the constants of CatalogChange
+     * @Param pId ID of the entry
+     * @Param pValue new value, null if the entry was removed
+     */
+    public static void publish(byte pKind, int pId, Serializable pValue) {
+        CatalogPublisher publisher = instance;
+        if (publisher != null) {
+            publisher.add(pKind, pId, pValue);
+        }
+    }
+
+    /**
+     * Publishes again a refreshment point, reloading it in the background. The
+     * reloads are executed in order, so a refreshment point deleted is
+     * published as removed.
+     *
+     * @Param pIdRefreshmentPoint ID of the refreshment point
+     */
+    public static void publishRefreshmentPoint(final int pIdRefreshmentPoint) {
+        final CatalogPublisher publisher = instance;
+        if (publisher == null) {
+            return;
+        }
+        publisher.loader.execute(new Runnable() {
+            public void run() {
+                try {
+                    publisher.add(CatalogChange.REFRESHMENT_POINT, pIdRefreshmentPoint, new DBRefreshmentPoint()
+                            .getRefreshmentPoint(pIdRefreshmentPoint));
+                } catch (SQLException e) {
+                    System.out.println("Error in method publishRefreshmentPoint" + e.toString());
+                }
+            }
+        });
+    }
+
+    /**
+     * Publishes again the weekly menu of a refreshment point, reloading it in
+     * the background
+     *
+     * @Param pIdRefreshmentPoint ID of the refreshment point
+     */
+    public static void publishMenu(final int pIdRefreshmentPoint) {
+        final CatalogPublisher publisher = instance;
+        if (publisher == null) {
+            return;
+        }
+        publisher.loader.execute(new Runnable() {
+            public void run() {
+                try {
+                    publisher.add(CatalogChange.MENU, pIdRefreshmentPoint, new DBMenu()
+                            .getWeeklyMenu(pIdRefreshmentPoint));
+                } catch (SQLException e) {
+                    System.out.println("Error in method publishMenu" + e.toString());
+                }
+            }
+        });
+    }
+
+    /**
+     * Publishes again the weekly menu that contains a menu
+     *
+     * @Param pIdMenu ID of the menu
+     */
+    public static void publishMenuOf(int pIdMenu) {
+        CatalogPublisher publisher = instance;
+        if (publisher != null) {
+            int idRefreshmentPoint = publisher.findMenu(pIdMenu, -1);
+            if (idRefreshmentPoint >= 0) {
+                publishMenu(idRefreshmentPoint);
+            }
+        }
+    }
+
+    /**
+     * Publishes again the weekly menu that contains a dish
+     *
+     * @Param pIdDish ID of the dish
+     */
+    public static void publishMenuOfDish(int pIdDish) {
+        CatalogPublisher publisher = instance;
+        if (publisher != null) {
+            int idRefreshmentPoint = publisher.findMenu(-1, pIdDish);
+            if (idRefreshmentPoint >= 0) {
+                publishMenu(idRefreshmentPoint);
+            }
+        }
+    }
+
+    /**
+     * Adds a rating to the aggregates of a site and publishes the site again
+     *
+     * @Param pKind CULTURAL_HERITAGE or REFRESHMENT_POINT
+     * @Param pIdSite ID of the site
+     * @Param pRating rating of the visit
+     */
+    public static void publishRating(byte pKind, int pIdSite, int pRating) {
+        CatalogPublisher publisher = instance;
+        if (publisher != null) {
+            publisher.rate(pKind, pIdSite, pRating);
+        }
+    }
+
+    /**
+     * Returns the location of a site of the catalog
+     *
+     * @Param pKind CULTURAL_HERITAGE or REFRESHMENT_POINT
+     * @Param pIdSite ID of the site
+     * @Return location of the site, null if the publisher is not started or
+     *         the site is not in the catalog
+     */
+    public static String getLocation(byte pKind, int pIdSite) {
+        CatalogPublisher publisher = instance;
+        if (publisher == null) {
+            return null;
+        }
+        CatalogChange current;
+        synchronized (publisher) {
+            current = publisher.state.get(CatalogChange.key(pKind, pIdSite));
+        }
+        if (current == null) {
+            return null;
+        }
+        if (current.getValue() instanceof BeanCulturalHeritage) {
+            return ((BeanCulturalHeritage) current.getValue()).getLocation();
+        }
+        if (current.getValue() instanceof BeanRefreshmentPoint) {
+            return ((BeanRefreshmentPoint) current.getValue()).getLocation();
+        }
+        return null;
+    }
+
+    /**
+     * Loads the catalog from the repository. If the database cannot be read
+     * the catalog is left empty and filled by the changes that follow.
+     */
+    private void load() {
+        try {
+            for (CatalogChange entry : readRepository().values()) {
+                add(entry.getKind(), entry.getId(), entry.getValue());
+            }
+        } catch (SQLException e) {
+            System.out.println("Error in method load of the publisher" + e.toString());
+        }
+    }
+
+    /**
+     * Reads the whole catalog from the repository
+     *
+     * @Return entries of the catalog by key
+     * @throws SQLException
+     */
+    private Map<Long, CatalogChange> readRepository() throws SQLException {
+        Map<Long, CatalogChange> entries = new LinkedHashMap<Long, CatalogChange>();
+        for (BeanCulturalHeritage culturalHeritage : new DBCulturalHeritage().getListBC()) {
+            put(entries, CatalogChange.CULTURAL_HERITAGE, culturalHeritage.getId(), culturalHeritage);
+        }
+        put(entries, CatalogChange.TAGS, 0, new DBTag().getListTag());
+        ArrayList<BeanRefreshmentPoint> refreshmentPoints = new DBRefreshmentPoint().getListPR();
+        if (refreshmentPoints != null) {
+            DBMenu menu = new DBMenu();
+            for (BeanRefreshmentPoint refreshmentPoint : refreshmentPoints) {
+                int id = refreshmentPoint.getId();
+                put(entries, CatalogChange.REFRESHMENT_POINT, id, refreshmentPoint);
+                put(entries, CatalogChange.MENU, id, menu.getWeeklyMenu(id));
+                put(entries, CatalogChange.CONVENTION, id, ConventionRegistry.getInstance().getConventionActive(id));
+            }
+        }
+        return entries;
+    }
+
+    private static void put(Map<Long, CatalogChange> pEntries, byte pKind, int pId, Serializable pValue) {
+        if (pValue != null) {
+            CatalogChange entry = new CatalogChange(0, pKind, pId, pValue);
+            pEntries.put(entry.getKey(), entry);
+        }
+    }
+
+    /**
+     * Loads the catalog from the snapshot and fills with it the caches of the
+     * server: the weekly menus, the full-text index of the refreshment points
+     * and the active conventions
+     *
+     * @Return true if the snapshot was loaded
+     */
+    private boolean restore() {
+        if (snapshotFile == null || !snapshotFile.isFile()) {
+            return false;
+        }
+        long start = System.nanoTime();
+        CatalogSnapshot snapshot;
+        try {
+            snapshot = CatalogSnapshot.read(snapshotFile);
+        } catch (IOException e) {
+            System.out.println("Snapshot " + snapshotFile + " discarded " + e.toString());
+            return false;
+        }
+        final ArrayList<BeanRefreshmentPoint> refreshmentPoints = new ArrayList<BeanRefreshmentPoint>();
+        ArrayList<BeanConvention> conventions = new ArrayList<BeanConvention>();
+        long generation = MenuCache.getGeneration();
+        for (CatalogChange entry : snapshot.getEntries()) {
+            if (entry.getKind() == CatalogChange.PENDING_CONVENTION) {
+// Not part of the catalog, only of the registry of the conventions
+                conventions.add((BeanConvention) entry.getValue());
+                continue;
+            }
+            add(entry.getKind(), entry.getId(), entry.getValue());
+            if (entry.getKind() == CatalogChange.REFRESHMENT_POINT) {
+                refreshmentPoints.add((BeanRefreshmentPoint) entry.getValue());
+            } else if (entry.getKind() == CatalogChange.MENU) {
+                MenuCache.put((BeanWeeklyMenu) entry.getValue(), generation);
+            } else if (entry.getKind() == CatalogChange.CONVENTION) {
+                conventions.add((BeanConvention) entry.getValue());
+            }
+        }
+        ConventionRegistry.getInstance().preload(conventions, refreshmentPoints);
+// The full-text index is built in the background, a keyword search in the
+// Meantime waits for it instead of reading the database
+        loader.execute(new Runnable() {
+            public void run() {
+                DBRefreshmentPoint.seedIndex(refreshmentPoints);
+            }
+        });
+        snapshotAge = System.currentTimeMillis() - snapshot.getCreated();
+        snapshotLoadMillis = (System.nanoTime() - start) / 1000000;
+        System.out.println("Catalog snapshot " + snapshotFile + " of " + snapshotAge / 1000 + " s ago loaded in "
+                + snapshotLoadMillis + " ms (read " + snapshot.getLoadMillis() + " ms), "
+                + snapshot.getEntries().size() + " entries");
+        return true;
+    }
+
+    /**
+     * Reads the catalog from the database after a start from the snapshot,
+     * refreshes the caches of the server and publishes the differences
+     */
+    private void catchUp() {
+        long start = System.currentTimeMillis();
+// The changes published after this sequence are newer than the database
+// Read below and are not overwritten
+        long since;
+        synchronized (this) {
+            since = sequence;
+        }
+        Map<Long, CatalogChange> entries;
+        try {
+// The caches filled from the snapshot are read again from the database
+            MenuCache.clear();
+            ConventionRegistry.getInstance().reload();
+            entries = readRepository();
+        } catch (SQLException e) {
+            System.out.println("Error in method catchUp of the publisher" + e.toString());
+            return;
+        }
+        ArrayList<BeanRefreshmentPoint> refreshmentPoints = new ArrayList<BeanRefreshmentPoint>();
+        boolean refreshmentPointsChanged = false;
+        int changes = 0;
+        for (CatalogChange entry : entries.values()) {
+            if (entry.getKind() == CatalogChange.REFRESHMENT_POINT) {
+                refreshmentPoints.add((BeanRefreshmentPoint) entry.getValue());
+            }
+            CatalogChange current;
+            synchronized (this) {
+                current = state.get(entry.getKey());
+            }
+            if ((current == null || !Arrays.equals(serialize(current.getValue()), serialize(entry.getValue())))
+                    && addUnchanged(entry.getKind(), entry.getId(), entry.getValue(), since)) {
+                refreshmentPointsChanged |= entry.getKind() == CatalogChange.REFRESHMENT_POINT;
+                changes++;
+            }
+        }
+// The entries read from the database and no longer there are removed; the
+// Cultural heritage and the news are not kept in the database
+        ArrayList<CatalogChange> removed = new ArrayList<CatalogChange>();
+        synchronized (this) {
+            for (CatalogChange current : state.values()) {
+                byte kind = current.getKind();
+                if (kind != CatalogChange.CULTURAL_HERITAGE && kind != CatalogChange.NEWS
+                        && current.getSequence() <= since && !entries.containsKey(current.getKey())) {
+                    removed.add(current);
+                }
+            }
+        }
+        for (CatalogChange current : removed) {
+            if (!addUnchanged(current.getKind(), current.getId(), null, since)) {
+                continue;
+            }
+            refreshmentPointsChanged |= current.getKind() == CatalogChange.REFRESHMENT_POINT;
+            changes++;
+        }
+        if (refreshmentPointsChanged) {
+            DBRefreshmentPoint.seedIndex(refreshmentPoints);
+        }
+        System.out.println("Catalog caught up with the database in " + (System.currentTimeMillis() - start)
+                + " ms, " + changes + " changes");
+    }
+
+    /**
+     * Writes the current catalog to the snapshot file
+     */
+    private void writeSnapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+        ArrayList<CatalogChange> entries;
+        synchronized (this) {
+            entries = new ArrayList<CatalogChange>(state.values());
+        }
+        for (BeanConvention convention : ConventionRegistry.getInstance().getPendingConventions()) {
+            entries.add(new CatalogChange(0, CatalogChange.PENDING_CONVENTION, convention.getId(), convention));
+        }
+        try {
+            CatalogSnapshot.write(snapshotFile, entries);
+        } catch (IOException e) {
+            System.out.println("Error in method writeSnapshot" + e.toString());
+        }
+    }
+
+    /**
+     * Appends a change read from the database, unless the entry was changed
+     * after a sequence: that change is newer than the value read
+     *
+     * @Param pSince sequence before the database was read
+     * @Return true if the change was appended
+     */
+    private synchronized boolean addUnchanged(byte pKind, int pId, Serializable pValue, long pSince) {
+        long key = CatalogChange.key(pKind, pId);
+        CatalogChange current = state.get(key);
+        if (current != null) {
+            if (current.getSequence() > pSince) {
+                return false;
+            }
+        } else {
+// A removal leaves only its change in the log, which keeps far more changes
+// Than those published during a catch up
+            Iterator<CatalogChange> iterator = log.descendingIterator();
+            while (iterator.hasNext()) {
+                CatalogChange change = iterator.next();
+                if (change.getSequence() <= pSince) {
+                    break;
+                }
+                if (change.getKey() == key) {
+                    return false;
+                }
+            }
+        }
+        add(pKind, pId, pValue);
+        return true;
+    }
+
+    /**
+     * Appends a change to the log and wakes up the senders
+     */
+    private synchronized void add(byte pKind, int pId, Serializable pValue) {
+        CatalogChange change = new CatalogChange(++sequence, pKind, pId, pValue);
+        if (pValue == null) {
+            state.remove(change.getKey());
+        } else {
+// The entry moves to the end, so the state stays in order of change
+            state.remove(change.getKey());
+            state.put(change.getKey(), change);
+        }
+        if (log.size() == LOG_SIZE) {
+            log.removeFirst();
+        }
+        log.addLast(change);
+        notifyAll();
+    }
+
+    /**
+     * Returns the refreshment point whose weekly menu contains a menu or a
+     * dish, -1 if not known
+     */
+    private synchronized int findMenu(int pIdMenu, int pIdDish) {
+        for (CatalogChange change : state.values()) {
+            if (change.getKind() != CatalogChange.MENU) {
+                continue;
+            }
+            BeanWeeklyMenu weeklyMenu = (BeanWeeklyMenu) change.getValue();
+            for (BeanMenu menu : weeklyMenu.getMenus()) {
+                if (menu.getId() == pIdMenu) {
+                    return change.getId();
+                }
+                if (pIdDish >= 0) {
+                    for (BeanDish dish : weeklyMenu.getDishes(menu.getId())) {
+                        if (dish.getId() == pIdDish) {
+                            return change.getId();
+                        }
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Updates the average rating and the number of ratings of a copy of a site
+     * and publishes it
+     */
+    private synchronized void rate(byte pKind, int pIdSite, int pRating) {
+        CatalogChange current = state.get(CatalogChange.key(pKind, pIdSite));
+        if (current == null) {
+            return;
+        }
+// The published bean may be in the middle of being sent, it is not changed
+        Serializable site = duplicate(current.getValue());
+        if (site instanceof BeanCulturalHeritage) {
+            BeanCulturalHeritage culturalHeritage = (BeanCulturalHeritage) site;
+            int ratingNumber = culturalHeritage.getRatingNumber() + 1;
+            culturalHeritage.setAverageRating((culturalHeritage.getAverageRating() * (ratingNumber - 1) + pRating)
+                    / ratingNumber);
+            culturalHeritage.setRatingNumber(ratingNumber);
+        } else if (site instanceof BeanRefreshmentPoint) {
+            BeanRefreshmentPoint refreshmentPoint = (BeanRefreshmentPoint) site;
+            int ratingNumber = refreshmentPoint.getRatingNumber() + 1;
+            refreshmentPoint.setAverageRating((refreshmentPoint.getAverageRating() * (ratingNumber - 1) + pRating)
+                    / ratingNumber);
+            refreshmentPoint.setRatingNumber(ratingNumber);
+        } else {
+            return;
+        }
+        add(pKind, pIdSite, site);
+    }
+
+    /**
+     * Accepts the replicas, each one served by its own thread
+     */
+    private void accept() {
+        while (running) {
+            try {
+                final Socket socket = server.accept();
+                daemon("CatalogSender").newThread(new Runnable() {
+                    public void run() {
+                        serve(socket);
+                    }
+                }).start();
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("Error in method accept of the publisher" + e.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends to a replica the changes it missed, then the new ones as they are
+     * published
+     */
+    private void serve(Socket pSocket) {
+        try {
+            pSocket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(pSocket.getInputStream()));
+            long replicaEpoch = in.readLong();
+            long replicaSequence = in.readLong();
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(pSocket.getOutputStream()));
+            ArrayList<CatalogChange> batch = changesSince(replicaEpoch, replicaSequence);
+            long sent = replicaSequence;
+            while (running) {
+                out.writeObject(batch);
+// The beans already sent are not remembered by the stream
+                out.reset();
+                out.flush();
+                if (!batch.isEmpty()) {
+                    sent = batch.get(batch.size() - 1).getSequence();
+                }
+                batch = waitChanges(sent);
+            }
+        } catch (IOException e) {
+            System.out.println("Replica disconnected " + pSocket.getRemoteSocketAddress() + " " + e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                pSocket.close();
+            } catch (IOException e) {
+// Already closed
+            }
+        }
+    }
+
+    /**
+     * Waits for changes after a sequence, at most for a heartbeat
+     */
+    private synchronized ArrayList<CatalogChange> waitChanges(long pSent) throws InterruptedException {
+        if (sequence == pSent && running) {
+            wait(HEARTBEAT_MILLIS);
+        }
+        return changesSince(epoch, pSent);
+    }
+
+    /**
+     * Returns the changes after a sequence, or the whole catalog after a RESET
+     * if the log does not cover it
+     */
+    private synchronized ArrayList<CatalogChange> changesSince(long pEpoch, long pSequence) {
+        ArrayList<CatalogChange> changes = new ArrayList<CatalogChange>();
+        long first = log.isEmpty() ? sequence + 1 : log.getFirst().getSequence();
+        if (pEpoch == epoch && pSequence >= first - 1 && pSequence <= sequence) {
+            Iterator<CatalogChange> iterator = log.descendingIterator();
+            while (iterator.hasNext()) {
+                CatalogChange change = iterator.next();
+                if (change.getSequence() <= pSequence) {
+                    break;
+                }
+                changes.add(change);
+            }
+            Collections.reverse(changes);
+            return changes;
+        }
+// The RESET carries the epoch and the current sequence, the entries
+// Follow in order of change
+        changes.add(new CatalogChange(sequence, CatalogChange.RESET, 0, Long.valueOf(epoch)));
+        changes.addAll(state.values());
+        return changes;
+    }
+
+    /**
+     * Removes the hook that writes the snapshot at shutdown
+     *
+     * @Return false if the JVM is already shutting down, then the hook writes
+     *         the snapshot
+     */
+    private boolean removeShutdownHook() {
+        if (shutdownHook == null) {
+            return true;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private void close() {
+        running = false;
+        synchronized (this) {
+            notifyAll();
+        }
+        loader.shutdownNow();
+        if (server == null) {
+            return;
+        }
+        try {
+            server.close();
+        } catch (IOException e) {
+            System.out.println("Error in method close of the publisher" + e.toString());
+        }
+    }
+
+    /**
+     * Copies a value through the serialization
+     */
+    private static Serializable duplicate(Serializable pValue) {
+        try {
+            return (Serializable) new ObjectInputStream(new ByteArrayInputStream(serialize(pValue))).readObject();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] serialize(Serializable pValue) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(pValue);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ThreadFactory daemon(final String pName) {
+        return new ThreadFactory() {
+            public Thread newThread(Runnable pTask) {
+                Thread thread = new Thread(pTask, pName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,455 @@
+﻿package unisa.gps.etour.control.ReplicaManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import unisa.gps.etour.bean.BeanConvention;
+import unisa.gps.etour.bean.BeanCulturalHeritage;
+import unisa.gps.etour.bean.BeanNews;
+import unisa.gps.etour.bean.BeanRefreshmentPoint;
+import unisa.gps.etour.bean.BeanTag;
+import unisa.gps.etour.bean.BeanWeeklyMenu;
+import unisa.gps.etour.repository.CatalogChange;
+import unisa.gps.etour.repository.CatalogPublisher;
+import unisa.gps.etour.repository.CulturalHeritageCatalog;
+import unisa.gps.etour.repository.FullTextIndex;
+import unisa.gps.etour.repository.RankingEngine;
+import unisa.gps.etour.util.BeanList;
+import unisa.gps.etour.util.ErrorMessage;
+import unisa.gps.etour.util.Point3D;
+
+/**
+ * Read-only replica of the catalog. A subscriber thread connects to the
+ * publisher of the agency node, receives the changes of the catalog and
+ * applies them to the in-memory indexes; the reads of the tourists are
+ * answered from the indexes only. When the connection is lost the subscriber
+ * connects again and receives the changes it missed. A RESET is applied to a
+ * new copy of the catalog, which replaces the current one only when complete,
+ * so the reads never see a catalog half loaded.
+ *
+ */
+public class CatalogReplica extends UnicastRemoteObject implements ICatalogReplica {
+    private static final long serialVersionUID = 1L;
+// Waits between the attempts to connect to the publisher
+    private static final long MIN_BACKOFF_MILLIS = 500L;
+    private static final long MAX_BACKOFF_MILLIS = 30000L;
+
+    private final String publisherHost;
+    private final int publisherPort;
+    private final RankingEngine ranking;
+    private volatile Catalog catalog;
+    private volatile long epoch;
+    private volatile long sequence;
+    private volatile boolean running;
+    private transient Socket socket;
+
+    /**
+     * Copy of the catalog with its indexes
+     */
+    private static class Catalog {
+        private final CulturalHeritageCatalog culturalHeritage = new CulturalHeritageCatalog();
+        private final Map<Integer, BeanRefreshmentPoint> refreshmentPoints =
+                new ConcurrentHashMap<Integer, BeanRefreshmentPoint>();
+        private final FullTextIndex refreshmentPointText = new FullTextIndex();
+        private final Map<Integer, BeanWeeklyMenu> menus = new ConcurrentHashMap<Integer, BeanWeeklyMenu>();
+        private final Map<Integer, BeanConvention> conventions = new ConcurrentHashMap<Integer, BeanConvention>();
+        private volatile ArrayList<BeanTag> tags = new ArrayList<BeanTag>(0);
+        private volatile ArrayList<BeanNews> news = new ArrayList<BeanNews>(0);
+
+        /**
+         * Applies a change to the catalog
+         */
+        @SuppressWarnings("unchecked")
+        private void apply(CatalogChange pChange) throws SQLException {
+            int id = pChange.getId();
+            Object value = pChange.getValue();
+            switch (pChange.getKind()) {
+            case CatalogChange.CULTURAL_HERITAGE:
+                if (value == null) {
+                    culturalHeritage.clearCulturalHeritage(id);
+                } else if (!culturalHeritage.modifyCulturalHeritage((BeanCulturalHeritage) value)) {
+                    culturalHeritage.insertCulturalHeritage((BeanCulturalHeritage) value);
+                }
+                break;
+            case CatalogChange.REFRESHMENT_POINT:
+                if (value == null) {
+                    refreshmentPoints.remove(id);
+                    refreshmentPointText.remove(id);
+                } else {
+                    BeanRefreshmentPoint refreshmentPoint = (BeanRefreshmentPoint) value;
+                    refreshmentPoints.put(id, refreshmentPoint);
+                    refreshmentPointText.put(id, refreshmentPoint.getName(), refreshmentPoint.getDescription());
+                }
+                break;
+            case CatalogChange.TAGS:
+                tags = value == null ? new ArrayList<BeanTag>(0) : (ArrayList<BeanTag>) value;
+                break;
+            case CatalogChange.NEWS:
+                news = value == null ? new ArrayList<BeanNews>(0) : (ArrayList<BeanNews>) value;
+                break;
+            case CatalogChange.MENU:
+                put(menus, id, (BeanWeeklyMenu) value);
+                break;
+            case CatalogChange.CONVENTION:
+                put(conventions, id, (BeanConvention) value);
+                break;
+            default:
+                break;
+            }
+        }
+
+        private static <V> void put(Map<Integer, V> pMap, int pId, V pValue) {
+            if (pValue == null) {
+                pMap.remove(pId);
+            } else {
+                pMap.put(pId, pValue);
+            }
+        }
+    }
+
+    /**
+     * Parameterized constructor, exports the replica
+     *
+     * @Param pPublisherHost host of the agency node
+     * @Param pPublisherPort port of the publisher of the agency node
+     * @throws RemoteException
+     */
+    public CatalogReplica(String pPublisherHost, int pPublisherPort) throws RemoteException {
+        super();
+        publisherHost = pPublisherHost;
+        publisherPort = pPublisherPort;
+        ranking = new RankingEngine();
+        catalog = new Catalog();
+        sequence = -1;
+    }
+
+    /**
+     * Starts the thread that receives the changes from the publisher
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread subscriber = new Thread(new Runnable() {
+            public void run() {
+                subscribe();
+            }
+        }, "CatalogSubscriber");
+        subscriber.setDaemon(true);
+        subscriber.start();
+    }
+
+    /**
+     * Stops the thread that receives the changes, the replica keeps answering
+     * from the catalog received so far
+     */
+    public synchronized void stop() {
+        running = false;
+        closeSocket();
+    }
+
+    /**
+     * Entry point of a replica process. Several replicas may run on the same
+     * machine, each with its own registry port or name.
+     *
+     * @Param args host and port of the publisher, port of the RMI registry and
+     *        name of the replica in the registry
+     */
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.out.println("Usage: CatalogReplica publisherHost publisherPort registryPort name");
+            return;
+        }
+        try {
+            CatalogReplica replica = new CatalogReplica(args[0], Integer.parseInt(args[1]));
+            Registry registry;
+            try {
+                registry = LocateRegistry.createRegistry(Integer.parseInt(args[2]));
+            } catch (RemoteException e) {
+// A registry is already running on the port, shared with other replicas
+                registry = LocateRegistry.getRegistry(Integer.parseInt(args[2]));
+            }
+            registry.rebind(args[3], replica);
+            replica.start();
+            System.out.println("Replica " + args[3] + " bound on port " + args[2]);
+        } catch (Exception e) {
+            System.out.println("Exception:" + e.getLocalizedMessage());
+        }
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ReplicaManager.ICatalogReplica #
+     * getCulturalHeritage (int)
+     */
+    public BeanCulturalHeritage getCulturalHeritage(int pCulturalHeritageID) throws RemoteException {
+        try {
+            return catalog.culturalHeritage.getCulturalHeritage(pCulturalHeritageID);
+        } catch (SQLException e) {
+            throw new RemoteException(ErrorMessage.ERROR_UNKNOWN);
+        }
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ReplicaManager.ICatalogReplica #
+     * searchCulturalHeritage (String, Point3D, double, int, int)
+     */
+    public ArrayList<BeanCulturalHeritage> searchCulturalHeritage(String pKeyword, Point3D pPosition,
+            double pMaxDistance, int pPage, int pElementsPerPage) throws RemoteException {
+        try {
+            return new BeanList<BeanCulturalHeritage>(catalog.culturalHeritage.search(pKeyword, null, pPage,
+                    pElementsPerPage, pPosition, pMaxDistance));
+        } catch (SQLException e) {
+            throw new RemoteException(ErrorMessage.ERROR_UNKNOWN);
+        }
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ReplicaManager.ICatalogReplica #
+     * getCulturalHeritageResultNumber (String, Point3D, double)
+     */
+    public int getCulturalHeritageResultNumber(String pKeyword, Point3D pPosition, double pMaxDistance)
+            throws RemoteException {
+        try {
+            return catalog.culturalHeritage.getSearchResultNumber(pKeyword, null, pPosition, pMaxDistance);
+        } catch (SQLException e) {
+            throw new RemoteException(ErrorMessage.ERROR_UNKNOWN);
+        }
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ReplicaManager.ICatalogReplica #
+     * getRefreshmentPoint (int)
+     */
+    public BeanRefreshmentPoint getRefreshmentPoint(int pRefreshmentPointID) throws RemoteException {
+        return catalog.refreshmentPoints.get(pRefreshmentPointID);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ReplicaManager.ICatalogReplica #
+     * searchRefreshmentPoint (String, Point3D, double, int, int)
+     */
+    public ArrayList<BeanRefreshmentPoint> searchRefreshmentPoint(String pKeyword, Point3D pPosition,
+            double pMaxDistance, int pPage, int pElementsPerPage) throws RemoteException {
+        return new BeanList<BeanRefreshmentPoint>(ranking.page(findRefreshmentPoints(catalog, pKeyword, pPosition,
+                pMaxDistance), pPage, pElementsPerPage, pMaxDistance));
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ReplicaManager.ICatalogReplica #
+     * getRefreshmentPointResultNumber (String, Point3D, double)
+     */
+    public int getRefreshmentPointResultNumber(String pKeyword, Point3D pPosition, double pMaxDistance)
+            throws RemoteException {
+        return findRefreshmentPoints(catalog, pKeyword, pPosition, pMaxDistance).size();
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ReplicaManager.ICatalogReplica # getTags ()
+     */
+    public ArrayList<BeanTag> getTags() throws RemoteException {
+        return new BeanList<BeanTag>(catalog.tags);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ReplicaManager.ICatalogReplica #
+     * getWeeklyMenu (int)
+     */
+    public BeanWeeklyMenu getWeeklyMenu(int pRefreshmentPointID) throws RemoteException {
+        return catalog.menus.get(pRefreshmentPointID);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ReplicaManager.ICatalogReplica # getNews ()
+     */
+    public ArrayList<BeanNews> getNews() throws RemoteException {
+        return new BeanList<BeanNews>(catalog.news);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ReplicaManager.ICatalogReplica #
+     * getConventionActive (int)
+     */
+    public BeanConvention getConventionActive(int pRefreshmentPointID) throws RemoteException {
+        return catalog.conventions.get(pRefreshmentPointID);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ReplicaManager.ICatalogReplica #
+     * getSequence ()
+     */
+    public long getSequence() throws RemoteException {
+        return sequence;
+    }
+
+    /**
+     * Finds the refreshment points within the distance that match the keyword
+     */
+    private static ArrayList<RankingEngine.Candidate<BeanRefreshmentPoint>> findRefreshmentPoints(
+            Catalog pCatalog, String pKeyword, Point3D pPosition, double pMaxDistance) {
+        ArrayList<RankingEngine.Candidate<BeanRefreshmentPoint>> matches =
+                new ArrayList<RankingEngine.Candidate<BeanRefreshmentPoint>>();
+        ArrayList<FullTextIndex.Hit> hits = pCatalog.refreshmentPointText.query(pKeyword);
+        if (hits == null) {
+            for (BeanRefreshmentPoint refreshmentPoint : pCatalog.refreshmentPoints.values()) {
+                addMatch(matches, refreshmentPoint, 0, pPosition, pMaxDistance);
+            }
+        } else {
+            for (FullTextIndex.Hit hit : hits) {
+                BeanRefreshmentPoint refreshmentPoint = pCatalog.refreshmentPoints.get(hit.getId());
+                if (refreshmentPoint != null) {
+                    addMatch(matches, refreshmentPoint, hit.getScore(), pPosition, pMaxDistance);
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static void addMatch(ArrayList<RankingEngine.Candidate<BeanRefreshmentPoint>> pMatches,
+            BeanRefreshmentPoint pRefreshmentPoint, double pKeywordScore, Point3D pPosition, double pMaxDistance) {
+        double distance = 0;
+        if (pPosition != null) {
+            if (pRefreshmentPoint.getPosition() == null) {
+                return;
+            }
+            distance = pPosition.distance(pRefreshmentPoint.getPosition());
+            if (!(distance < pMaxDistance)) {
+                return;
+            }
+        }
+        RankingEngine.Candidate<BeanRefreshmentPoint> match = new RankingEngine.Candidate<BeanRefreshmentPoint>(
+                pRefreshmentPoint.getId(), pRefreshmentPoint);
+        match.setKeywordScore(pKeywordScore);
+        match.setDistance(distance);
+        match.setRating(pRefreshmentPoint.getAverageRating());
+        pMatches.add(match);
+    }
+
+    /**
+     * Receives the changes from the publisher until the replica is stopped,
+     * connecting again after a growing wait when the connection is lost
+     */
+    private void subscribe() {
+        long backoff = MIN_BACKOFF_MILLIS;
+        while (running) {
+            try {
+                receive();
+            } catch (IOException e) {
+                System.out.println("Publisher " + publisherHost + ":" + publisherPort + " unreachable "
+                        + e.toString());
+            } catch (Exception e) {
+                System.out.println("Error in method subscribe" + e.toString());
+            } finally {
+                closeSocket();
+            }
+            if (!running) {
+                break;
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    /**
+     * Connects to the publisher and applies the batches of changes
+     */
+    @SuppressWarnings("unchecked")
+    private void receive() throws IOException, ClassNotFoundException, SQLException {
+        Socket connection = new Socket();
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            socket = connection;
+        }
+        connection.connect(new InetSocketAddress(publisherHost, publisherPort));
+        connection.setTcpNoDelay(true);
+// Without even a heartbeat for a while, the publisher is considered lost
+        connection.setSoTimeout((int) (3 * CatalogPublisher.HEARTBEAT_MILLIS));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+        out.writeLong(epoch);
+        out.writeLong(sequence);
+        out.flush();
+        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(connection.getInputStream()));
+        while (running) {
+            ArrayList<CatalogChange> batch = (ArrayList<CatalogChange>) in.readObject();
+            apply(batch);
+        }
+    }
+
+    /**
+     * Applies a batch of changes. After a RESET the changes are applied to a
+     * new catalog, published at the end of the batch.
+     */
+    private void apply(ArrayList<CatalogChange> pBatch) throws SQLException {
+        Catalog target = catalog;
+        boolean reset = false;
+        long last = sequence;
+        for (CatalogChange change : pBatch) {
+            if (change.getKind() == CatalogChange.RESET) {
+                target = new Catalog();
+                reset = true;
+                epoch = ((Long) change.getValue()).longValue();
+            } else {
+                target.apply(change);
+            }
+            last = reset ? Math.max(last, change.getSequence()) : change.getSequence();
+        }
+        if (reset) {
+            catalog = target;
+            System.out.println("Catalog loaded at sequence " + last + ", " + target.culturalHeritage.size()
+                    + " cultural heritage and " + target.refreshmentPoints.size() + " refreshment points");
+        }
+        sequence = last;
+    }
+
+    private synchronized void closeSocket() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+// Already closed
+            }
+            socket = null;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package unisa.gps.etour.repository;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import unisa.gps.etour.util.BeanCodec;
+import unisa.gps.etour.util.ErrorMessage;
+
+/**
+ * Binary snapshot of the catalog in a file. The entries are grouped in
+ * sections by kind; the values of a section are written with BeanCodec when
+ * it supports them, otherwise with the serialization. The file ends with the
+ * CRC32 of its content, so a snapshot truncated by a crash is discarded. The
+ * file is written beside the old one and then renamed over it, and it is
+ * read through a memory mapping.
+ *
+ * Layout: magic (int), version (short), creation time (long), number of
+ * sections (int), then for every section kind (byte), number of entries
+ * (int), their ids (int each), encoding (byte), length (int) and bytes of
+ * the values, and last the CRC32 (long).
+ *
+ */
+public class CatalogSnapshot {
+    private static final int MAGIC = 0xE7C5;
+    private static final short VERSION = 2;
+    private static final byte CODEC = 0;
+    private static final byte SERIALIZED = 1;
+
+    private final long created;
+    private final ArrayList<CatalogChange> entries;
+    private final long loadMillis;
+
+    private CatalogSnapshot(long pCreated, ArrayList<CatalogChange> pEntries, long pLoadMillis) {
+        created = pCreated;
+        entries = pEntries;
+        loadMillis = pLoadMillis;
+    }
+
+    /**
+     * Returns the time the snapshot was written
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * Returns the entries of the catalog, in the order they were written
+     */
+    public ArrayList<CatalogChange> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the time taken to read the snapshot, in milliseconds
+     */
+    public long getLoadMillis() {
+        return loadMillis;
+    }
+
+    /**
+     * Writes a snapshot of the catalog
+     *
+     * @Param pFile file of the snapshot, replaced only when the new one is
+     *        complete
+     * @Param pEntries entries of the catalog
+     * @throws IOException
+     */
+    public static void write(File pFile, Collection<CatalogChange> pEntries) throws IOException {
+// Entries grouped by kind, in order of kind
+        Map<Byte, List<CatalogChange>> sections = new LinkedHashMap<Byte, List<CatalogChange>>();
+        for (byte kind = CatalogChange.CULTURAL_HERITAGE; kind <= CatalogChange.PENDING_CONVENTION; kind++) {
+            sections.put(kind, new ArrayList<CatalogChange>());
+        }
+        for (CatalogChange entry : pEntries) {
+            List<CatalogChange> section = sections.get(entry.getKind());
+            if (section != null && entry.getValue() != null) {
+                section.add(entry);
+            }
+        }
+        File temporary = new File(pFile.getPath() + ".tmp");
+        CRC32 crc = new CRC32();
+        FileOutputStream file = new FileOutputStream(temporary);
+        try {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 65536), crc);
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(sections.size());
+            for (Map.Entry<Byte, List<CatalogChange>> section : sections.entrySet()) {
+                List<CatalogChange> values = section.getValue();
+                out.writeByte(section.getKey());
+                out.writeInt(values.size());
+                ArrayList<Object> beans = new ArrayList<Object>(values.size());
+                for (CatalogChange entry : values) {
+                    out.writeInt(entry.getId());
+                    beans.add(entry.getValue());
+                }
+                byte[] bytes;
+                if (BeanCodec.supports(beans)) {
+                    out.writeByte(CODEC);
+                    bytes = BeanCodec.encode(beans);
+                } else {
+                    out.writeByte(SERIALIZED);
+                    bytes = serialize(beans);
+                }
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.flush();
+// The checksum is not part of itself
+            new DataOutputStream(file).writeLong(crc.getValue());
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+        if (!temporary.renameTo(pFile)) {
+            pFile.delete();
+            if (!temporary.renameTo(pFile)) {
+                throw new IOException(ErrorMessage.ERROR_FILE);
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot of the catalog
+     *
+     * @Param pFile file of the snapshot
+     * @Return snapshot read
+     * @throws IOException if the file is missing, truncated or corrupted
+     */
+    @SuppressWarnings("unchecked")
+    public static CatalogSnapshot read(File pFile) throws IOException {
+        long start = System.nanoTime();
+        RandomAccessFile file = new RandomAccessFile(pFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            if (size < 26 || size > Integer.MAX_VALUE) {
+                throw new IOException(ErrorMessage.ERROR_FILE);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+// The content is checked before decoding anything
+            CRC32 crc = new CRC32();
+            byte[] chunk = new byte[65536];
+            int length = (int) size - 8;
+            for (int position = 0; position < length; position += chunk.length) {
+                int count = Math.min(chunk.length, length - position);
+                buffer.get(chunk, 0, count);
+                crc.update(chunk, 0, count);
+            }
+            if (buffer.getLong() != crc.getValue()) {
+                throw new IOException(ErrorMessage.ERROR_FILE);
+            }
+            buffer.rewind();
+            if (buffer.getInt() != MAGIC || buffer.getShort() > VERSION) {
+                throw new IOException(ErrorMessage.ERROR_FILE);
+            }
+            long created = buffer.getLong();
+            int sections = buffer.getInt();
+            ArrayList<CatalogChange> entries = new ArrayList<CatalogChange>();
+            for (int i = 0; i < sections; i++) {
+                byte kind = buffer.get();
+                int count = buffer.getInt();
+                int[] ids = new int[count];
+                for (int j = 0; j < count; j++) {
+                    ids[j] = buffer.getInt();
+                }
+                byte encoding = buffer.get();
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                List<Object> values = encoding == CODEC ? BeanCodec.decode(bytes)
+                        : (List<Object>) deserialize(bytes);
+                if (values.size() != count) {
+                    throw new IOException(ErrorMessage.ERROR_FILE);
+                }
+                for (int j = 0; j < count; j++) {
+                    entries.add(new CatalogChange(0, kind, ids[j], (Serializable) values.get(j)));
+                }
+            }
+            return new CatalogSnapshot(created, entries, (System.nanoTime() - start) / 1000000);
+        } catch (RuntimeException e) {
+// A buffer underflow or a wrong cast, the file is not valid
+            throw new IOException(ErrorMessage.ERROR_FILE, e);
+        } finally {
+            file.close();
+        }
+    }
+
+    private static byte[] serialize(Object pValue) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(pValue);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] pBytes) throws IOException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(pBytes));
+        try {
+            return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(ErrorMessage.ERROR_FILE, e);
+        } finally {
+            in.close();
+        }
+    }
+}
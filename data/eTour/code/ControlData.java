@@ -187,8 +187,9 @@ public class ControlData {
     public static boolean checkBeanBanner(BeanBanner pBanner) {
         boolean toReturn = false;
 
-        if (pBanner == null && pBanner instanceof BeanBanner) {
-            toReturn = (pBanner.getId() > 0 && pBanner.getPathFile() != "" && pBanner.getIdRefreshmentPoint() > 0);
+        if (pBanner != null && pBanner instanceof BeanBanner) {
+            toReturn = (pBanner.getId() > 0 && pBanner.getPathFile() != null && pBanner.getPathFile().length() > 0
+                    && pBanner.getIdRefreshmentPoint() > 0);
         }
 
         return toReturn;
@@ -1,11 +1,14 @@
 ﻿package unisa.gps.etour.control;
 
+import java.io.File;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 
 import unisa.gps.etour.control.CulturalHeritageManager.CulturalHeritageCommonManager;
 import unisa.gps.etour.control.CulturalHeritageManager.ICulturalHeritageCommonManager;
+import unisa.gps.etour.repository.CatalogPublisher;
+import unisa.gps.etour.repository.VisitEventLog;
 
 /**
  * This is the entry point of the control server. This class is responsible for
@@ -38,5 +41,30 @@ public class ControlServerLauncher {
         } catch (Exception e) {
             System.out.println("Exception:" + e.getLocalizedMessage());
         }
+
+// In replication mode the changes of the catalog are streamed to the
+// Read-only replicas (see CatalogReplica) connected on this port. With a
+// Snapshot file the catalog is loaded from it at the start and saved in it
+// Periodically and at shutdown
+        String replicationPort = System.getProperty("etour.replication.port");
+        String snapshotFile = System.getProperty("etour.snapshot.file");
+        if (replicationPort != null || snapshotFile != null) {
+            try {
+                CatalogPublisher.start(replicationPort == null ? 0 : Integer.parseInt(replicationPort),
+                        snapshotFile == null ? null : new File(snapshotFile));
+            } catch (Exception e) {
+                System.out.println("Exception:" + e.getLocalizedMessage());
+            }
+        }
+// With a directory for the log of the visits, the visits are written in
+// The log and from it in the database
+        String visitLogDirectory = System.getProperty("etour.visitlog.dir");
+        if (visitLogDirectory != null) {
+            try {
+                VisitEventLog.start(new File(visitLogDirectory));
+            } catch (Exception e) {
+                System.out.println("Exception:" + e.getLocalizedMessage());
+            }
+        }
     }
 }
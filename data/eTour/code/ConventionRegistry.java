@@ -0,0 +1,455 @@
+﻿package unisa.gps.etour.repository;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import unisa.gps.etour.bean.BeanConvention;
+import unisa.gps.etour.bean.BeanRefreshmentPoint;
+import unisa.gps.etour.util.TimerWheel;
+
+/**
+ * Registry of the active conventions. At the first use it loads from the
+ * database all the active and future conventions, then answers
+ * getConventionActive and getListConventionActivePR from memory. The validity of a convention depends
+ * only on its start and end dates, so the registry schedules on a timer wheel
+ * the expiry of every active convention and the start of every future one.
+ * Writes go to the database and refresh only the affected refreshment point.
+ * A write of a refreshment point drops its cached bean, read again at the
+ * next request.
+ *
+ */
+public class ConventionRegistry implements IDBConvention {
+// A tick of one minute, the wheel turns in about a day
+    private static final long TICK_MILLIS = 60000L;
+    private static final int WHEEL_SIZE = 1440;
+    private static volatile ConventionRegistry instance;
+
+    private final IDBConvention dbConvention;
+    private final IDBRefreshmentPoint dbRefreshmentPoint;
+    private final TimerWheel wheel;
+// Active convention and bean of each refreshment point. A load replaces
+// The maps with new ones already filled, so the readers never see them empty
+    private volatile Map<Integer, BeanConvention> active;
+    private volatile Map<Integer, BeanRefreshmentPoint> refreshmentPoints;
+// Conventions not yet started, by refreshment point and start date: a
+// Convention just inserted has no id yet
+    private volatile Map<String, BeanConvention> pending;
+    private volatile boolean loaded;
+
+    /**
+     * Parameterized constructor
+     *
+     * @Param pDbConvention access to the conventions in the database
+     * @Param pDbRefreshmentPoint access to the refreshment points in the
+     *        database
+     */
+    public ConventionRegistry(IDBConvention pDbConvention, IDBRefreshmentPoint pDbRefreshmentPoint) {
+        dbConvention = pDbConvention;
+        dbRefreshmentPoint = pDbRefreshmentPoint;
+        wheel = new TimerWheel(TICK_MILLIS, WHEEL_SIZE, "ConventionExpiry");
+        active = new ConcurrentHashMap<Integer, BeanConvention>();
+        refreshmentPoints = new ConcurrentHashMap<Integer, BeanRefreshmentPoint>();
+        pending = new ConcurrentHashMap<String, BeanConvention>();
+    }
+
+    /**
+     * Returns the registry shared by the managers of the server
+     *
+     * @Return registry of the conventions
+     */
+    public static synchronized ConventionRegistry getInstance() {
+        if (instance == null) {
+            instance = new ConventionRegistry(new DBConvention(), new DBRefreshmentPoint());
+        }
+        return instance;
+    }
+
+    /**
+     * Drops the cached bean of a refreshment point just written in the
+     * database, if the registry is in use. The bean is read again at the next
+     * request of the active conventions.
+     *
+     * @Param pIdRefreshmentPoint ID of the refreshment point
+     */
+    public static void refreshmentPointChanged(int pIdRefreshmentPoint) {
+        ConventionRegistry registry = instance;
+        if (registry != null) {
+            registry.refreshmentPoints.remove(pIdRefreshmentPoint);
+        }
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBConvention # insertConvention
+     * (unisa.gps.etour.bean.BeanConvention)
+     */
+    public boolean insertConvention(BeanConvention pConvention) throws SQLException {
+        boolean result = dbConvention.insertConvention(pConvention);
+        if (result) {
+            refresh(pConvention);
+        }
+        return result;
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBConvention # modifyConvention
+     * (unisa.gps.etour.bean.BeanConvention)
+     */
+    public boolean modifyConvention(BeanConvention pConvention) throws SQLException {
+        boolean result = dbConvention.modifyConvention(pConvention);
+        if (result) {
+            refresh(pConvention);
+        }
+        return result;
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBConvention # clearConvention (int)
+     */
+    public boolean clearConvention(int pIdConvention) throws SQLException {
+        boolean result = dbConvention.clearConvention(pIdConvention);
+        if (result) {
+            synchronized (this) {
+                Iterator<BeanConvention> iterator = pending.values().iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().getId() == pIdConvention) {
+                        iterator.remove();
+                    }
+                }
+                iterator = active.values().iterator();
+                while (iterator.hasNext()) {
+                    BeanConvention convention = iterator.next();
+                    if (convention.getId() == pIdConvention) {
+                        iterator.remove();
+                        publish(convention.getIdRefreshmentPoint());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBConvention # getHistoricalConvention (int)
+     */
+    public ArrayList<BeanConvention> getHistoricalConvention(int idRefreshmentPoint) throws SQLException {
+        return dbConvention.getHistoricalConvention(idRefreshmentPoint);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBConvention #
+     * getListConventionCurrent ()
+     */
+    public ArrayList<BeanConvention> getListConventionCurrent() throws SQLException {
+        return dbConvention.getListConventionCurrent();
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBConvention # getConventionActive
+     * (int)
+     */
+    public BeanConvention getConventionActive(int pIdRefreshmentPoint) throws SQLException {
+        load();
+        return active.get(pIdRefreshmentPoint);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBConvention #
+     * getListConventionActivePR ()
+     */
+    public ArrayList<BeanRefreshmentPoint> getListConventionActivePR() throws SQLException {
+        load();
+        Map<Integer, BeanConvention> currentActive = active;
+        Map<Integer, BeanRefreshmentPoint> currentRefreshmentPoints = refreshmentPoints;
+        ArrayList<BeanRefreshmentPoint> list = new ArrayList<BeanRefreshmentPoint>(currentActive.size());
+// The beans dropped by a write of their refreshment point are read again
+// With one query
+        HashSet<Integer> missing = new HashSet<Integer>();
+        for (Integer idRefreshmentPoint : currentActive.keySet()) {
+            BeanRefreshmentPoint refreshmentPoint = currentRefreshmentPoints.get(idRefreshmentPoint);
+            if (refreshmentPoint != null) {
+                list.add(refreshmentPoint);
+            } else {
+                missing.add(idRefreshmentPoint);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (BeanRefreshmentPoint refreshmentPoint : dbRefreshmentPoint.getRefreshmentPoints(missing)) {
+                currentRefreshmentPoints.put(refreshmentPoint.getId(), refreshmentPoint);
+                list.add(refreshmentPoint);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Returns the conventions that are not yet started, to be kept in a
+     * snapshot of the catalog together with the active ones
+     *
+     * @Return conventions not yet started
+     */
+    public ArrayList<BeanConvention> getPendingConventions() {
+        return new ArrayList<BeanConvention>(pending.values());
+    }
+
+    /**
+     * Fills the registry with the active and future conventions of a
+     * snapshot of the catalog, unless it is already loaded. The registry then
+     * answers without reading the database until reload is called.
+     *
+     * @Param pConventions active and future conventions
+     * @Param pRefreshmentPoints refreshment points of the conventions
+     */
+    public synchronized void preload(Collection<BeanConvention> pConventions,
+            Collection<BeanRefreshmentPoint> pRefreshmentPoints) {
+        if (!loaded) {
+            install(pConventions, pRefreshmentPoints);
+        }
+    }
+
+    /**
+     * Loads again all the active and future conventions from the database.
+     * The timers already scheduled find their convention replaced and do
+     * nothing.
+     *
+     * @throws SQLException
+     */
+    public void reload() throws SQLException {
+        ArrayList<BeanConvention> conventions = dbConvention.getListConventionCurrent();
+        install(conventions, readRefreshmentPoints(conventions));
+    }
+
+    /**
+     * Stops the timer of the registry
+     */
+    public void stop() {
+        wheel.stop();
+    }
+
+    /**
+     * Loads all the active and future conventions, only the first time it is
+     * called
+     */
+    private void load() throws SQLException {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (!loaded) {
+                ArrayList<BeanConvention> conventions = dbConvention.getListConventionCurrent();
+                install(conventions, readRefreshmentPoints(conventions));
+            }
+        }
+    }
+
+    /**
+     * Reads with one query the refreshment points of some conventions
+     *
+     * @Param pConventions conventions, null if there are none
+     * @Return refreshment points of the conventions
+     */
+    private ArrayList<BeanRefreshmentPoint> readRefreshmentPoints(Collection<BeanConvention> pConventions)
+            throws SQLException {
+        if (pConventions == null || pConventions.isEmpty()) {
+            return new ArrayList<BeanRefreshmentPoint>(0);
+        }
+        HashSet<Integer> ids = new HashSet<Integer>();
+        for (BeanConvention convention : pConventions) {
+            ids.add(convention.getIdRefreshmentPoint());
+        }
+        return dbRefreshmentPoint.getRefreshmentPoints(ids);
+    }
+
+    /**
+     * Replaces the content of the registry. The new maps are filled before
+     * they are published; the timers scheduled meanwhile wait for the lock, so
+     * they find the new maps.
+     *
+     * @Param pConventions active and future conventions, null if there are
+     *        none
+     * @Param pRefreshmentPoints refreshment points of the conventions
+     */
+    private synchronized void install(Collection<BeanConvention> pConventions,
+            Collection<BeanRefreshmentPoint> pRefreshmentPoints) {
+        Map<Integer, BeanConvention> newActive = new ConcurrentHashMap<Integer, BeanConvention>();
+        Map<Integer, BeanRefreshmentPoint> newRefreshmentPoints = new ConcurrentHashMap<Integer, BeanRefreshmentPoint>();
+        Map<String, BeanConvention> newPending = new ConcurrentHashMap<String, BeanConvention>();
+        for (BeanRefreshmentPoint refreshmentPoint : pRefreshmentPoints) {
+            newRefreshmentPoints.put(refreshmentPoint.getId(), refreshmentPoint);
+        }
+        if (pConventions != null) {
+            for (BeanConvention convention : pConventions) {
+                schedule(convention, newActive, newPending);
+            }
+        }
+// The refreshment points first, a reader finds the bean of every active
+// Convention
+        refreshmentPoints = newRefreshmentPoints;
+        pending = newPending;
+        active = newActive;
+        loaded = true;
+    }
+
+    /**
+     * Reloads the state of the refreshment point of a convention just written
+     *
+     * @Param pConvention convention written in the database
+     */
+    private void refresh(BeanConvention pConvention) throws SQLException {
+        load();
+        int idRefreshmentPoint = pConvention.getIdRefreshmentPoint();
+        BeanConvention current = dbConvention.getConventionActive(idRefreshmentPoint);
+        BeanRefreshmentPoint refreshmentPoint = dbRefreshmentPoint.getRefreshmentPoint(idRefreshmentPoint);
+        BeanConvention written = readId(pConvention);
+        String key = pendingKey(written);
+        synchronized (this) {
+// The same convention, also if the start date changed
+            Iterator<Map.Entry<String, BeanConvention>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, BeanConvention> entry = iterator.next();
+                if (entry.getKey().equals(key)
+                        || (written.getId() != 0 && entry.getValue().getId() == written.getId())) {
+                    iterator.remove();
+                }
+            }
+            active.remove(idRefreshmentPoint);
+            if (refreshmentPoint != null) {
+                refreshmentPoints.put(idRefreshmentPoint, refreshmentPoint);
+            }
+            if (current != null) {
+                schedule(current);
+            }
+// A convention that starts in the future becomes active later
+            Date start = written.getDataStart();
+            if (start != null && start.after(new Date())) {
+                schedule(written);
+            }
+            publish(idRefreshmentPoint);
+        }
+    }
+
+    /**
+     * Returns a convention just inserted as read again from the database, so
+     * it has its id and can be deleted before it starts
+     *
+     * @Param pConvention convention written in the database
+     * @Return convention with its id, or pConvention if it is not found
+     */
+    private BeanConvention readId(BeanConvention pConvention) throws SQLException {
+        if (pConvention.getId() != 0 || pConvention.getDataStart() == null) {
+            return pConvention;
+        }
+        ArrayList<BeanConvention> conventions = dbConvention.getHistoricalConvention(pConvention
+                .getIdRefreshmentPoint());
+        if (conventions != null) {
+            for (BeanConvention convention : conventions) {
+                if (pConvention.getDataStart().equals(convention.getDataStart())) {
+                    return convention;
+                }
+            }
+        }
+        return pConvention;
+    }
+
+    /**
+     * Returns the key of a convention not yet started
+     *
+     * @Param pConvention convention
+     * @Return refreshment point and start date of the convention
+     */
+    private static String pendingKey(BeanConvention pConvention) {
+        Date start = pConvention.getDataStart();
+        return pConvention.getIdRefreshmentPoint() + "@" + (start == null ? 0 : start.getTime());
+    }
+
+    /**
+     * Places a convention in the active or pending ones depending on its dates
+     * and schedules the next change of state
+     *
+     * @Param pConvention convention to schedule
+     */
+    private synchronized void schedule(BeanConvention pConvention) {
+        schedule(pConvention, active, pending);
+    }
+
+    /**
+     * Places a convention in the given maps of the active and pending ones
+     */
+    private void schedule(final BeanConvention pConvention, Map<Integer, BeanConvention> pActive,
+            Map<String, BeanConvention> pPending) {
+        Date now = new Date();
+        Date start = pConvention.getDataStart();
+        Date end = pConvention.getDataEnd();
+        if (end != null && !end.after(now)) {
+// Already expired
+            return;
+        }
+        if (start != null && start.after(now)) {
+            pPending.put(pendingKey(pConvention), pConvention);
+            wheel.schedule(new Runnable() {
+                public void run() {
+                    activate(pConvention);
+                }
+            }, start);
+            return;
+        }
+        pActive.put(pConvention.getIdRefreshmentPoint(), pConvention);
+        if (end != null) {
+            wheel.schedule(new Runnable() {
+                public void run() {
+                    expire(pConvention);
+                }
+            }, end);
+        }
+    }
+
+    /**
+     * Activates a pending convention, unless it was changed or deleted in the
+     * meantime
+     */
+    private synchronized void activate(BeanConvention pConvention) {
+        String key = pendingKey(pConvention);
+        if (pending.get(key) == pConvention) {
+            pending.remove(key);
+            schedule(pConvention);
+            publish(pConvention.getIdRefreshmentPoint());
+        }
+    }
+
+    /**
+     * Removes an expired convention, unless it was replaced in the meantime
+     */
+    private synchronized void expire(BeanConvention pConvention) {
+        if (active.get(pConvention.getIdRefreshmentPoint()) == pConvention) {
+            active.remove(pConvention.getIdRefreshmentPoint());
+            publish(pConvention.getIdRefreshmentPoint());
+        }
+    }
+
+    /**
+     * Publishes the active convention of a refreshment point to the replicas
+     * of the catalog
+     */
+    private void publish(int pIdRefreshmentPoint) {
+        CatalogPublisher.publish(CatalogChange.CONVENTION, pIdRefreshmentPoint, active.get(pIdRefreshmentPoint));
+    }
+}
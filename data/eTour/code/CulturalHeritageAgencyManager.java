@@ -6,6 +6,10 @@ import java.util.ArrayList;
 import unisa.gps.etour.bean.BeanCulturalHeritage;
 import unisa.gps.etour.bean.BeanTag;
 import unisa.gps.etour.bean.BeanVisitBC;
+import unisa.gps.etour.repository.IDBCulturalHeritage;
+import unisa.gps.etour.repository.IDBTag;
+import unisa.gps.etour.repository.IDBTourist;
+import unisa.gps.etour.repository.IDBVisitBC;
 import unisa.gps.etour.util.ErrorMessage;
 
 /**
@@ -21,6 +25,20 @@ public class CulturalHeritageAgencyManager extends CulturalHeritageCommonManager
         super();
     }
 
+    /**
+     * Constructor on given data management objects, for example in memory
+     *
+     * @Param pCulturalHeritage access to the cultural heritage
+     * @Param pTag access to the tags
+     * @Param pVisit access to the visits
+     * @Param pTourist access to the tourists
+     * @throws RemoteException
+     */
+    public CulturalHeritageAgencyManager(IDBCulturalHeritage pCulturalHeritage, IDBTag pTag, IDBVisitBC pVisit,
+            IDBTourist pTourist) throws RemoteException {
+        super(pCulturalHeritage, pTag, pVisit, pTourist);
+    }
+
     /**
      * Implements the method for the elimination of a cultural system.
      *
@@ -0,0 +1,471 @@
+package unisa.gps.etour.repository;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import unisa.gps.etour.bean.BeanCulturalHeritage;
+import unisa.gps.etour.bean.BeanTag;
+import unisa.gps.etour.util.Point3D;
+
+/**
+ * In-memory catalog of the cultural heritage, usable in place of the database
+ * in tests and benchmarks. The goods are kept in a concurrent map by id, with
+ * secondary indexes on the position (a grid of latitude and longitude
+ * cells), on the tokens of the name, on the tags, on the search preferences
+ * and a full-text index on name and description. Writes are serialized,
+ * reads go through concurrent maps and always check the candidates found in
+ * the indexes against the current good, so they are safe during a write. The
+ * beans are copied on the way in and on the way out.
+ *
+ */
+public class CulturalHeritageCatalog implements IDBCulturalHeritage {
+// Maximum number of tags considered by a search, as in the database
+    private static final int MAX_TAGS = 5;
+    private static final double EARTH_RADIUS = 6371.0;
+// Side of a cell of the grid, in radians (about 6 km)
+    private static final double CELL_SIZE = 0.001;
+
+    private final Map<Integer, BeanCulturalHeritage> goods;
+    private final Map<Long, Set<Integer>> cells;
+    private final Map<String, Set<Integer>> nameTokens;
+    private final Map<Integer, Set<Integer>> tags;
+    private final Map<Integer, Set<Integer>> goodPreferences;
+    private final Map<Integer, Set<Integer>> touristPreferences;
+    private final FullTextIndex text;
+    private volatile RankingEngine ranking;
+
+    /**
+     * Empty constructor, creates an empty catalog
+     */
+    public CulturalHeritageCatalog() {
+        goods = new ConcurrentHashMap<Integer, BeanCulturalHeritage>();
+        cells = new ConcurrentHashMap<Long, Set<Integer>>();
+        nameTokens = new ConcurrentHashMap<String, Set<Integer>>();
+        tags = new ConcurrentHashMap<Integer, Set<Integer>>();
+        goodPreferences = new ConcurrentHashMap<Integer, Set<Integer>>();
+        touristPreferences = new ConcurrentHashMap<Integer, Set<Integer>>();
+        text = new FullTextIndex();
+        ranking = new RankingEngine();
+    }
+
+    /**
+     * Sets the weights used to order the results of the searches
+     *
+     * @Param pRanking ranking engine with the weights
+     */
+    public void setRankingEngine(RankingEngine pRanking) {
+        ranking = pRanking;
+    }
+
+    public synchronized boolean insertCulturalHeritage(BeanCulturalHeritage pBene) throws SQLException {
+        if (goods.containsKey(pBene.getId())) {
+            return false;
+        }
+        BeanCulturalHeritage copy = copy(pBene);
+        index(copy);
+        goods.put(copy.getId(), copy);
+        text.put(copy.getId(), copy.getName(), copy.getDescription());
+        return true;
+    }
+
+    public synchronized boolean modifyCulturalHeritage(BeanCulturalHeritage pBene) throws SQLException {
+        BeanCulturalHeritage old = goods.get(pBene.getId());
+        if (old == null) {
+            return false;
+        }
+        BeanCulturalHeritage copy = copy(pBene);
+// The new entries are added before the old ones are removed, so a
+// Concurrent search always finds the good
+        index(copy);
+        goods.put(copy.getId(), copy);
+        unindex(old, copy);
+        text.put(copy.getId(), copy.getName(), copy.getDescription());
+        return true;
+    }
+
+    public synchronized boolean clearCulturalHeritage(int pIdBene) throws SQLException {
+        BeanCulturalHeritage old = goods.remove(pIdBene);
+        if (old == null) {
+            return false;
+        }
+        unindex(old, null);
+        text.remove(pIdBene);
+        removeFromAll(tags, pIdBene);
+        goodPreferences.remove(pIdBene);
+        return true;
+    }
+
+    public BeanCulturalHeritage getCulturalHeritage(int pid) throws SQLException {
+        BeanCulturalHeritage good = goods.get(pid);
+        return good == null ? null : copy(good);
+    }
+
+    public ArrayList<FullTextIndex.Hit> searchKeyword(String pKeyword) throws SQLException {
+        return text.query(pKeyword);
+    }
+
+    public ArrayList<BeanCulturalHeritage> getListBC() throws SQLException {
+        ArrayList<BeanCulturalHeritage> list = new ArrayList<BeanCulturalHeritage>(goods.size());
+        for (BeanCulturalHeritage good : goods.values()) {
+            list.add(copy(good));
+        }
+        Collections.sort(list, new Comparator<BeanCulturalHeritage>() {
+            public int compare(BeanCulturalHeritage p1, BeanCulturalHeritage p2) {
+                return p1.getId() < p2.getId() ? -1 : (p1.getId() == p2.getId() ? 0 : 1);
+            }
+        });
+        return list;
+    }
+
+    public int getSearchResultNumber(String pKeyword, ArrayList<BeanTag> pTags, Point3D pPosition,
+            double pMaxDistance) throws SQLException {
+        return find(pKeyword, pTags, pPosition, pMaxDistance).size();
+    }
+
+    public int getSearchResultNumberAdvanced(int pIdTourist, String PKeyword, ArrayList<BeanTag> pTags,
+            Point3D pPosition, double pMaxDistance) throws SQLException {
+        return find(PKeyword, pTags, pPosition, pMaxDistance).size();
+    }
+
+    public ArrayList<BeanCulturalHeritage> search(String pKeyword, ArrayList<BeanTag> pTags, int pNumPage,
+            int pNumberElementsPerPage, Point3D pPosition, double pMaxDistance) throws SQLException {
+        List<RankingEngine.Candidate<BeanCulturalHeritage>> matches = find(pKeyword, pTags, pPosition,
+                pMaxDistance);
+        return page(matches, pNumPage, pNumberElementsPerPage, pMaxDistance);
+    }
+
+    public ArrayList<BeanCulturalHeritage> searchAdvanced(int pIdTourist, String PKeyword, ArrayList<BeanTag> pTags,
+            int pNumPage, int pNumberElementsPerPage, Point3D pPosition, double pMaxDistance) throws SQLException {
+        List<RankingEngine.Candidate<BeanCulturalHeritage>> matches = find(PKeyword, pTags, pPosition,
+                pMaxDistance);
+// The preferences shared with the tourist contribute to the ranking
+        Set<Integer> preferences = touristPreferences.get(pIdTourist);
+        if (preferences != null) {
+            for (RankingEngine.Candidate<BeanCulturalHeritage> match : matches) {
+                Set<Integer> shared = goodPreferences.get(match.getId());
+                int count = 0;
+                if (shared != null) {
+                    for (Integer idPreference : shared) {
+                        if (preferences.contains(idPreference)) {
+                            count++;
+                        }
+                    }
+                }
+                match.setPreferences(count);
+            }
+        }
+        return page(matches, pNumPage, pNumberElementsPerPage, pMaxDistance);
+    }
+
+    /**
+     * Associates a tag to a cultural good
+     *
+     * @Param pIdCulturalHeritage ID of the cultural good
+     * @Param pIdTag ID of the tag
+     * @Return True if the tag was added, false if already present or the good
+     *         does not exist
+     */
+    public synchronized boolean addTagCulturalHeritage(int pIdCulturalHeritage, int pIdTag) {
+        if (!goods.containsKey(pIdCulturalHeritage)) {
+            return false;
+        }
+        return add(tags, pIdTag, pIdCulturalHeritage);
+    }
+
+    /**
+     * Removes a tag from a cultural good
+     *
+     * @Param pIdCulturalHeritage ID of the cultural good
+     * @Param pIdTag ID of the tag
+     * @Return True if the tag was removed
+     */
+    public synchronized boolean clearTagCulturalHeritage(int pIdCulturalHeritage, int pIdTag) {
+        return remove(tags, pIdTag, pIdCulturalHeritage);
+    }
+
+    /**
+     * Associates a search preference to a cultural good
+     *
+     * @Param pIdCulturalHeritage ID of the cultural good
+     * @Param pIdSearchPreference ID of the search preference
+     * @Return True if the preference was added
+     */
+    public synchronized boolean insertSearchPreferenceDelBC(int pIdCulturalHeritage, int pIdSearchPreference) {
+        if (!goods.containsKey(pIdCulturalHeritage)) {
+            return false;
+        }
+        return add(goodPreferences, pIdCulturalHeritage, pIdSearchPreference);
+    }
+
+    /**
+     * Associates a search preference to a tourist, used by the advanced search
+     *
+     * @Param pIdTourist ID of the tourist
+     * @Param pIdSearchPreference ID of the search preference
+     * @Return True if the preference was added
+     */
+    public synchronized boolean insertSearchPreferenceDelTourist(int pIdTourist, int pIdSearchPreference) {
+        return add(touristPreferences, pIdTourist, pIdSearchPreference);
+    }
+
+    /**
+     * Returns the goods with a token of the name equal to the one given
+     *
+     * @Param pToken word of the name, the case is ignored
+     * @Return list of goods, ordered by id
+     */
+    public ArrayList<BeanCulturalHeritage> getCulturalHeritageByNameToken(String pToken) {
+        ArrayList<BeanCulturalHeritage> list = new ArrayList<BeanCulturalHeritage>();
+        Set<Integer> ids = nameTokens.get(pToken.toLowerCase());
+        if (ids != null) {
+            for (Integer id : ids) {
+                BeanCulturalHeritage good = goods.get(id);
+                if (good != null && tokens(good.getName()).contains(pToken.toLowerCase())) {
+                    list.add(copy(good));
+                }
+            }
+        }
+        Collections.sort(list, new Comparator<BeanCulturalHeritage>() {
+            public int compare(BeanCulturalHeritage p1, BeanCulturalHeritage p2) {
+                return p1.getId() < p2.getId() ? -1 : (p1.getId() == p2.getId() ? 0 : 1);
+            }
+        });
+        return list;
+    }
+
+    /**
+     * Returns the number of goods in the catalog
+     */
+    public int size() {
+        return goods.size();
+    }
+
+    /**
+     * Finds the goods within the distance that match the keyword in the
+     * full-text index and have at least one of the tags, if any are given
+     */
+    private List<RankingEngine.Candidate<BeanCulturalHeritage>> find(String pKeyword, ArrayList<BeanTag> pTags,
+            Point3D pPosition, double pMaxDistance) {
+        ArrayList<FullTextIndex.Hit> hits = text.query(pKeyword);
+// Ids of the tags considered
+        List<Integer> tagIds = new ArrayList<Integer>();
+        if (pTags != null) {
+            for (int i = 0; i < pTags.size() && i < MAX_TAGS; i++) {
+                tagIds.add(pTags.get(i).getId());
+            }
+        }
+// The candidates come from the smallest index between keyword, tags and
+// Position
+        Set<Integer> candidates = null;
+        Map<Integer, Double> keywordScores = null;
+        if (hits != null) {
+            keywordScores = new HashMap<Integer, Double>();
+            for (FullTextIndex.Hit hit : hits) {
+                keywordScores.put(hit.getId(), hit.getScore());
+            }
+            candidates = new HashSet<Integer>(keywordScores.keySet());
+        }
+        if (!tagIds.isEmpty()) {
+            Set<Integer> tagged = new HashSet<Integer>();
+            for (Integer idTag : tagIds) {
+                Set<Integer> ids = tags.get(idTag);
+                if (ids != null) {
+                    tagged.addAll(ids);
+                }
+            }
+            if (candidates != null) {
+                tagged.retainAll(candidates);
+            }
+            candidates = tagged;
+        }
+        if (pPosition != null) {
+            Set<Integer> near = near(pPosition, pMaxDistance);
+            if (near != null && (candidates == null || near.size() < candidates.size())) {
+                if (candidates != null) {
+                    near.retainAll(candidates);
+                }
+                candidates = near;
+            }
+        }
+        if (candidates == null) {
+            candidates = goods.keySet();
+        }
+// Each candidate is checked against the current state of the good and
+// The partial results of the indexes are merged
+        List<RankingEngine.Candidate<BeanCulturalHeritage>> matches =
+                new ArrayList<RankingEngine.Candidate<BeanCulturalHeritage>>();
+        for (Integer id : candidates) {
+            BeanCulturalHeritage good = goods.get(id);
+            if (good == null) {
+                continue;
+            }
+            double distance = 0;
+            if (pPosition != null) {
+                if (good.getPosition() == null) {
+                    continue;
+                }
+                distance = pPosition.distance(good.getPosition());
+                if (!(distance < pMaxDistance)) {
+                    continue;
+                }
+            }
+            int matchedTags = 0;
+            for (Integer idTag : tagIds) {
+                Set<Integer> tagged = tags.get(idTag);
+                if (tagged != null && tagged.contains(id)) {
+                    matchedTags++;
+                }
+            }
+            if (!tagIds.isEmpty() && matchedTags == 0) {
+                continue;
+            }
+            RankingEngine.Candidate<BeanCulturalHeritage> match = new RankingEngine.Candidate<BeanCulturalHeritage>(
+                    id, good);
+            if (keywordScores != null) {
+                match.setKeywordScore(keywordScores.get(id));
+            }
+            match.setDistance(distance);
+            match.setRating(good.getAverageRating());
+            match.setTags(matchedTags);
+            matches.add(match);
+        }
+        return matches;
+    }
+
+    /**
+     * Ranks the matches and returns the requested page
+     */
+    private ArrayList<BeanCulturalHeritage> page(List<RankingEngine.Candidate<BeanCulturalHeritage>> pMatches,
+            int pNumPage, int pNumberElementsPerPage, double pMaxDistance) {
+        ArrayList<BeanCulturalHeritage> list = new ArrayList<BeanCulturalHeritage>(pNumberElementsPerPage);
+        for (BeanCulturalHeritage good : ranking.page(pMatches, pNumPage, pNumberElementsPerPage, pMaxDistance)) {
+            list.add(copy(good));
+        }
+        return list;
+    }
+
+    /**
+     * Returns the goods in the cells of the grid that may be within the
+     * distance, or null if the cells to visit are more than the goods
+     */
+    private Set<Integer> near(Point3D pPosition, double pMaxDistance) {
+        double deltaLatitude = pMaxDistance / EARTH_RADIUS;
+        double cosine = Math.cos(Math.min(Math.PI / 2 - CELL_SIZE,
+                Math.abs(pPosition.getLatitude()) + deltaLatitude));
+        double deltaLongitude = deltaLatitude / Math.max(cosine, CELL_SIZE);
+        long fromLatitude = cell(pPosition.getLatitude() - deltaLatitude);
+        long toLatitude = cell(pPosition.getLatitude() + deltaLatitude);
+        long fromLongitude = cell(pPosition.getLongitude() - deltaLongitude);
+        long toLongitude = cell(pPosition.getLongitude() + deltaLongitude);
+        if ((toLatitude - fromLatitude + 1) * (toLongitude - fromLongitude + 1) > goods.size()) {
+            return null;
+        }
+        Set<Integer> near = new HashSet<Integer>();
+        for (long latitude = fromLatitude; latitude <= toLatitude; latitude++) {
+            for (long longitude = fromLongitude; longitude <= toLongitude; longitude++) {
+                Set<Integer> ids = cells.get(key(latitude, longitude));
+                if (ids != null) {
+                    near.addAll(ids);
+                }
+            }
+        }
+        return near;
+    }
+
+    private void index(BeanCulturalHeritage pGood) {
+        if (pGood.getPosition() != null) {
+            add(cells, cellOf(pGood.getPosition()), pGood.getId());
+        }
+        for (String token : tokens(pGood.getName())) {
+            add(nameTokens, token, pGood.getId());
+        }
+    }
+
+    /**
+     * Removes the index entries of the old version of a good that are not
+     * used by the new one
+     */
+    private void unindex(BeanCulturalHeritage pOld, BeanCulturalHeritage pNew) {
+        if (pOld.getPosition() != null) {
+            Long cell = cellOf(pOld.getPosition());
+            if (pNew == null || pNew.getPosition() == null || !cell.equals(cellOf(pNew.getPosition()))) {
+                remove(cells, cell, pOld.getId());
+            }
+        }
+        Set<String> kept = pNew == null ? Collections.<String>emptySet() : tokens(pNew.getName());
+        for (String token : tokens(pOld.getName())) {
+            if (!kept.contains(token)) {
+                remove(nameTokens, token, pOld.getId());
+            }
+        }
+    }
+
+    private static <K> boolean add(Map<K, Set<Integer>> pIndex, K pKey, int pId) {
+        Set<Integer> ids = pIndex.get(pKey);
+        if (ids == null) {
+            ids = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+            pIndex.put(pKey, ids);
+        }
+        return ids.add(pId);
+    }
+
+    private static <K> boolean remove(Map<K, Set<Integer>> pIndex, K pKey, int pId) {
+        Set<Integer> ids = pIndex.get(pKey);
+        if (ids == null) {
+            return false;
+        }
+        boolean removed = ids.remove(pId);
+        if (ids.isEmpty()) {
+            pIndex.remove(pKey);
+        }
+        return removed;
+    }
+
+    private static <K> void removeFromAll(Map<K, Set<Integer>> pIndex, int pId) {
+        for (K key : new ArrayList<K>(pIndex.keySet())) {
+            remove(pIndex, key, pId);
+        }
+    }
+
+    private static Set<String> tokens(String pText) {
+        Set<String> tokens = new HashSet<String>();
+        if (pText != null) {
+            for (String token : pText.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+                if (token.length() > 0) {
+                    tokens.add(token);
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private static long cell(double pCoordinate) {
+        return (long) Math.floor(pCoordinate / CELL_SIZE);
+    }
+
+    private static Long key(long pLatitude, long pLongitude) {
+        return Long.valueOf((pLatitude << 32) ^ (pLongitude & 0xffffffffL));
+    }
+
+    private static Long cellOf(Point3D pPosition) {
+        return key(cell(pPosition.getLatitude()), cell(pPosition.getLongitude()));
+    }
+
+    private static BeanCulturalHeritage copy(BeanCulturalHeritage pGood) {
+        Point3D position = pGood.getPosition() == null ? null
+                : new Point3D(pGood.getPosition().getLatitude(), pGood.getPosition().getLongitude(),
+                        pGood.getPosition().getAltitude());
+        return new BeanCulturalHeritage(pGood.getId(), pGood.getRatingNumber(), pGood.getName(), pGood.getCity(),
+                pGood.getPhone(), pGood.getDescription(), pGood.getLocation(), pGood.getStreet(), pGood.getCap(),
+                pGood.getProvince(), position, pGood.getOpeningTime(), pGood.getClosingTime(),
+                pGood.getClosingDay(), pGood.getTicketCost(), pGood.getAverageRating());
+    }
+}
@@ -12,11 +12,13 @@ import unisa.gps.etour.bean.BeanVisitBC;
 import unisa.gps.etour.repository.DBTag;
 import unisa.gps.etour.repository.DBCulturalHeritage;
 import unisa.gps.etour.repository.DBTourist;
+import unisa.gps.etour.repository.CatalogChange;
 import unisa.gps.etour.repository.DBVisitBC;
 import unisa.gps.etour.repository.IDBCulturalHeritage;
 import unisa.gps.etour.repository.IDBTag;
 import unisa.gps.etour.repository.IDBTourist;
 import unisa.gps.etour.repository.IDBVisitBC;
+import unisa.gps.etour.repository.VisitEventLog;
 import unisa.gps.etour.util.GlobalConstants;
 import unisa.gps.etour.util.ErrorMessage;
 
@@ -56,6 +58,24 @@ public class CulturalHeritageCommonManager extends UnicastRemoteObject implement
         }
     }
 
+    /**
+     * Constructor on given data management objects, for example in memory
+     *
+     * @Param pCulturalHeritage access to the cultural heritage
+     * @Param pTag access to the tags
+     * @Param pVisit access to the visits
+     * @Param pTourist access to the tourists
+     * @throws RemoteException
+     */
+    public CulturalHeritageCommonManager(IDBCulturalHeritage pCulturalHeritage, IDBTag pTag, IDBVisitBC pVisit,
+            IDBTourist pTourist) throws RemoteException {
+        super();
+        dbbc = pCulturalHeritage;
+        dbtag = pTag;
+        dbvisita = pVisit;
+        dbturista = pTourist;
+    }
+
     /*
      * Implements the method for obtaining a cultural object by Id
      *
@@ -157,6 +177,16 @@ public class CulturalHeritageCommonManager extends UnicastRemoteObject implement
         if (!CulturalHeritageChecker.checkIdCulturalHeritage(pCulturalHeritageID)) {
             throw new RemoteException(ErrorMessage.ERROR_DATA);
         }
+// The aggregates of the log of the visits answer without reading the
+// Visits, when the log covers the last thirty days
+        VisitEventLog events = VisitEventLog.getInstance();
+        if (events != null) {
+            ArrayList<Integer> statistic = events.getProjection().getStatistic(CatalogChange.CULTURAL_HERITAGE,
+                    pCulturalHeritageID);
+            if (statistic != null) {
+                return statistic;
+            }
+        }
         ArrayList<Integer> listResult = new ArrayList<Integer>(5);
 
 // Set all the indices to 0
@@ -0,0 +1,130 @@
+package unisa.gps.etour.util;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Client side of a remote cursor. It reads the results in chunks of fixed
+ * size and asks for the next chunk as soon as it receives one, so the next
+ * chunk travels while the caller processes the current one. Errors of the
+ * server are thrown as IllegalStateException with the RemoteException as
+ * cause.
+ *
+ */
+public class CursorIterator<T> implements Iterator<T> {
+// Threads that read the next chunks, shared by the cursors of the client
+    private static final ExecutorService prefetcher = Executors.newCachedThreadPool(new ThreadFactory() {
+        public Thread newThread(Runnable pTask) {
+            Thread thread = new Thread(pTask, "CursorPrefetch");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final IRemoteCursor<T> cursor;
+    private final int chunkSize;
+    private ArrayList<T> current;
+    private int position;
+    private Future<IRemoteCursor.Chunk<T>> pending;
+    private boolean last;
+
+    /**
+     * Parameterized constructor, asks for the first chunk
+     *
+     * @Param pCursor remote cursor returned by the server
+     * @Param pChunkSize number of results of a chunk
+     */
+    public CursorIterator(IRemoteCursor<T> pCursor, int pChunkSize) {
+        cursor = pCursor;
+        chunkSize = pChunkSize;
+        current = new ArrayList<T>(0);
+        pending = prefetch();
+    }
+
+    public boolean hasNext() {
+        while (position >= current.size()) {
+            if (pending == null) {
+                return false;
+            }
+            IRemoteCursor.Chunk<T> chunk = take();
+            current = chunk.getElements();
+            position = 0;
+            last = chunk.isLast();
+            pending = last ? null : prefetch();
+        }
+        return true;
+    }
+
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.get(position++);
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Reads all the remaining results in a list
+     *
+     * @Return remaining results
+     */
+    public ArrayList<T> toList() {
+        ArrayList<T> list = new ArrayList<T>();
+        while (hasNext()) {
+            list.add(next());
+        }
+        return list;
+    }
+
+    /**
+     * Closes the cursor on the server if not all the results were read
+     */
+    public void close() {
+        if (last) {
+            return;
+        }
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        last = true;
+        try {
+            cursor.close();
+        } catch (RemoteException e) {
+// The lease of the cursor will expire on the server
+            System.out.println("Error in method close of the cursor " + e.toString());
+        }
+    }
+
+    private Future<IRemoteCursor.Chunk<T>> prefetch() {
+        return prefetcher.submit(new Callable<IRemoteCursor.Chunk<T>>() {
+            public IRemoteCursor.Chunk<T> call() throws RemoteException {
+                return cursor.next(chunkSize);
+            }
+        });
+    }
+
+    private IRemoteCursor.Chunk<T> take() {
+        try {
+            return pending.get();
+        } catch (ExecutionException e) {
+            pending = null;
+            last = true;
+            throw new IllegalStateException(ErrorMessage.ERROR_CURSOR, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ErrorMessage.ERROR_CURSOR, e);
+        }
+    }
+}
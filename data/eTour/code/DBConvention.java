@@ -91,6 +91,16 @@ public class DBConvention implements IDBConvention {
         return null;
     }
 
+    /*
+     * (Non-Javadoc)
+     * 
+     * @See unisa.gps.etour.repository.IDBConvention #
+     * getListConventionCurrent ()
+     */
+    public ArrayList<BeanConvention> getListConventionCurrent() throws SQLException {
+        return null;
+    }
+
     public static void setNUM_TEST(int num_test) {
         NUM_TEST = num_test;
     }
@@ -32,6 +32,10 @@ public class DBDish implements IDBDish {
             String query = "DELETE FROM courses WHERE ID =" + pIdDish;
 // You run the query Cancellation
             int i = stat.executeUpdate(query);
+// The weekly menu that contained it is no longer valid, here and in the
+// Replicas
+            MenuCache.invalidateDish(pIdDish);
+            CatalogPublisher.publishMenuOfDish(pIdDish);
 // This returns the backup
             return (i == 1);
         }
@@ -62,6 +66,10 @@ public class DBDish implements IDBDish {
                     + pDish.getPrice() + "' " + pDish.getIdMenu() + ")";
 // You run the insert query
             int i = stat.executeUpdate(query);
+// The weekly menu that contains the menu is no longer valid, here and in
+// The replicas
+            MenuCache.invalidateMenu(pDish.getIdMenu());
+            CatalogPublisher.publishMenuOf(pDish.getIdMenu());
 // This returns the backup
             return (i == 1);
         }
@@ -92,6 +100,11 @@ public class DBDish implements IDBDish {
                     + ", IdMenu =" + pDish.getIdMenu() + "WHERE Id =" + pDish.getId();
 // You run the query for Change
             int i = stat.executeUpdate(query);
+// The dish may have moved to another menu, so both are invalidated
+            MenuCache.invalidateDish(pDish.getId());
+            MenuCache.invalidateMenu(pDish.getIdMenu());
+            CatalogPublisher.publishMenuOfDish(pDish.getId());
+            CatalogPublisher.publishMenuOf(pDish.getIdMenu());
 // This returns the backup
             return (i == 1);
         }
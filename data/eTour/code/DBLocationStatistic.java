@@ -61,6 +61,15 @@ public class DBLocationStatistic implements IDBLocationStatistic {
     }
 
     public double getAverageRatingLocation(String pLocation) throws SQLException {
+// The aggregates of the log of the visits answer without reading the
+// Sites, when the log has ratings of the location
+        VisitEventLog events = VisitEventLog.getInstance();
+        if (events != null) {
+            double average = events.getProjection().getAverageRatingLocation(pLocation);
+            if (average >= 0) {
+                return average;
+            }
+        }
 // Variable for the connection
         Connection conn = null;
 // Variable for the query
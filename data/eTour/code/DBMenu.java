@@ -5,8 +5,13 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import unisa.gps.etour.bean.BeanDish;
 import unisa.gps.etour.bean.BeanMenu;
+import unisa.gps.etour.bean.BeanWeeklyMenu;
 
 /**
  * Class that implements the interface Menu
@@ -32,6 +37,10 @@ public class DBMenu implements IDBMenu {
             String query = "DELETE FROM menu WHERE id =" + pIdMenu;
 // You run the query Cancellation
             int i = stat.executeUpdate(query);
+// The weekly menu that contained it is no longer valid, here and in the
+// Replicas
+            MenuCache.invalidateMenu(pIdMenu);
+            CatalogPublisher.publishMenuOf(pIdMenu);
 // This returns the backup
             return (i == 1);
         }
@@ -63,6 +72,10 @@ public class DBMenu implements IDBMenu {
                     + pMenu.getIdRefreshmentPoint() + ")";
 // You run the insert query
             int i = stat.executeUpdate(query);
+// The weekly menu of the refreshment point is no longer valid, here and in
+// The replicas
+            MenuCache.invalidateRefreshmentPoint(pMenu.getIdRefreshmentPoint());
+            CatalogPublisher.publishMenu(pMenu.getIdRefreshmentPoint());
 // This returns the backup
             return (i == 1);
         }
@@ -92,6 +105,12 @@ public class DBMenu implements IDBMenu {
             String query = "UPDATE menu SET" + "Date = '" + pMenu.getDay() + " 'WHERE Id =" + pMenu.getId();
 // You run the query for Change
             int i = stat.executeUpdate(query);
+// The weekly menu that contained it is no longer valid, here and in the
+// Replicas
+            MenuCache.invalidateMenu(pMenu.getId());
+            MenuCache.invalidateRefreshmentPoint(pMenu.getIdRefreshmentPoint());
+            CatalogPublisher.publishMenuOf(pMenu.getId());
+            CatalogPublisher.publishMenu(pMenu.getIdRefreshmentPoint());
 // This returns the backup
             return (i == 1);
         }
@@ -196,4 +215,68 @@ public class DBMenu implements IDBMenu {
 
     }
 
-}
\ No newline at end of file
+    public BeanWeeklyMenu getWeeklyMenu(int pIdRefreshmentPoint) throws SQLException {
+// Look first in the cache
+        BeanWeeklyMenu weeklyMenu = MenuCache.get(pIdRefreshmentPoint);
+        if (weeklyMenu != null) {
+            return weeklyMenu;
+        }
+// Read the generation before the load, so that a change made in the
+// Meantime is not overwritten
+        long generation = MenuCache.getGeneration();
+// Variables for database connection
+        Connection conn = null;
+// Variable for the query
+        Statement stat = null;
+// Variable for the query results
+        ResultSet result = null;
+        try {
+// Get the connection
+            conn = DBConnectionPool.getConnection();
+// Create the Statement
+            stat = conn.createStatement();
+// Query to extract the menus and their dishes in one round trip
+            String query = "SELECT menu.Id AS IdMenu, menu.Day, courses.Id AS IdDish, courses.Name, courses.Price "
+                    + "FROM menu LEFT JOIN courses ON courses.IdMenu = menu.Id WHERE menu.IdRefreshmentPoint ="
+                    + pIdRefreshmentPoint + " ORDER BY menu.Id, courses.Id";
+// The query is executed
+            result = stat.executeQuery(query);
+// Menus in order and dishes grouped by menu
+            ArrayList<BeanMenu> menus = new ArrayList<BeanMenu>(7);
+            Map<Integer, List<BeanDish>> dishes = new HashMap<Integer, List<BeanDish>>();
+            while (result.next()) {
+                int idMenu = result.getInt("IdMenu");
+                List<BeanDish> list = dishes.get(idMenu);
+                if (list == null) {
+// First row of the menu
+                    menus.add(new BeanMenu(idMenu, result.getString("Day"), pIdRefreshmentPoint));
+                    list = new ArrayList<BeanDish>();
+                    dishes.put(idMenu, list);
+                }
+// A menu without dishes has a single row with null dish
+                int idDish = result.getInt("IdDish");
+                if (!result.wasNull()) {
+                    list.add(new BeanDish(idDish, result.getString("Name"), result.getDouble("Price"), idMenu));
+                }
+            }
+            weeklyMenu = new BeanWeeklyMenu(pIdRefreshmentPoint, menus, dishes);
+        }
+// Is always done and takes care to close the Result, the Statement
+// And Connection
+        finally {
+            if (result != null) {
+                result.close();
+            }
+            if (stat != null) {
+                stat.close();
+            }
+            if (conn != null) {
+                DBConnectionPool.releaseConnections(conn);
+            }
+        }
+// Store in the cache and return
+        MenuCache.put(weeklyMenu, generation);
+        return weeklyMenu;
+    }
+
+}
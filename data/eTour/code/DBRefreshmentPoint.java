@@ -6,6 +6,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Time;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 
 import unisa.gps.etour.bean.BeanRefreshmentPoint;
@@ -17,6 +18,11 @@ import unisa.gps.etour.util.Point3D;
  *
  */
 public class DBRefreshmentPoint implements IDBRefreshmentPoint {
+// Full-text index of the refreshment points, shared by all the instances
+// And loaded at the first keyword search
+    private static final FullTextIndex index = new FullTextIndex();
+    private static boolean indexLoaded = false;
+
 // Empty constructor
     public DBRefreshmentPoint() {
 
@@ -36,6 +42,10 @@ public class DBRefreshmentPoint implements IDBRefreshmentPoint {
             String query = "DELETE FROM puntodiristoro WHERE Id =" + pIdRefreshmentPoint;
 // You run the query Cancellation
             int i = stat.executeUpdate(query);
+// Update the full-text index
+            if (i == 1) {
+                removeFromIndex(pIdRefreshmentPoint);
+            }
 // This returns the backup
             return (i == 1);
         }
@@ -79,7 +89,15 @@ public class DBRefreshmentPoint implements IDBRefreshmentPoint {
                     + pRefreshmentPoint.getAverageRating() + "" + pRefreshmentPoint.getRatingNumber() + " '"
                     + pRefreshmentPoint.getParty() + "');";
 // You run the insert query
-            int i = stat.executeUpdate(query);
+            int i = stat.executeUpdate(query, Statement.RETURN_GENERATED_KEYS);
+// Update the full-text index with the id assigned by the database
+            if (i == 1) {
+                ResultSet keys = stat.getGeneratedKeys();
+                if (keys.next()) {
+                    updateIndex(keys.getInt(1), pRefreshmentPoint);
+                }
+                keys.close();
+            }
             return (i == 1);
         }
 // Is always done and takes care of closing the statement, and
@@ -122,6 +140,10 @@ public class DBRefreshmentPoint implements IDBRefreshmentPoint {
                     + pRefreshmentPoint.getParty() + " 'WHERE Id =" + pRefreshmentPoint.getId();
 // You run the query for Change
             int i = stat.executeUpdate(query);
+// Update the full-text index
+            if (i == 1) {
+                updateIndex(pRefreshmentPoint.getId(), pRefreshmentPoint);
+            }
 // This returns the backup
             return (i == 1);
         }
@@ -139,6 +161,12 @@ public class DBRefreshmentPoint implements IDBRefreshmentPoint {
 
     public int getSearchResultNumber(String pKeyword, ArrayList<BeanTag> pTags, Point3D pPosition,
             double pMaxDistance) throws SQLException {
+// A keyword without matches in the full-text index gives no results,
+// Without querying the database
+        ArrayList<FullTextIndex.Hit> hits = searchKeyword(pKeyword);
+        if (hits != null && hits.isEmpty()) {
+            return 0;
+        }
 // Variables for database connection
         Connection conn = null;
 // Variable for the query
@@ -155,8 +183,8 @@ public class DBRefreshmentPoint implements IDBRefreshmentPoint {
             if (pTags.size() == 0) {
 // Query without the control tag
                 query = "SELECT count (number) FROM (SELECT count (puntodiristoro.Id) AS number" + "FROM puntodiristoro"
-                        + "WHERE (puntodiristoro.Name LIKE '%" + pKeyword + "% 'OR puntodiristoro.Description LIKE'%"
-                        + pKeyword + '%' + "AND distance (puntodiristoro.Latitude, puntodiristoro.Longitude"
+                        + "WHERE " + keywordCondition(hits)
+                        + " AND distance (puntodiristoro.Latitude, puntodiristoro.Longitude"
                         + pPosition.getLatitude() + "" + pPosition.getLongitude() + ") <" + pMaxDistance
                         + "GROUP BY puntodiristoro.Id" + "ORDER BY count (puntodiristoro.Id) DESC) AS table";
             } else {
@@ -164,8 +192,7 @@ public class DBRefreshmentPoint implements IDBRefreshmentPoint {
                 query = "SELECT count (number) FROM (SELECT count (puntodiristoro.Id) AS number" + "FROM puntodiristoro"
                         + "JOIN (appartenenzapr JOIN tag ON IdTag = Id)"
                         + "ON puntodiristoro.Id = appartenenzapr.IdRefreshmentPoint"
-                        + "WHERE (puntodiristoro.Name LIKE '%" + pKeyword + "% 'OR puntodiristoro.Description LIKE'%"
-                        + pKeyword + "'%' AND tag.Name =  " + pTags.get(0).getName();
+                        + "WHERE " + keywordCondition(hits) + " AND tag.Name =  " + pTags.get(0).getName();
                 if (pTags.size() >= 2) {
                     query = query + " 'OR tag.Name ='" + pTags.get(1).getName();
                 }
@@ -210,6 +237,12 @@ public class DBRefreshmentPoint implements IDBRefreshmentPoint {
 
     public int getSearchResultNumberAdvanced(int pIdTourist, String pKeyword, ArrayList<BeanTag> pTags,
             Point3D pPosition, double pMaxDistance) throws SQLException {
+// A keyword without matches in the full-text index gives no results,
+// Without querying the database
+        ArrayList<FullTextIndex.Hit> hits = searchKeyword(pKeyword);
+        if (hits != null && hits.isEmpty()) {
+            return 0;
+        }
 // Variables for database connection
         Connection conn = null;
 // Variable for the query
@@ -230,8 +263,8 @@ public class DBRefreshmentPoint implements IDBRefreshmentPoint {
                         + "SELECT IdSearchPreference" + "FROM rating" + "WHERE IdTourist =" + pIdTourist
                         + ") AS pref" + "WHERE associazionepr.IdSearchPreference = pref.IdSearchPreference)"
                         + "Preferences AS ON puntodiristoro.Id preferenze.IdRefreshmentPoint =) "
-                        + "WHERE (puntodiristoro.Name LIKE '%" + pKeyword + "% 'OR puntodiristoro.Description LIKE'%"
-                        + pKeyword + "'%') " + "AND distance (puntodiristoro.Latitude, puntodiristoro.Longitude"
+                        + "WHERE " + keywordCondition(hits) + " "
+                        + "AND distance (puntodiristoro.Latitude, puntodiristoro.Longitude"
                         + pPosition.getLatitude() + "" + pPosition.getLongitude() + ") <" + pMaxDistance
                         + "GROUP BY puntodiristoro.Id" + "ORDER BY count (puntodiristoro.Id) DESC) AS table";
             } else {
@@ -243,8 +276,7 @@ public class DBRefreshmentPoint implements IDBRefreshmentPoint {
                         + "Preferences AS ON puntodiristoro.Id preferenze.IdRefreshmentPoint =) "
                         + "JOIN (appartenenzapr JOIN tag ON IdTag = Id)"
                         + "ON puntodiristoro.Id = appartenenzapr.IdRefreshmentPoint"
-                        + "WHERE (puntodiristoro.Name LIKE '%" + pKeyword + "% 'OR puntodiristoro.Description LIKE'%"
-                        + pKeyword + "'%') AND (tag.Name = ' " + pTags.get(0).getName();
+                        + "WHERE " + keywordCondition(hits) + " AND (tag.Name = ' " + pTags.get(0).getName();
                 if (pTags.size() >= 2) {
                     query = query + " 'OR tag.Name ='" + pTags.get(1).getName();
                 }
@@ -336,8 +368,73 @@ public class DBRefreshmentPoint implements IDBRefreshmentPoint {
         }
     }
 
+    public ArrayList<BeanRefreshmentPoint> getRefreshmentPoints(Collection<Integer> pIds) throws SQLException {
+        ArrayList<BeanRefreshmentPoint> list = new ArrayList<BeanRefreshmentPoint>(pIds.size());
+        if (pIds.isEmpty()) {
+            return list;
+        }
+// Variables for database connection
+        Connection conn = null;
+// Variable for the query
+        Statement stat = null;
+// Variable for the query results
+        ResultSet result = null;
+        try {
+// Get the connection
+            conn = DBConnectionPool.getConnection();
+// Create the Statement
+            stat = conn.createStatement();
+// One query for all the ids
+            StringBuilder query = new StringBuilder("SELECT * FROM puntodiristoro WHERE Id IN (");
+            boolean first = true;
+            for (Integer id : pIds) {
+                if (!first) {
+                    query.append(',');
+                }
+                query.append(id.intValue());
+                first = false;
+            }
+            query.append(')');
+// You run the query
+            result = stat.executeQuery(query.toString());
+            while (result.next()) {
+// We create the objects to be returned
+                Point3D point = new Point3D(result.getDouble("Latitude"), result.getDouble("Longitude"),
+                        result.getDouble("Elevation"));
+                Date openingTime = new Date();
+                Date closingTime = new Date();
+                list.add(new BeanRefreshmentPoint(result.getInt("Id"), result.getInt("RatingNumber"),
+                        result.getDouble("AverageRating"), result.getString("Name"), result.getString("Description"),
+                        result.getString("Phone"), result.getString("Location"), result.getString("City"),
+                        result.getString("Way"), result.getString("Cap"), result.getString("Province"),
+                        result.getString("Party"), point, openingTime, closingTime,
+                        result.getString("ClosingDay")));
+            }
+            return list;
+        }
+// Always runs and takes care to close the Result, the Statement
+// And Connection
+        finally {
+            if (result != null) {
+                result.close();
+            }
+            if (stat != null) {
+                stat.close();
+            }
+            if (conn != null) {
+                DBConnectionPool.releaseConnections(conn);
+            }
+        }
+    }
+
     public ArrayList<BeanRefreshmentPoint> search(String pKeyword, ArrayList<BeanTag> pTags, int pNumberPage,
             int pNumberElementsPerPage, Point3D pPosition, double pMaxDistance) throws SQLException {
+// A keyword without matches in the full-text index gives no results,
+// Without querying the database
+        ArrayList<FullTextIndex.Hit> hits = searchKeyword(pKeyword);
+        if (hits != null && hits.isEmpty()) {
+            return new ArrayList<BeanRefreshmentPoint>();
+        }
 // Variables for database connection
         Connection conn = null;
 // Variable for the query
@@ -353,8 +450,7 @@ public class DBRefreshmentPoint implements IDBRefreshmentPoint {
             String query = "";
             if (pTags.size() == 0) {
 // Query without the control tag
-                query = "SELECT *" + "FROM puntodiristoro" + "WHERE (puntodiristoro.Name LIKE '%" + pKeyword
-                        + "% 'OR puntodiristoro.Description LIKE'%" + pKeyword + "'%') "
+                query = "SELECT *" + "FROM puntodiristoro" + "WHERE " + keywordCondition(hits) + " "
                         + "AND distance (puntodiristoro.Latitude, puntodiristoro.Longitude"
                         + pPosition.getLatitude() + "" + pPosition.getLongitude() + ") <" + pMaxDistance
                         + "GROUP BY puntodiristoro.Id" + "ORDER BY count (puntodiristoro.Id) DESC LIMIT"
@@ -363,8 +459,7 @@ public class DBRefreshmentPoint implements IDBRefreshmentPoint {
 // Query with tags
                 query = "SELECT *" + "FROM puntodiristoro" + "JOIN (appartenenzapr JOIN tag ON IdTag = Id)"
                         + "ON puntodiristoro.Id = appartenenzapr.IdRefreshmentPoint"
-                        + "WHERE (puntodiristoro.Name LIKE '%" + pKeyword + "% 'OR puntodiristoro.Description LIKE'%"
-                        + pKeyword + "'%') AND (tag.Name = ' " + pTags.get(0).getName();
+                        + "WHERE " + keywordCondition(hits) + " AND (tag.Name = ' " + pTags.get(0).getName();
                 if (pTags.size() >= 2) {
                     query = query + " 'OR tag.Name ='" + pTags.get(1).getName();
                 }
@@ -423,6 +518,12 @@ public class DBRefreshmentPoint implements IDBRefreshmentPoint {
     public ArrayList<BeanRefreshmentPoint> searchAdvanced(int pIdTourist, String pKeyword, ArrayList<BeanTag> pTags,
             int pNumberPage, int pNumberElementsPerPage, Point3D pPosition, double pMaxDistance)
             throws SQLException {
+// A keyword without matches in the full-text index gives no results,
+// Without querying the database
+        ArrayList<FullTextIndex.Hit> hits = searchKeyword(pKeyword);
+        if (hits != null && hits.isEmpty()) {
+            return new ArrayList<BeanRefreshmentPoint>();
+        }
 // Variables for database connection
         Connection conn = null;
 // Variable for the query
@@ -443,8 +544,8 @@ public class DBRefreshmentPoint implements IDBRefreshmentPoint {
                         + "WHERE IdTourist =" + pIdTourist + ") CI pref"
                         + "WHERE associazionepr.IdSearchPreference = pref.IdSearchPreference)"
                         + "Preferences AS ON puntodiristoro.Id preferenze.IdRefreshmentPoint =) "
-                        + "WHERE (puntodiristoro.Name LIKE '%" + pKeyword + "% 'OR puntodiristoro.Description LIKE'%"
-                        + pKeyword + "%')" + "AND distance (puntodiristoro.Latitude, puntodiristoro.Longitude"
+                        + "WHERE " + keywordCondition(hits)
+                        + " AND distance (puntodiristoro.Latitude, puntodiristoro.Longitude"
                         + pPosition.getLatitude() + "" + pPosition.getLongitude() + ") <" + pMaxDistance
                         + "GROUP BY puntodiristoro.Id" + "ORDER BY count (puntodiristoro.Id) DESC LIMIT"
                         + (pNumberPage * pNumberElementsPerPage) + "" + pNumberElementsPerPage;
@@ -457,8 +558,7 @@ public class DBRefreshmentPoint implements IDBRefreshmentPoint {
                         + "Preferences AS ON puntodiristoro.Id preferenze.IdRefreshmentPoint =) "
                         + "JOIN (appartenenzapr JOIN tag ON IdTag = Id)"
                         + "ON puntodiristoro.Id = appartenenzapr.IdRefreshmentPoint"
-                        + "WHERE (puntodiristoro.Name LIKE '%" + pKeyword + "% 'OR puntodiristoro.Description LIKE'%"
-                        + pKeyword + "'%') AND (tag.Name = ' " + pTags.get(0).getName();
+                        + "WHERE " + keywordCondition(hits) + " AND (tag.Name = ' " + pTags.get(0).getName();
                 if (pTags.size() >= 2) {
                     query = query + " 'OR tag.Name ='" + pTags.get(1).getName();
                 }
@@ -567,4 +667,148 @@ public class DBRefreshmentPoint implements IDBRefreshmentPoint {
 
     }
 
+    public ArrayList<BeanRefreshmentPoint> getListPR(int pAfterId, int pMax) throws SQLException {
+// Variables for database connection
+        Connection conn = null;
+// Variable for the query
+        Statement stat = null;
+// Variable for the query results
+        ResultSet result = null;
+        try {
+// Get the connection
+            conn = DBConnectionPool.getConnection();
+// Create the Statement
+            stat = conn.createStatement();
+// Query for a page of the refreshment points, after the last one read: the
+// Primary key finds the first of the page without reading the previous ones
+            String query = "SELECT * FROM puntodiristoro WHERE Id > " + pAfterId + " ORDER BY Id LIMIT " + pMax;
+// You run the query
+            result = stat.executeQuery(query);
+// List that will contain the BeanRefreshmentPoint
+            ArrayList<BeanRefreshmentPoint> list = new ArrayList<BeanRefreshmentPoint>();
+            while (result.next()) {
+// We create the objects to be returned
+                Point3D point = new Point3D(result.getDouble("Latitude"), result.getDouble("Longitude"),
+                        result.getDouble("Elevation"));
+                Date openingTime = new Date();
+                Date closingTime = new Date();
+// Build the refreshment
+                BeanRefreshmentPoint puntoTemp = new BeanRefreshmentPoint(result.getInt("Id"), result.getInt("RatingNumber"),
+                        result.getDouble("AverageRating"), result.getString("Name"), result.getString("Description"),
+                        result.getString("Phone"), result.getString("Location"), result.getString("City"),
+                        result.getString("Way"), result.getString("Cap"), result.getString("Province"),
+                        result.getString("Party"), point, openingTime, closingTime,
+                        result.getString("ClosingDay"));
+// Insert the bean in the list
+                list.add(puntoTemp);
+            }
+// It returns the list
+            return list;
+        }
+// Always runs and takes care to close the Result, the Statement
+// And Connection
+        finally {
+            if (result != null) {
+                result.close();
+            }
+            if (stat != null) {
+                stat.close();
+            }
+            if (conn != null) {
+                DBConnectionPool.releaseConnections(conn);
+            }
+        }
+
+    }
+
+    public ArrayList<FullTextIndex.Hit> searchKeyword(String pKeyword) throws SQLException {
+        loadIndex();
+        return index.query(pKeyword);
+    }
+
+    /**
+     * Returns the condition on the keyword for the search queries: the ids
+     * found in the full-text index instead of a LIKE on name and description,
+     * which can not use any index of the database
+     *
+     * @Param pHits matches of the keyword in the full-text index
+     * @Return SQL condition
+     */
+    private String keywordCondition(ArrayList<FullTextIndex.Hit> pHits) {
+        if (pHits == null) {
+            return "1 = 1";
+        }
+        if (pHits.isEmpty()) {
+            return "1 = 0";
+        }
+        StringBuilder condition = new StringBuilder("puntodiristoro.Id IN (");
+        for (int i = 0; i < pHits.size(); i++) {
+            if (i > 0) {
+                condition.append(',');
+            }
+            condition.append(pHits.get(i).getId());
+        }
+        return condition.append(')').toString();
+    }
+
+    /**
+     * Loads the full-text index from the database, only the first time
+     */
+    private void loadIndex() throws SQLException {
+        synchronized (index) {
+            if (!indexLoaded) {
+                for (BeanRefreshmentPoint refreshmentPoint : getListPR()) {
+                    index.put(refreshmentPoint.getId(), refreshmentPoint.getName(),
+                            refreshmentPoint.getDescription());
+                }
+                indexLoaded = true;
+            }
+        }
+    }
+
+    /**
+     * Fills the full-text index with the refreshment points of a snapshot of
+     * the catalog, so the first keyword search does not read them all from
+     * the database
+     *
+     * @Param pRefreshmentPoints all the refreshment points
+     */
+    static void seedIndex(Collection<BeanRefreshmentPoint> pRefreshmentPoints) {
+        synchronized (index) {
+            index.clear();
+            for (BeanRefreshmentPoint refreshmentPoint : pRefreshmentPoints) {
+                index.put(refreshmentPoint.getId(), refreshmentPoint.getName(), refreshmentPoint.getDescription());
+            }
+            indexLoaded = true;
+        }
+    }
+
+    /**
+     * Updates a refreshment point in the full-text index, if already loaded,
+     * in the registry of the conventions and in the replicas of the catalog
+     */
+    private static void updateIndex(int pId, BeanRefreshmentPoint pRefreshmentPoint) {
+        synchronized (index) {
+            if (indexLoaded) {
+                index.put(pId, pRefreshmentPoint.getName(), pRefreshmentPoint.getDescription());
+            }
+        }
+        ConventionRegistry.refreshmentPointChanged(pId);
+        CatalogPublisher.publishRefreshmentPoint(pId);
+    }
+
+    /**
+     * Removes a refreshment point from the full-text index, if already loaded,
+     * from the registry of the conventions and from the replicas of the catalog
+     */
+    private static void removeFromIndex(int pId) {
+        synchronized (index) {
+            if (indexLoaded) {
+                index.remove(pId);
+            }
+        }
+        ConventionRegistry.refreshmentPointChanged(pId);
+        CatalogPublisher.publishRefreshmentPoint(pId);
+    }
+
 }
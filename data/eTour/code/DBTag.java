@@ -45,6 +45,10 @@ public class DBTag implements IDBTag {
         return null;
     }
 
+    public ArrayList<BeanTag> getListTag(int pAfterId, int pMax) throws SQLException {
+        return null;
+    }
+
     public BeanTag getTag(int pid) throws SQLException {
         return null;
     }
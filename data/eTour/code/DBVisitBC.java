@@ -42,6 +42,11 @@ public class DBVisitBC implements IDBVisitBC {
         return null;
     }
 
+    public ArrayList<BeanVisitBC> getListVisitBCTourist(int pIdTourist, int pAfterIdCulturalHeritage, int pMax)
+            throws SQLException {
+        return null;
+    }
+
     public BeanVisitBC getVisitBC(int pIdCulturalHeritage, int pIdTourist) throws SQLException {
         return null;
     }
@@ -17,6 +17,7 @@ import javax.swing.JInternalFrame;
 import javax.swing.JMenuItem;
 import javax.swing.JPopupMenu;
 
+import unisa.gps.etour.gui.operatoragency.Home;
 import unisa.gps.etour.gui.operatoragency.ICard;
 
 /**
@@ -42,6 +43,10 @@ public class DeskManager extends DefaultDesktopManager {
         initializeDeskMenu();
         locationX = 0;
         locationY = -1;
+// The help files of the frames are read in the background while the client
+// Starts, so a frame finds its help ready when it is opened
+        HelpCatalog.preload(Home.URL_HELP + "Banner.txt", Home.URL_HELP + "news.txt", Home.URL_HELP
+                + "CulturalHeritage.txt");
     }
 
     /**
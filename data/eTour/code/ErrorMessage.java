@@ -25,4 +25,16 @@ public class ErrorMessage {
 
 // Occurs when you have reached the maximum number of banners displayed
     public static final String ERROR_NUM_BANNER = "count exceeded banner inserted";
+
+// Occurs when a cursor is used after it was closed or its lease expired
+    public static final String ERROR_CURSOR = "Cursor closed or expired";
+
+// Occurs when no replica of the catalog can be reached
+    public static final String ERROR_REPLICA = "No catalog replica available";
+
+// Occurs when a visit cannot be written in the log of the visits
+    public static final String ERROR_VISIT_LOG = "Visit log not available";
+
+// Occurs when the token of a session is not valid, expired or revoked
+    public static final String ERROR_SESSION = "Session not valid or expired";
 }
@@ -0,0 +1,240 @@
+package unisa.gps.etour.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import unisa.gps.etour.control.fuzzy.Fuzzy;
+
+/**
+ * Inverted index on the name and description of the sites. The text is
+ * normalized as in Fuzzy.replaceAndLower and split into words; for every word
+ * the index keeps the list of sites that contain it with the frequency of the
+ * word, the words of the name counting double. A query matches the sites that
+ * contain, for every word of the query, a word that starts with it, and
+ * scores them with the frequency of the words weighted by their rarity.
+ *
+ */
+public class FullTextIndex {
+// Weight of a word of the name with respect to one of the description
+    private static final int NAME_WEIGHT = 2;
+
+// Postings list of each word, ordered to answer prefix queries
+    private final TreeMap<String, Map<Integer, Integer>> postings;
+// Words of each site, to remove it
+    private final Map<Integer, Map<String, Integer>> documents;
+    private final ReadWriteLock lock;
+
+    /**
+     * Site found by a query, with its score
+     */
+    public static class Hit {
+        private final int id;
+        private final double score;
+
+        private Hit(int pId, double pScore) {
+            id = pId;
+            score = pScore;
+        }
+
+        /**
+         * Returns the id of the site
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Returns the score of the site, the higher the more relevant
+         */
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Empty constructor, creates an empty index
+     */
+    public FullTextIndex() {
+        postings = new TreeMap<String, Map<Integer, Integer>>();
+        documents = new HashMap<Integer, Map<String, Integer>>();
+        lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Adds a site to the index, or replaces it if already present
+     *
+     * @Param pId ID of the site
+     * @Param pName name of the site
+     * @Param pDescription description of the site
+     */
+    public void put(int pId, String pName, String pDescription) {
+        Map<String, Integer> words = new HashMap<String, Integer>();
+        count(words, pName, NAME_WEIGHT);
+        count(words, pDescription, 1);
+        lock.writeLock().lock();
+        try {
+            removeDocument(pId);
+            documents.put(pId, words);
+            for (Map.Entry<String, Integer> word : words.entrySet()) {
+                Map<Integer, Integer> list = postings.get(word.getKey());
+                if (list == null) {
+                    list = new HashMap<Integer, Integer>();
+                    postings.put(word.getKey(), list);
+                }
+                list.put(pId, word.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a site from the index
+     *
+     * @Param pId ID of the site
+     * @Return True if the site was present
+     */
+    public boolean remove(int pId) {
+        lock.writeLock().lock();
+        try {
+            return removeDocument(pId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Empties the index
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of sites in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches the sites that match all the words of a text
+     *
+     * @Param pText words to search, each one as a prefix
+     * @Return sites found ordered by decreasing score, null if the text does
+     *         not contain any word and so does not filter the sites
+     */
+    public ArrayList<Hit> query(String pText) {
+        ArrayList<String> terms = new ArrayList<String>(tokenize(pText).keySet());
+        if (terms.isEmpty()) {
+            return null;
+        }
+        Map<Integer, Double> scores = null;
+        lock.readLock().lock();
+        try {
+            double total = documents.size();
+            for (String term : terms) {
+// Score of the sites for this word, summed over the words that
+// Start with it
+                Map<Integer, Double> termScores = new HashMap<Integer, Double>();
+                SortedMap<String, Map<Integer, Integer>> expansion = postings.subMap(term,
+                        term + Character.MAX_VALUE);
+                for (Map<Integer, Integer> list : expansion.values()) {
+                    double idf = Math.log(1 + total / list.size());
+                    for (Map.Entry<Integer, Integer> posting : list.entrySet()) {
+                        if (scores != null && !scores.containsKey(posting.getKey())) {
+                            continue;
+                        }
+                        Double score = termScores.get(posting.getKey());
+                        termScores.put(posting.getKey(),
+                                (score == null ? 0 : score.doubleValue()) + posting.getValue() * idf);
+                    }
+                }
+// Only the sites that match all the words are kept
+                if (scores != null) {
+                    for (Map.Entry<Integer, Double> entry : termScores.entrySet()) {
+                        entry.setValue(entry.getValue() + scores.get(entry.getKey()));
+                    }
+                }
+                scores = termScores;
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        ArrayList<Hit> hits = new ArrayList<Hit>(scores.size());
+        for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+            hits.add(new Hit(entry.getKey(), entry.getValue()));
+        }
+        Collections.sort(hits, new Comparator<Hit>() {
+            public int compare(Hit p1, Hit p2) {
+                if (p1.score != p2.score) {
+                    return p1.score > p2.score ? -1 : 1;
+                }
+                return p1.id < p2.id ? -1 : (p1.id == p2.id ? 0 : 1);
+            }
+        });
+        return hits;
+    }
+
+    /**
+     * Splits a text into words, normalized as in Fuzzy.replaceAndLower
+     *
+     * @Param pText text to split
+     * @Return words of the text with their number of occurrences
+     */
+    public static Map<String, Integer> tokenize(String pText) {
+        Map<String, Integer> words = new HashMap<String, Integer>();
+        count(words, pText, 1);
+        return words;
+    }
+
+    private static void count(Map<String, Integer> pWords, String pText, int pWeight) {
+        if (pText == null) {
+            return;
+        }
+        for (String word : Fuzzy.replaceAndLower(pText).split("\\s+")) {
+            if (word.length() > 0) {
+                Integer count = pWords.get(word);
+                pWords.put(word, (count == null ? 0 : count.intValue()) + pWeight);
+            }
+        }
+    }
+
+    private boolean removeDocument(int pId) {
+        Map<String, Integer> words = documents.remove(pId);
+        if (words == null) {
+            return false;
+        }
+        for (String word : words.keySet()) {
+            Map<Integer, Integer> list = postings.get(word);
+            if (list != null) {
+                list.remove(pId);
+                if (list.isEmpty()) {
+                    postings.remove(word);
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -155,7 +155,7 @@ public class Fuzzy {
      * @Return the text to lowercase
      * characters and no special
      */
-    private static String replaceAndLower(String pStr) {
+    public static String replaceAndLower(String pStr) {
         pStr = pStr.toLowerCase();
         pStr = pStr.replace(",", "");
         pStr = pStr.replace(".", "");
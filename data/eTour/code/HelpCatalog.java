@@ -0,0 +1,138 @@
+package unisa.gps.etour.gui;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Catalog of the online help files, shared by all the frames of the client.
+ * Every file is read from the classpath only once, by a background thread,
+ * and kept as a dictionary from the component name to its help; so opening a
+ * frame does not read files on the event dispatch thread.
+ *
+ * The files have a line for each component, in the form name##help.
+ *
+ */
+public final class HelpCatalog {
+    private static final String SEPARATOR = "##";
+    private static final ConcurrentMap<String, Future<Map<String, String>>> dictionaries = new ConcurrentHashMap<String, Future<Map<String, String>>>();
+    private static final ExecutorService loader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable pTask) {
+            Thread thread = new Thread(pTask, "HelpLoader");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private HelpCatalog() {
+    }
+
+    /**
+     * Starts loading in the background the given help files, to be called
+     * at the startup of the client, before the frames are opened.
+     *
+     * @Param pPaths paths of the help files in the classpath
+     */
+    public static void preload(String... pPaths) {
+        for (String path : pPaths) {
+            try {
+                load(path);
+            } catch (FileNotFoundException e) {
+// The frame using it will report the help as not available
+            }
+        }
+    }
+
+    /**
+     * Returns the dictionary of a help file, loading it in the background if
+     * no one asked it yet.
+     *
+     * @Param pPath path of the help file in the classpath
+     * @Return the dictionary, available when loaded
+     * @Throws FileNotFoundException if the help file is not found
+     */
+    public static Future<Map<String, String>> load(final String pPath) throws FileNotFoundException {
+        Future<Map<String, String>> dictionary = dictionaries.get(pPath);
+        if (dictionary != null) {
+            return dictionary;
+        }
+        if (HelpCatalog.class.getResource(pPath) == null) {
+            throw new FileNotFoundException(pPath);
+        }
+        FutureTask<Map<String, String>> task = new FutureTask<Map<String, String>>(
+                new Callable<Map<String, String>>() {
+                    public Map<String, String> call() throws IOException {
+                        return read(pPath);
+                    }
+                });
+        dictionary = dictionaries.putIfAbsent(pPath, task);
+        if (dictionary != null) {
+            return dictionary;
+        }
+        loader.execute(task);
+        return task;
+    }
+
+    /**
+     * Returns the help of a component, without waiting for the file to be
+     * loaded.
+     *
+     * @Param pPath path of the help file in the classpath
+     * @Param pName name of the component
+     * @Return the help, null if not present or the file is not loaded yet
+     */
+    public static String getHelp(String pPath, String pName) {
+        Future<Map<String, String>> dictionary = dictionaries.get(pPath);
+        if (dictionary == null || !dictionary.isDone()) {
+            return null;
+        }
+        try {
+            return dictionary.get().get(pName);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+// The file could not be read, the help is missing
+            return null;
+        }
+    }
+
+    /**
+     * Reads a help file from the classpath
+     */
+    private static Map<String, String> read(String pPath) throws IOException {
+        InputStream in = HelpCatalog.class.getResourceAsStream(pPath);
+        if (in == null) {
+            throw new FileNotFoundException(pPath);
+        }
+        Map<String, String> dictionary = new HashMap<String, String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(SEPARATOR);
+                if (separator > 0) {
+                    dictionary.put(line.substring(0, separator), line.substring(separator + SEPARATOR.length()));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return Collections.unmodifiableMap(dictionary);
+    }
+}
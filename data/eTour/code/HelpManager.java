@@ -2,11 +2,7 @@ package unisa.gps.etour.gui;
 
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.io.*;
-import java.util.HashMap;
-import java.util.Scanner;
-import java.util.StringTokenizer;
-import java.net.URISyntaxException;
+import java.io.FileNotFoundException;
 import javax.swing.JComponent;
 import javax.swing.text.JTextComponent;
 
@@ -15,7 +11,7 @@ import javax.swing.text.JTextComponent;
  *
  */
 public class HelpManager extends MouseAdapter {
-    private HashMap<String, String> dictionary;
+    private String path;
     private JTextComponent destination;
     private String previousMessage;
 
@@ -33,18 +29,10 @@ public class HelpManager extends MouseAdapter {
      *
      */
     public HelpManager(String pPath, JTextComponent pComponent) throws FileNotFoundException {
-        dictionary = new HashMap<String, String>();
+        path = pPath;
         destination = pComponent;
-        File afil = null;
-        afil = new File(getClass().getResource(pPath).toString());
-        Scanner scan = new Scanner(new BufferedReader(new FileReader(afil)));
-        StringTokenizer tokenizer;
-        while (scan.hasNext()) {
-            tokenizer = new StringTokenizer(scan.nextLine(), "##");
-            dictionary.put(tokenizer.nextToken(), tokenizer.nextToken());
-        }
-
-        scan.close();
+// The file is read once in the background and shared with the other frames
+        HelpCatalog.load(pPath);
     }
 
     /**
@@ -57,7 +45,7 @@ public class HelpManager extends MouseAdapter {
     public void mouseEntered(MouseEvent pMouseEnteredEvent) {
         previousMessage = destination.getText();
         JComponent component = (JComponent) pMouseEnteredEvent.getComponent();
-        String help = dictionary.get(component.getName());
+        String help = HelpCatalog.getHelp(path, component.getName());
         destination.setText(help);
         destination.repaint();
     }
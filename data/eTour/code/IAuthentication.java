@@ -27,4 +27,32 @@ public interface IAuthentication extends Remote {
      */
     public int login(String pUsername, String pPassword, byte pUsertype) throws RemoteException;
 
+    /**
+     * Method to authenticate a registered user and open a session, the token
+     * returned identifies the user in the following calls
+     *
+     * @Param pUsername username of the Registered User
+     * @Param pPassword password of the Registered User
+     * @Param pUsertype type of user to authenticate
+     * @Return token of the session if the data are correct, otherwise null
+     */
+    public String openSession(String pUsername, String pPassword, byte pUsertype) throws RemoteException;
+
+    /**
+     * Method to validate the token of a session
+     *
+     * @Param pToken token returned by openSession
+     * @Return ID of the user of the session if the token is valid, otherwise
+     *         -1
+     */
+    public int checkSession(String pToken) throws RemoteException;
+
+    /**
+     * Method to close a session, the token is no longer valid
+     *
+     * @Param pToken token returned by openSession
+     * @Return true if the session was open
+     */
+    public boolean logout(String pToken) throws RemoteException;
+
 }
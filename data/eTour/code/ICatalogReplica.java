@@ -0,0 +1,127 @@
+﻿package unisa.gps.etour.control.ReplicaManager;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+
+import unisa.gps.etour.bean.BeanConvention;
+import unisa.gps.etour.bean.BeanCulturalHeritage;
+import unisa.gps.etour.bean.BeanNews;
+import unisa.gps.etour.bean.BeanRefreshmentPoint;
+import unisa.gps.etour.bean.BeanTag;
+import unisa.gps.etour.bean.BeanWeeklyMenu;
+import unisa.gps.etour.util.Point3D;
+
+/**
+ * Interface of a read-only replica of the catalog. The replica answers the
+ * reads of the tourists from its own copy of the catalog, kept up to date by
+ * the changes streamed from the agency node, so it may be behind the agency
+ * node by the changes not yet received.
+ *
+ */
+public interface ICatalogReplica extends Remote {
+
+    /**
+     * Method to return a particular Cultural Heritage
+     *
+     * @Param pCulturalHeritageID The identifier of the cultural property
+     * @Return BeanCulturalHeritage, null if not in the catalog
+     */
+    public BeanCulturalHeritage getCulturalHeritage(int pCulturalHeritageID) throws RemoteException;
+
+    /**
+     * Searches the cultural heritage by keyword and distance from the position
+     * of the tourist
+     *
+     * @Param pKeyword keywords of the search, null for any good
+     * @Param pPosition position of the tourist, null for any distance
+     * @Param pMaxDistance maximum distance between the tourist and the good
+     * @Param pPage number of the page, starting from 0
+     * @Param pElementsPerPage number of goods of a page
+     * @Return goods of the page, ordered by relevance
+     */
+    public ArrayList<BeanCulturalHeritage> searchCulturalHeritage(String pKeyword, Point3D pPosition,
+            double pMaxDistance, int pPage, int pElementsPerPage) throws RemoteException;
+
+    /**
+     * Returns the number of cultural heritage found by a search
+     *
+     * @Param pKeyword keywords of the search, null for any good
+     * @Param pPosition position of the tourist, null for any distance
+     * @Param pMaxDistance maximum distance between the tourist and the good
+     * @Return number of goods found
+     */
+    public int getCulturalHeritageResultNumber(String pKeyword, Point3D pPosition, double pMaxDistance)
+            throws RemoteException;
+
+    /**
+     * Method to return a particular Refreshment
+     *
+     * @Param pRefreshmentPointID The identifier of the refreshment point
+     * @Return BeanRefreshmentPoint, null if not in the catalog
+     */
+    public BeanRefreshmentPoint getRefreshmentPoint(int pRefreshmentPointID) throws RemoteException;
+
+    /**
+     * Searches the refreshment points by keyword and distance from the
+     * position of the tourist
+     *
+     * @Param pKeyword keywords of the search, null for any refreshment point
+     * @Param pPosition position of the tourist, null for any distance
+     * @Param pMaxDistance maximum distance between the tourist and the point
+     * @Param pPage number of the page, starting from 0
+     * @Param pElementsPerPage number of refreshment points of a page
+     * @Return refreshment points of the page, ordered by relevance
+     */
+    public ArrayList<BeanRefreshmentPoint> searchRefreshmentPoint(String pKeyword, Point3D pPosition,
+            double pMaxDistance, int pPage, int pElementsPerPage) throws RemoteException;
+
+    /**
+     * Returns the number of refreshment points found by a search
+     *
+     * @Param pKeyword keywords of the search, null for any refreshment point
+     * @Param pPosition position of the tourist, null for any distance
+     * @Param pMaxDistance maximum distance between the tourist and the point
+     * @Return number of refreshment points found
+     */
+    public int getRefreshmentPointResultNumber(String pKeyword, Point3D pPosition, double pMaxDistance)
+            throws RemoteException;
+
+    /**
+     * Returns all the tags of the catalog
+     *
+     * @Return list of tags
+     */
+    public ArrayList<BeanTag> getTags() throws RemoteException;
+
+    /**
+     * Returns the weekly menu of a refreshment point
+     *
+     * @Param pRefreshmentPointID The identifier of the refreshment point
+     * @Return weekly menu, null if not in the catalog
+     */
+    public BeanWeeklyMenu getWeeklyMenu(int pRefreshmentPointID) throws RemoteException;
+
+    /**
+     * Returns the active news
+     *
+     * @Return list of news
+     */
+    public ArrayList<BeanNews> getNews() throws RemoteException;
+
+    /**
+     * Returns the active convention of a refreshment point
+     *
+     * @Param pRefreshmentPointID The identifier of the refreshment point
+     * @Return active convention, null if there is none
+     */
+    public BeanConvention getConventionActive(int pRefreshmentPointID) throws RemoteException;
+
+    /**
+     * Returns the sequence of the last change applied by the replica, to
+     * compare with the one of the agency node
+     *
+     * @Return sequence of the last change, -1 if the catalog is not loaded yet
+     */
+    public long getSequence() throws RemoteException;
+}
@@ -59,4 +59,12 @@ public interface IDBConvention {
      */
     public ArrayList<BeanRefreshmentPoint> getListConventionActivePR() throws SQLException;
 
+    /**
+     * Returns all the conventions not yet expired, the active ones and the
+     * ones that start in the future
+     *
+     * @Return list of the conventions active or future
+     */
+    public ArrayList<BeanConvention> getListConventionCurrent() throws SQLException;
+
 }
\ No newline at end of file
@@ -134,4 +134,15 @@ public interface IDBCulturalHeritage {
      * @Return List of all cultural
      */
     public ArrayList<BeanCulturalHeritage> getListBC() throws SQLException;
-}
\ No newline at end of file
+
+    /**
+     * Keyword search on the full-text index of the name and description of
+     * the cultural heritage
+     *
+     * @Param pKeyword words to search, each one as a prefix
+     * @Return ids of the cultural heritage found with their score, ordered by decreasing
+     *         score; null if the keyword does not contain any word
+     * @Throws SQLException
+     */
+    public ArrayList<FullTextIndex.Hit> searchKeyword(String pKeyword) throws SQLException;
+}
@@ -4,6 +4,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 
 import unisa.gps.etour.bean.BeanMenu;
+import unisa.gps.etour.bean.BeanWeeklyMenu;
 
 /**
  * Interface for managing the menu in the database
@@ -49,4 +50,14 @@ public interface IDBMenu {
      * @Return List of menus
      */
     public ArrayList<BeanMenu> getMenu(int pIdRefreshmentPoint) throws SQLException;
+
+    /**
+     * Returns the menus of the week of a refreshment together with their
+     * dishes, loaded with a single query and cached until a menu or a dish
+     * of the refreshment point is changed
+     *
+     * @Param pIdRefreshmentPoint point identification Refreshment
+     * @Return weekly menu with dishes
+     */
+    public BeanWeeklyMenu getWeeklyMenu(int pIdRefreshmentPoint) throws SQLException;
 }
\ No newline at end of file
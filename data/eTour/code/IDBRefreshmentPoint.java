@@ -2,6 +2,7 @@
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 
 import unisa.gps.etour.bean.BeanRefreshmentPoint;
 import unisa.gps.etour.bean.BeanTag;
@@ -43,6 +44,14 @@ public interface IDBRefreshmentPoint {
      */
     public BeanRefreshmentPoint getRefreshmentPoint(int pId) throws SQLException;
 
+    /**
+     * Returns the refreshment points with the given ids, read all together
+     *
+     * @Param pIds ids of the refreshment points
+     * @Return refreshment points found, in no particular order
+     */
+    public ArrayList<BeanRefreshmentPoint> getRefreshmentPoints(Collection<Integer> pIds) throws SQLException;
+
     /**
      * Advanced Search. Returns the list of eateries that have in Name or
      * description given String as input, sorted according to Preferences of
@@ -134,4 +143,26 @@ public interface IDBRefreshmentPoint {
      * @Return list of all the refreshment
      */
     public ArrayList<BeanRefreshmentPoint> getListPR() throws SQLException;
-}
\ No newline at end of file
+
+    /**
+     * Returns a page of the refreshment points, in order of id
+     *
+     * @Param pAfterId id of the last refreshment point of the previous page,
+     *        -1 for the first page
+     * @Param pMax maximum number of refreshment points
+     * @Throws SQLException
+     * @Return refreshment points with id greater than pAfterId
+     */
+    public ArrayList<BeanRefreshmentPoint> getListPR(int pAfterId, int pMax) throws SQLException;
+
+    /**
+     * Keyword search on the full-text index of the name and description of
+     * the refreshment points
+     *
+     * @Param pKeyword words to search, each one as a prefix
+     * @Return ids of the refreshment points found with their score, ordered by decreasing
+     *         score; null if the keyword does not contain any word
+     * @Throws SQLException
+     */
+    public ArrayList<FullTextIndex.Hit> searchKeyword(String pKeyword) throws SQLException;
+}
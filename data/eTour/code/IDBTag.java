@@ -41,6 +41,16 @@ public interface IDBTag {
      */
     public ArrayList<BeanTag> getListTag() throws SQLException;
 
+    /**
+     * Returns a page of the tags in the database, in order of id
+     *
+     * @Param pAfterId id of the last tag of the previous page, -1 for the
+     *        first page
+     * @Param pMax maximum number of tags
+     * @Return List containing the tags with id greater than pAfterId
+     */
+    public ArrayList<BeanTag> getListTag(int pAfterId, int pMax) throws SQLException;
+
     /**
      * Returns a single tag
      *
@@ -43,6 +43,20 @@ public interface IDBVisitBC {
      */
     public ArrayList<BeanVisitBC> getListVisitBCTourist(int pIdTourist) throws SQLException;
 
+    /**
+     * Extract a page of the cultural visited by a tourist, in order of id of
+     * the cultural heritage
+     *
+     * @Param pIdTourist ID of the tourist
+     * @Param pAfterIdCulturalHeritage id of the cultural heritage of the last
+     *        visit of the previous page, -1 for the first page
+     * @Param pMax maximum number of visits
+     * @Return visits of the tourist to the cultural heritage with id greater
+     *         than pAfterIdCulturalHeritage
+     */
+    public ArrayList<BeanVisitBC> getListVisitBCTourist(int pIdTourist, int pAfterIdCulturalHeritage, int pMax)
+            throws SQLException;
+
     /**
      * Extract a visit by a tourist to a cultural
      *
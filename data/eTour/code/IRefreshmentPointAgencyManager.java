@@ -3,10 +3,12 @@
 import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 
 import unisa.gps.etour.bean.BeanConvention;
 import unisa.gps.etour.bean.BeanRefreshmentPoint;
 import unisa.gps.etour.bean.BeanVisitPR;
+import unisa.gps.etour.util.IRemoteCursor;
 
 /**
  * Interface for refreshments on the side of the agency
@@ -36,6 +38,14 @@ public interface IRefreshmentPointAgencyManager extends IRefreshmentPointCommonM
      */
     public ArrayList<BeanRefreshmentPoint> getRefreshmentPoint() throws RemoteException;
 
+    /**
+     * Method to get all the refreshment points of the database, to be read in
+     * chunks
+     *
+     * @Return cursor on the refreshment points
+     */
+    public IRemoteCursor<BeanRefreshmentPoint> getRefreshmentPointCursor() throws RemoteException;
+
     /**
      * Method to return all the refreshment with convention Active or not
      *
@@ -66,6 +76,18 @@ public interface IRefreshmentPointAgencyManager extends IRefreshmentPointCommonM
      */
     public HashMap<BeanVisitPR, String> getFeedbackRefreshmentPoint(int pRefreshmentPointID) throws RemoteException;
 
+    /**
+     * Method to get all the feedback associated to a certain point Refreshments,
+     * to be read in chunks. The username of the tourist of a feedback is read
+     * only when the chunk of the feedback is requested.
+     *
+     * @Param pRefreshmentPointID unique identifier of the Refreshment To get feedback
+     * @Return cursor on the pairs of the bean of the feedback and the username
+     *         of the tourist who issued it
+     */
+    public IRemoteCursor<Map.Entry<BeanVisitPR, String>> getFeedbackRefreshmentPointCursor(int pRefreshmentPointID)
+            throws RemoteException;
+
     /**
      * Method for updatang (or change) the data of a Refreshment
      *
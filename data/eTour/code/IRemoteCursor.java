@@ -0,0 +1,59 @@
+package unisa.gps.etour.util;
+
+import java.io.Serializable;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+
+/**
+ * Remote interface of a cursor on a list of results kept on the server. The
+ * client reads the results in chunks instead of receiving the whole list in
+ * a single response. A cursor not used for a while is closed by the server.
+ *
+ */
+public interface IRemoteCursor<T> extends Remote {
+
+    /**
+     * Chunk of results returned by the cursor
+     */
+    public static class Chunk<T> implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<T> elements;
+        private final boolean last;
+
+        /**
+         * Parameterized constructor
+         *
+         * @Param pElements results of the chunk
+         * @Param pLast true if there are no more results after this chunk
+         */
+        public Chunk(ArrayList<T> pElements, boolean pLast) {
+            elements = pElements;
+            last = pLast;
+        }
+
+        public ArrayList<T> getElements() {
+            return elements;
+        }
+
+        public boolean isLast() {
+            return last;
+        }
+    }
+
+    /**
+     * Returns the next results of the cursor and renews its lease. After the
+     * last chunk the cursor is closed.
+     *
+     * @Param pMaxElements maximum number of results to return
+     * @Return next chunk of results
+     * @throws RemoteException if the cursor was closed or its lease expired
+     */
+    public Chunk<T> next(int pMaxElements) throws RemoteException;
+
+    /**
+     * Closes the cursor before reading all the results
+     */
+    public void close() throws RemoteException;
+}
@@ -6,6 +6,7 @@ import java.rmi.RemoteException;
 import java.util.ArrayList;
 
 import unisa.gps.etour.bean.BeanTag;
+import unisa.gps.etour.util.IRemoteCursor;
 
 /**
  * Common interface for managing Tag
@@ -22,4 +23,12 @@ public interface ITagCommonManager extends Remote {
      */
     public ArrayList<BeanTag> getTags() throws RemoteException;
 
+    /**
+     * Method which returns all the tags stored in the database, to be read
+     * in chunks
+     *
+     * @Return a cursor on the BeanTag @Throws RemoteException Exception Remote
+     */
+    public IRemoteCursor<BeanTag> getTagsCursor() throws RemoteException;
+
 }
\ No newline at end of file
@@ -52,6 +52,15 @@ public interface ITouristAgencyManager extends ITouristCommonManager {
      */
     public ArrayList<BeanTourist> getTourist(boolean statusAccount) throws RemoteException;
 
+    /**
+     * Method to search the tourists while the name is typed
+     *
+     * @Param pPrefix beginning of the username, of the name or of the surname
+     * @Param pMaxResults maximum number of tourists to return
+     * @Return ArrayList of BeanTourist
+     */
+    public ArrayList<BeanTourist> searchTourist(String pPrefix, int pMaxResults) throws RemoteException;
+
     /**
      * Method to get all the feedback issued by a tourist for the points
      * Refreshments
@@ -8,8 +8,10 @@ import unisa.gps.etour.bean.BeanSearchPreference;
 import unisa.gps.etour.bean.BeanGenericPreference;
 import unisa.gps.etour.bean.BeanRefreshmentPoint;
 import unisa.gps.etour.bean.BeanTourist;
+import unisa.gps.etour.bean.BeanTouristHome;
 import unisa.gps.etour.bean.BeanVisitBC;
 import unisa.gps.etour.bean.BeanVisitPR;
+import unisa.gps.etour.util.IRemoteCursor;
 
 /**
  * Interface on the Management of Tourist Information
@@ -25,162 +27,191 @@ public interface ITouristClientManager extends ITouristCommonManager {
      */
     public boolean insertTourist(BeanTourist pTourist) throws RemoteException;
 
+// The tourist is identified by the token of his session, opened with
+// IAuthentication.openSession, instead of trusting an id sent by the client
+
     /**
-     * Method for including the General Preferences Tourist
+     * Method for including the General Preferences of the tourist of a session
      *
-     * @Param pIdTourist Identifier Tourist which involve General Preferences
+     * @Param pToken token of the session of the tourist
      * @Param pGenericPreference General Preferences for inclusion
-     * @Return Boolean: True if the insertion is successful, False otherwise
+     * @Return True if the insertion is successful, False otherwise
+     * @Throws RemoteException if the session is not valid
      */
-    public boolean insertGenericPreference(BeanGenericPreference pGenericPreference) throws RemoteException;
+    public boolean insertGenericPreference(String pToken, BeanGenericPreference pGenericPreference)
+            throws RemoteException;
 
     /**
-     * Method for the extraction Preferences generously given Tourists
+     * Method for the extraction of the General Preferences of the tourist of a session
      *
-     * @Param pIdTourist Identifier Tourist which you want Get the General
-     *        Preferences
+     * @Param pToken token of the session of the tourist
      * @Return Preferences General information relating to tourism
+     * @Throws RemoteException if the session is not valid
      */
-    public BeanGenericPreference getGenericPreference(int pIdTourist) throws RemoteException;
+    public BeanGenericPreference getGenericPreference(String pToken) throws RemoteException;
 
     /**
-     * Method for changing the Preferences generously given Tourists
+     * Method for changing the General Preferences of the tourist of a session
      *
-     * @Param ID pIdTourist of tourists for whom you want Change the General
-     *        Preferences
-     * @Param pGenericPreferenceNew The Prefereferze General for inclusion
-     * @Param pGenericPreferenceVecchie Preferences generous to replace
-     * @Return Boolean: True if the modify successful, False otherwise
+     * @Param pToken token of the session of the tourist
+     * @Param pGenericPreferenceNew The General Preferences for inclusion
+     * @Return True if the modify successful, False otherwise
+     * @Throws RemoteException if the session is not valid
      */
-    public boolean modifyGenericPreference(BeanGenericPreference pGenericPreferencNew)
+    public boolean modifyGenericPreference(String pToken, BeanGenericPreference pGenericPreferenceNew)
             throws RemoteException;
 
     /**
-     * Method for the removal of preferences associated with the General Tourist
+     * Method for the removal of the General Preferences of the tourist of a session
      *
-     * @Param ID pIdTourist of tourists for whom you want Delete the General
-     *        Preferences
+     * @Param pToken token of the session of the tourist
      * @Return Preferences General erased
+     * @Throws RemoteException if the session is not valid
      */
-    public BeanGenericPreference clearGenericPreference(int pIdTourist) throws RemoteException;
+    public BeanGenericPreference clearGenericPreference(String pToken) throws RemoteException;
 
     /**
-     * Method to insert a Search Preferences
+     * Method to insert a Search Preference of the tourist of a session
      *
-     * @Param ID pIdTourist of tourists for which you intend Insert a Search
-     *        Preferences
+     * @Param pToken token of the session of the tourist
      * @Param pSearchPreference Search Preferences be included
-     * @Return Boolean: True if the insertion is successful, False otherwise
+     * @Return True if the insertion is successful, False otherwise
+     * @Throws RemoteException if the session is not valid
      */
-    public boolean insertSearchPreference(int pIdTourist, BeanSearchPreference pSearchPreference)
+    public boolean insertSearchPreference(String pToken, BeanSearchPreference pSearchPreference)
             throws RemoteException;
 
     /**
-     * Method for extracting the set of Search Preferences given Tourist
+     * Method for extracting the Search Preferences of the tourist of a session
      *
-     * @Param ID pIdTourist of tourists for whom you want Extract search preferences
-     *        Together 
-     * @return the search preferences associated with the Tourist
-     *        information
+     * @Param pToken token of the session of the tourist
+     * @Return the search preferences associated with the Tourist
+     * @Throws RemoteException if the session is not valid
      */
-    public BeanSearchPreference[] getSearchPreference(int pIdTourist) throws RemoteException;
+    public BeanSearchPreference[] getSearchPreference(String pToken) throws RemoteException;
 
     /**
-     * Method for deleting a Search Preference given its ID and Tourists
+     * Method for deleting a Search Preference of the tourist of a session
      *
-     * @Param ID pIdTourist of tourists for whom you want Delete a Search
-     *        Preferences
-     * @Param ID pIdSearchPreference Search Preferences To cancel
+     * @Param pToken token of the session of the tourist
+     * @Param pIdSearchPreference ID of the Search Preferences To cancel
      * @Return The preference of search Delete
+     * @Throws RemoteException if the session is not valid
      */
-    public BeanSearchPreference clearSearchPreference(int pIdTourist, int pIdSearchPreference)
-            throws RemoteException;
+    public BeanSearchPreference clearSearchPreference(String pToken, int pIdSearchPreference) throws RemoteException;
 
     /**
-     * Method to extract the list references to the Cultural Heritage Visited by a
-     * tourist
+     * Method to extract the Cultural Heritage Visited by the tourist of a session
      *
-     * @Param pIdTourist Identifier Tourist
+     * @Param pToken token of the session of the tourist
      * @Return list of references to the Cultural Heritage Visited
+     * @Throws RemoteException if the session is not valid
      */
-    public BeanVisitBC[] getCulturalHeritageVisit(int pIdTourist) throws RemoteException;
+    public BeanVisitBC[] getCulturalHeritageVisit(String pToken) throws RemoteException;
 
     /**
-     * Method for the extraction of the list when making reference to Refreshments
-     * Visited by a tourist
+     * Method to extract the Cultural Heritage Visited by the tourist of a session, to be read in chunks
      *
-     * @Param pIdTourist Identifier Tourist
+     * @Param pToken token of the session of the tourist
+     * @Return cursor on the references to the Cultural Heritage Visited
+     * @Throws RemoteException if the session is not valid
+     */
+    public IRemoteCursor<BeanVisitBC> getCulturalHeritageVisitCursor(String pToken) throws RemoteException;
+
+    /**
+     * Method to extract the Refreshments Visited by the tourist of a session
+     *
+     * @Param pToken token of the session of the tourist
      * @Return list of references to Refreshments Visited
+     * @Throws RemoteException if the session is not valid
      */
-    public BeanVisitPR[] getRefreshmentPointVisit(int pIdTourist) throws RemoteException;
+    public BeanVisitPR[] getRefreshmentPointVisit(String pToken) throws RemoteException;
 
     /**
-     * Method for the insertion of a cultural Visited
+     * Method for the insertion of a cultural Visited by the tourist of a session
      *
+     * @Param pToken token of the session of the tourist
      * @Param pVisitBC package containing all information relating to Visit
      * @Return true if the item is added successfully, false otherwise
+     * @Throws RemoteException if the session is not valid
      */
-    public boolean insertCulturalHeritageVisit(BeanVisitBC pVisitBC) throws RemoteException;
+    public boolean insertCulturalHeritageVisit(String pToken, BeanVisitBC pVisitBC) throws RemoteException;
 
     /**
-     * Method for inserting a refreshment Visited
+     * Method for inserting a refreshment Visited by the tourist of a session
      *
+     * @Param pToken token of the session of the tourist
      * @Param pVisitPR package containing all information relating to Visit
      * @Return true if the item is added successfully, false otherwise
+     * @Throws RemoteException if the session is not valid
      */
-    public boolean insertRefreshmentPointVisit(BeanVisitPR pVisitPR) throws RemoteException;
+    public boolean insertRefreshmentPointVisit(String pToken, BeanVisitPR pVisitPR) throws RemoteException;
 
     /**
-     * Method for the insertion of a cultural object in the list of Favorites
+     * Method for the insertion of a cultural object in the Favorites of the tourist of a session
      *
-     * @Param pIdTourist Identifier Tourist
-     * @Param ID pIdCulturalHeritage of Cultural Heritage
+     * @Param pToken token of the session of the tourist
+     * @Param pIdCulturalHeritage ID of Cultural Heritage
      * @Return true if the insertion is successful, false otherwise
+     * @Throws RemoteException if the session is not valid
      */
-    public boolean insertCulturalHeritagePreference(int pIdTourist, int pIdCulturalHeritage) throws RemoteException;
+    public boolean insertCulturalHeritagePreference(String pToken, int pIdCulturalHeritage) throws RemoteException;
 
     /**
-     * Method for inserting a refreshment to my Favorites
+     * Method for inserting a refreshment in the Favorites of the tourist of a session
      *
-     * @Param pIdTourist Identifier Tourist
+     * @Param pToken token of the session of the tourist
      * @Param pIdRefreshmentPoint point identification Refreshment
      * @Return true if the insertion is successful, false otherwise
+     * @Throws RemoteException if the session is not valid
      */
-    public boolean insertRefreshmentPointPreference(int pIdTourist, int pIdRefreshmentPoint) throws RemoteException;
+    public boolean insertRefreshmentPointPreference(String pToken, int pIdRefreshmentPoint) throws RemoteException;
 
     /**
-     * Method for the clearing of a cultural object from the list of Favorites
+     * Method for the clearing of a cultural object from the Favorites of the tourist of a session
      *
-     * @Param pIdTourist Identifier Tourist
-     * @Param ID pIdCulturalHeritage of Cultural Heritage
+     * @Param pToken token of the session of the tourist
+     * @Param pIdCulturalHeritage ID of Cultural Heritage
      * @Return true if the clearing is successful, false otherwise
-     * @Throws RemoteException Exception Remote
+     * @Throws RemoteException if the session is not valid
      */
-    public boolean clearCulturalHeritagePreference(int pIdTourist, int pIdCulturalHeritage) throws RemoteException;
+    public boolean clearCulturalHeritagePreference(String pToken, int pIdCulturalHeritage) throws RemoteException;
 
     /**
-     * Method for deleting a refreshment from the list of Favorites
+     * Method for deleting a refreshment from the Favorites of the tourist of a session
      *
-     * @Param pIdTourist Identifier Tourist
+     * @Param pToken token of the session of the tourist
      * @Param pIdRefreshmentPoint point identification Refreshment
      * @Return true if the clearing is successful, false otherwise
+     * @Throws RemoteException if the session is not valid
      */
-    public boolean clearRefreshmentPointPreference(int pIdTourist, int pIdRefreshmentPoint) throws RemoteException;
+    public boolean clearRefreshmentPointPreference(String pToken, int pIdRefreshmentPoint) throws RemoteException;
 
     /**
-     * Method to extract the list of Cultural Heritage Favorites
+     * Method to extract the Cultural Heritage Favorites of the tourist of a session
      *
-     * @Param pIdTourist Identifier Tourist
+     * @Param pToken token of the session of the tourist
      * @Return List of Cultural Heritage Favorites
+     * @Throws RemoteException if the session is not valid
      */
-    public BeanCulturalHeritage[] getCulturalHeritagePreference(int pIdTourist) throws RemoteException;
+    public BeanCulturalHeritage[] getCulturalHeritagePreference(String pToken) throws RemoteException;
 
     /**
-     * Method to extract the list of Refreshments
+     * Method to extract the Refreshments Favorites of the tourist of a session
      *
-     * @Param pIdTourist Identifier Tourist
+     * @Param pToken token of the session of the tourist
      * @Return list of eateries Favorites
+     * @Throws RemoteException if the session is not valid
+     */
+    public BeanRefreshmentPoint[] getRefreshmentPointPreference(String pToken) throws RemoteException;
+
+    /**
+     * Method to extract the home of the tourist of a session
+     *
+     * @Param pToken token of the session of the tourist
+     * @Return home of the tourist
+     * @Throws RemoteException if the session is not valid
      */
-    public BeanRefreshmentPoint[] getRefreshmentPointPreference(int pIdTourist) throws RemoteException;
+    public BeanTouristHome getTouristHome(String pToken) throws RemoteException;
 
 }
@@ -0,0 +1,111 @@
+package unisa.gps.etour.control.test;
+
+/**
+ * Histogram of latencies in microseconds, with a bucket for each microsecond
+ * up to 64 and then 32 buckets for each power of two, so a recorded value is
+ * kept with an error within 3%. Not thread safe: each thread records in its
+ * own histogram, merged at the end.
+ *
+ */
+public class LatencyHistogram {
+    private static final int LINEAR = 64;
+    private static final int SUB_BUCKETS = 32;
+// Up to 2^45 microseconds, about a year
+    private static final int BUCKETS = LINEAR + 40 * SUB_BUCKETS;
+
+    private final long[] counts;
+    private long count;
+    private long max;
+
+    /**
+     * Empty constructor, creates an empty histogram
+     */
+    public LatencyHistogram() {
+        counts = new long[BUCKETS];
+    }
+
+    /**
+     * Records a latency
+     *
+     * @Param pMicros latency in microseconds
+     */
+    public void record(long pMicros) {
+        long value = Math.max(0, pMicros);
+        counts[Math.min(index(value), BUCKETS - 1)]++;
+        count++;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Adds the latencies of another histogram to this one
+     *
+     * @Param pOther histogram to add
+     */
+    public void merge(LatencyHistogram pOther) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += pOther.counts[i];
+        }
+        count += pOther.count;
+        max = Math.max(max, pOther.max);
+    }
+
+    /**
+     * Returns the number of latencies recorded
+     *
+     * @Return number of latencies
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the highest latency recorded
+     *
+     * @Return latency in microseconds
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns a percentile of the latencies recorded
+     *
+     * @Param pPercentile percentile between 0 and 100
+     * @Return upper bound of the bucket of the percentile, in microseconds; 0
+     *         if the histogram is empty
+     */
+    public long getPercentile(double pPercentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * pPercentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    private static int index(long pValue) {
+        if (pValue < LINEAR) {
+            return (int) pValue;
+        }
+// The shift leaves the value between SUB_BUCKETS and 2 * SUB_BUCKETS - 1
+        int shift = 63 - Long.numberOfLeadingZeros(pValue) - 5;
+        return LINEAR + (shift - 1) * SUB_BUCKETS + (int) ((pValue >> shift) - SUB_BUCKETS);
+    }
+
+    private static long upperBound(int pIndex) {
+        if (pIndex < LINEAR) {
+            return pIndex;
+        }
+        int shift = (pIndex - LINEAR) / SUB_BUCKETS + 1;
+        long lower = ((long) ((pIndex - LINEAR) % SUB_BUCKETS + SUB_BUCKETS)) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,495 @@
+/**
+ * Synthetic load on the managers of the eTour server
+ *
+ *  2007 eTour Project - Copyright by DMI SE @ SA Lab - University of Salerno
+ */
+package unisa.gps.etour.control.test;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.swing.ImageIcon;
+
+import unisa.gps.etour.bean.BeanBanner;
+import unisa.gps.etour.bean.BeanConvention;
+import unisa.gps.etour.bean.BeanCulturalHeritage;
+import unisa.gps.etour.bean.BeanRefreshmentPoint;
+import unisa.gps.etour.bean.BeanTag;
+import unisa.gps.etour.bean.BeanTourist;
+import unisa.gps.etour.bean.BeanVisitBC;
+import unisa.gps.etour.control.AdvertisementManager.AdvertisementRefreshmentPointManager;
+import unisa.gps.etour.control.CulturalHeritageManager.CulturalHeritageAgencyManager;
+import unisa.gps.etour.control.CulturalHeritageManager.CulturalHeritageCommonManager;
+import unisa.gps.etour.control.RegisteredUserManager.Authentication;
+import unisa.gps.etour.control.RegisteredUserManager.IAuthentication;
+import unisa.gps.etour.control.RegisteredUserManager.SessionManager;
+import unisa.gps.etour.control.RegisteredUserManager.TouristClientManager;
+import unisa.gps.etour.control.SearchManager.Search;
+import unisa.gps.etour.repository.ConventionRegistry;
+import unisa.gps.etour.repository.CulturalHeritageCatalog;
+import unisa.gps.etour.util.GlobalConstants;
+import unisa.gps.etour.util.Point3D;
+
+/**
+ * Runs the managers of the server in process, on repositories in memory, and
+ * loads them with simulated users: tourists that log in, search, read some
+ * pages of results, open a site with its feedback and statistics, leave a
+ * visit and log out; operators that edit the cultural heritage; operators of
+ * refreshment points that insert, read and remove banners. Each user is a
+ * thread that repeats its session until the end of the run.
+ *
+ * After a warm up, prints for every scenario and step the operations per
+ * second, the 50th, 90th and 99th percentile and the highest latency, the
+ * errors and the bytes allocated per second by the threads of the scenario.
+ * The banners are written under GlobalConstants.SERVER_IMAGE_PATH.
+ *
+ * Usage: java unisa.gps.etour.control.test.LoadGenerator [tourists]
+ * [operators] [seconds] [sites] [warm up seconds]
+ */
+public class LoadGenerator {
+    private static final String[] CITIES = { "Salerno", "Naples", "Avellino", "Caserta", "Benevento" };
+    private static final String[] PROVINCES = { "SA", "NA", "AV", "CE", "BN" };
+    private static final String[] WORDS = { "castle", "church", "museum", "tower", "garden", "villa", "theatre",
+            "cathedral", "abbey", "palace", "temple", "bridge", "fountain", "library", "monastery", "square" };
+    private static final int TAGS = 10;
+// Search radius in kilometers and results per page
+    private static final double RADIUS = 5;
+    private static final int PER_PAGE = 10;
+    private static final int PAGES = 3;
+    private static final int MAX_BANNER = 3;
+
+    private static volatile boolean recording;
+    private static volatile boolean stopped;
+
+    /**
+     * Simulated user: repeats a session and records the latency of each step
+     */
+    private abstract static class Worker extends Thread {
+        private final String scenario;
+        private final Map<String, LatencyHistogram> steps;
+        private final Map<String, long[]> errors;
+        private String step;
+        private long sessions;
+        protected final Random random;
+
+        private Worker(String pScenario, int pSeed, String[] pSteps) {
+            super(pScenario + "-" + pSeed);
+            scenario = pScenario;
+            steps = new LinkedHashMap<String, LatencyHistogram>();
+            errors = new HashMap<String, long[]>();
+            for (String name : pSteps) {
+                steps.put(name, new LatencyHistogram());
+                errors.put(name, new long[1]);
+            }
+            random = new Random(pSeed);
+        }
+
+        public void run() {
+            while (!stopped) {
+                try {
+                    session();
+                    if (recording) {
+                        sessions++;
+                    }
+                } catch (Exception e) {
+                    if (recording) {
+                        errors.get(step)[0]++;
+                    }
+                }
+            }
+        }
+
+        /**
+         * One session of the user
+         */
+        protected abstract void session() throws Exception;
+
+        /**
+         * Starts a step of the session
+         *
+         * @Param pStep name of the step
+         * @Return start time of the step
+         */
+        protected long begin(String pStep) {
+            step = pStep;
+            return System.nanoTime();
+        }
+
+        /**
+         * Ends the current step of the session
+         *
+         * @Param pStart start time of the step
+         */
+        protected void end(long pStart) {
+            long micros = (System.nanoTime() - pStart) / 1000;
+            if (recording) {
+                steps.get(step).record(micros);
+            }
+        }
+
+        /**
+         * Fails the current step if a manager did not give the expected
+         * result
+         */
+        protected void check(boolean pCondition) {
+            if (!pCondition) {
+                throw new IllegalStateException(step);
+            }
+        }
+    }
+
+    /**
+     * Tourist: log in, search, pages, site, visit, log out
+     */
+    private static class TouristWorker extends Worker {
+        private final Authentication authentication;
+        private final Search search;
+        private final CulturalHeritageCommonManager culturalHeritage;
+        private final TouristClientManager client;
+        private final BeanTourist tourist;
+        private final List<BeanCulturalHeritage> sites;
+
+        private TouristWorker(int pSeed, Authentication pAuthentication, Search pSearch,
+                CulturalHeritageCommonManager pCulturalHeritage, TouristClientManager pClient, BeanTourist pTourist,
+                List<BeanCulturalHeritage> pSites) {
+            super("tourist", pSeed, new String[] { "login", "search", "page", "site", "visit", "logout" });
+            authentication = pAuthentication;
+            search = pSearch;
+            culturalHeritage = pCulturalHeritage;
+            client = pClient;
+            tourist = pTourist;
+            sites = pSites;
+        }
+
+        protected void session() throws Exception {
+            long start = begin("login");
+            String token = authentication.openSession(tourist.getUserName(), tourist.getPassword(),
+                    IAuthentication.VISITORS);
+            check(token != null);
+            int idTourist = authentication.checkSession(token);
+            check(idTourist == tourist.getId());
+            end(start);
+
+// The tourist searches around a site, with one of the words of the
+// Descriptions
+            Point3D position = sites.get(random.nextInt(sites.size())).getPosition();
+            String keyword = WORDS[random.nextInt(WORDS.length)];
+            start = begin("search");
+            check(search.search(idTourist, keyword, null, RADIUS, PER_PAGE, position, (byte) 0) >= 0);
+            end(start);
+
+            BeanCulturalHeritage site = null;
+            int pages = Math.min(PAGES, search.getSearchPageNumber());
+            for (int i = 0; i < pages; i++) {
+                start = begin("page");
+                BeanCulturalHeritage[] page = search.getPageResultCulturalHeritage(i);
+                check(page != null);
+                end(start);
+                if (i == 0 && page.length > 0) {
+                    site = page[random.nextInt(page.length)];
+                }
+            }
+
+            if (site != null) {
+                start = begin("site");
+                check(culturalHeritage.getCulturalHeritage(site.getId()) != null);
+                check(culturalHeritage.getFeedbackCulturalHeritage(site.getId()) != null);
+                check(culturalHeritage.getStatisticCulturalHeritage(site.getId()).size() == 5);
+                end(start);
+
+// A second visit to the same site is refused, as in the database
+                start = begin("visit");
+                client.insertCulturalHeritageVisit(new BeanVisitBC(1 + random.nextInt(5), site.getId(),
+                        "Visited by " + tourist.getUserName(), idTourist, new Date()));
+                end(start);
+            }
+
+            start = begin("logout");
+            check(authentication.logout(token));
+            end(start);
+        }
+    }
+
+    /**
+     * Operator of the agency: opens a cultural good and modifies it
+     */
+    private static class SiteWorker extends Worker {
+        private final CulturalHeritageAgencyManager agency;
+        private final int sites;
+
+        private SiteWorker(int pSeed, CulturalHeritageAgencyManager pAgency, int pSites) {
+            super("operator-site", pSeed, new String[] { "open", "modify" });
+            agency = pAgency;
+            sites = pSites;
+        }
+
+        protected void session() throws Exception {
+            long start = begin("open");
+            BeanCulturalHeritage good = agency.getCulturalHeritage(1 + random.nextInt(sites));
+            check(good != null);
+            end(start);
+
+            good.setDescription("A " + WORDS[random.nextInt(WORDS.length)] + " of " + good.getCity()
+                    + ", revised");
+            start = begin("modify");
+            check(agency.modifyCulturalHeritage(good));
+            end(start);
+        }
+    }
+
+    /**
+     * Operator of a refreshment point: inserts a banner, reads the banners
+     * and removes them
+     */
+    private static class BannerWorker extends Worker {
+        private final AdvertisementRefreshmentPointManager advertisement;
+        private final int idRefreshmentPoint;
+        private final ImageIcon image;
+
+        private BannerWorker(int pSeed, AdvertisementRefreshmentPointManager pAdvertisement,
+                int pIdRefreshmentPoint) {
+            super("operator-banner", pSeed, new String[] { "insert", "banners", "clear" });
+            advertisement = pAdvertisement;
+            idRefreshmentPoint = pIdRefreshmentPoint;
+            BufferedImage buffer = new BufferedImage(120, 40, BufferedImage.TYPE_INT_RGB);
+            Graphics graphics = buffer.getGraphics();
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.fillRect(0, 0, 120, 40);
+            graphics.dispose();
+            image = new ImageIcon(buffer);
+        }
+
+        protected void session() throws Exception {
+            long start = begin("insert");
+            check(advertisement.insertBanner(idRefreshmentPoint, image));
+            end(start);
+
+            start = begin("banners");
+            HashMap<BeanBanner, ImageIcon> banners = advertisement.getBannersID(idRefreshmentPoint);
+            check(!banners.isEmpty());
+            end(start);
+
+            start = begin("clear");
+            for (BeanBanner banner : banners.keySet()) {
+                check(advertisement.clearBanner(banner.getId()));
+            }
+            end(start);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int tourists = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int operators = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int sites = args.length > 3 ? Integer.parseInt(args[3]) : 20000;
+        int warmUp = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+        Random random = new Random(1);
+
+// Repositories
+        MemoryTourist dbTourist = new MemoryTourist();
+        MemoryTag dbTag = new MemoryTag();
+        MemoryVisit dbVisit = new MemoryVisit();
+        MemoryPreference dbPreference = new MemoryPreference();
+        MemoryBanner dbBanner = new MemoryBanner();
+        MemoryRefreshmentPoint dbRefreshmentPoint = new MemoryRefreshmentPoint();
+        CulturalHeritageCatalog dbCulturalHeritage = new CulturalHeritageCatalog();
+        for (int i = 1; i <= TAGS; i++) {
+            dbTag.insertTag(new BeanTag(i, WORDS[i], "Sites with a " + WORDS[i]));
+        }
+        List<BeanCulturalHeritage> goods = new ArrayList<BeanCulturalHeritage>(sites);
+        for (int i = 1; i <= sites; i++) {
+            BeanCulturalHeritage good = culturalHeritage(i, random);
+            dbCulturalHeritage.insertCulturalHeritage(good);
+            dbCulturalHeritage.addTagCulturalHeritage(i, 1 + random.nextInt(TAGS));
+            goods.add(good);
+        }
+        List<BeanTourist> accounts = new ArrayList<BeanTourist>(tourists);
+        for (int i = 1; i <= tourists; i++) {
+            int city = random.nextInt(CITIES.length);
+            BeanTourist tourist = new BeanTourist(i, "tourist" + i, "Name" + i, "Surname" + i, CITIES[city],
+                    CITIES[city], "089" + random.nextInt(1000000), "8410" + city, "Street " + i, PROVINCES[city],
+                    "tourist" + i + "@etour.it", "password" + i, new Date(), new Date(), true);
+            dbTourist.insertTourist(tourist);
+            accounts.add(tourist);
+        }
+// One refreshment point with an active convention for each operator
+        List<BeanConvention> conventions = new ArrayList<BeanConvention>(operators);
+        for (int i = 1; i <= operators; i++) {
+            dbRefreshmentPoint.insertRefreshmentPoint(refreshmentPoint(i, random));
+            conventions.add(new BeanConvention(i, MAX_BANNER, new Date(System.currentTimeMillis() - 86400000L),
+                    new Date(System.currentTimeMillis() + 86400000L), 100, true, i));
+        }
+        ConventionRegistry.getInstance().preload(conventions, dbRefreshmentPoint.getListPR());
+        new File(GlobalConstants.SERVER_IMAGE_PATH).mkdirs();
+
+// Managers
+        Authentication authentication = new Authentication(new SessionManager(dbTourist));
+        CulturalHeritageCommonManager common = new CulturalHeritageCommonManager(dbCulturalHeritage, dbTag,
+                dbVisit, dbTourist);
+        CulturalHeritageAgencyManager agency = new CulturalHeritageAgencyManager(dbCulturalHeritage, dbTag,
+                dbVisit, dbTourist);
+        TouristClientManager client = new TouristClientManager(dbTourist, dbPreference, dbPreference, dbVisit,
+                dbVisit, dbCulturalHeritage, dbRefreshmentPoint);
+        AdvertisementRefreshmentPointManager advertisement = new AdvertisementRefreshmentPointManager(dbBanner);
+        List<UnicastRemoteObject> managers = new ArrayList<UnicastRemoteObject>();
+        managers.add(authentication);
+        managers.add(common);
+        managers.add(agency);
+        managers.add(client);
+        managers.add(advertisement);
+
+// Users; the search keeps the results of the last search, so every
+// Tourist has its own
+        List<Worker> workers = new ArrayList<Worker>();
+        for (int i = 0; i < tourists; i++) {
+            Search search = new Search(dbCulturalHeritage, dbRefreshmentPoint, dbTag);
+            managers.add(search);
+            workers.add(new TouristWorker(i, authentication, search, common, client, accounts.get(i), goods));
+        }
+        for (int i = 0; i < operators; i++) {
+            workers.add(new SiteWorker(tourists + i, agency, sites));
+            workers.add(new BannerWorker(tourists + operators + i, advertisement, i + 1));
+        }
+
+        System.out.println(tourists + " tourists, " + operators + " operators, " + sites + " cultural heritage, "
+                + warmUp + " s of warm up, " + seconds + " s of load");
+        for (Worker worker : workers) {
+            worker.start();
+        }
+        Thread.sleep(warmUp * 1000L);
+        long[] allocated = new long[workers.size()];
+        for (int i = 0; i < workers.size(); i++) {
+            allocated[i] = allocatedBytes(workers.get(i));
+        }
+        long start = System.nanoTime();
+        recording = true;
+        Thread.sleep(seconds * 1000L);
+        recording = false;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        for (int i = 0; i < workers.size(); i++) {
+            long end = allocatedBytes(workers.get(i));
+            allocated[i] = allocated[i] < 0 || end < 0 ? -1 : end - allocated[i];
+        }
+        stopped = true;
+        for (Worker worker : workers) {
+            worker.join();
+        }
+
+        report("tourist", workers, allocated, elapsed);
+        report("operator-site", workers, allocated, elapsed);
+        report("operator-banner", workers, allocated, elapsed);
+
+        for (UnicastRemoteObject manager : managers) {
+            UnicastRemoteObject.unexportObject(manager, true);
+        }
+        ConventionRegistry.getInstance().stop();
+    }
+
+    /**
+     * Prints the results of a scenario
+     */
+    private static void report(String pScenario, List<Worker> pWorkers, long[] pAllocated, double pElapsed) {
+        Map<String, LatencyHistogram> steps = new LinkedHashMap<String, LatencyHistogram>();
+        Map<String, Long> errors = new HashMap<String, Long>();
+        long sessions = 0;
+        long allocated = 0;
+        int threads = 0;
+        for (int i = 0; i < pWorkers.size(); i++) {
+            Worker worker = pWorkers.get(i);
+            if (!worker.scenario.equals(pScenario)) {
+                continue;
+            }
+            threads++;
+            sessions += worker.sessions;
+            allocated = allocated < 0 || pAllocated[i] < 0 ? -1 : allocated + pAllocated[i];
+            for (Map.Entry<String, LatencyHistogram> entry : worker.steps.entrySet()) {
+                LatencyHistogram histogram = steps.get(entry.getKey());
+                if (histogram == null) {
+                    histogram = new LatencyHistogram();
+                    steps.put(entry.getKey(), histogram);
+                }
+                histogram.merge(entry.getValue());
+            }
+            for (Map.Entry<String, long[]> entry : worker.errors.entrySet()) {
+                Long count = errors.get(entry.getKey());
+                errors.put(entry.getKey(), (count == null ? 0 : count.longValue()) + entry.getValue()[0]);
+            }
+        }
+        if (threads == 0) {
+            return;
+        }
+        System.out.println();
+        System.out.println(pScenario + ": " + threads + " threads, " + sessions + " sessions, "
+                + format(sessions / pElapsed) + " sessions/s, "
+                + (allocated < 0 ? "allocation not available" : format(allocated / pElapsed / 1048576)
+                        + " MB/s allocated, " + (sessions == 0 ? 0 : allocated / sessions / 1024) + " KB/session"));
+        System.out.println(pad("step", 10) + pad("ops", 10) + pad("ops/s", 10) + pad("p50 us", 10)
+                + pad("p90 us", 10) + pad("p99 us", 10) + pad("max us", 10) + pad("errors", 10));
+        for (Map.Entry<String, LatencyHistogram> entry : steps.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            Long count = errors.get(entry.getKey());
+            System.out.println(pad(entry.getKey(), 10) + pad(String.valueOf(histogram.getCount()), 10)
+                    + pad(format(histogram.getCount() / pElapsed), 10)
+                    + pad(String.valueOf(histogram.getPercentile(50)), 10)
+                    + pad(String.valueOf(histogram.getPercentile(90)), 10)
+                    + pad(String.valueOf(histogram.getPercentile(99)), 10)
+                    + pad(String.valueOf(histogram.getMax()), 10)
+                    + pad(String.valueOf(count == null ? 0 : count.longValue()), 10));
+        }
+    }
+
+    /**
+     * Returns the bytes allocated by a thread, -1 if the virtual machine does
+     * not measure them
+     */
+    private static long allocatedBytes(Thread pThread) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(pThread.getId());
+        }
+        return -1;
+    }
+
+    private static BeanCulturalHeritage culturalHeritage(int pId, Random pRandom) {
+        int city = pRandom.nextInt(CITIES.length);
+        String word = WORDS[pRandom.nextInt(WORDS.length)];
+        return new BeanCulturalHeritage(pId, pRandom.nextInt(500), "The " + word + " " + pId, CITIES[city], "089"
+                + pRandom.nextInt(1000000), "A " + word + " and a " + WORDS[pRandom.nextInt(WORDS.length)] + " of "
+                + CITIES[city], CITIES[city], "Street " + pId, "8410" + city, PROVINCES[city], new Point3D(0.7
+                + pRandom.nextDouble() / 100, 0.25 + pRandom.nextDouble() / 100, pRandom.nextInt(500)), new Date(),
+                new Date(), "Monday", pRandom.nextInt(20), pRandom.nextInt(50) / 10.0);
+    }
+
+    private static BeanRefreshmentPoint refreshmentPoint(int pId, Random pRandom) {
+        int city = pRandom.nextInt(CITIES.length);
+        return new BeanRefreshmentPoint(pId, pRandom.nextInt(500), pRandom.nextInt(50) / 10.0, "Refreshment point "
+                + pId, "Typical food of " + CITIES[city], "089" + pRandom.nextInt(1000000), CITIES[city],
+                CITIES[city], "Street " + pId, "8410" + city, PROVINCES[city], "IT" + pRandom.nextInt(100000000),
+                new Point3D(0.7 + pRandom.nextDouble() / 100, 0.25 + pRandom.nextDouble() / 100, pRandom
+                        .nextInt(500)), new Date(), new Date(), "Monday");
+    }
+
+    private static String format(double pValue) {
+        return String.valueOf(Math.round(pValue * 10) / 10.0);
+    }
+
+    private static String pad(String pText, int pWidth) {
+        StringBuilder builder = new StringBuilder(pText);
+        while (builder.length() < pWidth) {
+            builder.append(' ');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package unisa.gps.etour.control.test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import unisa.gps.etour.bean.BeanBanner;
+import unisa.gps.etour.repository.IDBBanner;
+
+/**
+ * Banners in memory, in place of the database. As the database does, the
+ * banner inserted receives the next id.
+ *
+ */
+public class MemoryBanner implements IDBBanner {
+    private final Map<Integer, BeanBanner> banners = new ConcurrentHashMap<Integer, BeanBanner>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    public boolean insertBanner(BeanBanner pBanner) throws SQLException {
+        pBanner.setId(nextId.getAndIncrement());
+        banners.put(pBanner.getId(), pBanner);
+        return true;
+    }
+
+    public boolean modifyBanner(BeanBanner pBanner) throws SQLException {
+        if (!banners.containsKey(pBanner.getId())) {
+            return false;
+        }
+        banners.put(pBanner.getId(), pBanner);
+        return true;
+    }
+
+    public boolean clearBanner(int pIdBanner) throws SQLException {
+        return banners.remove(pIdBanner) != null;
+    }
+
+    public ArrayList<BeanBanner> getBanner(int pIdRefreshmentPoint) throws SQLException {
+        ArrayList<BeanBanner> list = new ArrayList<BeanBanner>();
+        for (BeanBanner banner : banners.values()) {
+            if (banner.getIdRefreshmentPoint() == pIdRefreshmentPoint) {
+                list.add(banner);
+            }
+        }
+        return list;
+    }
+
+    public BeanBanner getBannerDaID(int pIdBanner) throws SQLException {
+        return banners.get(pIdBanner);
+    }
+}
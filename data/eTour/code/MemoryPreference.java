@@ -0,0 +1,122 @@
+package unisa.gps.etour.control.test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import unisa.gps.etour.bean.BeanGenericPreference;
+import unisa.gps.etour.bean.BeanSearchPreference;
+import unisa.gps.etour.repository.IDBGenericPreference;
+import unisa.gps.etour.repository.IDBSearchPreference;
+
+/**
+ * General and search preferences in memory, in place of the database.
+ *
+ */
+public class MemoryPreference implements IDBGenericPreference, IDBSearchPreference {
+    private final Map<Integer, BeanGenericPreference> generic = new ConcurrentHashMap<Integer, BeanGenericPreference>();
+    private final Map<Integer, BeanSearchPreference> search = new ConcurrentHashMap<Integer, BeanSearchPreference>();
+    private final Map<Integer, Set<Integer>> tourists = new ConcurrentHashMap<Integer, Set<Integer>>();
+    private final Map<Integer, Set<Integer>> culturalHeritage = new ConcurrentHashMap<Integer, Set<Integer>>();
+    private final Map<Integer, Set<Integer>> refreshmentPoints = new ConcurrentHashMap<Integer, Set<Integer>>();
+
+    public boolean insertGenericPreference(BeanGenericPreference pPreference) throws SQLException {
+        return generic.put(pPreference.getIdTourist(), pPreference) == null;
+    }
+
+    public boolean modifyGenericPreference(BeanGenericPreference pPreference) throws SQLException {
+        if (!generic.containsKey(pPreference.getIdTourist())) {
+            return false;
+        }
+        generic.put(pPreference.getIdTourist(), pPreference);
+        return true;
+    }
+
+    public boolean clearGenericPreference(int pIdPreference) throws SQLException {
+        for (BeanGenericPreference preference : generic.values()) {
+            if (preference.getId() == pIdPreference) {
+                return generic.remove(preference.getIdTourist()) != null;
+            }
+        }
+        return false;
+    }
+
+    public BeanGenericPreference getGenericPreference(int pIdTourist) throws SQLException {
+        return generic.get(pIdTourist);
+    }
+
+    public boolean insertSearchPreference(BeanSearchPreference pPreference) throws SQLException {
+        return search.put(pPreference.getId(), pPreference) == null;
+    }
+
+    public boolean clearSearchPreference(int pIdPreference) throws SQLException {
+        return search.remove(pIdPreference) != null;
+    }
+
+    public ArrayList<BeanSearchPreference> getSearchPreferenceDelTourist(int pIdTourist) throws SQLException {
+        return beans(idsOf(tourists, pIdTourist));
+    }
+
+    public ArrayList<BeanSearchPreference> getSearchPreferenceDelBC(int pIdCulturalHeritage) throws SQLException {
+        return beans(idsOf(culturalHeritage, pIdCulturalHeritage));
+    }
+
+    public ArrayList<BeanSearchPreference> getSearchPreferenceDelPR(int pIdRefreshmentPoint) throws SQLException {
+        return beans(idsOf(refreshmentPoints, pIdRefreshmentPoint));
+    }
+
+    public boolean insertSearchPreferenceDelBC(int pIdCulturalHeritage, int pIdSearchPreference)
+            throws SQLException {
+        return search.containsKey(pIdSearchPreference)
+                && idsOf(culturalHeritage, pIdCulturalHeritage).add(pIdSearchPreference);
+    }
+
+    public boolean insertSearchPreferenceDelTourist(int pIdTourist, int pIdSearchPreference) throws SQLException {
+        return search.containsKey(pIdSearchPreference) && idsOf(tourists, pIdTourist).add(pIdSearchPreference);
+    }
+
+    public boolean insertSearchPreferenceDelPR(int pIdRefreshmentPoint, int pIdSearchPreference)
+            throws SQLException {
+        return search.containsKey(pIdSearchPreference)
+                && idsOf(refreshmentPoints, pIdRefreshmentPoint).add(pIdSearchPreference);
+    }
+
+    public boolean clearSearchPreferenceTourist(int pIdTourist, int pIdPreference) throws SQLException {
+        return idsOf(tourists, pIdTourist).remove(pIdPreference);
+    }
+
+    public boolean clearSearchPreferenceBC(int pIdCulturalHeritage, int pIdSearchPreference) throws SQLException {
+        return idsOf(culturalHeritage, pIdCulturalHeritage).remove(pIdSearchPreference);
+    }
+
+    public boolean clearSearchPreferencePR(int pIdRefreshmentPoint, int pIdPreference) throws SQLException {
+        return idsOf(refreshmentPoints, pIdRefreshmentPoint).remove(pIdPreference);
+    }
+
+    public ArrayList<BeanSearchPreference> getSearchPreference() throws SQLException {
+        return new ArrayList<BeanSearchPreference>(search.values());
+    }
+
+    private ArrayList<BeanSearchPreference> beans(Set<Integer> pIds) {
+        ArrayList<BeanSearchPreference> list = new ArrayList<BeanSearchPreference>(pIds.size());
+        for (Integer id : pIds) {
+            BeanSearchPreference preference = search.get(id);
+            if (preference != null) {
+                list.add(preference);
+            }
+        }
+        return list;
+    }
+
+    private static synchronized Set<Integer> idsOf(Map<Integer, Set<Integer>> pIds, int pId) {
+        Set<Integer> set = pIds.get(pId);
+        if (set == null) {
+            set = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+            pIds.put(pId, set);
+        }
+        return set;
+    }
+}
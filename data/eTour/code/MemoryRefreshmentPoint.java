@@ -0,0 +1,134 @@
+package unisa.gps.etour.control.test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import unisa.gps.etour.bean.BeanRefreshmentPoint;
+import unisa.gps.etour.bean.BeanTag;
+import unisa.gps.etour.repository.FullTextIndex;
+import unisa.gps.etour.repository.IDBRefreshmentPoint;
+import unisa.gps.etour.util.Point3D;
+
+/**
+ * Refreshment points in memory, in place of the database. A search scans all
+ * the points, keeping those within the distance whose name or description
+ * contains the keyword; the tags are not considered.
+ *
+ */
+public class MemoryRefreshmentPoint implements IDBRefreshmentPoint {
+    private final Map<Integer, BeanRefreshmentPoint> points = new ConcurrentHashMap<Integer, BeanRefreshmentPoint>();
+    private final FullTextIndex text = new FullTextIndex();
+
+    public synchronized boolean insertRefreshmentPoint(BeanRefreshmentPoint pRefreshmentPoint) throws SQLException {
+        if (points.containsKey(pRefreshmentPoint.getId())) {
+            return false;
+        }
+        points.put(pRefreshmentPoint.getId(), pRefreshmentPoint);
+        text.put(pRefreshmentPoint.getId(), pRefreshmentPoint.getName(), pRefreshmentPoint.getDescription());
+        return true;
+    }
+
+    public synchronized boolean modifyRefreshmentPoint(BeanRefreshmentPoint pRefreshmentPoint) throws SQLException {
+        if (!points.containsKey(pRefreshmentPoint.getId())) {
+            return false;
+        }
+        points.put(pRefreshmentPoint.getId(), pRefreshmentPoint);
+        text.put(pRefreshmentPoint.getId(), pRefreshmentPoint.getName(), pRefreshmentPoint.getDescription());
+        return true;
+    }
+
+    public synchronized boolean clearRefreshmentPoint(int pIdRefreshmentPoint) throws SQLException {
+        text.remove(pIdRefreshmentPoint);
+        return points.remove(pIdRefreshmentPoint) != null;
+    }
+
+    public BeanRefreshmentPoint getRefreshmentPoint(int pId) throws SQLException {
+        return points.get(pId);
+    }
+
+    public ArrayList<BeanRefreshmentPoint> getRefreshmentPoints(Collection<Integer> pIds) throws SQLException {
+        ArrayList<BeanRefreshmentPoint> list = new ArrayList<BeanRefreshmentPoint>(pIds.size());
+        for (Integer id : pIds) {
+            BeanRefreshmentPoint point = points.get(id);
+            if (point != null) {
+                list.add(point);
+            }
+        }
+        return list;
+    }
+
+    public ArrayList<BeanRefreshmentPoint> searchAdvanced(int pIdTourist, String PKeyword, ArrayList<BeanTag> pTags,
+            int pNumberPage, int pNumberElementsPerPage, Point3D pPosition, double pMaxDistance)
+            throws SQLException {
+        return search(PKeyword, pTags, pNumberPage, pNumberElementsPerPage, pPosition, pMaxDistance);
+    }
+
+    public int getSearchResultNumberAdvanced(int pIdTourist, String PKeyword, ArrayList<BeanTag> pTags,
+            Point3D pPosition, double pMaxDistance) throws SQLException {
+        return getSearchResultNumber(PKeyword, pTags, pPosition, pMaxDistance);
+    }
+
+    public ArrayList<BeanRefreshmentPoint> search(String pKeyword, ArrayList<BeanTag> pTags, int pNumberPage,
+            int pNumberElementsPerPage, Point3D pPosition, double pMaxDistance) throws SQLException {
+        ArrayList<BeanRefreshmentPoint> matches = find(pKeyword, pPosition, pMaxDistance);
+        int from = Math.min(pNumberPage * pNumberElementsPerPage, matches.size());
+        int to = Math.min(from + pNumberElementsPerPage, matches.size());
+        return new ArrayList<BeanRefreshmentPoint>(matches.subList(from, to));
+    }
+
+    public int getSearchResultNumber(String pKeyword, ArrayList<BeanTag> pTags, Point3D pPosition,
+            double pMaxDistance) throws SQLException {
+        return find(pKeyword, pPosition, pMaxDistance).size();
+    }
+
+    public ArrayList<BeanRefreshmentPoint> getListPR() throws SQLException {
+        return new ArrayList<BeanRefreshmentPoint>(points.values());
+    }
+
+    public ArrayList<BeanRefreshmentPoint> getListPR(int pAfterId, int pMax) throws SQLException {
+        ArrayList<BeanRefreshmentPoint> list = new ArrayList<BeanRefreshmentPoint>();
+        for (BeanRefreshmentPoint point : points.values()) {
+            if (point.getId() > pAfterId) {
+                list.add(point);
+            }
+        }
+        Collections.sort(list, new Comparator<BeanRefreshmentPoint>() {
+            public int compare(BeanRefreshmentPoint p1, BeanRefreshmentPoint p2) {
+                return p1.getId() < p2.getId() ? -1 : (p1.getId() == p2.getId() ? 0 : 1);
+            }
+        });
+        return new ArrayList<BeanRefreshmentPoint>(list.subList(0, Math.min(pMax, list.size())));
+    }
+
+    public ArrayList<FullTextIndex.Hit> searchKeyword(String pKeyword) throws SQLException {
+        return text.query(pKeyword);
+    }
+
+    /**
+     * Returns the points matching a search, ordered by id
+     */
+    private ArrayList<BeanRefreshmentPoint> find(String pKeyword, Point3D pPosition, double pMaxDistance) {
+        String keyword = pKeyword == null ? "" : pKeyword.toLowerCase();
+        ArrayList<BeanRefreshmentPoint> matches = new ArrayList<BeanRefreshmentPoint>();
+        for (BeanRefreshmentPoint point : points.values()) {
+            if (point.getPosition() == null || point.getPosition().distance(pPosition) > pMaxDistance) {
+                continue;
+            }
+            if (keyword.length() == 0 || point.getName().toLowerCase().contains(keyword)
+                    || point.getDescription().toLowerCase().contains(keyword)) {
+                matches.add(point);
+            }
+        }
+        Collections.sort(matches, new Comparator<BeanRefreshmentPoint>() {
+            public int compare(BeanRefreshmentPoint p1, BeanRefreshmentPoint p2) {
+                return p1.getId() < p2.getId() ? -1 : (p1.getId() == p2.getId() ? 0 : 1);
+            }
+        });
+        return matches;
+    }
+}
@@ -0,0 +1,102 @@
+package unisa.gps.etour.control.test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import unisa.gps.etour.bean.BeanTag;
+import unisa.gps.etour.repository.IDBTag;
+
+/**
+ * Tags and their associations with the sites in memory, in place of the
+ * database.
+ *
+ */
+public class MemoryTag implements IDBTag {
+    private final Map<Integer, BeanTag> tags = new ConcurrentHashMap<Integer, BeanTag>();
+    private final Map<Integer, Set<Integer>> culturalHeritage = new ConcurrentHashMap<Integer, Set<Integer>>();
+    private final Map<Integer, Set<Integer>> refreshmentPoints = new ConcurrentHashMap<Integer, Set<Integer>>();
+
+    public boolean insertTag(BeanTag pTag) throws SQLException {
+        return tags.put(pTag.getId(), pTag) == null;
+    }
+
+    public boolean modifyTag(BeanTag pTag) throws SQLException {
+        if (!tags.containsKey(pTag.getId())) {
+            return false;
+        }
+        tags.put(pTag.getId(), pTag);
+        return true;
+    }
+
+    public boolean clearTag(int pIdTag) throws SQLException {
+        return tags.remove(pIdTag) != null;
+    }
+
+    public ArrayList<BeanTag> getListTag() throws SQLException {
+        return new ArrayList<BeanTag>(tags.values());
+    }
+
+    public ArrayList<BeanTag> getListTag(int pAfterId, int pMax) throws SQLException {
+        ArrayList<BeanTag> list = new ArrayList<BeanTag>();
+        for (BeanTag tag : new TreeMap<Integer, BeanTag>(tags).tailMap(pAfterId, false).values()) {
+            if (list.size() == pMax) {
+                break;
+            }
+            list.add(tag);
+        }
+        return list;
+    }
+
+    public BeanTag getTag(int pId) throws SQLException {
+        return tags.get(pId);
+    }
+
+    public boolean addTagCulturalHeritage(int pIdCulturalHeritage, int pIdTag) throws SQLException {
+        return tags.containsKey(pIdTag) && tagsOf(culturalHeritage, pIdCulturalHeritage).add(pIdTag);
+    }
+
+    public boolean addTagRefreshmentPoint(int pIdRefreshmentPoint, int pIdTag) throws SQLException {
+        return tags.containsKey(pIdTag) && tagsOf(refreshmentPoints, pIdRefreshmentPoint).add(pIdTag);
+    }
+
+    public ArrayList<BeanTag> getTagCulturalHeritage(int pIdCulturalHeritage) throws SQLException {
+        return beans(tagsOf(culturalHeritage, pIdCulturalHeritage));
+    }
+
+    public ArrayList<BeanTag> getTagRefreshmentPoint(int pIdRefreshmentPoint) throws SQLException {
+        return beans(tagsOf(refreshmentPoints, pIdRefreshmentPoint));
+    }
+
+    public boolean clearTagCulturalHeritage(int pIdCulturalHeritage, int pIdTag) throws SQLException {
+        return tagsOf(culturalHeritage, pIdCulturalHeritage).remove(pIdTag);
+    }
+
+    public boolean clearTagRefreshmentPoint(int pIdRefreshmentPoint, int pIdTag) throws SQLException {
+        return tagsOf(refreshmentPoints, pIdRefreshmentPoint).remove(pIdTag);
+    }
+
+    private ArrayList<BeanTag> beans(Set<Integer> pIds) {
+        ArrayList<BeanTag> list = new ArrayList<BeanTag>(pIds.size());
+        for (Integer id : pIds) {
+            BeanTag tag = tags.get(id);
+            if (tag != null) {
+                list.add(tag);
+            }
+        }
+        return list;
+    }
+
+    private static synchronized Set<Integer> tagsOf(Map<Integer, Set<Integer>> pTags, int pIdSite) {
+        Set<Integer> set = pTags.get(pIdSite);
+        if (set == null) {
+            set = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+            pTags.put(pIdSite, set);
+        }
+        return set;
+    }
+}
@@ -0,0 +1,115 @@
+package unisa.gps.etour.control.test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import unisa.gps.etour.bean.BeanTourist;
+import unisa.gps.etour.repository.IDBTourist;
+
+/**
+ * Tourists and their favorite sites in memory, in place of the database. The
+ * beans are kept as they are given.
+ *
+ */
+public class MemoryTourist implements IDBTourist {
+    private final Map<Integer, BeanTourist> tourists = new ConcurrentHashMap<Integer, BeanTourist>();
+    private final Map<String, BeanTourist> usernames = new ConcurrentHashMap<String, BeanTourist>();
+    private final Map<Integer, Set<Integer>> culturalHeritage = new ConcurrentHashMap<Integer, Set<Integer>>();
+    private final Map<Integer, Set<Integer>> refreshmentPoints = new ConcurrentHashMap<Integer, Set<Integer>>();
+
+    public synchronized boolean insertTourist(BeanTourist pTourist) throws SQLException {
+        if (tourists.containsKey(pTourist.getId()) || usernames.containsKey(pTourist.getUserName())) {
+            return false;
+        }
+        tourists.put(pTourist.getId(), pTourist);
+        usernames.put(pTourist.getUserName(), pTourist);
+        return true;
+    }
+
+    public synchronized boolean modifyTourist(BeanTourist pTourist) throws SQLException {
+        BeanTourist old = tourists.get(pTourist.getId());
+        if (old == null) {
+            return false;
+        }
+        usernames.remove(old.getUserName());
+        tourists.put(pTourist.getId(), pTourist);
+        usernames.put(pTourist.getUserName(), pTourist);
+        return true;
+    }
+
+    public synchronized boolean delete(int pIdTourist) throws SQLException {
+        BeanTourist old = tourists.remove(pIdTourist);
+        if (old == null) {
+            return false;
+        }
+        usernames.remove(old.getUserName());
+        culturalHeritage.remove(pIdTourist);
+        refreshmentPoints.remove(pIdTourist);
+        return true;
+    }
+
+    public BeanTourist getTourist(String pUsername) throws SQLException {
+        return usernames.get(pUsername);
+    }
+
+    public BeanTourist getTourist(int pIdTourist) throws SQLException {
+        return tourists.get(pIdTourist);
+    }
+
+    public ArrayList<BeanTourist> getTourists(String pUsernameTourist) throws SQLException {
+        ArrayList<BeanTourist> list = new ArrayList<BeanTourist>();
+        for (BeanTourist tourist : tourists.values()) {
+            if (tourist.getUserName().startsWith(pUsernameTourist)) {
+                list.add(tourist);
+            }
+        }
+        return list;
+    }
+
+    public ArrayList<BeanTourist> getTourist(boolean condition) throws SQLException {
+        ArrayList<BeanTourist> list = new ArrayList<BeanTourist>();
+        for (BeanTourist tourist : tourists.values()) {
+            if (tourist.isActive() == condition) {
+                list.add(tourist);
+            }
+        }
+        return list;
+    }
+
+    public boolean insertCulturalHeritagePreference(int pIdTourist, int pIdCulturalHeritage) throws SQLException {
+        return favorites(culturalHeritage, pIdTourist).add(pIdCulturalHeritage);
+    }
+
+    public boolean insertRefreshmentPointPreference(int pIdTourist, int pIdRefreshmentPoint) throws SQLException {
+        return favorites(refreshmentPoints, pIdTourist).add(pIdRefreshmentPoint);
+    }
+
+    public boolean clearCulturalHeritagePreference(int pIdTourist, int pIdCulturalHeritage) throws SQLException {
+        return favorites(culturalHeritage, pIdTourist).remove(pIdCulturalHeritage);
+    }
+
+    public boolean clearRefreshmentPointPreference(int pIdTourist, int pIdRefreshmentPoint) throws SQLException {
+        return favorites(refreshmentPoints, pIdTourist).remove(pIdRefreshmentPoint);
+    }
+
+    public ArrayList<Integer> getCulturalHeritagePreference(int pIdTourist) throws SQLException {
+        return new ArrayList<Integer>(favorites(culturalHeritage, pIdTourist));
+    }
+
+    public ArrayList<Integer> getRefreshmentPointPreference(int pIdTourist) throws SQLException {
+        return new ArrayList<Integer>(favorites(refreshmentPoints, pIdTourist));
+    }
+
+    private static synchronized Set<Integer> favorites(Map<Integer, Set<Integer>> pFavorites, int pIdTourist) {
+        Set<Integer> set = pFavorites.get(pIdTourist);
+        if (set == null) {
+            set = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+            pFavorites.put(pIdTourist, set);
+        }
+        return set;
+    }
+}
@@ -0,0 +1,125 @@
+package unisa.gps.etour.control.test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import unisa.gps.etour.bean.BeanVisitBC;
+import unisa.gps.etour.bean.BeanVisitPR;
+import unisa.gps.etour.repository.IDBVisitBC;
+import unisa.gps.etour.repository.IDBVisitPR;
+
+/**
+ * Visits to the cultural heritage and to the refreshment points in memory,
+ * in place of the database. As in the database a tourist visits a site once.
+ *
+ */
+public class MemoryVisit implements IDBVisitBC, IDBVisitPR {
+    private final Map<Integer, List<BeanVisitBC>> visitsBC = new ConcurrentHashMap<Integer, List<BeanVisitBC>>();
+    private final Map<Integer, List<BeanVisitBC>> touristsBC = new ConcurrentHashMap<Integer, List<BeanVisitBC>>();
+    private final Map<Integer, List<BeanVisitPR>> visitsPR = new ConcurrentHashMap<Integer, List<BeanVisitPR>>();
+    private final Map<Integer, List<BeanVisitPR>> touristsPR = new ConcurrentHashMap<Integer, List<BeanVisitPR>>();
+
+    public synchronized boolean insertVisitBC(BeanVisitBC pVisit) throws SQLException {
+        if (getVisitBC(pVisit.getIdCulturalHeritage(), pVisit.getIdTourist()) != null) {
+            return false;
+        }
+        listOf(visitsBC, pVisit.getIdCulturalHeritage()).add(pVisit);
+        listOf(touristsBC, pVisit.getIdTourist()).add(pVisit);
+        return true;
+    }
+
+    public synchronized boolean modifyVisitBC(BeanVisitBC pVisit) throws SQLException {
+        BeanVisitBC old = getVisitBC(pVisit.getIdCulturalHeritage(), pVisit.getIdTourist());
+        if (old == null) {
+            return false;
+        }
+        old.setComment(pVisit.getComment());
+        old.setDataVisit(pVisit.getDataVisit());
+        return true;
+    }
+
+    public ArrayList<BeanVisitBC> getListVisitBC(int pIdCulturalHeritage) throws SQLException {
+        return new ArrayList<BeanVisitBC>(listOf(visitsBC, pIdCulturalHeritage));
+    }
+
+    public ArrayList<BeanVisitBC> getListVisitBCTourist(int pIdTourist) throws SQLException {
+        return new ArrayList<BeanVisitBC>(listOf(touristsBC, pIdTourist));
+    }
+
+    public ArrayList<BeanVisitBC> getListVisitBCTourist(int pIdTourist, int pAfterIdCulturalHeritage, int pMax)
+            throws SQLException {
+        ArrayList<BeanVisitBC> list = new ArrayList<BeanVisitBC>();
+        for (BeanVisitBC visit : listOf(touristsBC, pIdTourist)) {
+            if (visit.getIdCulturalHeritage() > pAfterIdCulturalHeritage) {
+                list.add(visit);
+            }
+        }
+        Collections.sort(list, new Comparator<BeanVisitBC>() {
+            public int compare(BeanVisitBC p1, BeanVisitBC p2) {
+                return p1.getIdCulturalHeritage() < p2.getIdCulturalHeritage() ? -1
+                        : (p1.getIdCulturalHeritage() == p2.getIdCulturalHeritage() ? 0 : 1);
+            }
+        });
+        return new ArrayList<BeanVisitBC>(list.subList(0, Math.min(pMax, list.size())));
+    }
+
+    public BeanVisitBC getVisitBC(int pIdCulturalHeritage, int pIdTourist) throws SQLException {
+        for (BeanVisitBC visit : listOf(touristsBC, pIdTourist)) {
+            if (visit.getIdCulturalHeritage() == pIdCulturalHeritage) {
+                return visit;
+            }
+        }
+        return null;
+    }
+
+    public synchronized boolean insertVisitPR(BeanVisitPR pVisit) throws SQLException {
+        if (getVisitPR(pVisit.getIdRefreshmentPoint(), pVisit.getIdTourist()) != null) {
+            return false;
+        }
+        listOf(visitsPR, pVisit.getIdRefreshmentPoint()).add(pVisit);
+        listOf(touristsPR, pVisit.getIdTourist()).add(pVisit);
+        return true;
+    }
+
+    public synchronized boolean modifyVisitPR(BeanVisitPR pVisit) throws SQLException {
+        BeanVisitPR old = getVisitPR(pVisit.getIdRefreshmentPoint(), pVisit.getIdTourist());
+        if (old == null) {
+            return false;
+        }
+        old.setComment(pVisit.getComment());
+        old.setDataVisit(pVisit.getDataVisit());
+        return true;
+    }
+
+    public ArrayList<BeanVisitPR> getListVisitPR(int pIdRefreshmentPoint) throws SQLException {
+        return new ArrayList<BeanVisitPR>(listOf(visitsPR, pIdRefreshmentPoint));
+    }
+
+    public ArrayList<BeanVisitPR> getListVisitPRTourist(int pIdTourist) throws SQLException {
+        return new ArrayList<BeanVisitPR>(listOf(touristsPR, pIdTourist));
+    }
+
+    public BeanVisitPR getVisitPR(int pIdRefreshmentPoint, int pIdTourist) throws SQLException {
+        for (BeanVisitPR visit : listOf(touristsPR, pIdTourist)) {
+            if (visit.getIdRefreshmentPoint() == pIdRefreshmentPoint) {
+                return visit;
+            }
+        }
+        return null;
+    }
+
+    private static synchronized <T> List<T> listOf(Map<Integer, List<T>> pVisits, int pId) {
+        List<T> list = pVisits.get(pId);
+        if (list == null) {
+            list = new CopyOnWriteArrayList<T>();
+            pVisits.put(pId, list);
+        }
+        return list;
+    }
+}
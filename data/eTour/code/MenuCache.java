@@ -0,0 +1,121 @@
+﻿package unisa.gps.etour.repository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import unisa.gps.etour.bean.BeanDish;
+import unisa.gps.etour.bean.BeanMenu;
+import unisa.gps.etour.bean.BeanWeeklyMenu;
+
+/**
+ * Cache of the weekly menus, one entry for each refreshment point. The
+ * entries are invalidated by DBMenu and DBDish whenever a menu or a dish is
+ * inserted, modified or deleted. Reverse indexes from menu and dish ids to
+ * the refreshment point allow to invalidate only the affected entry.
+ *
+ */
+class MenuCache {
+    private static final Map<Integer, BeanWeeklyMenu> menus = new ConcurrentHashMap<Integer, BeanWeeklyMenu>();
+    private static final Map<Integer, Integer> refreshmentPointOfMenu = new ConcurrentHashMap<Integer, Integer>();
+    private static final Map<Integer, Integer> refreshmentPointOfDish = new ConcurrentHashMap<Integer, Integer>();
+    // Incremented at every invalidation, so that a load that started
+    // before a change is not stored after it
+    private static long generation = 0;
+
+    private MenuCache() {
+
+    }
+
+    /**
+     * Returns the cached weekly menu of a refreshment point
+     *
+     * @Param pIdRefreshmentPoint point identification Refreshments
+     * @Return weekly menu, null if not cached
+     */
+    static BeanWeeklyMenu get(int pIdRefreshmentPoint) {
+        return menus.get(pIdRefreshmentPoint);
+    }
+
+    /**
+     * Returns the current generation, to be read before loading from the
+     * database
+     */
+    static synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Stores a weekly menu, unless an invalidation occurred since the
+     * generation was read
+     *
+     * @Param pMenu weekly menu loaded from the database
+     * @Param pGeneration generation read before the load
+     */
+    static synchronized void put(BeanWeeklyMenu pMenu, long pGeneration) {
+        if (pGeneration != generation) {
+            return;
+        }
+        menus.put(pMenu.getIdRefreshmentPoint(), pMenu);
+        for (BeanMenu menu : pMenu.getMenus()) {
+            refreshmentPointOfMenu.put(menu.getId(), pMenu.getIdRefreshmentPoint());
+            for (BeanDish dish : pMenu.getDishes(menu.getId())) {
+                refreshmentPointOfDish.put(dish.getId(), pMenu.getIdRefreshmentPoint());
+            }
+        }
+    }
+
+    /**
+     * Invalidates the weekly menu of a refreshment point
+     *
+     * @Param pIdRefreshmentPoint point identification Refreshments
+     */
+    static synchronized void invalidateRefreshmentPoint(int pIdRefreshmentPoint) {
+        generation++;
+        BeanWeeklyMenu removed = menus.remove(pIdRefreshmentPoint);
+        if (removed != null) {
+            for (BeanMenu menu : removed.getMenus()) {
+                refreshmentPointOfMenu.remove(menu.getId());
+                for (BeanDish dish : removed.getDishes(menu.getId())) {
+                    refreshmentPointOfDish.remove(dish.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalidates the weekly menu containing a menu. If the menu is not in
+     * any cached entry there is nothing to invalidate.
+     *
+     * @Param pIdMenu ID of the menu
+     */
+    static synchronized void invalidateMenu(int pIdMenu) {
+        generation++;
+        Integer idRefreshmentPoint = refreshmentPointOfMenu.get(pIdMenu);
+        if (idRefreshmentPoint != null) {
+            invalidateRefreshmentPoint(idRefreshmentPoint);
+        }
+    }
+
+    /**
+     * Invalidates the weekly menu containing a dish
+     *
+     * @Param pIdDish ID of the dish
+     */
+    static synchronized void invalidateDish(int pIdDish) {
+        generation++;
+        Integer idRefreshmentPoint = refreshmentPointOfDish.get(pIdDish);
+        if (idRefreshmentPoint != null) {
+            invalidateRefreshmentPoint(idRefreshmentPoint);
+        }
+    }
+
+    /**
+     * Empties the cache
+     */
+    static synchronized void clear() {
+        generation++;
+        menus.clear();
+        refreshmentPointOfMenu.clear();
+        refreshmentPointOfDish.clear();
+    }
+}
@@ -1,5 +1,7 @@
 ﻿package unisa.gps.etour.util;
 
+import java.io.Serializable;
+
 /**
  * Bean that contains the coordinates of a point on the surface of the earth
  * "and That it realizes the calculation of the distance from the system. The
@@ -11,7 +13,8 @@
  *
  */
 
-public class Point3D {
+public class Point3D implements Serializable {
+    private static final long serialVersionUID = 1L;
 // Radius of the earth
     final double EARTH_RADIUS = 6371.0;
     private double latitude, longitude, altitude;
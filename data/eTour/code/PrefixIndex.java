@@ -0,0 +1,352 @@
+package unisa.gps.etour.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Prefix index on short strings. The keys are kept in lower case in a sorted
+ * array, with all the characters in a single char array and the offset and
+ * the id of every key in two int arrays, so a key costs its characters plus
+ * eight bytes. A prefix is found with a binary search and the matches are
+ * the following keys. The changes go in a small sorted set and in a set of
+ * the ids removed from the array, which are merged into a new array when
+ * they grow beyond a fraction of it. The ids in the array are kept once more,
+ * sorted, to know if an id is present.
+ *
+ */
+public class PrefixIndex {
+// The changes are merged when they exceed this fraction of the array
+    private static final int MERGE_FRACTION = 16;
+    private static final int MIN_MERGE = 1024;
+
+// Sorted array: characters, start of every key (plus the end) and id
+    private char[] chars;
+    private int[] offsets;
+    private int[] ids;
+// Distinct ids of the array, sorted
+    private int[] members;
+// Keys added after the last merge, and the same keys by id to remove them
+    private final TreeSet<Entry> added;
+    private final Map<Integer, String[]> addedKeys;
+// Ids of the array whose keys are no longer valid
+    private final Set<Integer> removed;
+    private final ReadWriteLock lock;
+
+    /**
+     * Key of an id not yet merged in the array
+     */
+    private static class Entry {
+        private final String key;
+        private final int id;
+
+        private Entry(String pKey, int pId) {
+            key = pKey;
+            id = pId;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+        public int compare(Entry p1, Entry p2) {
+            int result = p1.key.compareTo(p2.key);
+            if (result != 0) {
+                return result;
+            }
+            return p1.id < p2.id ? -1 : (p1.id == p2.id ? 0 : 1);
+        }
+    };
+
+    /**
+     * Empty constructor, creates an empty index
+     */
+    public PrefixIndex() {
+        chars = new char[0];
+        offsets = new int[1];
+        ids = new int[0];
+        members = new int[0];
+        added = new TreeSet<Entry>(ORDER);
+        addedKeys = new HashMap<Integer, String[]>();
+        removed = new HashSet<Integer>();
+        lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Adds the keys of an id, replacing the previous ones
+     *
+     * @Param pId id
+     * @Param pKeys keys of the id, the null ones are ignored
+     */
+    public void put(int pId, String... pKeys) {
+        ArrayList<String> normalized = new ArrayList<String>(pKeys.length);
+        for (String key : pKeys) {
+            if (key != null && key.trim().length() > 0 && !normalized.contains(normalize(key))) {
+                normalized.add(normalize(key));
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            removeKeys(pId);
+            String[] idKeys = normalized.toArray(new String[normalized.size()]);
+            addedKeys.put(pId, idKeys);
+            for (String key : idKeys) {
+                added.add(new Entry(key, pId));
+            }
+            mergeIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the keys of an id
+     *
+     * @Param pId id
+     * @Return true if the id was present
+     */
+    public boolean remove(int pId) {
+        lock.writeLock().lock();
+        try {
+            boolean result = removeKeys(pId);
+            mergeIfNeeded();
+            return result;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Empties the index
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            chars = new char[0];
+            offsets = new int[1];
+            ids = new int[0];
+            members = new int[0];
+            added.clear();
+            addedKeys.clear();
+            removed.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of ids in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+// The removed ids are all in the array, those added again are also
+// In the keys added
+            return members.length - removed.size() + addedKeys.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches the ids with a key that starts with a prefix
+     *
+     * @Param pPrefix prefix to search, in any case
+     * @Param pMaxResults maximum number of ids to return
+     * @Return ids found, in the order of their first matching key
+     */
+    public ArrayList<Integer> search(String pPrefix, int pMaxResults) {
+        String prefix = normalize(pPrefix == null ? "" : pPrefix);
+        LinkedHashSet<Integer> found = new LinkedHashSet<Integer>();
+        lock.readLock().lock();
+        try {
+            int i = lowerBound(prefix);
+            Iterator<Entry> delta = added.tailSet(new Entry(prefix, Integer.MIN_VALUE)).iterator();
+            Entry next = delta.hasNext() ? delta.next() : null;
+// Merge of the array and of the keys added, both sorted
+            while (found.size() < pMaxResults) {
+                boolean inArray = i < ids.length && startsWith(i, prefix);
+                boolean inDelta = next != null && next.key.startsWith(prefix);
+                if (!inArray && !inDelta) {
+                    break;
+                }
+                if (inArray && (!inDelta || compare(i, next.key) <= 0)) {
+                    if (!removed.contains(ids[i])) {
+                        found.add(ids[i]);
+                    }
+                    i++;
+                } else {
+                    found.add(next.id);
+                    next = delta.hasNext() ? delta.next() : null;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new ArrayList<Integer>(found);
+    }
+
+    /**
+     * Returns an estimate of the memory used by the index, in bytes: the
+     * characters of the keys and eight bytes a key in the sorted array, four
+     * bytes an id for the sorted ids, plus the changes not yet merged.
+     */
+    public long getMemoryUsage() {
+        lock.readLock().lock();
+        try {
+            long bytes = 2L * chars.length + 4L * offsets.length + 4L * ids.length + 4L * members.length;
+// Not merged changes: entry of the set and string of the key, entry of
+// The map with the boxed id and the array of the keys
+            for (Entry entry : added) {
+                bytes += 32 + 24 + 40 + 2L * entry.key.length();
+            }
+            for (String[] idKeys : addedKeys.values()) {
+                bytes += 32 + 16 + 16 + 4L * idKeys.length;
+            }
+            bytes += 48L * removed.size();
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean removeKeys(int pId) {
+        boolean present = false;
+        String[] idKeys = addedKeys.remove(pId);
+        if (idKeys != null) {
+            for (String key : idKeys) {
+                added.remove(new Entry(key, pId));
+            }
+            present = true;
+        }
+// The keys in the array are only marked as removed
+        if (Arrays.binarySearch(members, pId) >= 0 && removed.add(pId)) {
+            present = true;
+        }
+        return present;
+    }
+
+    private void mergeIfNeeded() {
+        if (added.size() + removed.size() > Math.max(MIN_MERGE, ids.length / MERGE_FRACTION)) {
+            merge();
+        }
+    }
+
+    /**
+     * Rebuilds the sorted array with the changes, in linear time
+     */
+    private void merge() {
+        int count = 0;
+        int length = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (!removed.contains(ids[i])) {
+                count++;
+                length += offsets[i + 1] - offsets[i];
+            }
+        }
+        for (Entry entry : added) {
+            count++;
+            length += entry.key.length();
+        }
+        char[] newChars = new char[length];
+        int[] newOffsets = new int[count + 1];
+        int[] newIds = new int[count];
+        int i = 0;
+        int k = 0;
+        Iterator<Entry> delta = added.iterator();
+        Entry next = delta.hasNext() ? delta.next() : null;
+        while (i < ids.length || next != null) {
+            if (i < ids.length && removed.contains(ids[i])) {
+                i++;
+                continue;
+            }
+            int start = newOffsets[k];
+            if (i < ids.length && (next == null || compare(i, next.key) <= 0)) {
+                int keyLength = offsets[i + 1] - offsets[i];
+                System.arraycopy(chars, offsets[i], newChars, start, keyLength);
+                newOffsets[k + 1] = start + keyLength;
+                newIds[k] = ids[i];
+                i++;
+            } else {
+                next.key.getChars(0, next.key.length(), newChars, start);
+                newOffsets[k + 1] = start + next.key.length();
+                newIds[k] = next.id;
+                next = delta.hasNext() ? delta.next() : null;
+            }
+            k++;
+        }
+        chars = newChars;
+        offsets = newOffsets;
+        ids = newIds;
+        int[] sorted = newIds.clone();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int j = 0; j < sorted.length; j++) {
+            if (j == 0 || sorted[j] != sorted[j - 1]) {
+                sorted[distinct++] = sorted[j];
+            }
+        }
+        members = Arrays.copyOf(sorted, distinct);
+        added.clear();
+        addedKeys.clear();
+        removed.clear();
+    }
+
+    /**
+     * Returns the first key of the array not smaller than a string
+     */
+    private int lowerBound(String pKey) {
+        int low = 0;
+        int high = ids.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, pKey) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares the key in a position of the array with a string
+     */
+    private int compare(int pIndex, String pKey) {
+        int start = offsets[pIndex];
+        int length = offsets[pIndex + 1] - start;
+        int n = Math.min(length, pKey.length());
+        for (int j = 0; j < n; j++) {
+            char c = chars[start + j];
+            char d = pKey.charAt(j);
+            if (c != d) {
+                return c - d;
+            }
+        }
+        return length - pKey.length();
+    }
+
+    private boolean startsWith(int pIndex, String pPrefix) {
+        int start = offsets[pIndex];
+        if (offsets[pIndex + 1] - start < pPrefix.length()) {
+            return false;
+        }
+        for (int j = 0; j < pPrefix.length(); j++) {
+            if (chars[start + j] != pPrefix.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String normalize(String pKey) {
+        return pKey.trim().toLowerCase();
+    }
+}
@@ -0,0 +1,190 @@
+package unisa.gps.etour.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Orders the results of a search with a weighted score that combines the
+ * score of the keyword in the full-text index, the distance from the tourist,
+ * the average rating, the preferences shared with the tourist and the tags
+ * matched. Each component is normalized between 0 and 1 before applying its
+ * weight. To return a page only the best (page + 1) * elements per page
+ * candidates are kept, in a bounded heap, so the first pages cost a linear
+ * scan and a full sort happens only when the tourist pages that far.
+ *
+ */
+public class RankingEngine {
+// Highest average rating of a site
+    private static final double MAX_RATING = 5.0;
+// Maximum number of tags considered by a search
+    private static final double MAX_TAGS = 5.0;
+
+    private final double keywordWeight;
+    private final double distanceWeight;
+    private final double ratingWeight;
+    private final double preferenceWeight;
+    private final double tagWeight;
+
+    /**
+     * Site found by a search, with the partial results of the indexes
+     */
+    public static class Candidate<T> {
+        private final int id;
+        private final T site;
+        private double keywordScore;
+        private double distance;
+        private double rating;
+        private int preferences;
+        private int tags;
+        private double score;
+
+        /**
+         * Parameterized constructor
+         *
+         * @Param pId ID of the site
+         * @Param pSite bean of the site
+         */
+        public Candidate(int pId, T pSite) {
+            id = pId;
+            site = pSite;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public T getSite() {
+            return site;
+        }
+
+        public void setKeywordScore(double pKeywordScore) {
+            keywordScore = pKeywordScore;
+        }
+
+        public void setDistance(double pDistance) {
+            distance = pDistance;
+        }
+
+        public void setRating(double pRating) {
+            rating = pRating;
+        }
+
+        public void setPreferences(int pPreferences) {
+            preferences = pPreferences;
+        }
+
+        public void setTags(int pTags) {
+            tags = pTags;
+        }
+
+        /**
+         * Returns the score computed by the last ranking
+         */
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Parameterized constructor, the weights need not sum to 1
+     *
+     * @Param pKeywordWeight weight of the score of the keyword
+     * @Param pDistanceWeight weight of the closeness to the tourist
+     * @Param pRatingWeight weight of the average rating
+     * @Param pPreferenceWeight weight of the preferences shared with the
+     *        tourist
+     * @Param pTagWeight weight of the tags matched
+     */
+    public RankingEngine(double pKeywordWeight, double pDistanceWeight, double pRatingWeight,
+            double pPreferenceWeight, double pTagWeight) {
+        keywordWeight = pKeywordWeight;
+        distanceWeight = pDistanceWeight;
+        ratingWeight = pRatingWeight;
+        preferenceWeight = pPreferenceWeight;
+        tagWeight = pTagWeight;
+    }
+
+    /**
+     * Empty constructor, uses the default weights
+     */
+    public RankingEngine() {
+        this(0.35, 0.25, 0.15, 0.15, 0.10);
+    }
+
+    /**
+     * Returns a page of the candidates ordered by decreasing score, ties
+     * broken by increasing id
+     *
+     * @Param pCandidates candidates of the search, merged from the indexes
+     * @Param pNumPage page to return, 0 for the first
+     * @Param pElementsPerPage number of elements in a page
+     * @Param pMaxDistance maximum distance of the search
+     * @Return sites of the page
+     */
+    public <T> ArrayList<T> page(Collection<Candidate<T>> pCandidates, int pNumPage, int pElementsPerPage,
+            double pMaxDistance) {
+        ArrayList<T> page = new ArrayList<T>(pElementsPerPage);
+        int from = pNumPage * pElementsPerPage;
+        int k = from + pElementsPerPage;
+        if (pElementsPerPage <= 0 || from < 0 || from >= pCandidates.size()) {
+            return page;
+        }
+// Maximum values of the components that are not bounded a priori
+        double maxKeyword = 0;
+        int maxPreferences = 0;
+        for (Candidate<T> candidate : pCandidates) {
+            maxKeyword = Math.max(maxKeyword, candidate.keywordScore);
+            maxPreferences = Math.max(maxPreferences, candidate.preferences);
+        }
+// Min-heap with the best k candidates, the worst at the top
+        Comparator<Candidate<T>> order = new Comparator<Candidate<T>>() {
+            public int compare(Candidate<T> p1, Candidate<T> p2) {
+                if (p1.score != p2.score) {
+                    return p1.score < p2.score ? -1 : 1;
+                }
+                return p1.id > p2.id ? -1 : (p1.id == p2.id ? 0 : 1);
+            }
+        };
+        PriorityQueue<Candidate<T>> heap = new PriorityQueue<Candidate<T>>(Math.min(k, pCandidates.size()), order);
+        for (Candidate<T> candidate : pCandidates) {
+            candidate.score = score(candidate, maxKeyword, maxPreferences, pMaxDistance);
+            if (heap.size() < k) {
+                heap.add(candidate);
+            } else if (order.compare(candidate, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(candidate);
+            }
+        }
+// The heap is emptied from the worst, so the page is at the beginning
+        int size = heap.size();
+        ArrayList<T> best = new ArrayList<T>(size);
+        for (int i = 0; i < size; i++) {
+            best.add(null);
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            best.set(i, heap.poll().site);
+        }
+        for (int i = from; i < size; i++) {
+            page.add(best.get(i));
+        }
+        return page;
+    }
+
+    private double score(Candidate<?> pCandidate, double pMaxKeyword, int pMaxPreferences, double pMaxDistance) {
+        double score = 0;
+        if (pMaxKeyword > 0) {
+            score += keywordWeight * pCandidate.keywordScore / pMaxKeyword;
+        }
+        if (pMaxDistance > 0) {
+            score += distanceWeight * Math.max(0, 1 - pCandidate.distance / pMaxDistance);
+        }
+        score += ratingWeight * Math.min(1, Math.max(0, pCandidate.rating / MAX_RATING));
+        if (pMaxPreferences > 0) {
+            score += preferenceWeight * pCandidate.preferences / pMaxPreferences;
+        }
+        score += tagWeight * Math.min(1, pCandidate.tags / MAX_TAGS);
+        return score;
+    }
+}
@@ -2,18 +2,24 @@
 
 import java.rmi.RemoteException;
 import java.sql.SQLException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import unisa.gps.etour.bean.BeanConvention;
 import unisa.gps.etour.bean.BeanRefreshmentPoint;
 import unisa.gps.etour.bean.BeanTag;
 import unisa.gps.etour.bean.BeanTourist;
 import unisa.gps.etour.bean.BeanVisitPR;
-import unisa.gps.etour.repository.DBConvention;
+import unisa.gps.etour.repository.ConventionRegistry;
 import unisa.gps.etour.repository.DBTourist;
 import unisa.gps.etour.repository.IDBConvention;
+import unisa.gps.etour.util.BeanList;
 import unisa.gps.etour.util.ErrorMessage;
+import unisa.gps.etour.util.IRemoteCursor;
+import unisa.gps.etour.util.RemoteCursor;
 
 /**
  * Class  methods for managing Refreshments by Operator Agency
@@ -114,7 +120,22 @@ public class RefreshmentPointAgencyManager extends RefreshmentPointCommonManager
         if (null == toReturn)
             throw new RemoteException(ErrorMessage.ERROR_FORMAT_BEAN);
 // Return the ArrayList with all the refreshment
-        return toReturn;
+        return new BeanList<BeanRefreshmentPoint>(toReturn);
+    }
+
+// Method that returns all the refreshment points through a cursor read
+// In chunks; the refreshment points are read from the database a page at
+// A time, when the client asks for them
+    public IRemoteCursor<BeanRefreshmentPoint> getRefreshmentPointCursor() throws RemoteException {
+        return new RemoteCursor<BeanRefreshmentPoint>(new RemoteCursor.PagedSource<BeanRefreshmentPoint>() {
+            protected List<BeanRefreshmentPoint> readPage(int pAfterKey, int pMax) throws SQLException {
+                return refreshmentPoint.getListPR(pAfterKey, pMax);
+            }
+
+            protected int getKey(BeanRefreshmentPoint pElement) {
+                return pElement.getId();
+            }
+        });
     }
 
 // Method that allows you to get all the refreshment that have
@@ -127,8 +148,8 @@ public class RefreshmentPointAgencyManager extends RefreshmentPointCommonManager
 // Array that allows me to store all the refreshment active
 // Using the database connection
         ArrayList<BeanRefreshmentPoint> active = null;
-// Instance to connect to the database
-        IDBConvention conv = new DBConvention();
+// Registry of the active conventions, answers without database access
+        IDBConvention conv = ConventionRegistry.getInstance();
         try {
 // Connect all proceeds from the refreshment Assets
             active = conv.getListConventionActivePR();
@@ -193,7 +214,7 @@ public class RefreshmentPointAgencyManager extends RefreshmentPointCommonManager
             }
         }
 // Return the ArrayList obtained
-        return toReturn;
+        return new BeanList<BeanRefreshmentPoint>(toReturn);
     }
 
 // Method that allows you to change the past as a refreshment
@@ -267,8 +288,8 @@ public class RefreshmentPointAgencyManager extends RefreshmentPointCommonManager
             throw new RemoteException(ErrorMessage.ERROR_DATA);
         IDBConvention conv = null;
         try {
-// Instantiate the class to connect to the database
-            conv = new DBConvention();
+// Get the registry of the conventions, which is refreshed by the change
+            conv = ConventionRegistry.getInstance();
 // If the Convention is not yet active, previously provided to
 // Activate it locally and then pass the bean to the database changed
             if (conv.getConventionActive(pRefreshmentPointID) == null) {
@@ -338,6 +359,39 @@ public class RefreshmentPointAgencyManager extends RefreshmentPointCommonManager
         return mapReturn;
     }
 
+// Method that returns the feedback of a Refreshment through a cursor;
+// The username of each tourist is read only when the client asks for
+// The chunk of his feedback
+    public IRemoteCursor<Map.Entry<BeanVisitPR, String>> getFeedbackRefreshmentPointCursor(int pRefreshmentPointID)
+            throws RemoteException {
+// Check the ID passed as a parameter
+        if (pRefreshmentPointID < 0)
+            throw new RemoteException(ErrorMessage.ERROR_DATA);
+        final Iterator<BeanVisitPR> visits;
+        try {
+            visits = feed.getListVisitPR(pRefreshmentPointID).iterator();
+        } catch (SQLException e) {
+            System.out.println("Error in method getFeedbackPRCursor" + e.toString());
+            throw new RemoteException(ErrorMessage.ERROR_DBMS);
+        }
+        RemoteCursor.Source<Map.Entry<BeanVisitPR, String>> source
+                = new RemoteCursor.Source<Map.Entry<BeanVisitPR, String>>() {
+            public Map.Entry<BeanVisitPR, String> next() throws SQLException {
+                if (!visits.hasNext()) {
+                    return null;
+                }
+                BeanVisitPR bVisitTemp = visits.next();
+                BeanTourist bTouristTemp = dbTourist.getTourist(bVisitTemp.getIdTourist());
+                return new AbstractMap.SimpleImmutableEntry<BeanVisitPR, String>(bVisitTemp,
+                        bTouristTemp == null ? null : bTouristTemp.getUserName());
+            }
+
+            public void close() {
+            }
+        };
+        return new RemoteCursor<Map.Entry<BeanVisitPR, String>>(source);
+    }
+
 // Method to insert a tag from those of a refreshment
     public boolean clearTagRefreshmentPoint(int pRefreshmentPointId, int pTagId) throws RemoteException {
 // Check the validity of past data
@@ -9,6 +9,7 @@ import java.util.Iterator;
 import unisa.gps.etour.bean.BeanRefreshmentPoint;
 import unisa.gps.etour.bean.BeanTag;
 import unisa.gps.etour.bean.BeanVisitPR;
+import unisa.gps.etour.repository.CatalogChange;
 import unisa.gps.etour.repository.DBRefreshmentPoint;
 import unisa.gps.etour.repository.DBVisitPR;
 import unisa.gps.etour.repository.DBTag;
@@ -16,6 +17,7 @@ import unisa.gps.etour.repository.IDBRefreshmentPoint;
 import unisa.gps.etour.repository.IDBTag;
 import unisa.gps.etour.repository.IDBTourist;
 import unisa.gps.etour.repository.IDBVisitPR;
+import unisa.gps.etour.repository.VisitEventLog;
 import unisa.gps.etour.util.GlobalConstants;
 import unisa.gps.etour.util.ErrorMessage;
 
@@ -163,6 +165,16 @@ public class RefreshmentPointCommonManager extends UnicastRemoteObject implement
 // Check the validity identifier passed
         if (pRefreshmentPointID < 0)
             throw new RemoteException(ErrorMessage.ERROR_DATA);
+// The aggregates of the log of the visits answer without reading the
+// Visits, when the log covers the last thirty days
+        VisitEventLog events = VisitEventLog.getInstance();
+        if (events != null) {
+            ArrayList<Integer> statistic = events.getProjection().getStatistic(CatalogChange.REFRESHMENT_POINT,
+                    pRefreshmentPointID);
+            if (statistic != null) {
+                return statistic;
+            }
+        }
 // ArrayList that allows me to store the bean containing the feedback
         ArrayList<BeanVisitPR> bVisit = null;
 // ArrayList that allows me to store the counters
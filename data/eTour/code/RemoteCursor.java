@@ -0,0 +1,243 @@
+package unisa.gps.etour.util;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.rmi.server.Unreferenced;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Server side of a remote cursor. The results are computed one at a time by a
+ * source only when the client asks for them, so the first chunk leaves the
+ * server before the last result is computed. Every call renews the lease of
+ * the cursor; a cursor not used within the lease, or no longer referenced by
+ * any client, is closed and its source released.
+ *
+ */
+public class RemoteCursor<T> extends UnicastRemoteObject implements IRemoteCursor<T>, Unreferenced {
+    private static final long serialVersionUID = 1L;
+// Duration of the lease and maximum size of a chunk
+    public static final long LEASE_MILLIS = 60000L;
+    public static final int MAX_CHUNK = 1000;
+// Results read at a time by a paged source
+    public static final int PAGE_SIZE = 200;
+// Leases of all the cursors, with a tick of one second
+    private static TimerWheel leases;
+
+    private final Source<T> source;
+// Result already computed but not yet returned
+    private T lookahead;
+    private TimerWheel.Timeout lease;
+    private long expiry;
+    private boolean closed;
+
+    /**
+     * Source of the results of a cursor, evaluated lazily
+     */
+    public interface Source<T> {
+        /**
+         * Computes the next result
+         *
+         * @Return next result, null if there are no more results
+         * @throws Exception
+         */
+        public T next() throws Exception;
+
+        /**
+         * Releases the resources of the source
+         */
+        public void close();
+    }
+
+    /**
+     * Source that reads the results one page at a time, in order of an integer
+     * key. A page is read only when the cursor needs its first result, from
+     * the key of the last result returned, so the results are never all in
+     * memory and a cursor closed early does not read the rest.
+     */
+    public abstract static class PagedSource<T> implements Source<T> {
+        private Iterator<T> page;
+        private int lastKey = -1;
+        private boolean last;
+
+        /**
+         * Reads a page of results
+         *
+         * @Param pAfterKey key of the last result of the previous page, -1
+         *        for the first page
+         * @Param pMax maximum number of results
+         * @Return results with key greater than pAfterKey in order of key,
+         *         null if there are none
+         * @throws Exception
+         */
+        protected abstract List<T> readPage(int pAfterKey, int pMax) throws Exception;
+
+        /**
+         * Returns the key of a result
+         */
+        protected abstract int getKey(T pElement);
+
+        public T next() throws Exception {
+            while (page == null || !page.hasNext()) {
+                if (last) {
+                    return null;
+                }
+                List<T> elements = readPage(lastKey, PAGE_SIZE);
+                if (elements == null) {
+                    return null;
+                }
+// A short page is the last one
+                last = elements.size() < PAGE_SIZE;
+                page = elements.iterator();
+            }
+            T element = page.next();
+            lastKey = getKey(element);
+            return element;
+        }
+
+        public void close() {
+            page = null;
+            last = true;
+        }
+    }
+
+    /**
+     * Parameterized constructor, exports the cursor
+     *
+     * @Param pSource source of the results
+     * @throws RemoteException
+     */
+    public RemoteCursor(Source<T> pSource) throws RemoteException {
+        super();
+        source = pSource;
+        renew();
+    }
+
+    /**
+     * Returns a source that iterates on a collection already loaded
+     *
+     * @Param pElements results of the cursor
+     * @Return source of the results
+     */
+    public static <T> Source<T> fromCollection(Collection<T> pElements) {
+        final Iterator<T> iterator = pElements.iterator();
+        return new Source<T>() {
+            public T next() {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+
+            public void close() {
+            }
+        };
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.util.IRemoteCursor # next (int)
+     */
+    public synchronized Chunk<T> next(int pMaxElements) throws RemoteException {
+        if (closed) {
+            throw new RemoteException(ErrorMessage.ERROR_CURSOR);
+        }
+        if (pMaxElements <= 0) {
+            throw new RemoteException(ErrorMessage.ERROR_DATA);
+        }
+        int max = Math.min(pMaxElements, MAX_CHUNK);
+        ArrayList<T> elements = new BeanList<T>();
+        try {
+            if (lookahead == null) {
+                lookahead = source.next();
+            }
+            while (lookahead != null && elements.size() < max) {
+                elements.add(lookahead);
+                lookahead = source.next();
+            }
+        } catch (Exception e) {
+            System.out.println("Error in method next of the cursor " + e.toString());
+            close();
+            throw new RemoteException(ErrorMessage.ERROR_DBMS);
+        }
+        boolean last = lookahead == null;
+        if (last) {
+            close();
+        } else {
+            renew();
+        }
+        return new Chunk<T>(elements, last);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.util.IRemoteCursor # close ()
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        lookahead = null;
+        lease.cancel();
+        source.close();
+        try {
+            unexportObject(this, true);
+        } catch (NoSuchObjectException e) {
+// Already unexported
+        }
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See java.rmi.server.Unreferenced # unreferenced ()
+     */
+    public void unreferenced() {
+// No client holds the cursor anymore
+        close();
+    }
+
+    /**
+     * Moves the expiry of the lease forward
+     */
+    private synchronized void renew() {
+        expiry = System.currentTimeMillis() + LEASE_MILLIS;
+        scheduleLease();
+    }
+
+    private synchronized void scheduleLease() {
+        if (lease != null) {
+            lease.cancel();
+        }
+        lease = getLeases().schedule(new Runnable() {
+            public void run() {
+                expire();
+            }
+        }, new Date(expiry));
+    }
+
+    /**
+     * Closes the cursor if the lease was not renewed in the meantime
+     */
+    private synchronized void expire() {
+        if (closed) {
+            return;
+        }
+        if (System.currentTimeMillis() >= expiry) {
+            close();
+        } else {
+            scheduleLease();
+        }
+    }
+
+    private static synchronized TimerWheel getLeases() {
+        if (leases == null) {
+            leases = new TimerWheel(1000L, 128, "CursorLease");
+        }
+        return leases;
+    }
+}
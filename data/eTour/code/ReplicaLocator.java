@@ -0,0 +1,153 @@
+﻿package unisa.gps.etour.control.ReplicaManager;
+
+import java.rmi.Naming;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import unisa.gps.etour.util.ErrorMessage;
+
+/**
+ * Client side of the replicas of the catalog. Every tourist is assigned to a
+ * replica by rendezvous hashing of its id on the URLs of the replicas, so the
+ * tourists are spread evenly and adding or removing a replica moves only the
+ * tourists of that replica. When the replica of a tourist does not answer,
+ * the call goes to the next one in the order of the tourist, and the failed
+ * replica is skipped for a while.
+ *
+ */
+public class ReplicaLocator {
+// Time a failed replica is skipped
+    private static final long COOL_DOWN_MILLIS = 30000L;
+
+    private final List<String> urls;
+    private final Map<String, ICatalogReplica> stubs;
+    private final Map<String, Long> failedUntil;
+
+    /**
+     * Call to execute on a replica
+     */
+    public interface ReplicaCall<T> {
+        /**
+         * Executes the call
+         *
+         * @Param pReplica replica chosen for the tourist
+         * @Return result of the call
+         * @throws RemoteException
+         */
+        public T call(ICatalogReplica pReplica) throws RemoteException;
+    }
+
+    /**
+     * Parameterized constructor
+     *
+     * @Param pUrls RMI URLs of the replicas, as rmi://host:port/name
+     */
+    public ReplicaLocator(String... pUrls) {
+        urls = Collections.unmodifiableList(new ArrayList<String>(Arrays.asList(pUrls)));
+        stubs = new ConcurrentHashMap<String, ICatalogReplica>();
+        failedUntil = new ConcurrentHashMap<String, Long>();
+    }
+
+    /**
+     * Executes a call on the replica of a tourist, or on the next ones if it
+     * does not answer
+     *
+     * @Param pIdTourist ID of the tourist, -1 for a guest
+     * @Param pCall call to execute
+     * @Return result of the call
+     * @throws RemoteException if no replica answers
+     */
+    public <T> T execute(int pIdTourist, ReplicaCall<T> pCall) throws RemoteException {
+        RemoteException last = null;
+        for (String url : order(pIdTourist)) {
+            try {
+                T result = pCall.call(lookup(url));
+                failedUntil.remove(url);
+                return result;
+            } catch (RemoteException e) {
+                last = e;
+            } catch (Exception e) {
+// Replica not bound or URL not valid
+                last = new RemoteException(e.toString());
+            }
+            stubs.remove(url);
+            failedUntil.put(url, System.currentTimeMillis() + COOL_DOWN_MILLIS);
+        }
+        throw new RemoteException(ErrorMessage.ERROR_REPLICA, last);
+    }
+
+    /**
+     * Returns the URL of the replica of a tourist when all the replicas answer
+     *
+     * @Param pIdTourist ID of the tourist
+     * @Return URL of the replica
+     */
+    public String getReplica(int pIdTourist) {
+        String best = null;
+        long bestWeight = 0;
+        for (String url : urls) {
+            long weight = weight(url, pIdTourist);
+            if (best == null || weight > bestWeight) {
+                best = url;
+                bestWeight = weight;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the replicas in the order in which they are tried for a tourist:
+     * by decreasing weight, the ones failed recently at the end
+     */
+    private List<String> order(final int pIdTourist) {
+        final long now = System.currentTimeMillis();
+        List<String> order = new ArrayList<String>(urls);
+        Collections.sort(order, new Comparator<String>() {
+            public int compare(String p1, String p2) {
+                boolean failed1 = isFailed(p1, now);
+                boolean failed2 = isFailed(p2, now);
+                if (failed1 != failed2) {
+                    return failed1 ? 1 : -1;
+                }
+                long weight1 = weight(p1, pIdTourist);
+                long weight2 = weight(p2, pIdTourist);
+                return weight1 > weight2 ? -1 : (weight1 == weight2 ? 0 : 1);
+            }
+        });
+        return order;
+    }
+
+    private boolean isFailed(String pUrl, long pNow) {
+        Long until = failedUntil.get(pUrl);
+        return until != null && until.longValue() > pNow;
+    }
+
+    private ICatalogReplica lookup(String pUrl) throws Exception {
+        ICatalogReplica stub = stubs.get(pUrl);
+        if (stub == null) {
+            stub = (ICatalogReplica) Naming.lookup(pUrl);
+            stubs.put(pUrl, stub);
+        }
+        return stub;
+    }
+
+    /**
+     * Weight of a replica for a tourist, from a mix of the hash of the URL and
+     * the id of the tourist
+     */
+    private static long weight(String pUrl, int pIdTourist) {
+        long h = ((long) pUrl.hashCode() << 32) ^ (pIdTourist & 0xffffffffL);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
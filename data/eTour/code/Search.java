@@ -24,7 +24,23 @@ public class Search extends UnicastRemoteObject implements ISearch {
     private static final long serialVersionUID = -6009809097302884655L;
 
     public Search() throws RemoteException {
+        this(new DBCulturalHeritage(), new DBRefreshmentPoint(), new DBTag());
+    }
+
+    /**
+     * Parameterized constructor
+     *
+     * @Param pCulturalHeritage access to the cultural heritage
+     * @Param pRefreshmentPoint access to the refreshment points
+     * @Param pTag access to the tags
+     * @throws RemoteException
+     */
+    public Search(IDBCulturalHeritage pCulturalHeritage, IDBRefreshmentPoint pRefreshmentPoint, IDBTag pTag)
+            throws RemoteException {
         super();
+        CulturalHeritage = pCulturalHeritage;
+        RefreshmentPoint = pRefreshmentPoint;
+        Tag = pTag;
     }
 
 // Search Parameters
@@ -36,9 +52,9 @@ public class Search extends UnicastRemoteObject implements ISearch {
     protected byte pSiteType = -1;
 
 // Objects for the database connection
-    protected IDBCulturalHeritage CulturalHeritage = new DBCulturalHeritage();
-    protected IDBRefreshmentPoint RefreshmentPoint = new DBRefreshmentPoint();
-    private IDBTag Tag = new DBTag();
+    protected IDBCulturalHeritage CulturalHeritage;
+    protected IDBRefreshmentPoint RefreshmentPoint;
+    private IDBTag Tag;
 
 // List of tags obtained
     protected ArrayList<BeanTag> pTags;
@@ -321,8 +337,8 @@ public class Search extends UnicastRemoteObject implements ISearch {
     private ArrayList<BeanTag> arrayToArrayListTag(int[] pTagsId) throws SQLException {
 // Initialize the list of Tags
         ArrayList<BeanTag> PTags = new ArrayList<BeanTag>();
-// If the list of identifiers of the tag is empty I get the tags
-        if (pTagsId == null) {
+// If the list of identifiers of the tag is not empty I get the tags
+        if (pTagsId != null) {
             BeanTag currentTag = null;
             try {
 
@@ -333,7 +349,7 @@ public class Search extends UnicastRemoteObject implements ISearch {
                         currentTag = Tag.getTag(pTagsId[i]);
 // Check correctness on tags
                         if (ControlData.checkBeanTag(currentTag))
-                            pTags.add(currentTag);
+                            PTags.add(currentTag);
                     }
                 }
 
@@ -342,6 +358,6 @@ public class Search extends UnicastRemoteObject implements ISearch {
             }
         }
 // Return the list of tags
-        return pTags;
+        return PTags;
     }
 }
@@ -0,0 +1,385 @@
+﻿package unisa.gps.etour.control.RegisteredUserManager;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import unisa.gps.etour.bean.BeanTourist;
+import unisa.gps.etour.repository.DBTourist;
+import unisa.gps.etour.repository.IDBTourist;
+import unisa.gps.etour.util.TimerWheel;
+
+/**
+ * Sessions of the registered users. After a login verified on the database
+ * the manager issues a token that contains the id and the type of the user,
+ * the expiry and a random nonce, signed with HMAC-SHA256 and a key generated
+ * at the start of the server. A token is validated recomputing the signature
+ * and looking up the revocations in memory, so the cost does not depend on
+ * the number of users. The credentials of the last users logged in are kept
+ * in a bounded cache, as a salted hash of the password, so a new login of
+ * the same user does not hit the database.
+ *
+ */
+public class SessionManager {
+// Validity of a session and of a cached credential
+    private static final long SESSION_MILLIS = 8 * 60 * 60 * 1000L;
+    private static final long CREDENTIAL_MILLIS = 10 * 60 * 1000L;
+// Maximum number of credentials in the cache
+    private static final int CACHE_SIZE = 10000;
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final char SEPARATOR = '.';
+    private static SessionManager instance;
+
+    private final IDBTourist dbTourist;
+    private final SecureRandom random;
+    private final SecretKeySpec key;
+// Mac is not thread safe, one for each thread
+    private final ThreadLocal<Mac> mac;
+    private final Map<String, Credential> credentials;
+// Nonces of the tokens revoked before their expiry
+    private final ConcurrentMap<String, Long> revoked;
+// Tokens of a user issued before this time are not valid
+    private final ConcurrentMap<Integer, Long> revokedUsers;
+// Last change of the profile of a tourist, a login that read the database
+// Before it does not cache the credentials
+    private final ConcurrentMap<Integer, Long> changedUsers;
+    private final TimerWheel wheel;
+
+    /**
+     * Credential of a user kept in the cache
+     */
+    private static class Credential {
+        private final int id;
+        private final byte userType;
+        private final byte[] salt;
+        private final byte[] hash;
+        private final long expiry;
+
+        private Credential(int pId, byte pUserType, byte[] pSalt, byte[] pHash, long pExpiry) {
+            id = pId;
+            userType = pUserType;
+            salt = pSalt;
+            hash = pHash;
+            expiry = pExpiry;
+        }
+    }
+
+    /**
+     * Session of a valid token
+     */
+    public static class Session {
+        private final int idUser;
+        private final byte userType;
+        private final Date expiry;
+
+        private Session(int pIdUser, byte pUserType, Date pExpiry) {
+            idUser = pIdUser;
+            userType = pUserType;
+            expiry = pExpiry;
+        }
+
+        /**
+         * Returns the id of the user logged in
+         */
+        public int getIdUser() {
+            return idUser;
+        }
+
+        /**
+         * Returns the type of the user, as in IAuthentication
+         */
+        public byte getUserType() {
+            return userType;
+        }
+
+        /**
+         * Returns the expiry date of the session
+         */
+        public Date getExpiry() {
+            return new Date(expiry.getTime());
+        }
+    }
+
+    /**
+     * Parameterized constructor
+     *
+     * @Param pDbTourist access to the tourists in the database
+     */
+    public SessionManager(IDBTourist pDbTourist) {
+        dbTourist = pDbTourist;
+        random = new SecureRandom();
+        byte[] secret = new byte[32];
+        random.nextBytes(secret);
+        key = new SecretKeySpec(secret, ALGORITHM);
+        mac = new ThreadLocal<Mac>() {
+            protected Mac initialValue() {
+                try {
+                    Mac toReturn = Mac.getInstance(ALGORITHM);
+                    toReturn.init(key);
+                    return toReturn;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException(e.toString());
+                }
+            }
+        };
+        credentials = new LinkedHashMap<String, Credential>(16, 0.75f, true) {
+            private static final long serialVersionUID = 0L;
+
+            protected boolean removeEldestEntry(Map.Entry<String, Credential> pEldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+        revoked = new ConcurrentHashMap<String, Long>();
+        revokedUsers = new ConcurrentHashMap<Integer, Long>();
+        changedUsers = new ConcurrentHashMap<Integer, Long>();
+// The revocations are forgotten when the tokens expire anyway
+        wheel = new TimerWheel(60000L, 480, "SessionExpiry");
+    }
+
+    /**
+     * Returns the session manager shared by the managers of the server
+     *
+     * @Return session manager
+     */
+    public static synchronized SessionManager getInstance() {
+        if (instance == null) {
+            instance = new SessionManager(new DBTourist());
+        }
+        return instance;
+    }
+
+    /**
+     * Verifies the credentials of a user, on the cache or else on the database
+     *
+     * @Param pUsername username of the user
+     * @Param pPassword password of the user
+     * @Param pUserType type of the user, as in IAuthentication
+     * @Return ID of the user if the credentials are correct, otherwise -1
+     * @throws SQLException
+     */
+    public int authenticate(String pUsername, String pPassword, byte pUserType) throws SQLException {
+        if (pUsername == null || pPassword == null) {
+            return -1;
+        }
+        String cacheKey = pUserType + ":" + pUsername;
+        Credential credential;
+        synchronized (credentials) {
+            credential = credentials.get(cacheKey);
+        }
+        long now = System.currentTimeMillis();
+        if (credential != null && credential.expiry > now) {
+            if (MessageDigest.isEqual(credential.hash, digest(credential.salt, pPassword))) {
+                return credential.id;
+            }
+            return -1;
+        }
+// Only the tourists can log in, the operators of the refreshment
+// points are not implemented
+        if (pUserType != IAuthentication.VISITORS) {
+            return -1;
+        }
+        BeanTourist tourist = dbTourist.getTourist(pUsername);
+// A disabled tourist cannot log in and is not cached
+        if (tourist == null || tourist.getPassword() == null || !tourist.isActive()) {
+            return -1;
+        }
+        byte[] salt = new byte[16];
+        random.nextBytes(salt);
+        byte[] hash = digest(salt, tourist.getPassword());
+// Not cached if the tourist changed while reading from the database
+        Long changed = changedUsers.get(tourist.getId());
+        if (changed == null || changed.longValue() < now) {
+            synchronized (credentials) {
+                credentials.put(cacheKey, new Credential(tourist.getId(), pUserType, salt, hash,
+                        now + CREDENTIAL_MILLIS));
+            }
+        }
+        if (MessageDigest.isEqual(hash, digest(salt, pPassword))) {
+            return tourist.getId();
+        }
+        return -1;
+    }
+
+    /**
+     * Verifies the credentials of a user and opens a session
+     *
+     * @Param pUsername username of the user
+     * @Param pPassword password of the user
+     * @Param pUserType type of the user, as in IAuthentication
+     * @Return token of the session, null if the credentials are not correct
+     * @throws SQLException
+     */
+    public String openSession(String pUsername, String pPassword, byte pUserType) throws SQLException {
+        int id = authenticate(pUsername, pPassword, pUserType);
+        if (id < 0) {
+            return null;
+        }
+        byte[] nonce = new byte[12];
+        random.nextBytes(nonce);
+        long expiry = System.currentTimeMillis() + SESSION_MILLIS;
+        String payload = id + "" + SEPARATOR + pUserType + SEPARATOR + Long.toHexString(expiry) + SEPARATOR
+                + toHex(nonce);
+        return payload + SEPARATOR + toHex(sign(payload));
+    }
+
+    /**
+     * Validates a token without accessing the database
+     *
+     * @Param pToken token of the session
+     * @Return session of the token, null if the token is not valid, expired
+     *         or revoked
+     */
+    public Session getSession(String pToken) {
+        if (pToken == null) {
+            return null;
+        }
+        int signatureStart = pToken.lastIndexOf(SEPARATOR);
+        if (signatureStart < 0) {
+            return null;
+        }
+        String payload = pToken.substring(0, signatureStart);
+        byte[] signature = fromHex(pToken.substring(signatureStart + 1));
+        if (signature == null || !MessageDigest.isEqual(signature, sign(payload))) {
+            return null;
+        }
+// The signature is correct, so the payload was written by this server
+        String[] fields = payload.split("\\.");
+        if (fields.length != 4) {
+            return null;
+        }
+        try {
+            int id = Integer.parseInt(fields[0]);
+            byte userType = Byte.parseByte(fields[1]);
+            long expiry = Long.parseLong(fields[2], 16);
+            long now = System.currentTimeMillis();
+            if (expiry <= now || revoked.containsKey(fields[3])) {
+                return null;
+            }
+            Long revokedBefore = revokedUsers.get(id);
+            if (revokedBefore != null && expiry - SESSION_MILLIS <= revokedBefore.longValue()) {
+                return null;
+            }
+            return new Session(id, userType, new Date(expiry));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Revokes a token before its expiry
+     *
+     * @Param pToken token of the session
+     * @Return true if the token was valid
+     */
+    public boolean closeSession(String pToken) {
+        Session session = getSession(pToken);
+        if (session == null) {
+            return false;
+        }
+        final String nonce = pToken.split("\\.")[3];
+        revoked.put(nonce, session.expiry.getTime());
+        wheel.schedule(new Runnable() {
+            public void run() {
+                revoked.remove(nonce);
+            }
+        }, session.expiry);
+        return true;
+    }
+
+    /**
+     * Removes the credentials of a tourist from the cache, to be called when
+     * his profile changes. The logins that are reading the tourist from the
+     * database in the meantime do not cache what they read.
+     *
+     * @Param pIdTourist ID of the tourist
+     */
+    public void forgetCredentials(final int pIdTourist) {
+        final Long now = Long.valueOf(System.currentTimeMillis());
+        changedUsers.put(pIdTourist, now);
+        wheel.schedule(new Runnable() {
+            public void run() {
+                changedUsers.remove(pIdTourist, now);
+            }
+        }, new Date(now.longValue() + CREDENTIAL_MILLIS));
+        synchronized (credentials) {
+            Iterator<Credential> iterator = credentials.values().iterator();
+            while (iterator.hasNext()) {
+                Credential credential = iterator.next();
+                if (credential.id == pIdTourist && credential.userType == IAuthentication.VISITORS) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Revokes all the sessions of a tourist and removes his credentials from
+     * the cache, to be called when he is disabled or deleted
+     *
+     * @Param pIdTourist ID of the tourist
+     */
+    public void invalidateTourist(final int pIdTourist) {
+        final Long now = Long.valueOf(System.currentTimeMillis());
+        revokedUsers.put(pIdTourist, now);
+        forgetCredentials(pIdTourist);
+        wheel.schedule(new Runnable() {
+            public void run() {
+                revokedUsers.remove(pIdTourist, now);
+            }
+        }, new Date(now.longValue() + SESSION_MILLIS));
+    }
+
+    private byte[] sign(String pPayload) {
+        try {
+            return mac.get().doFinal(pPayload.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e.toString());
+        }
+    }
+
+    private static byte[] digest(byte[] pSalt, String pPassword) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(pSalt);
+            return digest.digest(pPassword.getBytes("UTF-8"));
+        } catch (Exception e) {
+            throw new IllegalStateException(e.toString());
+        }
+    }
+
+    private static String toHex(byte[] pBytes) {
+        StringBuilder toReturn = new StringBuilder(pBytes.length * 2);
+        for (byte b : pBytes) {
+            toReturn.append(Character.forDigit((b >> 4) & 0xF, 16));
+            toReturn.append(Character.forDigit(b & 0xF, 16));
+        }
+        return toReturn.toString();
+    }
+
+    private static byte[] fromHex(String pHex) {
+        if (pHex.length() % 2 != 0) {
+            return null;
+        }
+        byte[] toReturn = new byte[pHex.length() / 2];
+        for (int i = 0; i < toReturn.length; i++) {
+            int high = Character.digit(pHex.charAt(2 * i), 16);
+            int low = Character.digit(pHex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            toReturn[i] = (byte) ((high << 4) | low);
+        }
+        return toReturn;
+    }
+}
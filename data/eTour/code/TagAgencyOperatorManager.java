@@ -3,6 +3,8 @@
 import java.rmi.RemoteException;
 import java.sql.SQLException;
 import unisa.gps.etour.bean.BeanTag;
+import unisa.gps.etour.repository.CatalogChange;
+import unisa.gps.etour.repository.CatalogPublisher;
 import unisa.gps.etour.util.ErrorMessage;
 
 /**
@@ -28,7 +30,6 @@ public class TagAgencyOperatorManager extends TagCommonManager implements ITagAg
         try {
 // Make the database operation
             tags.clearTag(pTagID);
-            return true;
         }
 // Exception in the execution of database operations
         catch (SQLException e) {
@@ -40,6 +41,9 @@ public class TagAgencyOperatorManager extends TagCommonManager implements ITagAg
             System.out.println("Error in method clearTag" + ee.toString());
             throw new RemoteException(ErrorMessage.ERROR_UNKNOWN);
         }
+// The replicas are updated only after the database
+        publishTags();
+        return true;
     }
 
 // Method that allows the insertion of a new tag as a parameter
@@ -52,7 +56,6 @@ public class TagAgencyOperatorManager extends TagCommonManager implements ITagAg
         try {
 // Execute the operation on the Database
             tags.insertTag(pTagNew);
-            return true;
         }
 // Exception running the operation on Database
         catch (SQLException e) {
@@ -64,6 +67,9 @@ public class TagAgencyOperatorManager extends TagCommonManager implements ITagAg
             System.out.println("Error in method insertTag" + ee.toString());
             throw new RemoteException(ErrorMessage.ERROR_UNKNOWN);
         }
+// The replicas are updated only after the database
+        publishTags();
+        return true;
     }
 
 // Method that enables the modifytion of a tag that is passed as
@@ -75,7 +81,6 @@ public class TagAgencyOperatorManager extends TagCommonManager implements ITagAg
         try {
 // Execute the operation on the Database
             tags.modifyTag(pTagChanged);
-            return true;
         }
 // Exception running the operation on Database
         catch (SQLException e) {
@@ -87,6 +92,22 @@ public class TagAgencyOperatorManager extends TagCommonManager implements ITagAg
             System.out.println("Error in method modifyTag" + ee.toString());
             throw new RemoteException(ErrorMessage.ERROR_UNKNOWN);
         }
+// The replicas are updated only after the database
+        publishTags();
+        return true;
+    }
+
+// Method that publishes the whole list of tags to the replicas of the
+// Catalog, if the publisher is started. The change is already in the
+// Database, so an error is only logged
+    private void publishTags() {
+        if (CatalogPublisher.isStarted()) {
+            try {
+                CatalogPublisher.publish(CatalogChange.TAGS, 0, tags.getListTag());
+            } catch (Exception e) {
+                System.out.println("Error in method publishTags:" + e.toString());
+            }
+        }
     }
 
 // Method to obtain the tags whose identifier is passed
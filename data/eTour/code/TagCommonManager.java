@@ -4,10 +4,14 @@ import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.List;
 import unisa.gps.etour.bean.BeanTag;
 import unisa.gps.etour.repository.DBTag;
 import unisa.gps.etour.repository.IDBTag;
+import unisa.gps.etour.util.BeanList;
 import unisa.gps.etour.util.ErrorMessage;
+import unisa.gps.etour.util.IRemoteCursor;
+import unisa.gps.etour.util.RemoteCursor;
 
 /**
  * Class that implements the common tasks for the use of tags
@@ -52,6 +56,20 @@ public class TagCommonManager extends UnicastRemoteObject implements ITagCommonM
 // Caller
         if (null == toReturn)
             throw new RemoteException(ErrorMessage.ERROR_FORMAT_BEAN);
-        return toReturn;
+        return new BeanList<BeanTag>(toReturn);
+    }
+
+// Method that returns all tags through a cursor read in chunks; the tags
+// Are read from the database a page at a time, when the client asks for them
+    public IRemoteCursor<BeanTag> getTagsCursor() throws RemoteException {
+        return new RemoteCursor<BeanTag>(new RemoteCursor.PagedSource<BeanTag>() {
+            protected List<BeanTag> readPage(int pAfterKey, int pMax) throws SQLException {
+                return tags.getListTag(pAfterKey, pMax);
+            }
+
+            protected int getKey(BeanTag pElement) {
+                return pElement.getId();
+            }
+        });
     }
 }
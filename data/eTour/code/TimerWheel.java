@@ -0,0 +1,122 @@
+﻿package unisa.gps.etour.util;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Hashed timer wheel. Tasks are placed in the slot of the tick in which they
+ * expire and at every tick only the tasks of the current slot are examined,
+ * so scheduling and cancelling cost constant time whatever the number of
+ * pending tasks. The precision is that of the tick.
+ *
+ */
+public class TimerWheel {
+    private final long tickMillis;
+    private final long startTime;
+    private final List<LinkedList<Timeout>> wheel;
+    private final Timer ticker;
+    private long currentTick;
+
+    /**
+     * Task scheduled on the wheel
+     */
+    public static class Timeout {
+        private final Runnable task;
+        private final long deadlineTick;
+        private boolean cancelled;
+
+        private Timeout(Runnable pTask, long pDeadlineTick) {
+            task = pTask;
+            deadlineTick = pDeadlineTick;
+        }
+
+        /**
+         * Cancels the task, if not already executed
+         */
+        public synchronized void cancel() {
+            cancelled = true;
+        }
+
+        private synchronized boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Parameterized constructor, starts the thread that advances the wheel
+     *
+     * @Param pTickMillis duration of a tick in milliseconds
+     * @Param pWheelSize number of slots of the wheel
+     * @Param pName name of the thread
+     */
+    public TimerWheel(long pTickMillis, int pWheelSize, String pName) {
+        tickMillis = pTickMillis;
+        startTime = System.currentTimeMillis();
+        wheel = new ArrayList<LinkedList<Timeout>>(pWheelSize);
+        for (int i = 0; i < pWheelSize; i++) {
+            wheel.add(new LinkedList<Timeout>());
+        }
+        ticker = new Timer(pName, true);
+        ticker.scheduleAtFixedRate(new TimerTask() {
+            public void run() {
+                advance();
+            }
+        }, pTickMillis, pTickMillis);
+    }
+
+    /**
+     * Schedules a task at a given date. A date already passed runs the task
+     * at the next tick.
+     *
+     * @Param pTask task to run
+     * @Param pWhen date of execution
+     * @Return handle to cancel the task
+     */
+    public synchronized Timeout schedule(Runnable pTask, Date pWhen) {
+        long ticks = (pWhen.getTime() - startTime + tickMillis - 1) / tickMillis;
+        long deadline = Math.max(ticks, currentTick + 1);
+        Timeout timeout = new Timeout(pTask, deadline);
+        wheel.get((int) (deadline % wheel.size())).add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the wheel, pending tasks are discarded
+     */
+    public synchronized void stop() {
+        ticker.cancel();
+        for (LinkedList<Timeout> slot : wheel) {
+            slot.clear();
+        }
+    }
+
+    private void advance() {
+        List<Timeout> expired = new ArrayList<Timeout>();
+        synchronized (this) {
+            currentTick++;
+            Iterator<Timeout> iterator = wheel.get((int) (currentTick % wheel.size())).iterator();
+            while (iterator.hasNext()) {
+                Timeout timeout = iterator.next();
+                if (timeout.isCancelled()) {
+                    iterator.remove();
+                } else if (timeout.deadlineTick <= currentTick) {
+                    iterator.remove();
+                    expired.add(timeout);
+                }
+            }
+        }
+// The tasks are run outside the lock so they can schedule again
+        for (Timeout timeout : expired) {
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                System.out.println("Error in timer task " + e.toString());
+            }
+        }
+    }
+}
@@ -11,6 +11,8 @@ import unisa.gps.etour.repository.DBVisitBC;
 import unisa.gps.etour.repository.DBVisitPR;
 import unisa.gps.etour.repository.IDBVisitBC;
 import unisa.gps.etour.repository.IDBVisitPR;
+import unisa.gps.etour.repository.TouristDirectory;
+import unisa.gps.etour.util.BeanList;
 import unisa.gps.etour.util.ErrorMessage;
 
 /**
@@ -65,7 +67,7 @@ public class TouristAgencyManager extends TouristCommonManager implements ITouri
 // Return the result from the data layer ottenuro
         if (null == toReturn)
             throw new RemoteException(ErrorMessage.ERROR_FORMAT_BEAN);
-        return toReturn;
+        return new BeanList<BeanTourist>(toReturn);
     }
 
 // Method that allows to obtain all the tourists who have an account
@@ -92,7 +94,29 @@ public class TouristAgencyManager extends TouristCommonManager implements ITouri
 // Check the data to return, so you do not return null values
         if (null == toReturn)
             throw new RemoteException(ErrorMessage.ERROR_FORMAT_BEAN);
-        return toReturn;
+        return new BeanList<BeanTourist>(toReturn);
+    }
+
+// Method that returns the first tourists whose username, name or
+// Surname starts with the text typed in the search
+    public ArrayList<BeanTourist> searchTourist(String pPrefix, int pMaxResults) throws RemoteException {
+// Check the validity of input data
+        if (pMaxResults <= 0)
+            throw new RemoteException(ErrorMessage.ERROR_DATA);
+        try {
+// The search is answered by the prefix index in memory
+            return new BeanList<BeanTourist>(TouristDirectory.getInstance().getTourists(pPrefix, pMaxResults));
+        }
+// Exception in loading the directory from the database
+        catch (SQLException e) {
+            System.out.println("Error in method searchTourist" + e.toString());
+            throw new RemoteException(ErrorMessage.ERROR_DBMS);
+        }
+// Unexpected exceptions caused by other factors
+        catch (Exception ee) {
+            System.out.println("Error in method searchTourist" + ee.toString());
+            throw new RemoteException(ErrorMessage.ERROR_UNKNOWN);
+        }
     }
 
 // Method that allows the activation of a tourist is not yet activated
@@ -112,10 +136,12 @@ public class TouristAgencyManager extends TouristCommonManager implements ITouri
 // It sets the value indicating the activation status to true
             toChange.setActive(true);
 // You try to change the database
-            if (tourist.modifyTourist(toChange))
+            if (tourist.modifyTourist(toChange)) {
 // If the edit operation is successful returns
 // True
+                SessionManager.getInstance().forgetCredentials(pIdTourist);
                 return true;
+            }
         }
 // Exception in the execution of database operations
         catch (SQLException e) {
@@ -150,10 +176,13 @@ public class TouristAgencyManager extends TouristCommonManager implements ITouri
 // It sets the value indicating the activation status to false
             toChange.setActive(false);
 // You try to change the database
-            if (tourist.modifyTourist(toChange))
+            if (tourist.modifyTourist(toChange)) {
 // If the edit operation is successful returns
 // True
+// The sessions of the tourist are closed
+                SessionManager.getInstance().invalidateTourist(pIdTourist);
                 return true;
+            }
         }
 // Exception in the execution of database operations
         catch (SQLException e) {
@@ -178,8 +207,10 @@ public class TouristAgencyManager extends TouristCommonManager implements ITouri
             throw new RemoteException(ErrorMessage.ERROR_DATA);
         try {
 // If the clearing is successful it returns true
-            if (tourist.delete(pIdTourist))
+            if (tourist.delete(pIdTourist)) {
+                SessionManager.getInstance().invalidateTourist(pIdTourist);
                 return true;
+            }
         } catch (SQLException e) {
 // If the data layer sends an exception is throws the exception remote
             System.out.println("Error in delete method" + e.toString());
@@ -219,7 +250,7 @@ public class TouristAgencyManager extends TouristCommonManager implements ITouri
 // Check the data back in order not to return null values
         if (null == toReturn)
             throw new RemoteException(ErrorMessage.ERROR_FORMAT_BEAN);
-        return toReturn;
+        return new BeanList<BeanVisitBC>(toReturn);
     }
 
 // Method that returns an ArrayList containing the feedback issued by
@@ -246,6 +277,6 @@ public class TouristAgencyManager extends TouristCommonManager implements ITouri
 // Check the array of return, so you do not return null values
         if (null == toReturn)
             throw new RemoteException(ErrorMessage.ERROR_FORMAT_BEAN);
-        return toReturn;
+        return new BeanList<BeanVisitPR>(toReturn);
     }
 }
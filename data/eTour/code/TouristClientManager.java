@@ -1,22 +1,26 @@
 ﻿package unisa.gps.etour.control.RegisteredUserManager;
 
+import java.io.IOException;
 import java.rmi.RemoteException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import unisa.gps.etour.bean.BeanCulturalHeritage;
 import unisa.gps.etour.bean.BeanSearchPreference;
 import unisa.gps.etour.bean.BeanGenericPreference;
 import unisa.gps.etour.bean.BeanRefreshmentPoint;
 import unisa.gps.etour.bean.BeanTourist;
+import unisa.gps.etour.bean.BeanTouristHome;
 import unisa.gps.etour.bean.BeanVisitBC;
 import unisa.gps.etour.bean.BeanVisitPR;
+import unisa.gps.etour.repository.CatalogChange;
+import unisa.gps.etour.repository.CatalogPublisher;
 import unisa.gps.etour.repository.DBCulturalHeritage;
 import unisa.gps.etour.repository.DBSearchPreference;
 import unisa.gps.etour.repository.DBGenericPreference;
 import unisa.gps.etour.repository.DBRefreshmentPoint;
-import unisa.gps.etour.repository.DBTourist;
 import unisa.gps.etour.repository.DBVisitBC;
 import unisa.gps.etour.repository.DBVisitPR;
 import unisa.gps.etour.repository.IDBCulturalHeritage;
@@ -26,8 +30,14 @@ import unisa.gps.etour.repository.IDBRefreshmentPoint;
 import unisa.gps.etour.repository.IDBTourist;
 import unisa.gps.etour.repository.IDBVisitBC;
 import unisa.gps.etour.repository.IDBVisitPR;
+import unisa.gps.etour.repository.TouristDirectory;
+import unisa.gps.etour.repository.VisitEvent;
+import unisa.gps.etour.repository.VisitEventLog;
+import unisa.gps.etour.repository.VisitProjection;
 import unisa.gps.etour.util.ControlData;
 import unisa.gps.etour.util.ErrorMessage;
+import unisa.gps.etour.util.IRemoteCursor;
+import unisa.gps.etour.util.RemoteCursor;
 
 /**
  * Class on the Management of Tourist Information
@@ -36,6 +46,13 @@ import unisa.gps.etour.util.ErrorMessage;
 
 public class TouristClientManager extends TouristCommonManager implements ITouristClientManager {
     private static final long serialVersionUID = -6161592850721537385L;
+// Locks of the visits of a tourist to a site, chosen by hash
+    private static final Object[] VISIT_LOCKS = new Object[64];
+    static {
+        for (int i = 0; i < VISIT_LOCKS.length; i++) {
+            VISIT_LOCKS[i] = new Object();
+        }
+    }
     private IDBTourist profileTourist; // Data Management for tourists
     private IDBGenericPreference prefGenTourist; // preferences, general manager of the tourist
     private IDBSearchPreference prefRicTourist; // Handle search preferences of tourists
@@ -44,17 +61,45 @@ public class TouristClientManager extends TouristCommonManager implements ITouri
     private IDBCulturalHeritage culturalHeritage; // Managing cultural heritage (we need only obtain a bean CulturalHeritage x
 // from its ID
     private IDBRefreshmentPoint refreshmentPoint; // Management refreshment areas (use the same object "culturalHeritage"
+    private TouristHomeCache homes; // Favorites and last visits of the tourists
 
     public TouristClientManager() throws RemoteException {
         super();
 
-        profileTourist = new DBTourist();
+        profileTourist = TouristDirectory.getInstance();
         prefGenTourist = new DBGenericPreference();
         prefRicTourist = new DBSearchPreference();
         visitedBC = new DBVisitBC();
         visitedPR = new DBVisitPR();
         culturalHeritage = new DBCulturalHeritage();
         refreshmentPoint = new DBRefreshmentPoint();
+        homes = new TouristHomeCache(profileTourist, visitedBC, visitedPR, culturalHeritage, refreshmentPoint);
+    }
+
+    /**
+     * Constructor on given data management objects, for example in memory
+     *
+     * @Param pTourist access to the tourists
+     * @Param pGenericPreference access to the generic preferences
+     * @Param pSearchPreference access to the search preferences
+     * @Param pVisitBC access to the visits to cultural heritage
+     * @Param pVisitPR access to the visits to refreshment points
+     * @Param pCulturalHeritage access to the cultural heritage
+     * @Param pRefreshmentPoint access to the refreshment points
+     * @throws RemoteException
+     */
+    public TouristClientManager(IDBTourist pTourist, IDBGenericPreference pGenericPreference,
+            IDBSearchPreference pSearchPreference, IDBVisitBC pVisitBC, IDBVisitPR pVisitPR,
+            IDBCulturalHeritage pCulturalHeritage, IDBRefreshmentPoint pRefreshmentPoint) throws RemoteException {
+        super(pTourist);
+        profileTourist = pTourist;
+        prefGenTourist = pGenericPreference;
+        prefRicTourist = pSearchPreference;
+        visitedBC = pVisitBC;
+        visitedPR = pVisitPR;
+        culturalHeritage = pCulturalHeritage;
+        refreshmentPoint = pRefreshmentPoint;
+        homes = new TouristHomeCache(profileTourist, visitedBC, visitedPR, culturalHeritage, refreshmentPoint);
     }
 
     /*
@@ -273,7 +318,11 @@ public class TouristClientManager extends TouristCommonManager implements ITouri
             boolean checkdate = ControlData.checkBeanTourist(pprofileTourist);
 
             if (checkdate) {// If the data control is positive
-                return profileTourist.modifyTourist(pprofileTourist);
+                boolean modified = profileTourist.modifyTourist(pprofileTourist);
+                if (modified) {// The password could be changed
+                    SessionManager.getInstance().forgetCredentials(pprofileTourist.getId());
+                }
+                return modified;
             } else {
                 return false; // Data error
             }
@@ -309,6 +358,28 @@ public class TouristClientManager extends TouristCommonManager implements ITouri
         return visited;
     }
 
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # getCulturalHeritageVisitCursor (int)
+     */
+    public IRemoteCursor<BeanVisitBC> getCulturalHeritageVisitCursor(final int pIdTourist) throws RemoteException {
+        if (pIdTourist <= 0) {
+            throw new RemoteException(ErrorMessage.ERROR_DATA);
+        }
+// The visits are read a page at a time, when the client asks for them
+        return new RemoteCursor<BeanVisitBC>(new RemoteCursor.PagedSource<BeanVisitBC>() {
+            protected List<BeanVisitBC> readPage(int pAfterKey, int pMax) throws SQLException {
+                return visitedBC.getListVisitBCTourist(pIdTourist, pAfterKey, pMax);
+            }
+
+            protected int getKey(BeanVisitBC pElement) {
+                return pElement.getIdCulturalHeritage();
+            }
+        });
+    }
+
     /*
      * (Non-Javadoc)
      *
@@ -342,10 +413,38 @@ public class TouristClientManager extends TouristCommonManager implements ITouri
     public boolean insertCulturalHeritageVisit(BeanVisitBC pVisitBC) throws RemoteException {
         if (ControlData.checkBeanVisitBC(pVisitBC)) {
             try {
-
-                return visitedBC.insertVisitBC(pVisitBC);
+                VisitEventLog events = VisitEventLog.getInstance();
+                if (events != null) {
+// The visit is durable once in the log; the database and the
+// Aggregates are updated from it. The check and the append are atomic
+// For the tourist and the good, and the visits already in the database
+// Count as well
+                    int idCulturalHeritage = pVisitBC.getIdCulturalHeritage();
+                    int idTourist = pVisitBC.getIdTourist();
+                    VisitProjection projection = events.getProjection();
+                    synchronized (visitLock(CatalogChange.CULTURAL_HERITAGE, idCulturalHeritage, idTourist)) {
+                        if (projection.hasVisited(CatalogChange.CULTURAL_HERITAGE, idCulturalHeritage, idTourist)
+                                || visitedBC.getVisitBC(idCulturalHeritage, idTourist) != null) {
+                            return false;
+                        }
+                        events.append(VisitEvent.of(pVisitBC));
+                        projection.markVisited(CatalogChange.CULTURAL_HERITAGE, idCulturalHeritage, idTourist);
+                    }
+                    homes.addVisit(pVisitBC);
+                    return true;
+                }
+                boolean result = visitedBC.insertVisitBC(pVisitBC);
+// The rating changes the aggregates of the good in the replicas
+                if (result) {
+                    homes.addVisit(pVisitBC);
+                    CatalogPublisher.publishRating(CatalogChange.CULTURAL_HERITAGE, pVisitBC
+                            .getIdCulturalHeritage(), pVisitBC.getRating());
+                }
+                return result;
             } catch (SQLException e) {
                 throw new RemoteException(ErrorMessage.ERROR_DBMS);
+            } catch (IOException e) {
+                throw new RemoteException(ErrorMessage.ERROR_VISIT_LOG);
             } catch (Exception e) {
                 throw new RemoteException(ErrorMessage.ERROR_UNKNOWN);
             }
@@ -362,9 +461,35 @@ public class TouristClientManager extends TouristCommonManager implements ITouri
     public boolean insertRefreshmentPointVisit(BeanVisitPR pVisitPR) throws RemoteException {
         if (ControlData.checkBeanVisitPR(pVisitPR)) {
             try {
-                return visitedPR.insertVisitPR(pVisitPR);
+                VisitEventLog events = VisitEventLog.getInstance();
+                if (events != null) {
+                    int idRefreshmentPoint = pVisitPR.getIdRefreshmentPoint();
+                    int idTourist = pVisitPR.getIdTourist();
+                    VisitProjection projection = events.getProjection();
+                    synchronized (visitLock(CatalogChange.REFRESHMENT_POINT, idRefreshmentPoint, idTourist)) {
+                        if (projection.hasVisited(CatalogChange.REFRESHMENT_POINT, idRefreshmentPoint, idTourist)
+                                || visitedPR.getVisitPR(idRefreshmentPoint, idTourist) != null) {
+                            return false;
+                        }
+                        events.append(VisitEvent.of(pVisitPR));
+                        projection.markVisited(CatalogChange.REFRESHMENT_POINT, idRefreshmentPoint, idTourist);
+                    }
+                    homes.addVisit(pVisitPR);
+                    return true;
+                }
+                boolean result = visitedPR.insertVisitPR(pVisitPR);
+// The rating changes the aggregates of the refreshment point in the
+// Replicas
+                if (result) {
+                    homes.addVisit(pVisitPR);
+                    CatalogPublisher.publishRating(CatalogChange.REFRESHMENT_POINT, pVisitPR
+                            .getIdRefreshmentPoint(), pVisitPR.getRating());
+                }
+                return result;
             } catch (SQLException e) {
                 throw new RemoteException(ErrorMessage.ERROR_DBMS);
+            } catch (IOException e) {
+                throw new RemoteException(ErrorMessage.ERROR_VISIT_LOG);
             } catch (Exception e) {
                 throw new RemoteException(ErrorMessage.ERROR_UNKNOWN);
             }
@@ -381,7 +506,11 @@ public class TouristClientManager extends TouristCommonManager implements ITouri
     public boolean insertCulturalHeritagePreference(int pIdTourist, int pIdCulturalHeritage) throws RemoteException {
         if (pIdTourist > 0 && pIdCulturalHeritage > 0) {
             try {
-                return profileTourist.insertCulturalHeritagePreference(pIdTourist, pIdCulturalHeritage);
+                boolean result = profileTourist.insertCulturalHeritagePreference(pIdTourist, pIdCulturalHeritage);
+                if (result) {
+                    homes.remove(pIdTourist);
+                }
+                return result;
             } catch (SQLException e) {
 
                 throw new RemoteException(ErrorMessage.ERROR_DBMS);
@@ -401,7 +530,11 @@ public class TouristClientManager extends TouristCommonManager implements ITouri
     public boolean insertRefreshmentPointPreference(int pIdTourist, int pIdRefreshmentPoint) throws RemoteException {
         if (pIdTourist > 0 && pIdRefreshmentPoint > 0) {
             try {
-                return profileTourist.insertRefreshmentPointPreference(pIdTourist, pIdRefreshmentPoint);
+                boolean result = profileTourist.insertRefreshmentPointPreference(pIdTourist, pIdRefreshmentPoint);
+                if (result) {
+                    homes.remove(pIdTourist);
+                }
+                return result;
             } catch (SQLException e) {
 
                 throw new RemoteException(ErrorMessage.ERROR_DBMS);
@@ -421,7 +554,11 @@ public class TouristClientManager extends TouristCommonManager implements ITouri
     public boolean clearCulturalHeritagePreference(int pIdTourist, int pIdCulturalHeritage) throws RemoteException {
         if (pIdTourist > 0 && pIdCulturalHeritage > 0) {
             try {
-                return profileTourist.clearCulturalHeritagePreference(pIdTourist, pIdCulturalHeritage);
+                boolean result = profileTourist.clearCulturalHeritagePreference(pIdTourist, pIdCulturalHeritage);
+                if (result) {
+                    homes.remove(pIdTourist);
+                }
+                return result;
             } catch (SQLException e) {
 
                 throw new RemoteException(ErrorMessage.ERROR_DBMS);
@@ -441,7 +578,11 @@ public class TouristClientManager extends TouristCommonManager implements ITouri
     public boolean clearRefreshmentPointPreference(int pIdTourist, int pIdRefreshmentPoint) throws RemoteException {
         if (pIdTourist > 0 && pIdRefreshmentPoint > 0) {
             try {
-                return profileTourist.clearRefreshmentPointPreference(pIdTourist, pIdRefreshmentPoint);
+                boolean result = profileTourist.clearRefreshmentPointPreference(pIdTourist, pIdRefreshmentPoint);
+                if (result) {
+                    homes.remove(pIdTourist);
+                }
+                return result;
             } catch (SQLException e) {
 
                 throw new RemoteException(ErrorMessage.ERROR_DBMS);
@@ -461,18 +602,9 @@ public class TouristClientManager extends TouristCommonManager implements ITouri
     public BeanCulturalHeritage[] getCulturalHeritagePreference(int pIdTourist) throws RemoteException {
         if (pIdTourist > 0) {
             try {
-// List of cultural favorites of tourists cn id = "pIdTourist"
-                ArrayList<Integer> listPreference = profileTourist.getCulturalHeritagePreference(pIdTourist);
-// Convert ArrayList a simple array
-                BeanCulturalHeritage[] favorites = null;
-                favorites[listPreference.size()] = new BeanCulturalHeritage();
-                favorites = listPreference.toArray(favorites);
-
-                int k = 0; // Cycle counter
-                for (Integer i : listPreference) {
-// Fill the array with the favorite bean of all cultural favorites from the tourist
-                    favorites[k++] = culturalHeritage.getCulturalHeritage(i);
-                }
+// The favorites come from the home of the tourist, read all together
+                List<BeanCulturalHeritage> favorites = homes.getHome(pIdTourist).getFavoriteCulturalHeritage();
+                return favorites.toArray(new BeanCulturalHeritage[favorites.size()]);
             } catch (SQLException e) {
                 throw new RemoteException(ErrorMessage.ERROR_DBMS);
             } catch (Exception e) {
@@ -491,19 +623,28 @@ public class TouristClientManager extends TouristCommonManager implements ITouri
     public BeanRefreshmentPoint[] getRefreshmentPointPreference(int pIdTourist) throws RemoteException {
         if (pIdTourist > 0) {
             try {
-// List of places for refreshment favorite tourist id = "pIdTourist"
-                ArrayList<Integer> listPreference = profileTourist.getRefreshmentPointPreference(pIdTourist);
-
-// Convert ArrayList a simple array
-                BeanRefreshmentPoint[] favorites = null;
-                favorites[listPreference.size()] = new BeanRefreshmentPoint();
-                favorites = listPreference.toArray(favorites);
-
-                int k = 0; // Cycle counter
-                for (Integer i : listPreference) {
-// Fill the array with the favorite bean of all cultural favorites from the tourist
-                    favorites[k++] = refreshmentPoint.getRefreshmentPoint(i);
-                }
+// The favorites come from the home of the tourist, read all together
+                List<BeanRefreshmentPoint> favorites = homes.getHome(pIdTourist).getFavoriteRefreshmentPoints();
+                return favorites.toArray(new BeanRefreshmentPoint[favorites.size()]);
+            } catch (SQLException e) {
+                throw new RemoteException(ErrorMessage.ERROR_DBMS);
+            } catch (Exception e) {
+                throw new RemoteException(ErrorMessage.ERROR_UNKNOWN);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # getTouristHome (int)
+     */
+    public BeanTouristHome getTouristHome(int pIdTourist) throws RemoteException {
+        if (pIdTourist > 0) {
+            try {
+                return homes.getHome(pIdTourist);
             } catch (SQLException e) {
                 throw new RemoteException(ErrorMessage.ERROR_DBMS);
             } catch (Exception e) {
@@ -512,4 +653,236 @@ public class TouristClientManager extends TouristCommonManager implements ITouri
         }
         return null;
     }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # insertGenericPreference (java.lang.String, unisa.gps.etour.bean.BeanGenericPreference)
+     */
+    public boolean insertGenericPreference(String pToken, BeanGenericPreference pGenericPreference)
+            throws RemoteException {
+        if (pGenericPreference == null) {
+            throw new RemoteException(ErrorMessage.ERROR_FORMAT_BEAN);
+        }
+        pGenericPreference.setIdTourist(touristOf(pToken));
+        return insertGenericPreference(pGenericPreference);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # getGenericPreference (java.lang.String)
+     */
+    public BeanGenericPreference getGenericPreference(String pToken) throws RemoteException {
+        return getGenericPreference(touristOf(pToken));
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # modifyGenericPreference (java.lang.String, unisa.gps.etour.bean.BeanGenericPreference)
+     */
+    public boolean modifyGenericPreference(String pToken, BeanGenericPreference pGenericPreferenceNew)
+            throws RemoteException {
+        if (pGenericPreferenceNew == null) {
+            throw new RemoteException(ErrorMessage.ERROR_FORMAT_BEAN);
+        }
+        pGenericPreferenceNew.setIdTourist(touristOf(pToken));
+        return modifyGenericPreference(pGenericPreferenceNew);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # clearGenericPreference (java.lang.String)
+     */
+    public BeanGenericPreference clearGenericPreference(String pToken) throws RemoteException {
+        return clearGenericPreference(touristOf(pToken));
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # insertSearchPreference (java.lang.String, unisa.gps.etour.bean.BeanSearchPreference)
+     */
+    public boolean insertSearchPreference(String pToken, BeanSearchPreference pSearchPreference)
+            throws RemoteException {
+        return insertSearchPreference(touristOf(pToken), pSearchPreference);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # getSearchPreference (java.lang.String)
+     */
+    public BeanSearchPreference[] getSearchPreference(String pToken) throws RemoteException {
+        return getSearchPreference(touristOf(pToken));
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # clearSearchPreference (java.lang.String, int)
+     */
+    public BeanSearchPreference clearSearchPreference(String pToken, int pIdSearchPreference) throws RemoteException {
+        return clearSearchPreference(touristOf(pToken), pIdSearchPreference);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # getCulturalHeritageVisit (java.lang.String)
+     */
+    public BeanVisitBC[] getCulturalHeritageVisit(String pToken) throws RemoteException {
+        return getCulturalHeritageVisit(touristOf(pToken));
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # getCulturalHeritageVisitCursor (java.lang.String)
+     */
+    public IRemoteCursor<BeanVisitBC> getCulturalHeritageVisitCursor(String pToken) throws RemoteException {
+        return getCulturalHeritageVisitCursor(touristOf(pToken));
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # getRefreshmentPointVisit (java.lang.String)
+     */
+    public BeanVisitPR[] getRefreshmentPointVisit(String pToken) throws RemoteException {
+        return getRefreshmentPointVisit(touristOf(pToken));
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # insertCulturalHeritageVisit (java.lang.String, unisa.gps.etour.bean.BeanVisitBC)
+     */
+    public boolean insertCulturalHeritageVisit(String pToken, BeanVisitBC pVisitBC) throws RemoteException {
+        if (pVisitBC == null) {
+            throw new RemoteException(ErrorMessage.ERROR_FORMAT_BEAN);
+        }
+        pVisitBC.setIdTourist(touristOf(pToken));
+        return insertCulturalHeritageVisit(pVisitBC);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # insertRefreshmentPointVisit (java.lang.String, unisa.gps.etour.bean.BeanVisitPR)
+     */
+    public boolean insertRefreshmentPointVisit(String pToken, BeanVisitPR pVisitPR) throws RemoteException {
+        if (pVisitPR == null) {
+            throw new RemoteException(ErrorMessage.ERROR_FORMAT_BEAN);
+        }
+        pVisitPR.setIdTourist(touristOf(pToken));
+        return insertRefreshmentPointVisit(pVisitPR);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # insertCulturalHeritagePreference (java.lang.String, int)
+     */
+    public boolean insertCulturalHeritagePreference(String pToken, int pIdCulturalHeritage) throws RemoteException {
+        return insertCulturalHeritagePreference(touristOf(pToken), pIdCulturalHeritage);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # insertRefreshmentPointPreference (java.lang.String, int)
+     */
+    public boolean insertRefreshmentPointPreference(String pToken, int pIdRefreshmentPoint) throws RemoteException {
+        return insertRefreshmentPointPreference(touristOf(pToken), pIdRefreshmentPoint);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # clearCulturalHeritagePreference (java.lang.String, int)
+     */
+    public boolean clearCulturalHeritagePreference(String pToken, int pIdCulturalHeritage) throws RemoteException {
+        return clearCulturalHeritagePreference(touristOf(pToken), pIdCulturalHeritage);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # clearRefreshmentPointPreference (java.lang.String, int)
+     */
+    public boolean clearRefreshmentPointPreference(String pToken, int pIdRefreshmentPoint) throws RemoteException {
+        return clearRefreshmentPointPreference(touristOf(pToken), pIdRefreshmentPoint);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # getCulturalHeritagePreference (java.lang.String)
+     */
+    public BeanCulturalHeritage[] getCulturalHeritagePreference(String pToken) throws RemoteException {
+        return getCulturalHeritagePreference(touristOf(pToken));
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # getRefreshmentPointPreference (java.lang.String)
+     */
+    public BeanRefreshmentPoint[] getRefreshmentPointPreference(String pToken) throws RemoteException {
+        return getRefreshmentPointPreference(touristOf(pToken));
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.control.ManagerRegisteredUsers.IManagerTouristClient
+     * # getTouristHome (java.lang.String)
+     */
+    public BeanTouristHome getTouristHome(String pToken) throws RemoteException {
+        return getTouristHome(touristOf(pToken));
+    }
+
+    /**
+     * Returns the tourist of a session, validated without accessing the
+     * database
+     *
+     * @Param pToken token of the session
+     * @Return ID of the tourist
+     * @Throws RemoteException if the token is not valid, expired, revoked or
+     *         of another type of user
+     */
+    private static int touristOf(String pToken) throws RemoteException {
+        SessionManager.Session session = SessionManager.getInstance().getSession(pToken);
+        if (session == null || session.getUserType() != IAuthentication.VISITORS) {
+            throw new RemoteException(ErrorMessage.ERROR_SESSION);
+        }
+        return session.getIdUser();
+    }
+
+// Returns the lock of the visits of a tourist to a site
+    private static Object visitLock(byte pKind, int pIdSite, int pIdTourist) {
+        int hash = (pKind * 31 + pIdSite) * 31 + pIdTourist;
+        return VISIT_LOCKS[(hash & 0x7fffffff) % VISIT_LOCKS.length];
+    }
 }
@@ -5,7 +5,7 @@ import java.rmi.server.UnicastRemoteObject;
 import java.sql.SQLException;
 
 import unisa.gps.etour.bean.BeanTourist;
-import unisa.gps.etour.repository.DBTourist;
+import unisa.gps.etour.repository.TouristDirectory;
 import unisa.gps.etour.repository.IDBTourist;
 import unisa.gps.etour.util.ErrorMessage;
 
@@ -22,9 +22,9 @@ public class TouristCommonManager extends UnicastRemoteObject implements ITouris
 // Instantiate and connect to the database
     public TouristCommonManager() throws RemoteException {
         super();
-// Connect to the Database
+// Connect to the Database, through the directory kept in memory
         try {
-            tourist = new DBTourist();
+            tourist = TouristDirectory.getInstance();
         }
 // Exception in the database connection
         catch (Exception e) {
@@ -32,6 +32,12 @@ public class TouristCommonManager extends UnicastRemoteObject implements ITouris
         }
     }
 
+// Constructor on a given access to the tourists, for example in memory
+    public TouristCommonManager(IDBTourist pTourist) throws RemoteException {
+        super();
+        tourist = pTourist;
+    }
+
 // Method that allows you to change the data of a tourist through its
 // Data
     public boolean modifyTourist(BeanTourist pProfileTourist) throws RemoteException {
@@ -41,8 +47,11 @@ public class TouristCommonManager extends UnicastRemoteObject implements ITouris
 // Execution of the amendment
         try {
 // If the changes were made returns true
-            if (tourist.modifyTourist(pProfileTourist))
+            if (tourist.modifyTourist(pProfileTourist)) {
+// The password could be changed
+                SessionManager.getInstance().forgetCredentials(pProfileTourist.getId());
                 return true;
+            }
         }
 // Exception in operations on database
         catch (SQLException e) {
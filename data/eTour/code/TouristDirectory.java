@@ -0,0 +1,293 @@
+package unisa.gps.etour.repository;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import unisa.gps.etour.bean.BeanTourist;
+
+/**
+ * Directory of the tourists kept in memory for the searches of the agency.
+ * At the first search it loads all the tourists from the database and
+ * indexes their username, name and surname in a prefix index, so a search
+ * typed in the box of the agency costs a binary search instead of a query on
+ * the whole table. The writes go to the database and then update the
+ * directory; all the other methods are passed to the database.
+ *
+ */
+public class TouristDirectory implements IDBTourist {
+    private static TouristDirectory instance;
+
+    private final IDBTourist dbTourist;
+    private final Map<Integer, BeanTourist> tourists;
+    private final PrefixIndex index;
+    private volatile boolean loaded;
+
+    /**
+     * Parameterized constructor
+     *
+     * @Param pDbTourist access to the tourists in the database
+     */
+    public TouristDirectory(IDBTourist pDbTourist) {
+        dbTourist = pDbTourist;
+        tourists = new ConcurrentHashMap<Integer, BeanTourist>();
+        index = new PrefixIndex();
+    }
+
+    /**
+     * Returns the directory shared by the managers of the server
+     *
+     * @Return directory of the tourists
+     */
+    public static synchronized TouristDirectory getInstance() {
+        if (instance == null) {
+            instance = new TouristDirectory(new DBTourist());
+        }
+        return instance;
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBTourist # insertTourist
+     * (unisa.gps.etour.bean.BeanTourist)
+     */
+    public boolean insertTourist(BeanTourist pTourist) throws SQLException {
+        boolean result = dbTourist.insertTourist(pTourist);
+        if (result) {
+// Under the lock of load: a load in progress may have read the table before
+// The write, so the write is applied after it
+            synchronized (this) {
+                if (loaded) {
+// The id is assigned by the database
+                    BeanTourist inserted = dbTourist.getTourist(pTourist.getUserName());
+                    if (inserted != null) {
+                        put(inserted);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBTourist # modifyTourist
+     * (unisa.gps.etour.bean.BeanTourist)
+     */
+    public boolean modifyTourist(BeanTourist pTourist) throws SQLException {
+        boolean result = dbTourist.modifyTourist(pTourist);
+        if (result) {
+            synchronized (this) {
+                if (loaded) {
+                    put(pTourist);
+                }
+            }
+        }
+        return result;
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBTourist # delete (int)
+     */
+    public boolean delete(int pIdTourist) throws SQLException {
+        boolean result = dbTourist.delete(pIdTourist);
+        if (result) {
+            synchronized (this) {
+                tourists.remove(pIdTourist);
+                index.remove(pIdTourist);
+            }
+        }
+        return result;
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBTourist # getTourist (java.lang.String)
+     */
+    public BeanTourist getTourist(String pUsername) throws SQLException {
+        return dbTourist.getTourist(pUsername);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBTourist # getTourist (int)
+     */
+    public BeanTourist getTourist(int pIdTourist) throws SQLException {
+        return dbTourist.getTourist(pIdTourist);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBTourist #
+     * insertCulturalHeritagePreference (int, int)
+     */
+    public boolean insertCulturalHeritagePreference(int pIdTourist, int pIdCulturalHeritage) throws SQLException {
+        return dbTourist.insertCulturalHeritagePreference(pIdTourist, pIdCulturalHeritage);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBTourist #
+     * insertRefreshmentPointPreference (int, int)
+     */
+    public boolean insertRefreshmentPointPreference(int pIdTourist, int pIdRefreshmentPoint) throws SQLException {
+        return dbTourist.insertRefreshmentPointPreference(pIdTourist, pIdRefreshmentPoint);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBTourist #
+     * clearCulturalHeritagePreference (int, int)
+     */
+    public boolean clearCulturalHeritagePreference(int pIdTourist, int pIdCulturalHeritage) throws SQLException {
+        return dbTourist.clearCulturalHeritagePreference(pIdTourist, pIdCulturalHeritage);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBTourist #
+     * clearRefreshmentPointPreference (int, int)
+     */
+    public boolean clearRefreshmentPointPreference(int pIdTourist, int pIdRefreshmentPoint) throws SQLException {
+        return dbTourist.clearRefreshmentPointPreference(pIdTourist, pIdRefreshmentPoint);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBTourist # getTourists
+     * (java.lang.String)
+     */
+    public ArrayList<BeanTourist> getTourists(String pUsernameTourist) throws SQLException {
+        return getTourists(pUsernameTourist, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the tourists whose username, name or surname starts with a
+     * text, ordered by the matching word
+     *
+     * @Param pPrefix text typed in the search, all the tourists if empty
+     * @Param pMaxResults maximum number of tourists to return
+     * @Return tourists found
+     * @throws SQLException
+     */
+    public ArrayList<BeanTourist> getTourists(String pPrefix, int pMaxResults) throws SQLException {
+        load();
+        ArrayList<Integer> ids = index.search(pPrefix, pMaxResults);
+        ArrayList<BeanTourist> list = new ArrayList<BeanTourist>(ids.size());
+        for (Integer id : ids) {
+            BeanTourist tourist = tourists.get(id);
+            if (tourist != null) {
+                list.add(copy(tourist));
+            }
+        }
+        return list;
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBTourist # getTourist (boolean)
+     */
+    public ArrayList<BeanTourist> getTourist(boolean condition) throws SQLException {
+        load();
+        ArrayList<BeanTourist> list = new ArrayList<BeanTourist>();
+        for (BeanTourist tourist : tourists.values()) {
+            if (tourist.isActive() == condition) {
+                list.add(copy(tourist));
+            }
+        }
+        return list;
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBTourist #
+     * getCulturalHeritagePreference (int)
+     */
+    public ArrayList<Integer> getCulturalHeritagePreference(int pIdTourist) throws SQLException {
+        return dbTourist.getCulturalHeritagePreference(pIdTourist);
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.IDBTourist #
+     * getRefreshmentPointPreference (int)
+     */
+    public ArrayList<Integer> getRefreshmentPointPreference(int pIdTourist) throws SQLException {
+        return dbTourist.getRefreshmentPointPreference(pIdTourist);
+    }
+
+    /**
+     * Returns the number of tourists in the directory
+     */
+    public int size() {
+        return tourists.size();
+    }
+
+    /**
+     * Returns the memory used by the prefix index for a million tourists,
+     * estimated on the tourists in the directory
+     *
+     * @Return bytes for a million tourists, 0 if the directory is empty
+     */
+    public long getIndexMemoryPerMillion() {
+        int size = index.size();
+        if (size == 0) {
+            return 0;
+        }
+        return index.getMemoryUsage() * 1000000L / size;
+    }
+
+    /**
+     * Loads all the tourists, only the first time it is called
+     */
+    private void load() throws SQLException {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+// The empty string selects all the tourists
+            ArrayList<BeanTourist> list = dbTourist.getTourists("");
+            if (list != null) {
+                for (BeanTourist tourist : list) {
+                    put(tourist);
+                }
+            }
+            loaded = true;
+        }
+    }
+
+    private synchronized void put(BeanTourist pTourist) {
+        tourists.put(pTourist.getId(), copy(pTourist));
+        index.put(pTourist.getId(), pTourist.getUserName(), pTourist.getName(), pTourist.getSurname());
+    }
+
+    private static BeanTourist copy(BeanTourist pTourist) {
+        return new BeanTourist(pTourist.getId(), pTourist.getUserName(), pTourist.getName(), pTourist.getSurname(),
+                pTourist.getCityNascita(), pTourist.getCityResidenza(), pTourist.getPhone(), pTourist.getCap(),
+                pTourist.getStreet(), pTourist.getProvince(), pTourist.getEmail(), pTourist.getPassword(),
+                copy(pTourist.getDateOfBirth()), copy(pTourist.getDataRegistration()), pTourist.isActive());
+    }
+
+    private static Date copy(Date pDate) {
+        return pDate == null ? null : new Date(pDate.getTime());
+    }
+}
@@ -0,0 +1,342 @@
+package unisa.gps.etour.control.RegisteredUserManager;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import unisa.gps.etour.bean.BeanCulturalHeritage;
+import unisa.gps.etour.bean.BeanRefreshmentPoint;
+import unisa.gps.etour.bean.BeanTouristHome;
+import unisa.gps.etour.bean.BeanVisitBC;
+import unisa.gps.etour.bean.BeanVisitPR;
+import unisa.gps.etour.repository.IDBCulturalHeritage;
+import unisa.gps.etour.repository.IDBRefreshmentPoint;
+import unisa.gps.etour.repository.IDBTourist;
+import unisa.gps.etour.repository.IDBVisitBC;
+import unisa.gps.etour.repository.IDBVisitPR;
+
+/**
+ * Homes of the tourists, assembled with a fixed number of reads whatever the
+ * number of favorites and visits: the ids of the favorites, the visits of
+ * the tourist and then all the refreshment points needed in one read; the
+ * cultural heritage is read from the catalog in memory.
+ *
+ * The home of a tourist is kept in a bounded cache for the time of a use of
+ * the client, as the remote methods receive the id of the tourist and not
+ * his session, and is removed when the favorites or the visits of the
+ * tourist change. A home assembled while it was removed is not kept. The
+ * visits just inserted are added to the homes until they are read from the
+ * database, which is written after the log of the visits.
+ *
+ */
+public class TouristHomeCache {
+// Validity of a home in the cache
+    private static final long HOME_MILLIS = 30 * 60 * 1000L;
+// Time a visit just inserted is waited for in the database
+    private static final long PENDING_MILLIS = 60 * 1000L;
+// Maximum number of homes in the cache
+    private static final int CACHE_SIZE = 10000;
+// Number of last visits in a home, for each kind of site
+    private static final int RECENT_VISITS = 20;
+
+    private final IDBTourist dbTourist;
+    private final IDBVisitBC dbVisitBC;
+    private final IDBVisitPR dbVisitPR;
+    private final IDBCulturalHeritage dbCulturalHeritage;
+    private final IDBRefreshmentPoint dbRefreshmentPoint;
+    private final Map<Integer, Home> homes;
+// Visits inserted and maybe not yet in the database, by tourist
+    private final Map<Integer, List<Pending<BeanVisitBC>>> pendingBC;
+    private final Map<Integer, List<Pending<BeanVisitPR>>> pendingPR;
+    private long removals;
+
+    /**
+     * Home of a tourist kept in the cache; without a bean the home was
+     * removed
+     */
+    private static class Home {
+        private final BeanTouristHome home;
+        private final long expiry;
+        private final long removal;
+
+        private Home(BeanTouristHome pHome, long pExpiry, long pRemoval) {
+            home = pHome;
+            expiry = pExpiry;
+            removal = pRemoval;
+        }
+    }
+
+    /**
+     * Visit inserted and maybe not yet in the database
+     */
+    private static class Pending<T> {
+        private final T visit;
+        private final long inserted;
+
+        private Pending(T pVisit, long pInserted) {
+            visit = pVisit;
+            inserted = pInserted;
+        }
+    }
+
+    /**
+     * Parameterized constructor
+     *
+     * @Param pTourist access to the tourists
+     * @Param pVisitBC access to the visits to cultural heritage
+     * @Param pVisitPR access to the visits to refreshment points
+     * @Param pCulturalHeritage access to the cultural heritage
+     * @Param pRefreshmentPoint access to the refreshment points
+     */
+    public TouristHomeCache(IDBTourist pTourist, IDBVisitBC pVisitBC, IDBVisitPR pVisitPR,
+            IDBCulturalHeritage pCulturalHeritage, IDBRefreshmentPoint pRefreshmentPoint) {
+        dbTourist = pTourist;
+        dbVisitBC = pVisitBC;
+        dbVisitPR = pVisitPR;
+        dbCulturalHeritage = pCulturalHeritage;
+        dbRefreshmentPoint = pRefreshmentPoint;
+        homes = new LinkedHashMap<Integer, Home>(16, 0.75f, true) {
+            private static final long serialVersionUID = 0L;
+
+            protected boolean removeEldestEntry(Map.Entry<Integer, Home> pEldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+        pendingBC = new HashMap<Integer, List<Pending<BeanVisitBC>>>();
+        pendingPR = new HashMap<Integer, List<Pending<BeanVisitPR>>>();
+    }
+
+    /**
+     * Returns the home of a tourist, from the cache or else assembled
+     *
+     * @Param pIdTourist ID of the tourist
+     * @Return home of the tourist
+     * @throws SQLException
+     */
+    public BeanTouristHome getHome(int pIdTourist) throws SQLException {
+        long now = System.currentTimeMillis();
+        long removal;
+        List<Pending<BeanVisitBC>> visitsBC;
+        List<Pending<BeanVisitPR>> visitsPR;
+        synchronized (homes) {
+            Home home = homes.get(pIdTourist);
+            if (home != null && home.home != null && home.expiry > now) {
+                return home.home;
+            }
+            removal = home == null ? 0 : home.removal;
+            visitsBC = pending(pendingBC, pIdTourist, now);
+            visitsPR = pending(pendingPR, pIdTourist, now);
+        }
+        BeanTouristHome home = assemble(pIdTourist, visitsBC, visitsPR);
+        synchronized (homes) {
+            Home current = homes.get(pIdTourist);
+            if ((current == null ? 0 : current.removal) == removal) {
+                homes.put(pIdTourist, new Home(home, now + HOME_MILLIS, removal));
+            }
+        }
+        return home;
+    }
+
+    /**
+     * Removes the home of a tourist, to be called when his favorites change
+     *
+     * @Param pIdTourist ID of the tourist
+     */
+    public void remove(int pIdTourist) {
+        synchronized (homes) {
+            homes.put(pIdTourist, new Home(null, 0, ++removals));
+        }
+    }
+
+    /**
+     * Removes the home of a tourist after a visit to a cultural good, which
+     * is added to the home assembled again until it is in the database
+     *
+     * @Param pVisit visit inserted
+     */
+    public void addVisit(BeanVisitBC pVisit) {
+        synchronized (homes) {
+            add(pendingBC, pVisit.getIdTourist(), pVisit);
+            homes.put(pVisit.getIdTourist(), new Home(null, 0, ++removals));
+        }
+    }
+
+    /**
+     * Removes the home of a tourist after a visit to a refreshment point,
+     * which is added to the home assembled again until it is in the database
+     *
+     * @Param pVisit visit inserted
+     */
+    public void addVisit(BeanVisitPR pVisit) {
+        synchronized (homes) {
+            add(pendingPR, pVisit.getIdTourist(), pVisit);
+            homes.put(pVisit.getIdTourist(), new Home(null, 0, ++removals));
+        }
+    }
+
+    /**
+     * Assembles the home of a tourist
+     */
+    private BeanTouristHome assemble(int pIdTourist, List<Pending<BeanVisitBC>> pPendingBC,
+            List<Pending<BeanVisitPR>> pPendingPR) throws SQLException {
+        ArrayList<Integer> favoritesBC = dbTourist.getCulturalHeritagePreference(pIdTourist);
+        ArrayList<Integer> favoritesPR = dbTourist.getRefreshmentPointPreference(pIdTourist);
+        ArrayList<BeanVisitBC> visitsBC = dbVisitBC.getListVisitBCTourist(pIdTourist);
+        ArrayList<BeanVisitPR> visitsPR = dbVisitPR.getListVisitPRTourist(pIdTourist);
+
+// The ratings of all the visits, with the visits not yet in the database
+        Map<Integer, Integer> ratingsBC = new HashMap<Integer, Integer>();
+        for (BeanVisitBC visit : visitsBC) {
+            ratingsBC.put(visit.getIdCulturalHeritage(), visit.getRating());
+        }
+        for (Pending<BeanVisitBC> pending : pPendingBC) {
+            BeanVisitBC visit = pending.visit;
+            if (ratingsBC.containsKey(visit.getIdCulturalHeritage())) {
+                written(pendingBC, pIdTourist, pending);
+            } else {
+                ratingsBC.put(visit.getIdCulturalHeritage(), visit.getRating());
+                visitsBC.add(visit);
+            }
+        }
+        Map<Integer, Integer> ratingsPR = new HashMap<Integer, Integer>();
+        for (BeanVisitPR visit : visitsPR) {
+            ratingsPR.put(visit.getIdRefreshmentPoint(), visit.getRating());
+        }
+        for (Pending<BeanVisitPR> pending : pPendingPR) {
+            BeanVisitPR visit = pending.visit;
+            if (ratingsPR.containsKey(visit.getIdRefreshmentPoint())) {
+                written(pendingPR, pIdTourist, pending);
+            } else {
+                ratingsPR.put(visit.getIdRefreshmentPoint(), visit.getRating());
+                visitsPR.add(visit);
+            }
+        }
+
+// The last visits, the most recent first
+        Collections.sort(visitsBC, new Comparator<BeanVisitBC>() {
+            public int compare(BeanVisitBC p1, BeanVisitBC p2) {
+                return compareDates(p2.getDataVisit(), p1.getDataVisit());
+            }
+        });
+        Collections.sort(visitsPR, new Comparator<BeanVisitPR>() {
+            public int compare(BeanVisitPR p1, BeanVisitPR p2) {
+                return compareDates(p2.getDataVisit(), p1.getDataVisit());
+            }
+        });
+        List<BeanVisitBC> recentBC = visitsBC.subList(0, Math.min(RECENT_VISITS, visitsBC.size()));
+        List<BeanVisitPR> recentPR = visitsPR.subList(0, Math.min(RECENT_VISITS, visitsPR.size()));
+
+// The sites of the favorites and of the last visits
+        Set<Integer> idsBC = new LinkedHashSet<Integer>(favoritesBC);
+        for (BeanVisitBC visit : recentBC) {
+            idsBC.add(visit.getIdCulturalHeritage());
+        }
+        Map<Integer, BeanCulturalHeritage> sitesBC = new HashMap<Integer, BeanCulturalHeritage>();
+        for (Integer id : idsBC) {
+            BeanCulturalHeritage site = dbCulturalHeritage.getCulturalHeritage(id);
+            if (site != null) {
+                sitesBC.put(id, site);
+            }
+        }
+        Set<Integer> idsPR = new LinkedHashSet<Integer>(favoritesPR);
+        for (BeanVisitPR visit : recentPR) {
+            idsPR.add(visit.getIdRefreshmentPoint());
+        }
+        Map<Integer, BeanRefreshmentPoint> sitesPR = new HashMap<Integer, BeanRefreshmentPoint>();
+        for (BeanRefreshmentPoint site : dbRefreshmentPoint.getRefreshmentPoints(idsPR)) {
+            sitesPR.put(site.getId(), site);
+        }
+
+        List<BeanCulturalHeritage> favoriteBC = new ArrayList<BeanCulturalHeritage>(favoritesBC.size());
+        for (Integer id : favoritesBC) {
+            if (sitesBC.containsKey(id)) {
+                favoriteBC.add(sitesBC.get(id));
+            }
+        }
+        List<BeanRefreshmentPoint> favoritePR = new ArrayList<BeanRefreshmentPoint>(favoritesPR.size());
+        for (Integer id : favoritesPR) {
+            if (sitesPR.containsKey(id)) {
+                favoritePR.add(sitesPR.get(id));
+            }
+        }
+        Map<Integer, BeanCulturalHeritage> visitedBC = new HashMap<Integer, BeanCulturalHeritage>();
+        for (BeanVisitBC visit : recentBC) {
+            if (sitesBC.containsKey(visit.getIdCulturalHeritage())) {
+                visitedBC.put(visit.getIdCulturalHeritage(), sitesBC.get(visit.getIdCulturalHeritage()));
+            }
+        }
+        Map<Integer, BeanRefreshmentPoint> visitedPR = new HashMap<Integer, BeanRefreshmentPoint>();
+        for (BeanVisitPR visit : recentPR) {
+            if (sitesPR.containsKey(visit.getIdRefreshmentPoint())) {
+                visitedPR.put(visit.getIdRefreshmentPoint(), sitesPR.get(visit.getIdRefreshmentPoint()));
+            }
+        }
+        return new BeanTouristHome(pIdTourist, favoriteBC, favoritePR, recentBC, recentPR, visitedBC, visitedPR,
+                ratingsBC, ratingsPR);
+    }
+
+    /**
+     * Adds a visit to those not yet in the database
+     */
+    private static <T> void add(Map<Integer, List<Pending<T>>> pPending, int pIdTourist, T pVisit) {
+        List<Pending<T>> visits = pPending.get(pIdTourist);
+        if (visits == null) {
+            visits = new ArrayList<Pending<T>>();
+            pPending.put(pIdTourist, visits);
+        }
+        visits.add(new Pending<T>(pVisit, System.currentTimeMillis()));
+    }
+
+    /**
+     * Returns a copy of the visits of a tourist not yet in the database,
+     * forgetting those waited for too long
+     */
+    private static <T> List<Pending<T>> pending(Map<Integer, List<Pending<T>>> pPending, int pIdTourist,
+            long pNow) {
+        List<Pending<T>> visits = pPending.get(pIdTourist);
+        if (visits == null) {
+            return new ArrayList<Pending<T>>(0);
+        }
+        Iterator<Pending<T>> iterator = visits.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().inserted + PENDING_MILLIS < pNow) {
+                iterator.remove();
+            }
+        }
+        if (visits.isEmpty()) {
+            pPending.remove(pIdTourist);
+        }
+        return new ArrayList<Pending<T>>(visits);
+    }
+
+    /**
+     * Forgets a visit found in the database
+     */
+    private <T> void written(Map<Integer, List<Pending<T>>> pPending, int pIdTourist, Pending<T> pVisit) {
+        synchronized (homes) {
+            List<Pending<T>> visits = pPending.get(pIdTourist);
+            if (visits != null) {
+                visits.remove(pVisit);
+                if (visits.isEmpty()) {
+                    pPending.remove(pIdTourist);
+                }
+            }
+        }
+    }
+
+    private static int compareDates(Date p1, Date p2) {
+        if (p1 == null || p2 == null) {
+            return p1 == null ? (p2 == null ? 0 : -1) : 1;
+        }
+        return p1.compareTo(p2);
+    }
+}
@@ -0,0 +1,174 @@
+package unisa.gps.etour.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Date;
+
+import unisa.gps.etour.bean.BeanVisitBC;
+import unisa.gps.etour.bean.BeanVisitPR;
+
+/**
+ * Visit of a tourist to a site, with its rating and comment, as recorded in
+ * the log of the visits. The kind of the site uses the kinds of
+ * CatalogChange.
+ *
+ */
+public class VisitEvent {
+    private final long sequence;
+    private final byte kind;
+    private final int idSite;
+    private final int idTourist;
+    private final int rating;
+    private final long dataVisit;
+    private final String comment;
+
+    /**
+     * Parameterized constructor
+     *
+     * @Param pSequence position of the event in the log, -1 before it is
+     *        appended
+     * @Param pKind CatalogChange.CULTURAL_HERITAGE or REFRESHMENT_POINT
+     * @Param pIdSite ID of the site
+     * @Param pIdTourist ID of the tourist
+     * @Param pRating rating of the visit
+     * @Param pDataVisit date of the visit in milliseconds
+     * @Param pComment comment of the visit
+     */
+    public VisitEvent(long pSequence, byte pKind, int pIdSite, int pIdTourist, int pRating, long pDataVisit,
+            String pComment) {
+        sequence = pSequence;
+        kind = pKind;
+        idSite = pIdSite;
+        idTourist = pIdTourist;
+        rating = pRating;
+        dataVisit = pDataVisit;
+        comment = pComment;
+    }
+
+    /**
+     * Creates the event of a visit to a refreshment point
+     *
+     * @Param pVisit visit to record
+     * @Return event not yet appended
+     */
+    public static VisitEvent of(BeanVisitPR pVisit) {
+        return new VisitEvent(-1, CatalogChange.REFRESHMENT_POINT, pVisit.getIdRefreshmentPoint(),
+                pVisit.getIdTourist(), pVisit.getRating(), pVisit.getDataVisit().getTime(), pVisit.getComment());
+    }
+
+    /**
+     * Creates the event of a visit to a cultural heritage
+     *
+     * @Param pVisit visit to record
+     * @Return event not yet appended
+     */
+    public static VisitEvent of(BeanVisitBC pVisit) {
+        return new VisitEvent(-1, CatalogChange.CULTURAL_HERITAGE, pVisit.getIdCulturalHeritage(),
+                pVisit.getIdTourist(), pVisit.getRating(), pVisit.getDataVisit().getTime(), pVisit.getComment());
+    }
+
+    /**
+     * Returns the visit of a refreshment point recorded by the event
+     */
+    public BeanVisitPR toVisitPR() {
+        return new BeanVisitPR(rating, idSite, comment, idTourist, new Date(dataVisit));
+    }
+
+    /**
+     * Returns the visit of a cultural heritage recorded by the event
+     */
+    public BeanVisitBC toVisitBC() {
+        return new BeanVisitBC(rating, idSite, comment, idTourist, new Date(dataVisit));
+    }
+
+    /**
+     * Returns the position of the event in the log
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the kind of the site
+     */
+    public byte getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the ID of the site
+     */
+    public int getIdSite() {
+        return idSite;
+    }
+
+    /**
+     * Returns the ID of the tourist
+     */
+    public int getIdTourist() {
+        return idTourist;
+    }
+
+    /**
+     * Returns the rating of the visit
+     */
+    public int getRating() {
+        return rating;
+    }
+
+    /**
+     * Returns the date of the visit in milliseconds
+     */
+    public long getDataVisit() {
+        return dataVisit;
+    }
+
+    /**
+     * Returns the comment of the visit
+     */
+    public String getComment() {
+        return comment;
+    }
+
+    /**
+     * Encodes the fields of the event, the sequence excluded
+     *
+     * @Return bytes of the event
+     * @throws IOException
+     */
+    byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(kind);
+        out.writeInt(idSite);
+        out.writeInt(idTourist);
+        out.writeByte(rating);
+        out.writeLong(dataVisit);
+        out.writeBoolean(comment != null);
+        if (comment != null) {
+            out.writeUTF(comment);
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes an event written by encode
+     *
+     * @Param pSequence position of the event in the log
+     * @Param pIn fields of the event
+     * @Return event read
+     * @throws IOException
+     */
+    static VisitEvent decode(long pSequence, DataInputStream pIn) throws IOException {
+        byte kind = pIn.readByte();
+        int idSite = pIn.readInt();
+        int idTourist = pIn.readInt();
+        int rating = pIn.readByte();
+        long dataVisit = pIn.readLong();
+        String comment = pIn.readBoolean() ? pIn.readUTF() : null;
+        return new VisitEvent(pSequence, kind, idSite, idTourist, rating, dataVisit, comment);
+    }
+}
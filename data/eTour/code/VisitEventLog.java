@@ -0,0 +1,667 @@
+package unisa.gps.etour.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import unisa.gps.etour.util.ErrorMessage;
+
+/**
+ * Durable, append-only log of the visits of the tourists. The log is a
+ * sequence of segment files of fixed size, memory-mapped; every event has a
+ * sequence number, its position in the log. The appends of all the threads
+ * are written by a single writer that forces every batch to disk at once
+ * (group commit), so an append returns when its event is durable and many
+ * concurrent appends cost a single force.
+ *
+ * The consumers read the log each in its own thread, from a given sequence
+ * or, for the durable ones, from the sequence saved at the last run, and
+ * apply the events in order. The aggregates of the visits (VisitProjection)
+ * are rebuilt from the whole log at every start; the database is a durable
+ * consumer, written after the event is in the log.
+ *
+ * A record is the length of what follows (int), the CRC32 of the sequence
+ * and the event (int), the sequence (long) and the event; a segment starts
+ * with a header and is named by the sequence of its first event. At the start
+ * the records are checked, and a record torn by a crash ends the log.
+ *
+ */
+public class VisitEventLog {
+    private static final int MAGIC = 0xE7C6;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+// Most events written and forced together
+    private static final int MAX_BATCH = 1024;
+    private static final long RETRY_MILLIS = 1000L;
+// Events a durable consumer applies before saving its sequence
+    private static final int SAVE_EVERY = 1000;
+    private static VisitEventLog instance;
+
+    private final File directory;
+    private final List<Segment> segments;
+    private final BlockingQueue<Pending> queue;
+    private final VisitProjection projection;
+// Segment and position of the next record, used only by the writer
+    private Segment active;
+    private int writePosition;
+// Sequence of the next event, all the events before it are durable
+    private volatile long committed;
+    private volatile boolean running;
+    private Thread writer;
+
+    /**
+     * Consumer of the events of the log
+     */
+    public interface Consumer {
+        /**
+         * Applies an event. If it throws an exception the event is applied
+         * again after a while, and the events after it wait.
+         *
+         * @Param pEvent event to apply
+         * @throws Exception
+         */
+        public void apply(VisitEvent pEvent) throws Exception;
+    }
+
+    /**
+     * Mapped segment file of the log
+     */
+    private static class Segment {
+        private final long base;
+        private final long created;
+        private final MappedByteBuffer buffer;
+
+        private Segment(long pBase, long pCreated, MappedByteBuffer pBuffer) {
+            base = pBase;
+            created = pCreated;
+            buffer = pBuffer;
+        }
+    }
+
+    /**
+     * Event waiting in the queue of the writer
+     */
+    private static class Pending {
+        private final byte[] event;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private long sequence = -1;
+        private IOException error;
+
+        private Pending(byte[] pEvent) {
+            event = pEvent;
+        }
+    }
+
+    private VisitEventLog(File pDirectory) throws IOException {
+        directory = pDirectory;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(ErrorMessage.ERROR_FILE);
+        }
+        segments = new CopyOnWriteArrayList<Segment>();
+        queue = new LinkedBlockingQueue<Pending>();
+        recover();
+        projection = new VisitProjection(getCreated());
+        running = true;
+    }
+
+    /**
+     * Opens the log, rebuilds the aggregates of the visits from it and starts
+     * its consumers: the database, from where it stopped, and the catalog
+     * publisher, for the new ratings only
+     *
+     * @Param pDirectory directory of the segment files
+     * @Return the log
+     * @throws IOException if the log cannot be opened
+     */
+    public static synchronized VisitEventLog start(File pDirectory) throws IOException {
+        if (instance != null) {
+            return instance;
+        }
+        final VisitEventLog log = new VisitEventLog(pDirectory);
+        log.writer = new Thread(new Runnable() {
+            public void run() {
+                log.write();
+            }
+        }, "VisitEventLog");
+        log.writer.setDaemon(true);
+        log.writer.start();
+        long start = System.currentTimeMillis();
+        long end = log.committed;
+        log.subscribe("projection", log.projection, 0).await(end);
+        System.out.println("Visit log " + pDirectory + " replayed in " + (System.currentTimeMillis() - start)
+                + " ms, " + end + " events");
+        log.subscribe("sql", new VisitSqlWriter());
+// The aggregates of the catalog already count the visits in the
+// Database, only the new ones are published
+        log.subscribe("catalog", new Consumer() {
+            public void apply(VisitEvent pEvent) {
+                CatalogPublisher.publishRating(pEvent.getKind(), pEvent.getIdSite(), pEvent.getRating());
+            }
+        }, end);
+        instance = log;
+        return log;
+    }
+
+    /**
+     * Returns the log of the visits
+     *
+     * @Return the log, null if it is not started
+     */
+    public static VisitEventLog getInstance() {
+        return instance;
+    }
+
+    /**
+     * Stops the log: the events in the queue are written, then the consumers
+     * stop at the end of the log
+     */
+    public static synchronized void stop() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    /**
+     * Appends an event to the log
+     *
+     * @Param pEvent event to append
+     * @Return sequence of the event, durable when the method returns
+     * @throws IOException if the event cannot be written
+     */
+    public long append(VisitEvent pEvent) throws IOException {
+        if (!running) {
+            throw new IOException(ErrorMessage.ERROR_VISIT_LOG);
+        }
+        Pending pending = new Pending(pEvent.encode());
+        queue.add(pending);
+        try {
+            while (!pending.done.await(1, TimeUnit.SECONDS)) {
+                if (!writer.isAlive()) {
+                    throw new IOException(ErrorMessage.ERROR_VISIT_LOG);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ErrorMessage.ERROR_VISIT_LOG, e);
+        }
+        if (pending.error != null) {
+            throw pending.error;
+        }
+        return pending.sequence;
+    }
+
+    /**
+     * Reads the log from a sequence, in a thread of the consumer
+     *
+     * @Param pName name of the consumer
+     * @Param pConsumer consumer of the events
+     * @Param pFrom sequence of the first event to apply, 0 for the whole log
+     * @Return subscription of the consumer
+     */
+    public Subscription subscribe(String pName, Consumer pConsumer, long pFrom) {
+        Subscription subscription = new Subscription(pName, pConsumer, pFrom, null);
+        subscription.start();
+        return subscription;
+    }
+
+    /**
+     * Reads the log from the sequence saved by the last run of a consumer, the
+     * whole log the first time. The consumer may receive again the last
+     * events it applied before a crash.
+     *
+     * @Param pName name of the consumer, unique in the log
+     * @Param pConsumer consumer of the events
+     * @Return subscription of the consumer
+     */
+    public Subscription subscribe(String pName, Consumer pConsumer) {
+        File offsetFile = new File(directory, pName + ".offset");
+        Subscription subscription = new Subscription(pName, pConsumer, readOffset(offsetFile), offsetFile);
+        subscription.start();
+        return subscription;
+    }
+
+    /**
+     * Returns the aggregates of the visits, rebuilt from the log
+     */
+    public VisitProjection getProjection() {
+        return projection;
+    }
+
+    /**
+     * Returns the sequence of the next event, that is the number of durable
+     * events
+     */
+    public long getSequence() {
+        return committed;
+    }
+
+    /**
+     * Returns the time the log was created, the visits before it are only in
+     * the database
+     */
+    public long getCreated() {
+        return segments.get(0).created;
+    }
+
+    private void close() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the events of the queue in batches, each forced to disk once
+     */
+    private void write() {
+        ArrayList<Pending> batch = new ArrayList<Pending>(MAX_BATCH);
+        long next = committed;
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            for (Pending pending : batch) {
+                try {
+                    writeRecord(next, pending.event);
+                    pending.sequence = next++;
+                } catch (IOException e) {
+                    pending.error = e;
+                }
+            }
+            active.buffer.force();
+            synchronized (this) {
+                committed = next;
+                notifyAll();
+            }
+            for (Pending pending : batch) {
+                pending.done.countDown();
+            }
+            batch.clear();
+        }
+// Appends arrived while stopping
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.error = new IOException(ErrorMessage.ERROR_VISIT_LOG);
+            pending.done.countDown();
+        }
+    }
+
+    private void writeRecord(long pSequence, byte[] pEvent) throws IOException {
+        int length = 8 + pEvent.length;
+        if (RECORD_HEADER_SIZE + length > SEGMENT_SIZE - HEADER_SIZE) {
+            throw new IOException(ErrorMessage.ERROR_DATA);
+        }
+        if (writePosition + RECORD_HEADER_SIZE + length > active.buffer.capacity()) {
+// The new segment is created only when the old one is durable
+            active.buffer.force();
+            active = createSegment(pSequence);
+            segments.add(active);
+            writePosition = HEADER_SIZE;
+        }
+        ByteBuffer buffer = active.buffer.duplicate();
+        buffer.position(writePosition + 4);
+        buffer.putInt(checksum(pSequence, pEvent, 0, pEvent.length));
+        buffer.putLong(pSequence);
+        buffer.put(pEvent);
+// The length is written last, a record without it is not in the log
+        buffer.putInt(writePosition, length);
+        writePosition += RECORD_HEADER_SIZE + length;
+    }
+
+    /**
+     * Opens the segments, checks their records and finds the end of the log
+     */
+    private void recover() throws IOException {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            public boolean accept(File pDirectory, String pName) {
+                return pName.matches("\\d{20}\\.log");
+            }
+        });
+        Arrays.sort(files);
+        long next = 0;
+        int position = HEADER_SIZE;
+        for (int i = 0; i < files.length; i++) {
+            long base = Long.parseLong(files[i].getName().substring(0, 20));
+            Segment segment = i == 0 || base == next ? openSegment(files[i], base) : null;
+            if (segment == null) {
+// The log cannot go on after a gap, the following segments are set aside
+                for (int j = i; j < files.length; j++) {
+                    System.out.println("Visit log segment " + files[j] + " discarded");
+                    files[j].renameTo(new File(files[j].getPath() + ".corrupt"));
+                }
+                break;
+            }
+            segments.add(segment);
+            next = base;
+            position = HEADER_SIZE;
+            int length;
+            while ((length = validRecord(segment.buffer, position, next)) > 0) {
+                position += RECORD_HEADER_SIZE + length;
+                next++;
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.add(createSegment(0));
+        }
+        active = segments.get(segments.size() - 1);
+        writePosition = position;
+// Whatever a crash left after the last record is cleared
+        ByteBuffer buffer = active.buffer;
+        if (position + 4 <= buffer.capacity() && buffer.getInt(position) != 0) {
+            for (int i = position; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+            active.buffer.force();
+        }
+        committed = next;
+    }
+
+    /**
+     * Returns the length of the record at a position if it is complete and
+     * has the expected sequence, 0 otherwise
+     */
+    private static int validRecord(ByteBuffer pBuffer, int pPosition, long pSequence) {
+        if (pPosition + RECORD_HEADER_SIZE + 8 > pBuffer.capacity()) {
+            return 0;
+        }
+        int length = pBuffer.getInt(pPosition);
+        if (length < 8 || pPosition + RECORD_HEADER_SIZE + length > pBuffer.capacity()
+                || pBuffer.getLong(pPosition + RECORD_HEADER_SIZE) != pSequence) {
+            return 0;
+        }
+        byte[] event = new byte[length - 8];
+        ByteBuffer record = pBuffer.duplicate();
+        record.position(pPosition + RECORD_HEADER_SIZE + 8);
+        record.get(event);
+        if (checksum(pSequence, event, 0, event.length) != pBuffer.getInt(pPosition + 4)) {
+            return 0;
+        }
+        return length;
+    }
+
+    private static int checksum(long pSequence, byte[] pEvent, int pOffset, int pLength) {
+        CRC32 crc = new CRC32();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (pSequence >>> shift));
+        }
+        crc.update(pEvent, pOffset, pLength);
+        return (int) crc.getValue();
+    }
+
+    private Segment createSegment(long pBase) throws IOException {
+        File file = new File(directory, String.format("%020d.log", pBase));
+        MappedByteBuffer buffer = map(file);
+        long created = System.currentTimeMillis();
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, created);
+        buffer.force();
+        return new Segment(pBase, created, buffer);
+    }
+
+    /**
+     * Maps an existing segment
+     *
+     * @Return the segment, null if its header is not valid
+     */
+    private Segment openSegment(File pFile, long pBase) throws IOException {
+        MappedByteBuffer buffer = map(pFile);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) > VERSION) {
+            return null;
+        }
+        return new Segment(pBase, buffer.getLong(8), buffer);
+    }
+
+    private static MappedByteBuffer map(File pFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(pFile, "rw");
+        try {
+            long size = Math.max(file.length(), SEGMENT_SIZE);
+            file.setLength(size);
+// The mapping stays valid after the file is closed
+            return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            file.close();
+        }
+    }
+
+    private static long readOffset(File pFile) {
+        if (!pFile.isFile()) {
+            return 0;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(pFile));
+            try {
+                return in.readLong();
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            System.out.println("Error in method readOffset of the visit log" + e.toString());
+            return 0;
+        }
+    }
+
+    private static void writeOffset(File pFile, long pSequence) {
+        File temporary = new File(pFile.getPath() + ".tmp");
+        try {
+            FileOutputStream file = new FileOutputStream(temporary);
+            try {
+                new DataOutputStream(file).writeLong(pSequence);
+                file.getFD().sync();
+            } finally {
+                file.close();
+            }
+            if (!temporary.renameTo(pFile)) {
+                pFile.delete();
+                temporary.renameTo(pFile);
+            }
+        } catch (IOException e) {
+            System.out.println("Error in method writeOffset of the visit log" + e.toString());
+        }
+    }
+
+    /**
+     * Reading of the log by a consumer, in its own thread
+     */
+    public class Subscription implements Runnable {
+        private final String name;
+        private final Consumer consumer;
+// Where the sequence is saved, null if the consumer is not durable
+        private final File offsetFile;
+// Sequence of the next event to apply
+        private volatile long position;
+        private volatile boolean cancelled;
+        private Thread thread;
+// Segment and offset of the next record
+        private int segmentIndex;
+        private ByteBuffer buffer;
+        private int offset;
+
+        private Subscription(String pName, Consumer pConsumer, long pFrom, File pOffsetFile) {
+            name = pName;
+            consumer = pConsumer;
+            position = pFrom;
+            offsetFile = pOffsetFile;
+        }
+
+        private void start() {
+            thread = new Thread(this, "VisitConsumer-" + name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Returns the sequence of the next event the consumer applies
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        /**
+         * Stops the consumer after the event it is applying
+         */
+        public void cancel() {
+            cancelled = true;
+            synchronized (VisitEventLog.this) {
+                VisitEventLog.this.notifyAll();
+            }
+        }
+
+        /**
+         * Waits until the consumer has applied the events before a sequence
+         *
+         * @Param pSequence sequence to reach
+         */
+        public synchronized void await(long pSequence) {
+            while (position < pSequence && thread.isAlive()) {
+                try {
+                    wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        public void run() {
+            locate();
+            long saved = position;
+            while (!cancelled) {
+                long end;
+                synchronized (VisitEventLog.this) {
+                    while (committed <= position && running && !cancelled) {
+                        try {
+                            VisitEventLog.this.wait(1000);
+                        } catch (InterruptedException e) {
+                            cancelled = true;
+                        }
+                    }
+                    end = committed;
+                }
+                if (end <= position) {
+// Stopped and at the end of the log
+                    break;
+                }
+                while (position < end && !cancelled) {
+                    VisitEvent event = next();
+                    if (!deliver(event)) {
+                        break;
+                    }
+                    position = event.getSequence() + 1;
+                    if (offsetFile != null && position - saved >= SAVE_EVERY) {
+                        writeOffset(offsetFile, position);
+                        saved = position;
+                    }
+                }
+                synchronized (this) {
+                    notifyAll();
+                }
+                if (offsetFile != null && position != saved) {
+                    writeOffset(offsetFile, position);
+                    saved = position;
+                }
+            }
+        }
+
+        /**
+         * Finds the record of the position of the consumer
+         */
+        private void locate() {
+            segmentIndex = 0;
+            for (int i = 0; i < segments.size(); i++) {
+                if (segments.get(i).base <= position) {
+                    segmentIndex = i;
+                }
+            }
+            buffer = segments.get(segmentIndex).buffer.duplicate();
+            offset = HEADER_SIZE;
+            long sequence = segments.get(segmentIndex).base;
+            while (sequence < position && sequence < committed) {
+                offset += RECORD_HEADER_SIZE + buffer.getInt(offset);
+                sequence++;
+            }
+            if (sequence < position) {
+// Beyond the end of the log, the consumer starts from the end
+                position = sequence;
+            }
+        }
+
+        /**
+         * Reads the next record, that is committed
+         */
+        private VisitEvent next() {
+            if (offset + RECORD_HEADER_SIZE > buffer.capacity() || buffer.getInt(offset) == 0) {
+                segmentIndex++;
+                buffer = segments.get(segmentIndex).buffer.duplicate();
+                offset = HEADER_SIZE;
+            }
+            int length = buffer.getInt(offset);
+            long sequence = buffer.getLong(offset + RECORD_HEADER_SIZE);
+            byte[] event = new byte[length - 8];
+            buffer.position(offset + RECORD_HEADER_SIZE + 8);
+            buffer.get(event);
+            offset += RECORD_HEADER_SIZE + length;
+            try {
+                return VisitEvent.decode(sequence, new DataInputStream(new ByteArrayInputStream(event)));
+            } catch (IOException e) {
+// The record passed the checksum, it cannot be unreadable
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Applies an event, again and again until the consumer accepts it
+         *
+         * @Return false if the subscription was cancelled first
+         */
+        private boolean deliver(VisitEvent pEvent) {
+            while (!cancelled) {
+                try {
+                    consumer.apply(pEvent);
+                    return true;
+                } catch (Exception e) {
+                    System.out.println("Error in consumer " + name + " of the visit log" + e.toString());
+                }
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException e) {
+                    cancelled = true;
+                }
+            }
+            return false;
+        }
+    }
+}
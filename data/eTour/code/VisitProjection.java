@@ -0,0 +1,216 @@
+package unisa.gps.etour.repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import unisa.gps.etour.util.GlobalConstants;
+
+/**
+ * Aggregates of the visits, built from the log of the visits: for every site
+ * the ratings received, the ratings of the last thirty days by value and the
+ * tourists that visited it; for every location the average rating of its
+ * sites. A tourist visits a site once, a second visit is ignored as the
+ * database does. A visit appended to the log is marked at
+ * once, before the projection reads it, so it cannot be inserted twice.
+ *
+ * The aggregates cover only the visits in the log; the thirty days
+ * statistics are answered only when the log is older than thirty days.
+ *
+ */
+public class VisitProjection implements VisitEventLog.Consumer {
+    private final long created;
+    private final Map<Long, Site> sites;
+
+    /**
+     * Visits of a site
+     */
+    private static class Site {
+        private final byte kind;
+        private final int id;
+        private int ratingNumber;
+        private long ratingSum;
+// Number of ratings by value, by date of the visit
+        private final TreeMap<Long, int[]> recent = new TreeMap<Long, int[]>();
+        private final Set<Integer> tourists = new HashSet<Integer>();
+// Tourists whose visit is in the log but not yet applied
+        private final Set<Integer> marked = new HashSet<Integer>();
+
+        private Site(byte pKind, int pId) {
+            kind = pKind;
+            id = pId;
+        }
+    }
+
+    /**
+     * Parameterized constructor
+     *
+     * @Param pCreated time the log was created
+     */
+    public VisitProjection(long pCreated) {
+        created = pCreated;
+        sites = new HashMap<Long, Site>();
+    }
+
+    /*
+     * (Non-Javadoc)
+     *
+     * @See unisa.gps.etour.repository.VisitEventLog.Consumer#apply
+     * (unisa.gps.etour.repository.VisitEvent)
+     */
+    public synchronized void apply(VisitEvent pEvent) {
+        Site site = getSite(pEvent.getKind(), pEvent.getIdSite());
+        site.marked.remove(pEvent.getIdTourist());
+        if (!site.tourists.add(pEvent.getIdTourist())) {
+            return;
+        }
+        int rating = pEvent.getRating();
+        if (rating < 1 || rating > 5) {
+            return;
+        }
+        site.ratingNumber++;
+        site.ratingSum += rating;
+        long since = System.currentTimeMillis() - GlobalConstants.THIRTY_DAYS;
+        if (pEvent.getDataVisit() > since) {
+            int[] counts = site.recent.get(pEvent.getDataVisit());
+            if (counts == null) {
+                counts = new int[5];
+                site.recent.put(pEvent.getDataVisit(), counts);
+            }
+            counts[rating - 1]++;
+        }
+        site.recent.headMap(since, true).clear();
+    }
+
+    /**
+     * Checks if a tourist visited a site
+     *
+     * @Param pKind CatalogChange.CULTURAL_HERITAGE or REFRESHMENT_POINT
+     * @Param pIdSite ID of the site
+     * @Param pIdTourist ID of the tourist
+     * @Return true if the visit is in the log
+     */
+    public synchronized boolean hasVisited(byte pKind, int pIdSite, int pIdTourist) {
+        Site site = sites.get(CatalogChange.key(pKind, pIdSite));
+        return site != null && (site.tourists.contains(pIdTourist) || site.marked.contains(pIdTourist));
+    }
+
+    /**
+     * Marks the visit of a tourist to a site as soon as it is appended to the
+     * log, before the projection applies it
+     *
+     * @Param pKind CatalogChange.CULTURAL_HERITAGE or REFRESHMENT_POINT
+     * @Param pIdSite ID of the site
+     * @Param pIdTourist ID of the tourist
+     */
+    public synchronized void markVisited(byte pKind, int pIdSite, int pIdTourist) {
+        Site site = getSite(pKind, pIdSite);
+        if (!site.tourists.contains(pIdTourist)) {
+            site.marked.add(pIdTourist);
+        }
+    }
+
+    /**
+     * Returns the number of ratings of a site
+     *
+     * @Param pKind CatalogChange.CULTURAL_HERITAGE or REFRESHMENT_POINT
+     * @Param pIdSite ID of the site
+     * @Return number of ratings in the log
+     */
+    public synchronized int getRatingNumber(byte pKind, int pIdSite) {
+        Site site = sites.get(CatalogChange.key(pKind, pIdSite));
+        return site == null ? 0 : site.ratingNumber;
+    }
+
+    /**
+     * Returns the average rating of a site
+     *
+     * @Param pKind CatalogChange.CULTURAL_HERITAGE or REFRESHMENT_POINT
+     * @Param pIdSite ID of the site
+     * @Return average of the ratings in the log, 0 if there are none
+     */
+    public synchronized double getAverageRating(byte pKind, int pIdSite) {
+        Site site = sites.get(CatalogChange.key(pKind, pIdSite));
+        return site == null || site.ratingNumber == 0 ? 0 : (double) site.ratingSum / site.ratingNumber;
+    }
+
+    /**
+     * Returns the ratings of a site in the last thirty days
+     *
+     * @Param pKind CatalogChange.CULTURAL_HERITAGE or REFRESHMENT_POINT
+     * @Param pIdSite ID of the site
+     * @Return 5 elements, the element i is the number of ratings i + 1; null
+     *         if the log does not cover the last thirty days
+     */
+    public synchronized ArrayList<Integer> getStatistic(byte pKind, int pIdSite) {
+        long since = System.currentTimeMillis() - GlobalConstants.THIRTY_DAYS;
+        if (created > since) {
+            return null;
+        }
+        int[] counts = new int[5];
+        Site site = sites.get(CatalogChange.key(pKind, pIdSite));
+        if (site != null) {
+            for (int[] recent : site.recent.tailMap(since, false).values()) {
+                for (int i = 0; i < 5; i++) {
+                    counts[i] += recent[i];
+                }
+            }
+        }
+        ArrayList<Integer> listResult = new ArrayList<Integer>(5);
+        for (int i = 0; i < 5; i++) {
+            listResult.add(Integer.valueOf(counts[i]));
+        }
+        return listResult;
+    }
+
+    /**
+     * Returns the average rating of a location, as the mean of the average
+     * rating of its refreshment points and that of its cultural heritage. The
+     * location of a site is taken from the catalog publisher at every call,
+     * so a site moved to another location counts in the new one.
+     *
+     * @Param pLocation location
+     * @Return average rating of the location, -1 if no site of the location
+     *         has ratings in the log
+     */
+    public synchronized double getAverageRatingLocation(String pLocation) {
+        double point = 0;
+        int points = 0;
+        double good = 0;
+        int goods = 0;
+        for (Site site : sites.values()) {
+            if (site.ratingNumber == 0) {
+                continue;
+            }
+            String location = CatalogPublisher.getLocation(site.kind, site.id);
+            if (location == null || !location.equalsIgnoreCase(pLocation)) {
+                continue;
+            }
+            double average = (double) site.ratingSum / site.ratingNumber;
+            if (site.kind == CatalogChange.REFRESHMENT_POINT) {
+                point += average;
+                points++;
+            } else {
+                good += average;
+                goods++;
+            }
+        }
+        if (points == 0 && goods == 0) {
+            return -1;
+        }
+        return ((goods == 0 ? 0 : good / goods) + (points == 0 ? 0 : point / points)) / 2;
+    }
+
+    private Site getSite(byte pKind, int pIdSite) {
+        long key = CatalogChange.key(pKind, pIdSite);
+        Site site = sites.get(key);
+        if (site == null) {
+            site = new Site(pKind, pIdSite);
+            sites.put(key, site);
+        }
+        return site;
+    }
+}
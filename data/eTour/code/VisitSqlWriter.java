@@ -0,0 +1,39 @@
+package unisa.gps.etour.repository;
+
+import java.sql.SQLException;
+
+/**
+ * Consumer of the log of the visits that writes them in the database. A
+ * visit already in the database is skipped, so the visits received again
+ * after a crash are not written twice; an error of the database stops the
+ * consumer on the visit until it is written.
+ *
+ */
+class VisitSqlWriter implements VisitEventLog.Consumer {
+    private final IDBVisitPR visitPR;
+    private final IDBVisitBC visitBC;
+
+    VisitSqlWriter() {
+        visitPR = new DBVisitPR();
+        visitBC = new DBVisitBC();
+    }
+
+    public void apply(VisitEvent pEvent) throws SQLException {
+        boolean inserted;
+        if (pEvent.getKind() == CatalogChange.REFRESHMENT_POINT) {
+            if (visitPR.getVisitPR(pEvent.getIdSite(), pEvent.getIdTourist()) != null) {
+                return;
+            }
+            inserted = visitPR.insertVisitPR(pEvent.toVisitPR());
+        } else {
+            if (visitBC.getVisitBC(pEvent.getIdSite(), pEvent.getIdTourist()) != null) {
+                return;
+            }
+            inserted = visitBC.insertVisitBC(pEvent.toVisitBC());
+        }
+        if (!inserted) {
+// Refused by the database, retrying would not change it
+            System.out.println("Visit " + pEvent.getSequence() + " of the log not written in the database");
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package smos.utility;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Insieme di blocchi associati ad una chiave, usati dai manager per rendere
+ * atomiche le sequenze di lettura e scrittura sullo stesso dato (ad esempio
+ * esiste e poi inserire) senza bloccare le operazioni sugli altri dati. Il
+ * numero dei blocchi e' fisso: chiavi diverse possono condividere lo stesso
+ * blocco, ma non si ha una crescita della memoria con il numero delle chiavi.
+ * I blocchi valgono all'interno della sola applicazione web.
+ */
+public class BloccoPerChiave {
+
+	private final Lock[] blocchi;
+
+	/**
+	 * Crea l'insieme dei blocchi.
+	 *
+	 * @param pNumero
+	 *            Il numero dei blocchi.
+	 */
+	public BloccoPerChiave(int pNumero) {
+		this.blocchi = new Lock[Math.max(1, pNumero)];
+		for (int i = 0; i < this.blocchi.length; i++)
+			this.blocchi[i] = new ReentrantLock();
+	}
+
+	/**
+	 * Ritorna il blocco associato ad una chiave.
+	 *
+	 * @param pChiave
+	 *            La chiave del dato da bloccare.
+	 *
+	 * @return Il blocco, lo stesso per chiavi uguali.
+	 */
+	public Lock ottenereBlocco(Object pChiave) {
+		int hash = (pChiave == null) ? 0 : pChiave.hashCode();
+		hash ^= (hash >>> 16);
+		return this.blocchi[(hash & 0x7fffffff) % this.blocchi.length];
+	}
+}
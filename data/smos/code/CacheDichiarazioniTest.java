@@ -0,0 +1,46 @@
+package smos.storage.connectionManagement;
+
+import java.sql.Connection;
+
+import smos.utility.Utility;
+
+/**
+ * Prova della cache dei PreparedStatement: una connessione rilasciata nel
+ * pool, sia con close() sia con DBConnessione.rilasciareConnessione come
+ * fanno i manager, ritrova al prestito successivo i PreparedStatement gia'
+ * preparati, senza prepararne di nuovi ad ogni prestito.
+ */
+public class CacheDichiarazioniTest {
+
+    private static final String SQL = "SELECT ?";
+
+    public static void main(String[] args) throws Exception {
+        PoolDiConnessioneDataSorgente pool = new PoolDiConnessioneDataSorgente(
+                Utility.ottenereDriverMySql(), Utility.ottenereCompletoPathDatabase(),
+                Utility.ottenereUtenteNome(), Utility.ottenerePassword(), 1, 300000);
+        pool.settareDimensioneCacheDichiarazioni(8);
+        StatistichePool statistiche = pool.ottenereStatistiche();
+        try {
+            for (int i = 0; i < 10; i++) {
+                Connection connessione = pool.getConnection();
+                Utility.queryPreparata(connessione, SQL, Integer.valueOf(i));
+                // la stessa stringa gia' in uso ha un PreparedStatement a parte
+                Utility.queryPreparata(connessione, SQL, Integer.valueOf(i));
+                if (i % 2 == 0)
+                    pool.rilasciare(connessione);
+                else
+                    connessione.close();
+            }
+            // un PreparedStatement in cache e uno a parte per il primo prestito,
+            // poi uno a parte per ogni prestito successivo
+            verificare("Riuso al secondo prestito", statistiche.getDichiarazioniRiusate() == 9
+                    && statistiche.getDichiarazioniPreparate() == 11, statistiche.toString());
+        } finally {
+            pool.chiudiTutteLeConnessioni();
+        }
+    }
+
+    private static void verificare(String pProva, boolean pEsito, String pDettaglio) {
+        System.out.println(pProva + ": " + (pEsito ? "OK" : "ERRORE") + " (" + pDettaglio + ")");
+    }
+}
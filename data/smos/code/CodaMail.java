@@ -0,0 +1,497 @@
+package smos.utility;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * Coda della posta in uscita. I messaggi sono salvati in una cartella, un
+ * file per messaggio, e inviati in background da alcuni thread: ogni thread
+ * prende i messaggi pronti a lotti e li invia con una sola connessione al
+ * server SMTP. Un invio fallito viene ritentato con un'attesa che raddoppia
+ * ad ogni tentativo, fino al numero massimo di tentativi. Se l'ora del
+ * riepilogo e' impostata, le comunicazioni inviate con riepilogo allo stesso
+ * destinatario sono raccolte in un solo messaggio, inviato a quell'ora. I
+ * messaggi rimasti nella cartella alla chiusura dell'applicazione vengono
+ * inviati al successivo avvio.
+ */
+public class CodaMail {
+
+	private static final Logger LOGGER = Logger.getLogger(CodaMail.class.getName());
+
+	private static final String ESTENSIONE = ".mail";
+
+	private static final String ESTENSIONE_SCARTATO = ".scartato";
+
+	private static final int LOTTO = 50;
+
+	private final Session sessione;
+
+	private final File cartella;
+
+	private final int capacita;
+
+	private int thread = 2;
+
+	private int tentativiMassimi = 8;
+
+	private long attesaTentativo = 30000;
+
+	private long attesaMassima = 3600000;
+
+	// ora del giorno in cui inviare i riepiloghi, -1 per non raccoglierli
+	private int oraRiepilogo = -1;
+
+	private final DelayQueue<MessaggioMail> coda = new DelayQueue<MessaggioMail>();
+
+	private final AtomicInteger dimensione = new AtomicInteger();
+
+	private final AtomicLong ultimoId = new AtomicLong();
+
+	// riepiloghi in coda per destinatario, ancora aperti
+	private final ConcurrentMap<String, MessaggioMail> riepiloghi = new ConcurrentHashMap<String, MessaggioMail>();
+
+	private final StatisticheMail statistiche = new StatisticheMail(this);
+
+	private ExecutorService esecutore;
+
+	/**
+	 * Crea la coda della posta.
+	 *
+	 * @param pProprieta
+	 *            le proprieta' della sessione della posta, tra cui
+	 *            mail.smtp.host.
+	 * @param pCartella
+	 *            la cartella in cui salvare i messaggi in coda.
+	 * @param pCapacita
+	 *            il numero massimo di messaggi in coda.
+	 */
+	public CodaMail(Properties pProprieta, File pCartella, int pCapacita) {
+		this.sessione = Session.getInstance(pProprieta);
+		this.cartella = pCartella;
+		this.capacita = Math.max(1, pCapacita);
+		// gli id proseguono dopo quelli delle esecuzioni precedenti
+		this.ultimoId.set(System.currentTimeMillis());
+	}
+
+	/**
+	 * @param pThread
+	 *            il numero di thread che inviano i messaggi.
+	 */
+	public void settareThread(int pThread) {
+		this.thread = Math.max(1, pThread);
+	}
+
+	/**
+	 * @param pTentativiMassimi
+	 *            il numero di tentativi dopo cui un messaggio viene scartato.
+	 */
+	public void settareTentativiMassimi(int pTentativiMassimi) {
+		this.tentativiMassimi = Math.max(1, pTentativiMassimi);
+	}
+
+	/**
+	 * @param pAttesaTentativo
+	 *            l'attesa dopo il primo tentativo fallito, in millisecondi.
+	 * @param pAttesaMassima
+	 *            l'attesa massima tra due tentativi, in millisecondi.
+	 */
+	public void settareAttesaTentativo(long pAttesaTentativo, long pAttesaMassima) {
+		this.attesaTentativo = Math.max(0, pAttesaTentativo);
+		this.attesaMassima = Math.max(this.attesaTentativo, pAttesaMassima);
+	}
+
+	/**
+	 * @param pOraRiepilogo
+	 *            l'ora del giorno, da 0 a 23, in cui inviare i riepiloghi; -1
+	 *            per inviare subito anche le comunicazioni con riepilogo.
+	 */
+	public void settareOraRiepilogo(int pOraRiepilogo) {
+		this.oraRiepilogo = (pOraRiepilogo < 0 || pOraRiepilogo > 23) ? -1 : pOraRiepilogo;
+	}
+
+	/**
+	 * Avvia la coda: rilegge i messaggi salvati nella cartella e avvia i
+	 * thread di invio.
+	 *
+	 * @throws IOException
+	 *             se la cartella non puo' essere creata.
+	 */
+	public synchronized void avviare() throws IOException {
+		if (this.esecutore != null)
+			return;
+		if (!this.cartella.isDirectory() && !this.cartella.mkdirs())
+			throw new IOException("Impossibile creare la cartella " + this.cartella);
+
+		// i messaggi accodati prima dell'avvio sono gia' nella cartella
+		this.coda.clear();
+		this.riepiloghi.clear();
+		this.dimensione.set(0);
+		File[] file = this.cartella.listFiles();
+		for (int i = 0; i < file.length; i++) {
+			if (!file[i].getName().endsWith(ESTENSIONE))
+				continue;
+			try {
+				MessaggioMail messaggio = leggere(file[i]);
+				long id = messaggio.ottenereId();
+				if (id > this.ultimoId.get())
+					this.ultimoId.set(id);
+				this.dimensione.incrementAndGet();
+				this.coda.add(messaggio);
+				// un riepilogo non ancora dovuto riceve ancora comunicazioni
+				if (messaggio.eRiepilogo() && messaggio.getDelay(TimeUnit.MILLISECONDS) > 0) {
+					MessaggioMail aperto = this.riepiloghi.get(messaggio.ottenereDestinatario());
+					if (aperto == null || aperto.ottenereId() < id)
+						this.riepiloghi.put(messaggio.ottenereDestinatario(), messaggio);
+				}
+			} catch (Exception e) {
+				LOGGER.log(Level.WARNING, "Messaggio in coda illeggibile: " + file[i], e);
+				file[i].renameTo(new File(this.cartella, file[i].getName() + ESTENSIONE_SCARTATO));
+			}
+		}
+
+		final AtomicInteger numero = new AtomicInteger();
+		this.esecutore = Executors.newFixedThreadPool(this.thread, new ThreadFactory() {
+			public Thread newThread(Runnable pTask) {
+				Thread thread = new Thread(pTask, "CodaMail-" + numero.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		for (int i = 0; i < this.thread; i++)
+			this.esecutore.execute(new Invio());
+	}
+
+	/**
+	 * Ferma i thread di invio. I messaggi non ancora inviati restano nella
+	 * cartella.
+	 */
+	public synchronized void fermare() {
+		if (this.esecutore == null)
+			return;
+		ExecutorService esecutore = this.esecutore;
+		this.esecutore = null;
+		esecutore.shutdownNow();
+		try {
+			esecutore.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.coda.clear();
+		this.riepiloghi.clear();
+		this.dimensione.set(0);
+	}
+
+	/**
+	 * Accoda un messaggio.
+	 *
+	 * @param pMittente
+	 *            l'indirizzo del mittente.
+	 * @param pDestinatario
+	 *            l'indirizzo del destinatario.
+	 * @param pOggetto
+	 *            l'oggetto del messaggio.
+	 * @param pTesto
+	 *            il testo del messaggio.
+	 * @param pRiepilogo
+	 *            true se il messaggio puo' essere raccolto nel riepilogo
+	 *            giornaliero del destinatario.
+	 * @throws MessagingException
+	 *             se la coda e' piena o il messaggio non puo' essere salvato.
+	 */
+	public void accodare(String pMittente, String pDestinatario, String pOggetto,
+			String pTesto, boolean pRiepilogo) throws MessagingException {
+		if (!pRiepilogo || this.oraRiepilogo < 0) {
+			MessaggioMail messaggio = creare(pMittente, pDestinatario, pOggetto, pTesto, false);
+			try {
+				inserire(messaggio);
+			} catch (MessagingException e) {
+				this.dimensione.decrementAndGet();
+				throw e;
+			}
+			return;
+		}
+
+		// il riepilogo creato da questo thread, se un altro non lo ha preceduto
+		MessaggioMail nuovo = null;
+		boolean inserito = false;
+		try {
+			while (true) {
+				MessaggioMail aperto = this.riepiloghi.get(pDestinatario);
+				if (aperto == null) {
+					if (nuovo == null)
+						nuovo = creare(pMittente, pDestinatario, pOggetto, pTesto, true);
+					// il riepilogo non riceve comunicazioni prima di essere salvato
+					synchronized (nuovo) {
+						if (this.riepiloghi.putIfAbsent(pDestinatario, nuovo) == null) {
+							try {
+								inserire(nuovo);
+							} catch (MessagingException e) {
+								nuovo.chiudere();
+								this.riepiloghi.remove(pDestinatario, nuovo);
+								throw e;
+							}
+							inserito = true;
+							return;
+						}
+					}
+					// un altro thread ha creato il riepilogo: la comunicazione vi
+					// viene aggiunta
+					continue;
+				}
+				// il riepilogo non puo' essere chiuso e inviato prima di essere salvato
+				synchronized (aperto) {
+					if (aperto.aggiungere(pOggetto, pTesto)) {
+						salvare(aperto);
+						this.statistiche.registrareRiepilogato();
+						return;
+					}
+				}
+				// il riepilogo e' gia' stato preso per l'invio
+				this.riepiloghi.remove(pDestinatario, aperto);
+			}
+		} finally {
+			if (nuovo != null && !inserito)
+				this.dimensione.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Invia subito i riepiloghi in coda, senza attendere l'ora del
+	 * riepilogo.
+	 */
+	public void inviareRiepiloghi() {
+		long adesso = System.currentTimeMillis();
+		for (MessaggioMail messaggio : this.riepiloghi.values()) {
+			// il messaggio va riposizionato nella coda, ordinata per istante di invio
+			if (this.coda.remove(messaggio)) {
+				messaggio.anticipare(adesso);
+				this.coda.add(messaggio);
+			}
+		}
+	}
+
+	/**
+	 * Restituisce le statistiche della coda.
+	 *
+	 * @return le statistiche.
+	 */
+	public StatisticheMail ottenereStatistiche() {
+		return this.statistiche;
+	}
+
+	/**
+	 * @return il numero di messaggi in coda.
+	 */
+	int ottenereDimensione() {
+		return this.dimensione.get();
+	}
+
+	/**
+	 * Crea un messaggio, riservandogli un posto nella coda.
+	 *
+	 * @throws MessagingException
+	 *             se la coda e' piena.
+	 */
+	private MessaggioMail creare(String pMittente, String pDestinatario, String pOggetto,
+			String pTesto, boolean pRiepilogo) throws MessagingException {
+		if (this.dimensione.incrementAndGet() > this.capacita) {
+			this.dimensione.decrementAndGet();
+			this.statistiche.registrareRifiuto();
+			throw new MessagingException("Coda della posta piena");
+		}
+		long invio = pRiepilogo ? prossimoRiepilogo() : System.currentTimeMillis();
+		return new MessaggioMail(this.ultimoId.incrementAndGet(), pMittente, pDestinatario,
+				pOggetto, pTesto, pRiepilogo, invio);
+	}
+
+	/**
+	 * Salva un messaggio appena creato e lo inserisce nella coda.
+	 */
+	private void inserire(MessaggioMail pMessaggio) throws MessagingException {
+		salvare(pMessaggio);
+		this.coda.add(pMessaggio);
+		this.statistiche.registrareAccodato();
+	}
+
+	/**
+	 * Invia un lotto di messaggi con una sola connessione al server SMTP.
+	 */
+	private void inviare(List<MessaggioMail> pLotto) {
+		Transport transport = null;
+		try {
+			for (int i = 0; i < pLotto.size(); i++) {
+				MessaggioMail messaggio = pLotto.get(i);
+				if (transport == null || !transport.isConnected()) {
+					try {
+						transport = this.sessione.getTransport("smtp");
+						transport.connect();
+						this.statistiche.registrareConnessione();
+					} catch (MessagingException e) {
+						// server non raggiungibile: si ritenta tutto il resto del lotto
+						LOGGER.log(Level.WARNING, "Connessione al server SMTP fallita", e);
+						for (int j = i; j < pLotto.size(); j++)
+							fallito(pLotto.get(j));
+						return;
+					}
+				}
+				long inizio = System.nanoTime();
+				try {
+					MimeMessage message = messaggio.creareMessaggio(this.sessione);
+					transport.sendMessage(message, message.getAllRecipients());
+					this.statistiche.registrareInvio(System.nanoTime() - inizio);
+					completato(messaggio);
+				} catch (MessagingException e) {
+					LOGGER.log(Level.WARNING, "Invio a " + messaggio.ottenereDestinatario()
+							+ " fallito", e);
+					fallito(messaggio);
+				}
+			}
+		} finally {
+			if (transport != null) {
+				try {
+					transport.close();
+				} catch (MessagingException e) {
+					// la connessione e' comunque abbandonata
+				}
+			}
+		}
+	}
+
+	private void completato(MessaggioMail pMessaggio) {
+		ottenereFile(pMessaggio, ESTENSIONE).delete();
+		this.dimensione.decrementAndGet();
+	}
+
+	private void fallito(MessaggioMail pMessaggio) {
+		this.statistiche.registrareFallimento();
+		int tentativi = pMessaggio.ottenereTentativi() + 1;
+		if (tentativi >= this.tentativiMassimi) {
+			LOGGER.severe("Messaggio a " + pMessaggio.ottenereDestinatario() + " scartato dopo "
+					+ tentativi + " tentativi");
+			ottenereFile(pMessaggio, ESTENSIONE).renameTo(
+					ottenereFile(pMessaggio, ESTENSIONE + ESTENSIONE_SCARTATO));
+			this.statistiche.registrareScarto();
+			this.dimensione.decrementAndGet();
+			return;
+		}
+		long attesa = this.attesaTentativo << Math.min(tentativi - 1, 30);
+		pMessaggio.registrareFallimento(Math.min(attesa, this.attesaMassima));
+		try {
+			salvare(pMessaggio);
+		} catch (MessagingException e) {
+			LOGGER.log(Level.WARNING, "Impossibile salvare il messaggio in coda", e);
+		}
+		this.coda.add(pMessaggio);
+	}
+
+	/**
+	 * Ritorna l'istante del prossimo invio dei riepiloghi.
+	 */
+	private long prossimoRiepilogo() {
+		Calendar calendar = Calendar.getInstance();
+		long adesso = calendar.getTimeInMillis();
+		calendar.set(Calendar.HOUR_OF_DAY, this.oraRiepilogo);
+		calendar.set(Calendar.MINUTE, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MILLISECOND, 0);
+		if (calendar.getTimeInMillis() <= adesso)
+			calendar.add(Calendar.DATE, 1);
+		return calendar.getTimeInMillis();
+	}
+
+	/**
+	 * Salva un messaggio nella cartella, sostituendo il file precedente solo
+	 * a scrittura completata.
+	 */
+	private void salvare(MessaggioMail pMessaggio) throws MessagingException {
+		File file = ottenereFile(pMessaggio, ESTENSIONE);
+		File temporaneo = ottenereFile(pMessaggio, ".tmp");
+		try {
+			ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(temporaneo));
+			try {
+				synchronized (pMessaggio) {
+					out.writeObject(pMessaggio);
+				}
+			} finally {
+				out.close();
+			}
+			if (!temporaneo.renameTo(file)) {
+				file.delete();
+				if (!temporaneo.renameTo(file))
+					throw new IOException("Impossibile rinominare " + temporaneo);
+			}
+		} catch (IOException e) {
+			temporaneo.delete();
+			throw new MessagingException("Impossibile salvare il messaggio in coda", e);
+		}
+	}
+
+	private MessaggioMail leggere(File pFile) throws IOException, ClassNotFoundException {
+		ObjectInputStream in = new ObjectInputStream(new FileInputStream(pFile));
+		try {
+			return (MessaggioMail) in.readObject();
+		} finally {
+			in.close();
+		}
+	}
+
+	private File ottenereFile(MessaggioMail pMessaggio, String pEstensione) {
+		return new File(this.cartella, pMessaggio.ottenereId() + pEstensione);
+	}
+
+	/**
+	 * Thread di invio: attende il primo messaggio pronto e lo invia insieme
+	 * agli altri gia' pronti.
+	 */
+	private class Invio implements Runnable {
+
+		public void run() {
+			while (!Thread.currentThread().isInterrupted()) {
+				List<MessaggioMail> lotto = new ArrayList<MessaggioMail>();
+				try {
+					lotto.add(coda.take());
+				} catch (InterruptedException e) {
+					return;
+				}
+				coda.drainTo(lotto, LOTTO - 1);
+				for (MessaggioMail messaggio : lotto) {
+					messaggio.chiudere();
+					if (messaggio.eRiepilogo())
+						riepiloghi.remove(messaggio.ottenereDestinatario(), messaggio);
+				}
+				try {
+					inviare(lotto);
+				} catch (RuntimeException e) {
+					LOGGER.log(Level.WARNING, "Invio della posta fallito", e);
+					for (MessaggioMail messaggio : lotto)
+						if (!coda.contains(messaggio) && ottenereFile(messaggio, ESTENSIONE).exists())
+							coda.add(messaggio);
+				}
+			}
+		}
+	}
+}
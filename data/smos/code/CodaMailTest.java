@@ -0,0 +1,273 @@
+package smos.utility;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prova della coda della posta con un server SMTP minimo avviato nello
+ * stesso processo: verifica che i messaggi di un lotto usino una sola
+ * connessione, che gli invii rifiutati vengano ritentati, che le
+ * comunicazioni allo stesso destinatario siano raccolte in un solo
+ * riepilogo, anche se accodate da piu' thread o dopo un riavvio, e che i
+ * messaggi salvati siano inviati al riavvio della coda.
+ */
+public class CodaMailTest {
+
+    public static void main(String[] args) throws Exception {
+        ServerSmtp server = new ServerSmtp();
+        try {
+            verificareLotto(server);
+            verificareTentativi(server);
+            verificareRiepilogo(server);
+            verificareRiepilogoConcorrente(server);
+            verificareRiepilogoRiavvio(server);
+            verificarePersistenza(server);
+        } finally {
+            server.chiudere();
+        }
+    }
+
+    private static void verificareLotto(ServerSmtp pServer) throws Exception {
+        pServer.azzerare();
+        CodaMail coda = creareCoda(pServer, 1);
+        for (int i = 0; i < 30; i++)
+            coda.accodare("scuola@smos.it", "genitore" + i + "@smos.it", "Assenza", "Testo " + i, false);
+        coda.avviare();
+        attendere(pServer, 30);
+        coda.fermare();
+        verificare("Lotto", pServer.messaggi.size() == 30 && pServer.connessioni.get() == 1,
+                pServer.messaggi.size() + " messaggi, " + pServer.connessioni.get() + " connessioni");
+    }
+
+    private static void verificareTentativi(ServerSmtp pServer) throws Exception {
+        pServer.azzerare();
+        pServer.rifiuti.set(3);
+        CodaMail coda = creareCoda(pServer, 2);
+        coda.avviare();
+        for (int i = 0; i < 5; i++)
+            coda.accodare("scuola@smos.it", "genitore" + i + "@smos.it", "Nota", "Testo " + i, false);
+        attendere(pServer, 5);
+        coda.fermare();
+        StatisticheMail statistiche = coda.ottenereStatistiche();
+        verificare("Tentativi", pServer.messaggi.size() == 5 && statistiche.getTentativiFalliti() == 3,
+                statistiche.toString());
+    }
+
+    private static void verificareRiepilogo(ServerSmtp pServer) throws Exception {
+        pServer.azzerare();
+        CodaMail coda = creareCoda(pServer, 2);
+        coda.settareOraRiepilogo(18);
+        coda.avviare();
+        for (int i = 0; i < 3; i++)
+            coda.accodare("scuola@smos.it", "genitore@smos.it", "Assenza del giorno " + i, "Testo " + i, true);
+        coda.accodare("scuola@smos.it", "altro@smos.it", "Nota", "Testo", true);
+        coda.accodare("scuola@smos.it", "genitore@smos.it", "Pagella", "Testo", false);
+        attendere(pServer, 1);
+        coda.inviareRiepiloghi();
+        attendere(pServer, 3);
+        coda.fermare();
+        boolean riepilogo = false;
+        for (String messaggio : pServer.messaggi)
+            riepilogo |= messaggio.contains("Riepilogo delle comunicazioni (3)")
+                    && messaggio.contains("Assenza del giorno 2");
+        verificare("Riepilogo", pServer.messaggi.size() == 3 && riepilogo,
+                pServer.messaggi.size() + " messaggi, " + coda.ottenereStatistiche());
+    }
+
+    private static void verificareRiepilogoConcorrente(ServerSmtp pServer) throws Exception {
+        pServer.azzerare();
+        final CodaMail coda = creareCoda(pServer, 2);
+        coda.settareOraRiepilogo(18);
+        coda.avviare();
+        Thread[] thread = new Thread[8];
+        for (int i = 0; i < thread.length; i++) {
+            final int numero = i;
+            thread[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        coda.accodare("scuola@smos.it", "genitore@smos.it", "Nota " + numero, "Testo", true);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+            thread[i].start();
+        }
+        for (int i = 0; i < thread.length; i++)
+            thread[i].join();
+        coda.inviareRiepiloghi();
+        attendere(pServer, 1);
+        Thread.sleep(200);
+        coda.fermare();
+        verificare("Riepilogo concorrente", pServer.messaggi.size() == 1
+                && pServer.messaggi.get(0).contains("Riepilogo delle comunicazioni (8)"),
+                pServer.messaggi.size() + " messaggi, " + coda.ottenereStatistiche());
+    }
+
+    private static void verificareRiepilogoRiavvio(ServerSmtp pServer) throws Exception {
+        pServer.azzerare();
+        File cartella = creareCartella();
+        CodaMail coda = new CodaMail(proprieta(pServer), cartella, 100);
+        coda.settareOraRiepilogo(18);
+        for (int i = 0; i < 2; i++)
+            coda.accodare("scuola@smos.it", "genitore@smos.it", "Assenza " + i, "Testo " + i, true);
+        // il riepilogo riletto al riavvio riceve le nuove comunicazioni
+        CodaMail riavviata = new CodaMail(proprieta(pServer), cartella, 100);
+        riavviata.settareOraRiepilogo(18);
+        riavviata.avviare();
+        riavviata.accodare("scuola@smos.it", "genitore@smos.it", "Assenza 2", "Testo 2", true);
+        riavviata.inviareRiepiloghi();
+        attendere(pServer, 1);
+        Thread.sleep(200);
+        riavviata.fermare();
+        verificare("Riepilogo al riavvio", pServer.messaggi.size() == 1
+                && pServer.messaggi.get(0).contains("Riepilogo delle comunicazioni (3)"),
+                pServer.messaggi.size() + " messaggi, " + riavviata.ottenereStatistiche());
+    }
+
+    private static void verificarePersistenza(ServerSmtp pServer) throws Exception {
+        pServer.azzerare();
+        File cartella = creareCartella();
+        CodaMail coda = new CodaMail(proprieta(pServer), cartella, 100);
+        for (int i = 0; i < 4; i++)
+            coda.accodare("scuola@smos.it", "genitore" + i + "@smos.it", "Assenza", "Testo " + i, false);
+        // la coda non e' stata avviata: i messaggi sono solo nella cartella
+        CodaMail riavviata = new CodaMail(proprieta(pServer), cartella, 100);
+        riavviata.avviare();
+        attendere(pServer, 4);
+        riavviata.fermare();
+        verificare("Persistenza", pServer.messaggi.size() == 4 && cartella.list().length == 0,
+                pServer.messaggi.size() + " messaggi, " + cartella.list().length + " file");
+    }
+
+    private static CodaMail creareCoda(ServerSmtp pServer, int pThread) throws IOException {
+        CodaMail coda = new CodaMail(proprieta(pServer), creareCartella(), 100);
+        coda.settareThread(pThread);
+        coda.settareAttesaTentativo(50, 200);
+        return coda;
+    }
+
+    private static Properties proprieta(ServerSmtp pServer) {
+        Properties props = new Properties();
+        props.put("mail.smtp.host", "localhost");
+        props.put("mail.smtp.port", String.valueOf(pServer.ottenerePorta()));
+        return props;
+    }
+
+    private static File creareCartella() throws IOException {
+        File cartella = File.createTempFile("codamail", "");
+        cartella.delete();
+        cartella.mkdirs();
+        cartella.deleteOnExit();
+        return cartella;
+    }
+
+    private static void attendere(ServerSmtp pServer, int pMessaggi) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 10000;
+        while (pServer.messaggi.size() < pMessaggi && System.currentTimeMillis() < limite)
+            Thread.sleep(20);
+    }
+
+    private static void verificare(String pProva, boolean pEsito, String pDettaglio) {
+        System.out.println(pProva + ": " + (pEsito ? "OK" : "ERRORE") + " (" + pDettaglio + ")");
+    }
+
+    /**
+     * Server SMTP minimo: accetta tutti i messaggi, rifiutando
+     * temporaneamente i primi destinatari se richiesto.
+     */
+    private static class ServerSmtp implements Runnable {
+
+        private final ServerSocket socket;
+
+        private final List<String> messaggi = Collections.synchronizedList(new ArrayList<String>());
+
+        private final AtomicInteger connessioni = new AtomicInteger();
+
+        private final AtomicInteger rifiuti = new AtomicInteger();
+
+        private ServerSmtp() throws IOException {
+            this.socket = new ServerSocket(0);
+            Thread thread = new Thread(this, "ServerSmtp");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private int ottenerePorta() {
+            return this.socket.getLocalPort();
+        }
+
+        private void azzerare() {
+            this.messaggi.clear();
+            this.connessioni.set(0);
+            this.rifiuti.set(0);
+        }
+
+        private void chiudere() throws IOException {
+            this.socket.close();
+        }
+
+        public void run() {
+            while (!this.socket.isClosed()) {
+                try {
+                    final Socket client = this.socket.accept();
+                    this.connessioni.incrementAndGet();
+                    Thread thread = new Thread(new Runnable() {
+                        public void run() {
+                            servire(client);
+                        }
+                    });
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void servire(Socket pClient) {
+            try {
+                BufferedReader in = new BufferedReader(new InputStreamReader(pClient.getInputStream(), "US-ASCII"));
+                PrintWriter out = new PrintWriter(pClient.getOutputStream(), true);
+                rispondere(out, "220 localhost SMTP");
+                String riga;
+                while ((riga = in.readLine()) != null) {
+                    String comando = riga.toUpperCase();
+                    if (comando.startsWith("RCPT") && this.rifiuti.getAndDecrement() > 0) {
+                        rispondere(out, "451 Riprovare piu' tardi");
+                    } else if (comando.startsWith("DATA")) {
+                        rispondere(out, "354 Fine con .");
+                        StringBuilder messaggio = new StringBuilder();
+                        while ((riga = in.readLine()) != null && !riga.equals("."))
+                            messaggio.append(riga).append('\n');
+                        this.messaggi.add(messaggio.toString());
+                        rispondere(out, "250 OK");
+                    } else if (comando.startsWith("QUIT")) {
+                        rispondere(out, "221 Arrivederci");
+                        break;
+                    } else {
+                        rispondere(out, "250 OK");
+                    }
+                }
+                pClient.close();
+            } catch (IOException e) {
+                // connessione chiusa dal client
+            }
+        }
+
+        private void rispondere(PrintWriter pOut, String pRisposta) {
+            pOut.print(pRisposta + "\r\n");
+            pOut.flush();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package smos.utility;
+
+import java.text.DateFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Conversione delle date in stringhe e viceversa, con gli stessi formati di
+ * Utility.String2Date, Utility.Date2String e Utility.date2SQLString. I
+ * formati sono creati una sola volta e copiati in ogni thread, poiche'
+ * DateFormat non puo' essere usato da piu' thread contemporaneamente; la data
+ * SQL e le date del tipo 05/10/2009 inviate dalle pagine sono convertite
+ * direttamente, senza passare per DateFormat, e l'ultima data formattata da
+ * ogni thread viene riutilizzata, dato che le pagine del registro mostrano
+ * molte volte la stessa data. Le date sono convertite con la lingua e il
+ * fuso orario presenti alla creazione del thread.
+ */
+public class CodificaData {
+
+	private static final CodificaData instance = new CodificaData();
+
+	// formati di riferimento, mai usati direttamente
+	private final DateFormat dataCorta = DateFormat.getDateInstance(DateFormat.SHORT);
+	private final DateFormat oraCorta = DateFormat.getTimeInstance(DateFormat.SHORT);
+	private final DateFormat dataMedia = DateFormat.getDateInstance();
+	private final DateFormat dataItaliana = DateFormat.getDateInstance(DateFormat.SHORT, Locale.ITALY);
+
+	// il formato medio della lingua non puo' leggere una data come 05/10/2009,
+	// che quindi e' letta come nel formato corto italiano
+	private final boolean letturaDiretta = !(this.dataMedia instanceof SimpleDateFormat)
+			|| ((SimpleDateFormat) this.dataMedia).toPattern().indexOf('/') < 0;
+
+	private final ThreadLocal<Stato> stati = new ThreadLocal<Stato>() {
+		protected Stato initialValue() {
+			return new Stato();
+		}
+	};
+
+	private CodificaData() {
+		super();
+	}
+
+	/**
+	 * Ritorna la sola istanza della classe esistente.
+	 *
+	 * @return Ritorna l'istanza della classe.
+	 */
+	public static CodificaData ottenereIstanza() {
+		return instance;
+	}
+
+	/**
+	 * Converte una stringa in una data, provando il formato medio della
+	 * lingua e poi il formato corto italiano.
+	 *
+	 * @param pData
+	 *            La stringa da convertire.
+	 * @return La data convertita, come java.sql.Timestamp, oppure null se la
+	 *         stringa non contiene una data.
+	 */
+	public Date leggere(String pData) {
+		if (pData == null)
+			return null;
+		Stato stato = this.stati.get();
+		if (this.letturaDiretta) {
+			Date tData = leggereNumerica(stato, pData);
+			if (tData != null)
+				return tData;
+		}
+		Date tData = stato.dataMedia.parse(pData, new ParsePosition(0));
+		if (tData == null)
+			tData = stato.dataItaliana.parse(pData, new ParsePosition(0));
+		return (tData == null) ? null : new java.sql.Timestamp(tData.getTime());
+	}
+
+	/**
+	 * Converte una data in una stringa nel formato corto della lingua.
+	 *
+	 * @param pData
+	 *            La data da convertire.
+	 * @param pOra
+	 *            true per aggiungere l'ora.
+	 * @return La data convertita, oppure una stringa vuota se la data e'
+	 *         null.
+	 */
+	public String formattare(Date pData, boolean pOra) {
+		if (pData == null)
+			return "";
+		Stato stato = this.stati.get();
+		long tempo = pData.getTime();
+		if (stato.ultimoTesto != null && stato.ultimoTempo == tempo && stato.ultimaOra == pOra)
+			return stato.ultimoTesto;
+
+		String result = stato.dataCorta.format(pData);
+		if (pOra)
+			result = result + " " + stato.oraCorta.format(pData);
+		stato.ultimoTempo = tempo;
+		stato.ultimaOra = pOra;
+		stato.ultimoTesto = result;
+		return result;
+	}
+
+	/**
+	 * Converte una data in una stringa per il database, nella forma
+	 * anno-mese-giorno e, se richiesto, ore:minuti:secondi, senza zeri
+	 * iniziali.
+	 *
+	 * @param pData
+	 *            La data da convertire.
+	 * @param pOra
+	 *            true per aggiungere l'ora.
+	 * @return La data formattata per il database.
+	 */
+	public String formattareSQL(Date pData, boolean pOra) {
+		Calendar calendar = this.stati.get().calendario;
+		calendar.setTime(pData);
+
+		StringBuilder result = new StringBuilder(19);
+		result.append(calendar.get(Calendar.YEAR)).append('-')
+				.append(calendar.get(Calendar.MONTH) + 1).append('-')
+				.append(calendar.get(Calendar.DATE));
+		if (pOra)
+			result.append(' ').append(calendar.get(Calendar.HOUR_OF_DAY)).append(':')
+					.append(calendar.get(Calendar.MINUTE)).append(':')
+					.append(calendar.get(Calendar.SECOND));
+		return result.toString();
+	}
+
+	/**
+	 * Converte piu' stringhe in date.
+	 *
+	 * @param pDate
+	 *            Le stringhe da convertire.
+	 * @return Le date convertite, nello stesso ordine; null per le stringhe
+	 *         che non contengono una data.
+	 */
+	public List<Date> leggereTutte(Collection<String> pDate) {
+		List<Date> result = new ArrayList<Date>(pDate.size());
+		for (String tData : pDate)
+			result.add(leggere(tData));
+		return result;
+	}
+
+	/**
+	 * Converte piu' date in stringhe nel formato corto della lingua.
+	 *
+	 * @param pDate
+	 *            Le date da convertire.
+	 * @param pOra
+	 *            true per aggiungere l'ora.
+	 * @return Le date convertite, nello stesso ordine.
+	 */
+	public List<String> formattareTutte(Collection<? extends Date> pDate, boolean pOra) {
+		List<String> result = new ArrayList<String>(pDate.size());
+		for (Date tData : pDate)
+			result.add(formattare(tData, pOra));
+		return result;
+	}
+
+	/**
+	 * Legge una data nella forma giorno/mese/anno, con l'anno di quattro
+	 * cifre, come farebbe il formato corto italiano. Ritorna null per le altre
+	 * stringhe, che vengono lette da DateFormat.
+	 */
+	private static Date leggereNumerica(Stato pStato, String pData) {
+		int lunghezza = pData.length();
+		int primaBarra = pData.indexOf('/');
+		int secondaBarra = pData.indexOf('/', primaBarra + 1);
+		if (primaBarra < 1 || primaBarra > 2 || secondaBarra - primaBarra < 2
+				|| secondaBarra - primaBarra > 3 || lunghezza - secondaBarra != 5)
+			return null;
+		int giorno = cifre(pData, 0, primaBarra);
+		int mese = cifre(pData, primaBarra + 1, secondaBarra);
+		int anno = cifre(pData, secondaBarra + 1, lunghezza);
+		if (giorno < 0 || mese < 0 || anno < 0)
+			return null;
+
+		// come DateFormat, i valori fuori intervallo passano ai mesi e agli anni successivi
+		Calendar calendar = pStato.calendario;
+		calendar.clear();
+		calendar.set(anno, mese - 1, giorno);
+		return new java.sql.Timestamp(calendar.getTimeInMillis());
+	}
+
+	/**
+	 * Ritorna il numero scritto tra due posizioni di una stringa, oppure -1
+	 * se non sono tutte cifre.
+	 */
+	private static int cifre(String pTesto, int pInizio, int pFine) {
+		int result = 0;
+		for (int i = pInizio; i < pFine; i++) {
+			char c = pTesto.charAt(i);
+			if (c < '0' || c > '9')
+				return -1;
+			result = result * 10 + (c - '0');
+		}
+		return result;
+	}
+
+	/**
+	 * Formati e calendario di un thread, con l'ultima data formattata.
+	 */
+	private class Stato {
+
+		private final DateFormat dataCorta = (DateFormat) CodificaData.this.dataCorta.clone();
+
+		private final DateFormat oraCorta = (DateFormat) CodificaData.this.oraCorta.clone();
+
+		private final DateFormat dataMedia = (DateFormat) CodificaData.this.dataMedia.clone();
+
+		private final DateFormat dataItaliana = (DateFormat) CodificaData.this.dataItaliana.clone();
+
+		private final Calendar calendario = new GregorianCalendar();
+
+		private long ultimoTempo;
+
+		private boolean ultimaOra;
+
+		private String ultimoTesto;
+	}
+}
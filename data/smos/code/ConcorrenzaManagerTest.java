@@ -0,0 +1,149 @@
+package smos.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import smos.bean.Insegnamento;
+import smos.exception.EntitaNonTrovataEccezione;
+
+/**
+ * Prova di carico dei manager: misura quante letture al secondo eseguono i
+ * manager con un numero crescente di thread, che senza un monitor globale
+ * deve crescere fino alla dimensione del pool di connessioni, e verifica che
+ * richieste concorrenti di inserimento dello stesso insegnamento ne
+ * inseriscano uno solo.
+ */
+public class ConcorrenzaManagerTest {
+
+    private static final int OPERAZIONI = 2000;
+
+    private static final int[] THREAD = { 1, 2, 4, 8, 16 };
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        // riscaldamento delle connessioni e delle classi
+        misurare(THREAD[THREAD.length - 1]);
+
+        double base = 0;
+        for (int thread : THREAD) {
+            double letture = misurare(thread);
+            if (base == 0)
+                base = letture;
+            System.out.println(thread + " thread: " + (int) letture + " letture/s ("
+                    + String.format("%.1f", letture / base) + "x)");
+        }
+
+        verificareInserimento(THREAD[THREAD.length - 1]);
+    }
+
+    /**
+     * Esegue le letture con il numero di thread dato e ritorna le letture al
+     * secondo.
+     */
+    private static double misurare(int pThread) throws Exception {
+        final ManagerClasse managerClasse = ManagerClasse.ottenereIstanza();
+        final ManagerIndirizzo managerIndirizzo = ManagerIndirizzo.ottenereIstanza();
+        final ManagerInsegnamento managerInsegnamento = ManagerInsegnamento.ottenereIstanza();
+        final ManagerVoto managerVoto = ManagerVoto.ottenereIstanza();
+        final ManagerRegistrati managerRegistrati = ManagerRegistrati.ottenereIstanza();
+        final int perThread = OPERAZIONI / pThread;
+
+        List<Callable<Void>> compiti = new ArrayList<Callable<Void>>();
+        for (int t = 0; t < pThread; t++) {
+            compiti.add(new Callable<Void>() {
+                public Void call() throws Exception {
+                    for (int i = 0; i < perThread; i++) {
+                        try {
+                            switch (i % 5) {
+                            case 0:
+                                managerClasse.ottenereAnnoAccademicoElenco();
+                                break;
+                            case 1:
+                                managerIndirizzo.ottenereIndirizzoElenco();
+                                break;
+                            case 2:
+                                managerInsegnamento.ottenereInsegnamenti();
+                                break;
+                            case 3:
+                                managerVoto.ottenereVotoPerUtenteId(1);
+                                break;
+                            default:
+                                managerRegistrati.ottenereAssenzaPerIDUtenteEAnnoAccademico(1, 2009);
+                            }
+                        } catch (EntitaNonTrovataEccezione e) {
+                            // nessun dato nel database, la lettura e' comunque avvenuta
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        long inizio = System.nanoTime();
+        eseguire(compiti);
+        long durata = System.nanoTime() - inizio;
+        return perThread * pThread * 1e9 / durata;
+    }
+
+    /**
+     * Inserisce da piu' thread contemporaneamente lo stesso insegnamento.
+     */
+    private static void verificareInserimento(int pThread) throws Exception {
+        final ManagerInsegnamento managerInsegnamento = ManagerInsegnamento.ottenereIstanza();
+        final String nome = "Prova concorrenza " + System.currentTimeMillis();
+        final CountDownLatch partenza = new CountDownLatch(1);
+        final List<Insegnamento> inseriti = new ArrayList<Insegnamento>();
+
+        List<Callable<Void>> compiti = new ArrayList<Callable<Void>>();
+        for (int t = 0; t < pThread; t++) {
+            compiti.add(new Callable<Void>() {
+                public Void call() throws Exception {
+                    Insegnamento insegnamento = new Insegnamento();
+                    insegnamento.settareNome(nome);
+                    partenza.await();
+                    if (managerInsegnamento.inserireSeNonEsiste(insegnamento)) {
+                        synchronized (inseriti) {
+                            inseriti.add(insegnamento);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        ExecutorService esecutore = Executors.newFixedThreadPool(pThread);
+        try {
+            List<Future<Void>> risultati = new ArrayList<Future<Void>>();
+            for (Callable<Void> compito : compiti)
+                risultati.add(esecutore.submit(compito));
+            partenza.countDown();
+            for (Future<Void> risultato : risultati)
+                risultato.get();
+        } finally {
+            esecutore.shutdown();
+        }
+
+        if (inseriti.size() == 1)
+            System.out.println("Inserimento concorrente: OK");
+        else
+            System.out.println("Inserimento concorrente: ERRORE, " + inseriti.size() + " inseriti");
+        for (Insegnamento insegnamento : inseriti)
+            managerInsegnamento.eliminare(insegnamento);
+    }
+
+    private static void eseguire(List<Callable<Void>> pCompiti) throws Exception {
+        ExecutorService esecutore = Executors.newFixedThreadPool(pCompiti.size());
+        try {
+            for (Future<Void> risultato : esecutore.invokeAll(pCompiti))
+                risultato.get();
+        } finally {
+            esecutore.shutdown();
+        }
+    }
+}
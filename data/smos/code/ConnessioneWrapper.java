@@ -15,6 +15,7 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.NClob;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLClientInfoException;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
@@ -23,7 +24,11 @@ import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Struct;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.Properties;
 import java.util.concurrent.Executor;
 import java.util.logging.Logger;
@@ -31,7 +36,9 @@ import java.util.logging.Logger;
 /**
  * ConnessioneWrapper e una classe che aggiunge a tutti i metodi della classe
  * Connection il settaggio del tempo in cui l'operazione sulla particolare
- * connessione e avvenuta informando il pool di quanto accaduto.
+ * connessione e avvenuta informando il pool di quanto accaduto. Mantiene
+ * inoltre una cache dei PreparedStatement piu' recenti, indicizzata dalla
+ * stringa SQL, che sopravvive al rilascio della connessione nel pool.
  */
 public class ConnessioneWrapper implements Connection, Serializable {
     private static final long serialVersionUID = 1L;
@@ -45,6 +52,12 @@ public class ConnessioneWrapper implements Connection, Serializable {
 
     private ArrayList<Statement> dichiarazioni = new ArrayList<Statement>();
 
+    private LinkedHashMap<String, PreparedStatement> cacheDichiarazioni;
+
+    private Set<String> dichiarazioniInUso = new HashSet<String>();
+
+    private volatile long ultimoRilascio;
+
     /**
      * @param pConnessione
      * @param pPoolManager
@@ -53,9 +66,101 @@ public class ConnessioneWrapper implements Connection, Serializable {
             PoolDiConnessioneDataSorgente pPoolManager) {
         this.connessione = pConnessione;
         this.manager = pPoolManager;
+        final int dimensione = pPoolManager.ottenereDimensioneCacheDichiarazioni();
+        this.cacheDichiarazioni = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> pEldest) {
+                // Un PreparedStatement in uso resta in cache fino al rilascio
+                if (size() <= dimensione || dichiarazioniInUso.contains(pEldest.getKey())) {
+                    return false;
+                }
+                chiudereDallaCache(pEldest.getValue());
+                return true;
+            }
+        };
         LOGGER.fine("Creating ConnectionWrapper");
     }
 
+    /**
+     * Restituisce un PreparedStatement per la stringa SQL, riutilizzando quello
+     * gia' preparato su questa connessione se presente in cache. Il
+     * PreparedStatement resta della connessione e non va chiuso da chi lo usa:
+     * i suoi risultati sono chiusi al rilascio della connessione nel pool. Se
+     * la stessa stringa SQL e' gia' in uso da quando la connessione e' stata
+     * ottenuta, viene preparato un PreparedStatement a parte, chiuso al
+     * rilascio.
+     * 
+     * @param pSql
+     *            la stringa SQL con i parametri indicati da ?
+     * @return il PreparedStatement con i parametri azzerati.
+     * @throws SQLException
+     */
+    public synchronized PreparedStatement preparareDallaCache(String pSql)
+            throws SQLException {
+        this.manager.settareUltimaVolta(this);
+        StatistichePool statistiche = this.manager.ottenereStatistiche();
+        if (this.manager.ottenereDimensioneCacheDichiarazioni() == 0
+                || !this.dichiarazioniInUso.add(pSql)) {
+            statistiche.registrareDichiarazione(false);
+            return cachePreparedStatement(this.connessione.prepareStatement(pSql));
+        }
+        PreparedStatement statement = this.cacheDichiarazioni.get(pSql);
+        if (statement != null) {
+            statistiche.registrareDichiarazione(true);
+            statement.clearParameters();
+        } else {
+            statistiche.registrareDichiarazione(false);
+            statement = this.connessione.prepareStatement(pSql);
+            this.cacheDichiarazioni.put(pSql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Restituisce quando la connessione e' stata rilasciata nel pool l'ultima
+     * volta.
+     */
+    long ottenereUltimoRilascio() {
+        return this.ultimoRilascio;
+    }
+
+    void settareUltimoRilascio(long pTempo) {
+        this.ultimoRilascio = pTempo;
+    }
+
+    /**
+     * Verifica che la connessione con il database sia ancora utilizzabile.
+     * 
+     * @return true se il database risponde.
+     */
+    boolean valida() {
+        try {
+            Statement statement = this.connessione.createStatement();
+            try {
+                statement.executeQuery("SELECT 1").close();
+                return true;
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            LOGGER.fine("Invalid db connection: " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Chiude un PreparedStatement uscito dalla cache.
+     */
+    private void chiudereDallaCache(PreparedStatement pStatement) {
+        this.manager.ottenereStatistiche().registrareEliminazione();
+        try {
+            pStatement.close();
+        } catch (SQLException e) {
+            LOGGER.fine("Closing cached statement: " + e);
+        }
+    }
+
     private PreparedStatement cachePreparedStatement(PreparedStatement pPrepSt) {
         this.manager.settareUltimaVolta(this);
         this.dichiarazioni.add(pPrepSt);
@@ -79,16 +184,56 @@ public class ConnessioneWrapper implements Connection, Serializable {
      * @see java.sql.Connection#close()
      */
     public void close() throws SQLException {
-        closeAndReleaseStatements();
         this.manager.rilasciare(this);
     }
 
-    private synchronized void closeAndReleaseStatements() throws SQLException {
+    /**
+     * Chiude le dichiarazioni aperte durante il prestito della connessione e
+     * i risultati dei PreparedStatement in cache, che restano aperti per il
+     * prestito successivo. Un errore non interrompe le chiusure: viene
+     * rilanciato il primo, a stato gia' azzerato.
+     * 
+     * @throws SQLException
+     */
+    synchronized void closeAndReleaseStatements() throws SQLException {
+        SQLException errore = null;
         final int n = this.dichiarazioni.size();
         for (int i = 0; i < n; i++) {
-            ((Statement) this.dichiarazioni.get(i)).close();
+            try {
+                ((Statement) this.dichiarazioni.get(i)).close();
+            } catch (SQLException e) {
+                errore = (errore == null) ? e : errore;
+            }
         }
         this.dichiarazioni.clear();
+
+        // I PreparedStatement in cache restano aperti, solo i loro risultati sono chiusi
+        for (String sql : this.dichiarazioniInUso) {
+            PreparedStatement statement = this.cacheDichiarazioni.get(sql);
+            try {
+                ResultSet result = (statement != null) ? statement.getResultSet() : null;
+                if (result != null) {
+                    result.close();
+                }
+            } catch (SQLException e) {
+                errore = (errore == null) ? e : errore;
+            }
+        }
+        this.dichiarazioniInUso.clear();
+        if (errore != null) {
+            throw errore;
+        }
+    }
+
+    /**
+     * Chiude i PreparedStatement in cache.
+     */
+    private synchronized void chiudereCacheDichiarazioni() {
+        Iterator<PreparedStatement> iterator = this.cacheDichiarazioni.values().iterator();
+        while (iterator.hasNext()) {
+            chiudereDallaCache(iterator.next());
+            iterator.remove();
+        }
     }
 
     /**
@@ -97,6 +242,7 @@ public class ConnessioneWrapper implements Connection, Serializable {
      */
     void chiudereConnessioneAvvolta() throws SQLException {
         closeAndReleaseStatements();
+        chiudereCacheDichiarazioni();
         if (!this.connessione.isClosed()) {
             LOGGER.fine("Closing db connection: " + this.getClass().getName()
                     + " [" + this + "]");
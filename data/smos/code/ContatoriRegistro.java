@@ -0,0 +1,274 @@
+package smos.storage;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import smos.storage.connectionManagement.DBConnessione;
+import smos.storage.connectionManagement.exception.ConnessioneEccezione;
+import smos.utility.Utility;
+
+/**
+ * Contatori, per studente e anno accademico, delle assenze non giustificate,
+ * dei ritardi e delle note. I contatori di un anno sono letti dal database
+ * alla prima richiesta e poi mantenuti da ManagerRegistrati ad ogni
+ * inserimento, modifica o cancellazione; per ogni tipo di contatore un indice
+ * ordinato per valore permette di trovare gli studenti oltre una soglia senza
+ * scorrere tutti gli studenti.
+ */
+public class ContatoriRegistro {
+
+	/**
+	 * Contatore delle assenze non giustificate.
+	 */
+	public static final int ASSENZE = 0;
+
+	/**
+	 * Contatore dei ritardi.
+	 */
+	public static final int RITARDI = 1;
+
+	/**
+	 * Contatore delle note.
+	 */
+	public static final int NOTE = 2;
+
+	private static final ContatoriRegistro instance = new ContatoriRegistro();
+
+	// contatori degli anni letti dal database
+	private final Map<Integer, Anno> anni = new HashMap<Integer, Anno>();
+
+	// modifiche del database in corso e versione, incrementata all'inizio e
+	// alla fine di ogni modifica
+	private int inCorso = 0;
+	private long versione = 0;
+
+	private ContatoriRegistro() {
+		super();
+	}
+
+	/**
+	 * Ritorna la sola istanza della classe esistente.
+	 *
+	 * @return Ritorna l'istanza della classe.
+	 */
+	public static ContatoriRegistro ottenereIstanza() {
+		return instance;
+	}
+
+	/**
+	 * Ritorna gli studenti che in un anno accademico hanno raggiunto una
+	 * soglia.
+	 *
+	 * @param pAnnoAccademico
+	 *            l'anno accademico
+	 * @param pTipo
+	 *            il contatore: ASSENZE, RITARDI o NOTE
+	 * @param pSoglia
+	 *            il valore minimo del contatore
+	 * @return gli id degli studenti, a partire da quello con il valore piu'
+	 *         alto
+	 * @throws ConnessioneEccezione
+	 * @throws SQLException
+	 */
+	public List<Integer> ottenereStudentiOltreSoglia(int pAnnoAccademico,
+			int pTipo, int pSoglia) throws ConnessioneEccezione, SQLException {
+		List<Integer> result = new ArrayList<Integer>();
+		Anno anno = ottenereAnno(pAnnoAccademico);
+		synchronized (this) {
+			for (Set<Integer> studenti : anno.indici.get(pTipo)
+					.tailMap(Math.max(pSoglia, 1), true).descendingMap().values())
+				result.addAll(studenti);
+		}
+		return result;
+	}
+
+	/**
+	 * Ritorna il valore di un contatore di uno studente.
+	 *
+	 * @param pAnnoAccademico
+	 *            l'anno accademico
+	 * @param pIdUtente
+	 *            l'id dello studente
+	 * @param pTipo
+	 *            il contatore: ASSENZE, RITARDI o NOTE
+	 * @return il valore del contatore
+	 * @throws ConnessioneEccezione
+	 * @throws SQLException
+	 */
+	public int ottenereContatore(int pAnnoAccademico, int pIdUtente, int pTipo)
+			throws ConnessioneEccezione, SQLException {
+		Anno anno = ottenereAnno(pAnnoAccademico);
+		synchronized (this) {
+			int[] contatori = anno.contatori.get(pIdUtente);
+			return contatori == null ? 0 : contatori[pTipo];
+		}
+	}
+
+	/**
+	 * Inizia una modifica del database che cambia i contatori. La modifica
+	 * deve essere sempre terminata, anche se fallisce.
+	 */
+	synchronized Modifica iniziareModifica() {
+		this.inCorso++;
+		this.versione++;
+		return new Modifica();
+	}
+
+	/**
+	 * Ritorna i contatori di un anno, leggendoli dal database se necessario.
+	 * I contatori letti vengono conservati solo se nessuna modifica e' stata
+	 * in corso durante la lettura, altrimenti potrebbero non contarla o
+	 * contarla due volte.
+	 */
+	private Anno ottenereAnno(int pAnnoAccademico) throws ConnessioneEccezione,
+			SQLException {
+		long versioneLettura;
+		synchronized (this) {
+			Anno anno = this.anni.get(pAnnoAccademico);
+			if (anno != null)
+				return anno;
+			versioneLettura = (this.inCorso == 0) ? this.versione : -1;
+		}
+
+		Anno anno = leggere(pAnnoAccademico);
+
+		synchronized (this) {
+			if (versioneLettura == this.versione && !this.anni.containsKey(pAnnoAccademico))
+				this.anni.put(pAnnoAccademico, anno);
+			return anno;
+		}
+	}
+
+	/**
+	 * Legge dal database i contatori di un anno.
+	 */
+	private Anno leggere(int pAnnoAccademico) throws ConnessioneEccezione,
+			SQLException {
+		Anno anno = new Anno();
+		Connection connect = null;
+		try {
+			String tSqlAbsence = "SELECT id_user, COUNT(*) AS total FROM "
+					+ ManagerRegistrati.TABELLA_ASSENZA
+					+ " WHERE accademic_year = ?"
+					+ " AND (id_justify IS NULL OR id_justify = 0)"
+					+ " GROUP BY id_user";
+			String tSqlDelay = "SELECT id_user, COUNT(*) AS total FROM "
+					+ ManagerRegistrati.TABELLA_RITARDO
+					+ " WHERE accademic_year = ?"
+					+ " GROUP BY id_user";
+			String tSqlNote = "SELECT id_user, COUNT(*) AS total FROM "
+					+ ManagerRegistrati.TABELLA_NOTA
+					+ " WHERE accademic_year = ?"
+					+ " GROUP BY id_user";
+
+			// Otteniamo una Connessione al DataBase
+			connect = DBConnessione.ottenereConnesione();
+			if (connect == null)
+				throw new ConnessioneEccezione();
+
+			ResultSet tRs = Utility.queryPreparata(connect, tSqlAbsence, pAnnoAccademico);
+			while (tRs.next())
+				anno.modificare(tRs.getInt("id_user"), ASSENZE, tRs.getInt("total"));
+
+			tRs = Utility.queryPreparata(connect, tSqlDelay, pAnnoAccademico);
+			while (tRs.next())
+				anno.modificare(tRs.getInt("id_user"), RITARDI, tRs.getInt("total"));
+
+			tRs = Utility.queryPreparata(connect, tSqlNote, pAnnoAccademico);
+			while (tRs.next())
+				anno.modificare(tRs.getInt("id_user"), NOTE, tRs.getInt("total"));
+
+			return anno;
+		} finally {
+			DBConnessione.rilasciareConnessione(connect);
+		}
+	}
+
+	/**
+	 * Modifica del database in corso. Le variazioni dei contatori sono
+	 * applicate solo quando la modifica termina.
+	 */
+	class Modifica {
+
+		private final List<int[]> variazioni = new ArrayList<int[]>();
+
+		private boolean terminata = false;
+
+		/**
+		 * Aggiunge una variazione di un contatore, da chiamare dopo che la
+		 * modifica del database e' avvenuta.
+		 */
+		void aggiungere(int pAnnoAccademico, int pIdUtente, int pTipo, int pVariazione) {
+			this.variazioni.add(new int[] { pAnnoAccademico, pIdUtente, pTipo, pVariazione });
+		}
+
+		/**
+		 * Termina la modifica, applicando le variazioni ai contatori degli
+		 * anni gia' letti.
+		 */
+		void terminare() {
+			synchronized (ContatoriRegistro.this) {
+				if (this.terminata)
+					return;
+				this.terminata = true;
+				for (int[] variazione : this.variazioni) {
+					Anno anno = anni.get(variazione[0]);
+					if (anno != null)
+						anno.modificare(variazione[1], variazione[2], variazione[3]);
+				}
+				inCorso--;
+				versione++;
+			}
+		}
+	}
+
+	/**
+	 * Contatori degli studenti in un anno accademico, con gli indici per
+	 * valore.
+	 */
+	private static class Anno {
+
+		private final Map<Integer, int[]> contatori = new HashMap<Integer, int[]>();
+
+		private final List<TreeMap<Integer, Set<Integer>>> indici = new ArrayList<TreeMap<Integer, Set<Integer>>>();
+
+		private Anno() {
+			for (int i = 0; i <= NOTE; i++)
+				this.indici.add(new TreeMap<Integer, Set<Integer>>());
+		}
+
+		private void modificare(int pIdUtente, int pTipo, int pVariazione) {
+			int[] tContatori = this.contatori.get(pIdUtente);
+			if (tContatori == null) {
+				tContatori = new int[NOTE + 1];
+				this.contatori.put(pIdUtente, tContatori);
+			}
+			TreeMap<Integer, Set<Integer>> indice = this.indici.get(pTipo);
+			int valore = tContatori[pTipo];
+			if (valore > 0) {
+				Set<Integer> studenti = indice.get(valore);
+				studenti.remove(pIdUtente);
+				if (studenti.isEmpty())
+					indice.remove(valore);
+			}
+			valore = Math.max(0, valore + pVariazione);
+			tContatori[pTipo] = valore;
+			if (valore > 0) {
+				Set<Integer> studenti = indice.get(valore);
+				if (studenti == null) {
+					studenti = new TreeSet<Integer>();
+					indice.put(valore, studenti);
+				}
+				studenti.add(pIdUtente);
+			}
+		}
+	}
+}
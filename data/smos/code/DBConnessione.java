@@ -11,6 +11,9 @@ import smos.utility.Utility;
 import java.sql.*;
 import java.util.*;
 import java.io.*;
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
 
 
 /**
@@ -23,20 +26,28 @@ public class DBConnessione {
 
     private static int ACTIVE_TIMEOUT;
 
+    private static int BORROW_TIMEOUT;
+
     private static String DRIVER_MYSQL = "";
 
     private static String FULL_PATH_DATABASE = "";
 
-    private static ControlloConnessione linker = null;
+    private static ManutenzionePool manutenzione = null;
 
     private static PoolDiConnessioneDataSorgente manager = null;
 
     private static int MAX_POOL_SIZE;
 
+    private static int MIN_POOL_SIZE;
+
     private static String PASSWORD = "";
 
     private static int POOL_TIMEOUT;
 
+    private static boolean LEAK_TRACE;
+
+    private static int STATEMENT_CACHE_SIZE = 32;
+
     private static Properties properties = null;
 
     private static String USER_NAME = "";
@@ -88,6 +99,13 @@ public class DBConnessione {
                     MAX_POOL_SIZE = Utility.ottenereDimensioneMassimaPool();
                 }
 
+                try {
+                    MIN_POOL_SIZE = Integer.parseInt(properties
+                            .getProperty("connection.minPoolSize"));
+                } catch (Exception ex) {
+                    MIN_POOL_SIZE = Utility.ottenereDimensioneMinimaPool();
+                }
+
                 try {
                     WAIT_TIMEOUT = Integer.parseInt(properties
                             .getProperty("connection.waitTimeout"));
@@ -108,17 +126,27 @@ public class DBConnessione {
                 } catch (Exception ex) {
                     POOL_TIMEOUT = Utility.ottenerePoolTimeout();
                 }
+
+                try {
+                    BORROW_TIMEOUT = Integer.parseInt(properties
+                            .getProperty("connection.borrowTimeout"));
+                } catch (Exception ex) {
+                    BORROW_TIMEOUT = Utility.ottenerePrestitoTimeout();
+                }
+
+                LEAK_TRACE = Boolean.parseBoolean(properties
+                        .getProperty("connection.leakTrace"));
+
+                try {
+                    STATEMENT_CACHE_SIZE = Integer.parseInt(properties
+                            .getProperty("connection.statementCacheSize"));
+                } catch (Exception ex) {
+                    STATEMENT_CACHE_SIZE = 32;
+                }
             } else {
                 /* Se il file di properties non esiste carica valori di default */
 
-                DRIVER_MYSQL = Utility.ottenereDriverMySql();
-                FULL_PATH_DATABASE = Utility.ottenereCompletoPathDatabase();
-                USER_NAME = Utility.ottenereUtenteNome();
-                PASSWORD = Utility.ottenerePassword();
-                MAX_POOL_SIZE = Utility.ottenereDimensioneMassimaPool();
-                WAIT_TIMEOUT = Utility.ottenereAspettareTimeout();
-                ACTIVE_TIMEOUT = Utility.ottenereAttivoTimeout();
-                POOL_TIMEOUT = Utility.ottenerePoolTimeout();
+                leggereConfigurazione();
             }
 
             loadPool(); // Crea il manager e prepara il pool di connessioni
@@ -131,14 +159,64 @@ public class DBConnessione {
             USER_NAME = Utility.ottenereUtenteNome();
             PASSWORD = Utility.ottenerePassword();
             MAX_POOL_SIZE = 100;
+            MIN_POOL_SIZE = 2;
             WAIT_TIMEOUT = 2000;
             ACTIVE_TIMEOUT = 240000;
             POOL_TIMEOUT = 300000;
+            BORROW_TIMEOUT = 5000;
             loadPool(); // Crea il manager e prepara il pool di connessioni
         }
 
     }
 
+    /**
+     * Crea il pool di connessioni, se non ancora creato, e ne apre le
+     * connessioni minime. Da invocare all'avvio dell'applicazione, dopo averne
+     * letto la configurazione.
+     */
+    public static synchronized void avviare() {
+        if (manager == null) {
+            // la creazione all'inizializzazione della classe e' fallita: si
+            // riprova con la configurazione letta da ServletInizializzazione
+            leggereConfigurazione();
+            loadPool();
+        }
+        if (manager == null) {
+            return;
+        }
+        try {
+            manager.preriscaldare(MIN_POOL_SIZE);
+        } catch (SQLException e) {
+            // la manutenzione del pool riprovera' ad aprire le connessioni
+            System.out.println("Impossibile aprire le connessioni minime"
+                    + " in DBConnection.avviare() " + e);
+        }
+    }
+
+    /**
+     * Ferma la manutenzione del pool e ne chiude le connessioni, da invocare
+     * alla chiusura dell'applicazione.
+     */
+    public static void chiudere() {
+        if (manutenzione != null) {
+            manutenzione.fermare();
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+                    new ObjectName("smos:type=PoolDiConnessione"));
+        } catch (Exception e) {
+            // Le statistiche non erano state esportate
+        }
+        try {
+            if (manager != null) {
+                manager.chiudere();
+            }
+        } catch (SQLException e) {
+            System.out.println("Eccezione generata"
+                    + "in DBConnection.chiudere() " + e);
+        }
+    }
+
     /**
      * Restituisce una connessione dal pool.
      * 
@@ -154,6 +232,22 @@ public class DBConnessione {
         }
     }
 
+    /**
+     * Legge i parametri del pool dalla configurazione dell'applicazione.
+     */
+    private static void leggereConfigurazione() {
+        DRIVER_MYSQL = Utility.ottenereDriverMySql();
+        FULL_PATH_DATABASE = Utility.ottenereCompletoPathDatabase();
+        USER_NAME = Utility.ottenereUtenteNome();
+        PASSWORD = Utility.ottenerePassword();
+        MAX_POOL_SIZE = Utility.ottenereDimensioneMassimaPool();
+        MIN_POOL_SIZE = Utility.ottenereDimensioneMinimaPool();
+        WAIT_TIMEOUT = Utility.ottenereAspettareTimeout();
+        ACTIVE_TIMEOUT = Utility.ottenereAttivoTimeout();
+        POOL_TIMEOUT = Utility.ottenerePoolTimeout();
+        BORROW_TIMEOUT = Utility.ottenerePrestitoTimeout();
+    }
+
     /**
      * Creazione effettiva del pool di connessione.
      * 
@@ -164,12 +258,34 @@ public class DBConnessione {
                     FULL_PATH_DATABASE, USER_NAME, PASSWORD, MAX_POOL_SIZE,
                     POOL_TIMEOUT);
             manager.settareAttivoTimeout(ACTIVE_TIMEOUT);
-            linker = new ControlloConnessione(manager, WAIT_TIMEOUT);
-            linker.start();
+            manager.settareAttesaMassima(BORROW_TIMEOUT);
+            manager.settareTracciaPerdite(LEAK_TRACE);
+            manager.settareDimensioneCacheDichiarazioni(STATEMENT_CACHE_SIZE);
+            manutenzione = new ManutenzionePool(manager, MIN_POOL_SIZE, WAIT_TIMEOUT);
+            manutenzione.avviare();
         } catch (Exception e) {
             System.out.println("Impossibile creare il pool"
                     + "di connessioni in DBConnection:" + e);
+            return;
         }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    manager.ottenereStatistiche(),
+                    new ObjectName("smos:type=PoolDiConnessione"));
+        } catch (Exception e) {
+            System.out.println("Impossibile esportare le statistiche"
+                    + " del pool in DBConnection:" + e);
+        }
+    }
+
+    /**
+     * Restituisce le statistiche di utilizzo del pool di connessioni, esportate
+     * anche tramite JMX come smos:type=PoolDiConnessione.
+     * 
+     * @return le statistiche del pool.
+     */
+    public static StatistichePool ottenereStatistiche() {
+        return manager.ottenereStatistiche();
     }
 
     /**
@@ -0,0 +1,153 @@
+package smos.utility;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import smos.storage.connectionManagement.DBConnessione;
+
+/**
+ * Generatore degli id dei nuovi record. Per ogni tabella il generatore
+ * riserva sul database un blocco di id consecutivi, registrando nella tabella
+ * id_sequence il primo id non ancora assegnato, e poi li distribuisce dalla
+ * memoria; solo quando il blocco e' esaurito ne riserva un altro. La
+ * prenotazione di un blocco aggiorna la riga della tabella solo se non e'
+ * cambiata dopo la lettura, per cui piu' applicazioni web che condividono lo
+ * stesso database non ottengono mai lo stesso id. Gli id di un blocco non
+ * usati prima della chiusura dell'applicazione vanno persi.
+ */
+public class GeneratoreId {
+
+	/**
+	 * Tabella dei prossimi id da riservare, una riga per tabella.
+	 */
+	public static final String TABELLA_SEQUENZA = "id_sequence";
+
+	private final int dimensioneBlocco;
+
+	private final ConcurrentMap<String, Blocco> blocchi = new ConcurrentHashMap<String, Blocco>();
+
+	private volatile boolean tabellaCreata = false;
+
+	/**
+	 * Crea un generatore.
+	 *
+	 * @param pDimensioneBlocco
+	 *            Il numero di id riservati con un solo accesso al database.
+	 */
+	public GeneratoreId(int pDimensioneBlocco) {
+		this.dimensioneBlocco = Math.max(1, pDimensioneBlocco);
+	}
+
+	/**
+	 * Ritorna un nuovo id per un record di una tabella. Se la connessione fa
+	 * parte di una transazione, il blocco viene riservato con un'altra
+	 * connessione, in modo che un rollback non annulli la prenotazione.
+	 *
+	 * @param pConnessione
+	 *            La connessione con cui verra' inserito il record.
+	 * @param pTabella
+	 *            La tabella in cui verra' inserito il record.
+	 * @param pCampoId
+	 *            Il campo id della tabella.
+	 *
+	 * @return Il nuovo id.
+	 *
+	 * @throws SQLException
+	 */
+	public int ottenereId(Connection pConnessione, String pTabella, String pCampoId)
+			throws SQLException {
+		Blocco blocco = this.blocchi.get(pTabella);
+		if (blocco == null) {
+			this.blocchi.putIfAbsent(pTabella, new Blocco());
+			blocco = this.blocchi.get(pTabella);
+		}
+		// il blocco di una tabella non ferma le altre tabelle
+		synchronized (blocco) {
+			if (blocco.prossimo >= blocco.limite) {
+				int inizio = riservare(pConnessione, pTabella, pCampoId);
+				blocco.prossimo = inizio;
+				blocco.limite = inizio + this.dimensioneBlocco;
+			}
+			return blocco.prossimo++;
+		}
+	}
+
+	/**
+	 * Riserva sul database un nuovo blocco di id e ritorna il primo.
+	 */
+	private int riservare(Connection pConnessione, String pTabella, String pCampoId)
+			throws SQLException {
+		Connection connect = pConnessione;
+		boolean prestata = false;
+		try {
+			if (!connect.getAutoCommit()) {
+				connect = DBConnessione.ottenereConnesione();
+				if (connect == null)
+					throw new SQLException("Nessuna connessione per riservare gli id di " + pTabella);
+				prestata = true;
+			}
+			creareTabella(connect);
+
+			SQLException errore = null;
+			while (true) {
+				ResultSet tRs = Utility.queryPreparata(connect, "SELECT next_id FROM "
+						+ TABELLA_SEQUENZA + " WHERE table_name = ?", pTabella);
+				if (tRs.next()) {
+					int inizio = tRs.getInt("next_id");
+					int aggiornate = Utility.eseguirePreparata(connect, "UPDATE "
+							+ TABELLA_SEQUENZA + " SET next_id = ?"
+							+ " WHERE table_name = ? AND next_id = ?",
+							inizio + this.dimensioneBlocco, pTabella, inizio);
+					if (aggiornate == 1)
+						return inizio;
+					// un'altra applicazione ha riservato il blocco, si riprova
+				} else {
+					// la riga non esiste neanche dopo un inserimento fallito
+					if (errore != null)
+						throw errore;
+					// prima prenotazione: si parte dal massimo id gia' presente
+					tRs = Utility.queryPreparata(connect, "SELECT max(" + pCampoId
+							+ ") as new_field FROM " + pTabella);
+					int inizio = (tRs.next() ? tRs.getInt("new_field") : 0) + 1;
+					try {
+						Utility.eseguirePreparata(connect, "INSERT INTO " + TABELLA_SEQUENZA
+								+ " (table_name, next_id) VALUES (?, ?)", pTabella,
+								inizio + this.dimensioneBlocco);
+						return inizio;
+					} catch (SQLException e) {
+						// riga inserita nel frattempo da un'altra applicazione?
+						errore = e;
+					}
+				}
+			}
+		} finally {
+			if (prestata)
+				DBConnessione.rilasciareConnessione(connect);
+		}
+	}
+
+	/**
+	 * Crea la tabella id_sequence se non esiste.
+	 */
+	private void creareTabella(Connection pConnessione) throws SQLException {
+		if (this.tabellaCreata)
+			return;
+		Utility.eseguirePreparata(pConnessione, "CREATE TABLE IF NOT EXISTS "
+				+ TABELLA_SEQUENZA + " (table_name VARCHAR(64) NOT NULL PRIMARY KEY,"
+				+ " next_id INT NOT NULL)");
+		this.tabellaCreata = true;
+	}
+
+	/**
+	 * Id riservati per una tabella e non ancora assegnati.
+	 */
+	private static class Blocco {
+
+		private int prossimo = 0;
+
+		private int limite = 0;
+	}
+}
@@ -1,15 +1,119 @@
 package smos.utility;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
 import java.util.Properties;
 import javax.mail.*;
 import javax.mail.internet.*;
+import javax.management.ObjectName;
 
 
 public class MailUtility {
 
+	//coda della posta in uscita, null se la posta e' inviata subito
+	private static volatile CodaMail coda = null;
+
+	/**
+	 * Avvia la coda della posta: da questo momento inviareMail accoda i
+	 * messaggi, che vengono inviati in background.
+	 *
+	 * @param pCartella
+	 *            la cartella in cui salvare i messaggi in coda.
+	 * @param pCapacita
+	 *            il numero massimo di messaggi in coda.
+	 * @param pThread
+	 *            il numero di thread che inviano i messaggi.
+	 * @param pOraRiepilogo
+	 *            l'ora del giorno in cui inviare i riepiloghi ai destinatari,
+	 *            -1 per non raccogliere le comunicazioni in riepiloghi.
+	 * @throws IOException
+	 *             se la cartella non puo' essere creata.
+	 */
+	public static synchronized void avviare(File pCartella, int pCapacita, int pThread,
+			int pOraRiepilogo) throws IOException {
+		if (coda != null)
+			return;
+		Properties props = new Properties();
+		props.put("mail.smtp.host", Utility.ottenereServerSmtp());
+		CodaMail nuova = new CodaMail(props, pCartella, pCapacita);
+		nuova.settareThread(pThread);
+		nuova.settareOraRiepilogo(pOraRiepilogo);
+		nuova.avviare();
+		coda = nuova;
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(
+					nuova.ottenereStatistiche(), new ObjectName("smos:type=CodaMail"));
+		} catch (Exception e) {
+			System.out.println("Impossibile esportare le statistiche"
+					+ " della coda della posta in MailUtility:" + e);
+		}
+	}
+
+	/**
+	 * Ferma la coda della posta, da invocare alla chiusura
+	 * dell'applicazione. I messaggi non inviati restano nella cartella della
+	 * coda e saranno inviati al prossimo avvio.
+	 */
+	public static synchronized void fermare() {
+		if (coda == null)
+			return;
+		coda.fermare();
+		coda = null;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+					new ObjectName("smos:type=CodaMail"));
+		} catch (Exception e) {
+			// Le statistiche non erano state esportate
+		}
+	}
+
+	/**
+	 * Restituisce le statistiche della coda della posta, esportate anche
+	 * tramite JMX come smos:type=CodaMail.
+	 *
+	 * @return le statistiche, oppure null se la coda non e' avviata.
+	 */
+	public static StatisticheMail ottenereStatistiche() {
+		CodaMail tCoda = coda;
+		return tCoda == null ? null : tCoda.ottenereStatistiche();
+	}
+
 	public static void inviareMail(String pMittente, String pDestinatario, String pOggetto, String pTesto) throws MessagingException, UnsupportedEncodingException {
-		
+		inviareMail(pMittente, pDestinatario, pOggetto, pTesto, false);
+	}
+
+	/**
+	 * Invia una mail. Se la coda della posta e' avviata il messaggio viene
+	 * accodato e il metodo ritorna senza attendere il server SMTP.
+	 *
+	 * @param pMittente
+	 *            l'indirizzo del mittente.
+	 * @param pDestinatario
+	 *            l'indirizzo del destinatario.
+	 * @param pOggetto
+	 *            l'oggetto del messaggio.
+	 * @param pTesto
+	 *            il testo del messaggio.
+	 * @param pRiepilogo
+	 *            true se il messaggio puo' essere raccolto nel riepilogo
+	 *            giornaliero del destinatario, come le comunicazioni ai
+	 *            genitori.
+	 * @throws MessagingException
+	 * @throws UnsupportedEncodingException
+	 */
+	public static void inviareMail(String pMittente, String pDestinatario, String pOggetto, String pTesto, boolean pRiepilogo) throws MessagingException, UnsupportedEncodingException {
+
+		CodaMail tCoda = coda;
+		if (tCoda != null) {
+			// gli indirizzi errati sono segnalati subito, non dalla coda
+			new InternetAddress(pMittente, true);
+			new InternetAddress(pDestinatario, true);
+			tCoda.accodare(pMittente, pDestinatario, pOggetto, pTesto, pRiepilogo);
+			return;
+		}
+
 		// Creazione di una mail session
 		Properties props = new Properties();
 		props.put("mail.smtp.host", Utility.ottenereServerSmtp());
@@ -7,6 +7,7 @@ import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Vector;
+import java.util.concurrent.locks.Lock;
 
 import smos.bean.Classe;
 import smos.bean.Utente;
@@ -16,6 +17,7 @@ import smos.exception.ValoreNonValidoEccezione;
 import smos.exception.CampoObbligatorioEccezione;
 import smos.storage.connectionManagement.DBConnessione;
 import smos.storage.connectionManagement.exception.ConnessioneEccezione;
+import smos.utility.BloccoPerChiave;
 import smos.utility.Utility;
 /**
  * Classe che gestiste le classi dell'istituto 
@@ -25,7 +27,10 @@ import smos.utility.Utility;
 public class ManagerClasse  {
 	
 	
-	private static ManagerClasse instance;
+	private static final ManagerClasse instance = new ManagerClasse();
+	
+	//blocchi delle classi, per nome, anno accademico e indirizzo
+	private static final BloccoPerChiave blocchi = new BloccoPerChiave(32);
 	
 	public static final String TABELLA_CLASSE = "classroom";
 	public static final String TABELLA_INDIRIZZO ="address";
@@ -43,10 +48,7 @@ public class ManagerClasse  {
 	 * 
 	 * @return Ritorna l'istanza della classe.
 	 */
-	public static synchronized ManagerClasse ottenereIstanza(){
-		if(instance==null){
-			instance = new ManagerClasse();
-		}
+	public static ManagerClasse ottenereIstanza(){
 		return instance;
 	}
 	
@@ -62,7 +64,7 @@ public class ManagerClasse  {
 	 * @throws ConnessioneEccezione
 	 * @throws SQLException
 	 */
-	public synchronized boolean esiste (Classe pClasse) throws CampoObbligatorioEccezione, ConnessioneEccezione, SQLException {
+	public boolean esiste (Classe pClasse) throws CampoObbligatorioEccezione, ConnessioneEccezione, SQLException {
 		
 		boolean result = false;
 		Connection connect = null;
@@ -84,17 +86,13 @@ public class ManagerClasse  {
 
 			String sql = "SELECT * FROM " 
 				+ ManagerClasse.TABELLA_CLASSE
-				+ " WHERE name = " 
-				+ Utility.eNull(pClasse.ottenereNome()) 
-				+ " AND accademic_year = "
-				+ Utility.eNull(pClasse.ottenereAnnoAccademico()
-				+ " AND id_address = "
-				+ Utility.eNull(pClasse.ottenereIdIndirizzo())
-				
-				);
+				+ " WHERE name = ?" 
+				+ " AND accademic_year = ?"
+				+ " AND id_address = ?";
 
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, sql);
+			ResultSet tRs = Utility.queryPreparata(connect, sql, pClasse.ottenereNome(),
+					pClasse.ottenereAnnoAccademico(), pClasse.ottenereIdIndirizzo());
 
 			if (tRs.next())
 				result = true;
@@ -117,7 +115,7 @@ public class ManagerClasse  {
 	 * @throws EntitaNonTrovataEccezione
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized void inserire(Classe pClasse) throws CampoObbligatorioEccezione, 
+	public void inserire(Classe pClasse) throws CampoObbligatorioEccezione, 
 		ConnessioneEccezione, SQLException, EntitaNonTrovataEccezione, ValoreNonValidoEccezione{
 		
 		Connection connect= null;
@@ -139,18 +137,17 @@ public class ManagerClasse  {
 			String sql =
 				"INSERT INTO " 
 				+ ManagerClasse.TABELLA_CLASSE 
-				+ " (id_address, name, accademic_year) " 
-				+ "VALUES (" 
-				+ Utility.eNull(pClasse.ottenereIdIndirizzo()) 
-				+ "," 
-				+ Utility.eNull(pClasse.ottenereNome()) 
-				+ "," 
-				+ Utility.eNull(pClasse.ottenereAnnoAccademico())
+				+ " (id_classroom, id_address, name, accademic_year) " 
+				+ "VALUES (?" 
+				+ ",?" 
+				+ ",?" 
+				+ ",?"
 				+ ")";
 		
-			Utility.eseguireOperazione(connect,sql);
-		
-			pClasse.settareIdClasse((Utility.ottenereValoreMassimo("id_classroom",ManagerClasse.TABELLA_CLASSE)));
+			pClasse.settareIdClasse(Utility.inserirePreparata(connect,
+					ManagerClasse.TABELLA_CLASSE, "id_classroom", sql,
+					pClasse.ottenereIdIndirizzo(), pClasse.ottenereNome(),
+					pClasse.ottenereAnnoAccademico()));
 		
 		}finally {
 		//rilascia le risorse
@@ -159,6 +156,35 @@ public class ManagerClasse  {
 		}
 	}
 	
+	/**
+	 * Inserisce l'oggetto di tipo classe nel database, se non esiste gia' una
+	 * classe con lo stesso nome, anno accademico e indirizzo. La verifica e
+	 * l'inserimento avvengono sotto il blocco della classe, quindi due
+	 * richieste concorrenti non possono inserire la stessa classe.
+	 * @param pClasse la classe da inserire nel database
+	 * @return true se la classe e' stata inserita, false se esisteva gia'
+	 * @throws CampoObbligatorioEccezione
+	 * @throws ConnessioneEccezione
+	 * @throws SQLException
+	 * @throws EntitaNonTrovataEccezione
+	 * @throws ValoreNonValidoEccezione
+	 */
+	public boolean inserireSeNonEsiste(Classe pClasse) throws CampoObbligatorioEccezione, 
+		ConnessioneEccezione, SQLException, EntitaNonTrovataEccezione, ValoreNonValidoEccezione{
+		
+		Lock blocco = blocchi.ottenereBlocco(pClasse.ottenereNome() + "|"
+				+ pClasse.ottenereAnnoAccademico() + "|" + pClasse.ottenereIdIndirizzo());
+		blocco.lock();
+		try{
+			if (esiste(pClasse))
+				return false;
+			inserire(pClasse);
+			return true;
+		}finally {
+			blocco.unlock();
+		}
+	}
+	
 	/**
 	 * Aggiorna le statistiche di una classe
 	 * @param La classe con le statistiche aggiornate (ma ID identico)
@@ -167,7 +193,7 @@ public class ManagerClasse  {
 	 * @throws EntitaNonTrovataEccezione
 	 * @throws CampoObbligatorioEccezione
 	 */
-	public synchronized void aggiornare (Classe pClasse) throws ConnessioneEccezione,
+	public void aggiornare (Classe pClasse) throws ConnessioneEccezione,
 	SQLException, EntitaNonTrovataEccezione, CampoObbligatorioEccezione{
 		Connection connect= null;
 		
@@ -188,21 +214,18 @@ public class ManagerClasse  {
 				"UPDATE " 
 				+	ManagerClasse.TABELLA_CLASSE 
 				+ " SET" 
-				+ " id_address = " 
-				+ Utility.eNull(pClasse.ottenereIdIndirizzo()) 
-				+ ", name = " 
-				+ Utility.eNull(pClasse.ottenereNome()) 
-				+ ", accademic_year = " 
-				+ Utility.eNull(pClasse.ottenereAnnoAccademico())  
-				+ " WHERE id_classroom = " 
-				+ Utility.eNull(pClasse.ottenereIdClasse());
+				+ " id_address = ?" 
+				+ ", name = ?" 
+				+ ", accademic_year = ?"  
+				+ " WHERE id_classroom = ?";
 			
 			//effettua una nuova connessione e invia la query
 			connect = DBConnessione.ottenereConnesione();
 			if (connect==null)
 				throw new ConnessioneEccezione();
 			
-			Utility.eseguireOperazione(connect, sql);
+			Utility.eseguirePreparata(connect, sql, pClasse.ottenereIdIndirizzo(), pClasse.ottenereNome(),
+					pClasse.ottenereAnnoAccademico(), pClasse.ottenereIdClasse());
 		}finally {
 		//rilascia le risorse
 		DBConnessione.rilasciareConnessione(connect);
@@ -218,7 +241,7 @@ public class ManagerClasse  {
 	 * @throws CampoObbligatorioEccezione
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized void eliminare (Classe pClasse) throws ConnessioneEccezione, 
+	public void eliminare (Classe pClasse) throws ConnessioneEccezione, 
 			SQLException, EntitaNonTrovataEccezione, CampoObbligatorioEccezione, ValoreNonValidoEccezione {
 		Connection connect = null;
 		
@@ -229,17 +252,16 @@ public class ManagerClasse  {
 				//Prepariamo la stringa SQL
 				String sql = "DELETE FROM " 
 							+ ManagerClasse.TABELLA_CLASSE 
-							+ " WHERE id_classroom = "
-							+ Utility.eNull(pClasse.ottenereIdClasse());
+							+ " WHERE id_classroom = ?";
 			
-				Utility.eseguireOperazione(connect, sql);
+				Utility.eseguirePreparata(connect, sql, pClasse.ottenereIdClasse());
 		}finally {
 			//rilascia le risorse
 			DBConnessione.rilasciareConnessione(connect);
 		}
 	}
 	
-	public synchronized Collection<Classe> ottenereClassePerStudente(Utente pUtente) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione, CampoObbligatorioEccezione{
+	public Collection<Classe> ottenereClassePerStudente(Utente pUtente) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione, CampoObbligatorioEccezione{
 		Collection<Classe> result=null;
 		Connection connect = null;
 		ManagerUtente managerUser = ManagerUtente.ottenereIstanza();
@@ -265,8 +287,7 @@ public class ManagerClasse  {
 				+ ManagerClasse.TABELLA_CLASSE 
 				+ " WHERE "
 				+ ManagerClasse.TABLE_STUDENTE_AVERE_CLASSE
-				+ ".id_user = "  
-				+ Utility.eNull(iduser)
+				+ ".id_user = ?"
 				+" AND "
 				+ ManagerClasse.TABELLA_CLASSE 
 				+".id_classroom = "
@@ -282,7 +303,7 @@ public class ManagerClasse  {
 			
 			
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, tSql);
+			ResultSet tRs = Utility.queryPreparata(connect, tSql, iduser);
 			
 				result = this.loadRecordsFromRs(tRs);
 				
@@ -304,7 +325,7 @@ public class ManagerClasse  {
 	 * @throws SQLException
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized Classe ottenereClassePerID(int pId) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
+	public Classe ottenereClassePerID(int pId) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
 		Classe result=null;
 		Connection connect = null;
 		try
@@ -321,8 +342,7 @@ public class ManagerClasse  {
 			String tSql = 
 				"SELECT * FROM " 
 				+ ManagerClasse.TABELLA_CLASSE 
-				+ " WHERE id_classroom = " 
-				+ Utility.eNull(pId) ;
+				+ " WHERE id_classroom = ?" ;
 			
 			// Otteniamo una Connessione al DataBase
 			connect = DBConnessione.ottenereConnesione();
@@ -330,7 +350,7 @@ public class ManagerClasse  {
 				throw new ConnessioneEccezione();
 			
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, tSql);
+			ResultSet tRs = Utility.queryPreparata(connect, tSql, pId);
 			
 			if (tRs.next()) 
 				result = this.loadRecordFromRs(tRs);
@@ -347,7 +367,7 @@ public class ManagerClasse  {
 	/**
 	 * Restituisce una collezione di classi dello stesso anno accademico
 	 */
-	public synchronized Collection<Classe> ottenereClassePerAnnoAccademico(int pAnnoAccademico) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
+	public Collection<Classe> ottenereClassePerAnnoAccademico(int pAnnoAccademico) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
 		Collection<Classe> result=null;
 		Connection connect = null;
 		try
@@ -364,8 +384,7 @@ public class ManagerClasse  {
 			String tSql = 
 				"SELECT * FROM " 
 				+ ManagerClasse.TABELLA_CLASSE 
-				+ " WHERE accademic_year = " 
-				+ Utility.eNull(pAnnoAccademico) ;
+				+ " WHERE accademic_year = ?" ;
 			
 			// Otteniamo una Connessione al DataBase
 			connect = DBConnessione.ottenereConnesione();
@@ -374,7 +393,7 @@ public class ManagerClasse  {
 			
 			
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, tSql);
+			ResultSet tRs = Utility.queryPreparata(connect, tSql, pAnnoAccademico);
 			
 				result = this.loadRecordsFromRs(tRs);
 				
@@ -387,7 +406,7 @@ public class ManagerClasse  {
 		}
 	}
 		
-	public synchronized Collection<Integer> ottenereAnnoAccademicoElenco() throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
+	public Collection<Integer> ottenereAnnoAccademicoElenco() throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
 		Collection<Integer> result=null;
 		Connection connect = null;
 		try
@@ -409,7 +428,7 @@ public class ManagerClasse  {
 			
 			
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, tSql);
+			ResultSet tRs = Utility.queryPreparata(connect, tSql);
 			
 				result = this.loadIntegersFromRs(tRs);
 				
@@ -423,7 +442,7 @@ public class ManagerClasse  {
 	}
 	
 	
-	public synchronized Classe ottenereClassePerUtenteAnnoAccademico(Utente pUtente, int pAnnoAccademico) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione, CampoObbligatorioEccezione{
+	public Classe ottenereClassePerUtenteAnnoAccademico(Utente pUtente, int pAnnoAccademico) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione, CampoObbligatorioEccezione{
 		Classe result = null;
 		Classe temp = null;
 		ManagerClasse managerClassroom = ManagerClasse.ottenereIstanza();
@@ -439,7 +458,7 @@ public class ManagerClasse  {
 		}
 		return result;
 	}
-	public synchronized Collection<Classe> ottenereClassePerInsegnanteAnnoAccademico(Utente pUtente, int pAnnoAccademico) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione, CampoObbligatorioEccezione{
+	public Collection<Classe> ottenereClassePerInsegnanteAnnoAccademico(Utente pUtente, int pAnnoAccademico) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione, CampoObbligatorioEccezione{
 		Collection<Classe> result = null;
 		Connection connect = null;
 		int idUser = pUtente.ottenereId();
@@ -463,11 +482,9 @@ public class ManagerClasse  {
 				+ ManagerClasse.TABELLA_CLASSE + ".id_classroom = "
 				+ ManagerClasse.TABLE_INSEGNANTE_AVERE_CLASSE 
 				+ ".id_classroom  AND "
-				+ ManagerClasse.TABELLA_CLASSE + ".accademic_year = "
-				+ Utility.eNull(pAnnoAccademico)
+				+ ManagerClasse.TABELLA_CLASSE + ".accademic_year = ?"
 				+ " AND "
-				+ ManagerClasse.TABLE_INSEGNANTE_AVERE_CLASSE + ".id_user = "
-				+ Utility.eNull(idUser)
+				+ ManagerClasse.TABLE_INSEGNANTE_AVERE_CLASSE + ".id_user = ?"
 				;
 			
 			
@@ -478,7 +495,7 @@ public class ManagerClasse  {
 			
 			
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, tSql);
+			ResultSet tRs = Utility.queryPreparata(connect, tSql, pAnnoAccademico, idUser);
 			
 				result = this.loadRecordsFromRs(tRs);
 				
@@ -491,7 +508,7 @@ public class ManagerClasse  {
 		}
 	
 	}
-	public synchronized Collection<Classe> ottenereClassePerInsegnante(Utente pUtente) 
+	public Collection<Classe> ottenereClassePerInsegnante(Utente pUtente) 
 	throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione, CampoObbligatorioEccezione{
 		Collection<Classe> result=null;
 		Connection connect = null;
@@ -518,8 +535,7 @@ public class ManagerClasse  {
 				+ ManagerClasse.TABELLA_CLASSE 
 				+ " WHERE "
 				+ ManagerClasse.TABLE_INSEGNANTE_AVERE_CLASSE
-				+ ".id_user = "  
-				+ Utility.eNull(iduser)
+				+ ".id_user = ?"
 				+" AND "
 				+ ManagerClasse.TABELLA_CLASSE 
 				+".id_classroom = "
@@ -535,7 +551,7 @@ public class ManagerClasse  {
 			
 			
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, tSql);
+			ResultSet tRs = Utility.queryPreparata(connect, tSql, iduser);
 			
 				result = this.loadRecordsFromRs(tRs);
 				
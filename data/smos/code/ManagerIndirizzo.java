@@ -7,12 +7,14 @@ import smos.exception.ValoreNonValidoEccezione;
 import smos.exception.CampoObbligatorioEccezione;
 import smos.storage.connectionManagement.DBConnessione;
 import smos.storage.connectionManagement.exception.ConnessioneEccezione;
+import smos.utility.BloccoPerChiave;
 import smos.utility.Utility;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Vector;
+import java.util.concurrent.locks.Lock;
 import java.sql.Connection;
 
 /**
@@ -22,7 +24,12 @@ import java.sql.Connection;
 */
 public class ManagerIndirizzo {
 
-    private static ManagerIndirizzo instance;
+    private static final ManagerIndirizzo instance = new ManagerIndirizzo();
+
+    /**
+     * I blocchi degli indirizzi, per nome, e delle loro associazioni
+     */
+    private static final BloccoPerChiave blocchi = new BloccoPerChiave(32);
 
     /**
      * Il nome della tabella degli indirizzi
@@ -39,10 +46,7 @@ public class ManagerIndirizzo {
      * 
      * @return Ritorna l'istanza della classe.
      */
-    public static synchronized ManagerIndirizzo ottenereIstanza() {
-        if (instance == null) {
-            instance = new ManagerIndirizzo();
-        }
+    public static ManagerIndirizzo ottenereIstanza() {
         return instance;
     }
 
@@ -60,7 +64,7 @@ public class ManagerIndirizzo {
      * @throws ConnessioneEccezione
      * @throws SQLException
      */
-    public synchronized boolean avereInsegnamento(Insegnamento pInsegnamento, Indirizzo pIndirizzo)
+    public boolean avereInsegnamento(Insegnamento pInsegnamento, Indirizzo pIndirizzo)
             throws SQLException, EntitaNonTrovataEccezione, ConnessioneEccezione, ValoreNonValidoEccezione {
         Connection connect = null;
         boolean result = false;
@@ -73,11 +77,10 @@ public class ManagerIndirizzo {
                 throw new ConnessioneEccezione();
 
             // Preparimao la stringa sql
-            String sql = "SELECT * FROM " + ManagerInsegnamento.TABELLA_INDIRIZZO_INSEGNAMENTI + " WHERE id_teaching = "
-                    + Utility.eNull(pInsegnamento.ottenereId()) + " AND id_address = "
-                    + Utility.eNull(pIndirizzo.ottenereIdIndirizzo());
+            String sql = "SELECT * FROM " + ManagerInsegnamento.TABELLA_INDIRIZZO_INSEGNAMENTI + " WHERE id_teaching = ?" + " AND id_address = ?";
             // Inviamo la Query al database
-            ResultSet pRs = Utility.queryOperazione(connect, sql);
+            ResultSet pRs = Utility.queryPreparata(connect, sql, pInsegnamento.ottenereId(),
+                    pIndirizzo.ottenereIdIndirizzo());
             if (pRs.next())
                 result = true;
 
@@ -90,7 +93,7 @@ public class ManagerIndirizzo {
         }
     }
 
-    public synchronized boolean esiste(Indirizzo pIndirizzo)
+    public boolean esiste(Indirizzo pIndirizzo)
             throws CampoObbligatorioEccezione, ConnessioneEccezione, SQLException {
         boolean result = false;
         Connection connect = null;
@@ -104,10 +107,9 @@ public class ManagerIndirizzo {
             if (connect == null)
                 throw new ConnessioneEccezione();
 
-            String sql = " SELECT * FROM " + ManagerIndirizzo.TABELLA_INDIRIZZO + " WHERE name = "
-                    + Utility.eNull(pIndirizzo.ottenereNome());
+            String sql = " SELECT * FROM " + ManagerIndirizzo.TABELLA_INDIRIZZO + " WHERE name = ?";
 
-            ResultSet tRs = Utility.queryOperazione(connect, sql);
+            ResultSet tRs = Utility.queryPreparata(connect, sql, pIndirizzo.ottenereNome());
 
             if (tRs.next())
                 result = true;
@@ -130,7 +132,7 @@ public class ManagerIndirizzo {
      * @throws EntitaNonTrovataEccezione
      * @throws ValoreNonValidoEccezione
      */
-    public synchronized void inserire(Indirizzo pIndirizzo) throws CampoObbligatorioEccezione, ConnessioneEccezione,
+    public void inserire(Indirizzo pIndirizzo) throws CampoObbligatorioEccezione, ConnessioneEccezione,
             SQLException, EntitaNonTrovataEccezione, ValoreNonValidoEccezione {
         Connection connect = null;
         try {
@@ -142,12 +144,11 @@ public class ManagerIndirizzo {
             if (connect == null)
                 throw new ConnessioneEccezione();
             // Prepariamo la stringa Sql
-            String sql = "INSERT INTO " + ManagerIndirizzo.TABELLA_INDIRIZZO + " (name) " + "VALUES ("
-                    + Utility.eNull(pIndirizzo.ottenereNome()) + ")";
-
-            Utility.eseguireOperazione(connect, sql);
+            String sql = "INSERT INTO " + ManagerIndirizzo.TABELLA_INDIRIZZO + " (id_address, name) " + "VALUES (?" + ", ?" + ")";
 
-            pIndirizzo.settareIdIndirizzo(Utility.ottenereValoreMassimo("id_address", ManagerIndirizzo.TABELLA_INDIRIZZO));
+            pIndirizzo.settareIdIndirizzo(Utility.inserirePreparata(connect,
+                    ManagerIndirizzo.TABELLA_INDIRIZZO, "id_address", sql,
+                    pIndirizzo.ottenereNome()));
 
         } finally {
             // rilascia le risorse
@@ -156,6 +157,35 @@ public class ManagerIndirizzo {
         }
     }
 
+    /**
+     * Inserisce un nuovo indirizzo nella tabella address, se non esiste gia'
+     * un indirizzo con lo stesso nome. La verifica e l'inserimento avvengono
+     * sotto il blocco del nome, quindi due richieste concorrenti non possono
+     * inserire lo stesso indirizzo.
+     * 
+     * @param pIndirizzo L'indirizzo da inserire.
+     * @return true se l'indirizzo e' stato inserito, false se esisteva gia'.
+     * 
+     * @throws SQLException
+     * @throws ConnessioneEccezione
+     * @throws CampoObbligatorioEccezione
+     * @throws EntitaNonTrovataEccezione
+     * @throws ValoreNonValidoEccezione
+     */
+    public boolean inserireSeNonEsiste(Indirizzo pIndirizzo) throws CampoObbligatorioEccezione,
+            ConnessioneEccezione, SQLException, EntitaNonTrovataEccezione, ValoreNonValidoEccezione {
+        Lock blocco = blocchi.ottenereBlocco(TABELLA_INDIRIZZO + "|" + pIndirizzo.ottenereNome());
+        blocco.lock();
+        try {
+            if (esiste(pIndirizzo))
+                return false;
+            inserire(pIndirizzo);
+            return true;
+        } finally {
+            blocco.unlock();
+        }
+    }
+
     /**
      * Elimina un indirizzo dalla tabella address.
      * 
@@ -168,7 +198,7 @@ public class ManagerIndirizzo {
      * @throws ValoreNonValidoEccezione
      * 
      */
-    public synchronized void elimina(Indirizzo pIndirizzo) throws ConnessioneEccezione, SQLException,
+    public void elimina(Indirizzo pIndirizzo) throws ConnessioneEccezione, SQLException,
             EntitaNonTrovataEccezione, CampoObbligatorioEccezione, ValoreNonValidoEccezione {
         Connection connect = null;
 
@@ -176,40 +206,44 @@ public class ManagerIndirizzo {
             // ManagerAddress.getInstance().AddressOnDeleteCascade(pIndirizzo);
             connect = DBConnessione.ottenereConnesione();
             // Prepariamo la stringa SQL
-            String sql = "DELETE FROM " + ManagerIndirizzo.TABELLA_INDIRIZZO + " WHERE id_address = "
-                    + Utility.eNull(pIndirizzo.ottenereIdIndirizzo());
+            String sql = "DELETE FROM " + ManagerIndirizzo.TABELLA_INDIRIZZO + " WHERE id_address = ?";
 
-            Utility.eseguireOperazione(connect, sql);
+            Utility.eseguirePreparata(connect, sql, pIndirizzo.ottenereIdIndirizzo());
         } finally {
             // rilascia le risorse
             DBConnessione.rilasciareConnessione(connect);
         }
     }
 
-    public synchronized void assegnareInsegnamentoComeIndirizzo(Indirizzo pIndirizzo, Insegnamento pInsegnamento)
+    public void assegnareInsegnamentoComeIndirizzo(Indirizzo pIndirizzo, Insegnamento pInsegnamento)
             throws ConnessioneEccezione, SQLException, EntitaNonTrovataEccezione, CampoObbligatorioEccezione,
             ValoreNonValidoEccezione, EntitaDuplicataEccezione {
         Connection connect = null;
         ManagerIndirizzo managerAddress = ManagerIndirizzo.ottenereIstanza();
-        if (managerAddress.avereInsegnamento(pInsegnamento, pIndirizzo))
-            throw new EntitaDuplicataEccezione("Questo indirizzo ha gia quest'insegnamento associato");
-
+        // la verifica e l'inserimento dell'associazione non devono essere interrotti
+        Lock blocco = blocchi.ottenereBlocco(TABELLA_INDIRIZZO_AVERE_INSEGNAMENTO + "|"
+                + pIndirizzo.ottenereIdIndirizzo() + "|" + pInsegnamento.ottenereId());
+        blocco.lock();
         try {
+            if (managerAddress.avereInsegnamento(pInsegnamento, pIndirizzo))
+                throw new EntitaDuplicataEccezione("Questo indirizzo ha gia quest'insegnamento associato");
+
             // ManagerAddress.getInstance().AddressOnDeleteCascade(pIndirizzo);
             connect = DBConnessione.ottenereConnesione();
             // Prepariamo la stringa SQL
             String sql = "INSERT INTO " + ManagerIndirizzo.TABELLA_INDIRIZZO_AVERE_INSEGNAMENTO + " (id_address, id_teaching) "
-                    + " VALUES( " + Utility.eNull(pIndirizzo.ottenereIdIndirizzo()) + " , "
-                    + Utility.eNull(pInsegnamento.ottenereId()) + " )";
+                    + " VALUES( ?" + " , ?" + " )";
 
-            Utility.eseguireOperazione(connect, sql);
+            Utility.eseguirePreparata(connect, sql, pIndirizzo.ottenereIdIndirizzo(),
+                    pInsegnamento.ottenereId());
         } finally {
             // rilascia le risorse
             DBConnessione.rilasciareConnessione(connect);
+            blocco.unlock();
         }
     }
 
-    public synchronized void rimuovereInsegnamentoComeIndirizzo(Indirizzo pIndirizzo, Insegnamento pInsegnamento)
+    public void rimuovereInsegnamentoComeIndirizzo(Indirizzo pIndirizzo, Insegnamento pInsegnamento)
             throws ConnessioneEccezione, SQLException, EntitaNonTrovataEccezione, CampoObbligatorioEccezione,
             ValoreNonValidoEccezione {
         Connection connect = null;
@@ -221,11 +255,10 @@ public class ManagerIndirizzo {
             // ManagerAddress.getInstance().AddressOnDeleteCascade(pIndirizzo);
             connect = DBConnessione.ottenereConnesione();
             // Prepariamo la stringa SQL
-            String sql = "DELETE FROM " + ManagerIndirizzo.TABELLA_INDIRIZZO_AVERE_INSEGNAMENTO + " WHERE id_address= "
-                    + Utility.eNull(pIndirizzo.ottenereIdIndirizzo()) + " AND id_teaching = "
-                    + Utility.eNull(pInsegnamento.ottenereId());
+            String sql = "DELETE FROM " + ManagerIndirizzo.TABELLA_INDIRIZZO_AVERE_INSEGNAMENTO + " WHERE id_address= ?" + " AND id_teaching = ?";
 
-            Utility.eseguireOperazione(connect, sql);
+            Utility.eseguirePreparata(connect, sql, pIndirizzo.ottenereIdIndirizzo(),
+                    pInsegnamento.ottenereId());
         } finally {
             // rilascia le risorse
             DBConnessione.rilasciareConnessione(connect);
@@ -242,7 +275,7 @@ public class ManagerIndirizzo {
      * @throws ConnessioneEccezione
      * @throws SQLException
      */
-    public synchronized int ottenereIndirizzoId(Indirizzo pIndirizzo)
+    public int ottenereIndirizzoId(Indirizzo pIndirizzo)
             throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException {
         int result = 0;
         Connection connect = null;
@@ -254,8 +287,7 @@ public class ManagerIndirizzo {
              * Prepariamo la stringa SQL per recuperare le informazioni corrispondenti
              * all'id dell'indirizzo passato come parametro.
              */
-            String tSql = "SELECT id_address FROM " + ManagerIndirizzo.TABELLA_INDIRIZZO + " WHERE name = "
-                    + Utility.eNull(pIndirizzo.ottenereNome());
+            String tSql = "SELECT id_address FROM " + ManagerIndirizzo.TABELLA_INDIRIZZO + " WHERE name = ?";
 
             // Otteniamo una Connessione al DataBase
             connect = DBConnessione.ottenereConnesione();
@@ -263,7 +295,7 @@ public class ManagerIndirizzo {
                 throw new ConnessioneEccezione();
 
             // Inviamo la Query al DataBase
-            ResultSet tRs = Utility.queryOperazione(connect, tSql);
+            ResultSet tRs = Utility.queryPreparata(connect, tSql, pIndirizzo.ottenereNome());
 
             if (tRs.next())
                 result = tRs.getInt("id_address");
@@ -285,7 +317,7 @@ public class ManagerIndirizzo {
      * @throws EntitaNonTrovataEccezione
      * @throws ValoreNonValidoEccezione
      */
-    public synchronized Indirizzo ottenereIndirizzoPerId(int pIdIndirizzo)
+    public Indirizzo ottenereIndirizzoPerId(int pIdIndirizzo)
             throws ConnessioneEccezione, SQLException, EntitaNonTrovataEccezione, ValoreNonValidoEccezione {
         Indirizzo result = null;
         Connection connect = null;
@@ -300,11 +332,10 @@ public class ManagerIndirizzo {
                 throw new ConnessioneEccezione();
 
             // Prepariamo la stringa SQL
-            String sql = "SELECT * FROM " + ManagerIndirizzo.TABELLA_INDIRIZZO + " WHERE id_address = "
-                    + Utility.eNull(pIdIndirizzo);
+            String sql = "SELECT * FROM " + ManagerIndirizzo.TABELLA_INDIRIZZO + " WHERE id_address = ?";
 
             // Inviamo la Query al DataBase
-            ResultSet pRs = Utility.queryOperazione(connect, sql);
+            ResultSet pRs = Utility.queryPreparata(connect, sql, pIdIndirizzo);
 
             if (pRs.next())
                 result = this.loadRecordFromRs(pRs);
@@ -328,7 +359,7 @@ public class ManagerIndirizzo {
      * @throws SQLException
      * @throws ValoreNonValidoEccezione
      */
-    public synchronized Collection<Indirizzo> ottenereIndirizzoElenco()
+    public Collection<Indirizzo> ottenereIndirizzoElenco()
             throws ConnessioneEccezione, EntitaNonTrovataEccezione, SQLException, ValoreNonValidoEccezione {
         Connection connect = null;
         Collection<Indirizzo> result = new Vector<Indirizzo>();
@@ -343,7 +374,7 @@ public class ManagerIndirizzo {
             String sql = "SELECT * " + " FROM " + ManagerIndirizzo.TABELLA_INDIRIZZO + " ORDER BY id_address";
 
             // Inviamo la Query al DataBase
-            ResultSet tRs = Utility.queryOperazione(connect, sql);
+            ResultSet tRs = Utility.queryPreparata(connect, sql);
 
             if (tRs.next())
                 result = this.loadRecordsFromRs(tRs);
@@ -364,7 +395,7 @@ public class ManagerIndirizzo {
      * @throws ConnessioneEccezione
      * @throws SQLException
      */
-    public synchronized String ottenereNomeIndirizzoPerId(int pIdIndirizzo)
+    public String ottenereNomeIndirizzoPerId(int pIdIndirizzo)
             throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException {
         String result;
         Connection connect = null;
@@ -377,8 +408,7 @@ public class ManagerIndirizzo {
              * Prepariamo la stringa SQL per recuperare le informazioni corrispondenti
              * all'id dell'utente passato come parametro
              */
-            String tSql = "SELECT name FROM " + ManagerIndirizzo.TABELLA_INDIRIZZO + " WHERE id_address = "
-                    + Utility.eNull(pIdIndirizzo);
+            String tSql = "SELECT name FROM " + ManagerIndirizzo.TABELLA_INDIRIZZO + " WHERE id_address = ?";
 
             // Otteniamo una Connessione al DataBase
             connect = DBConnessione.ottenereConnesione();
@@ -386,7 +416,7 @@ public class ManagerIndirizzo {
                 throw new ConnessioneEccezione();
 
             // Inviamo la Query al DataBase
-            ResultSet tRs = Utility.queryOperazione(connect, tSql);
+            ResultSet tRs = Utility.queryPreparata(connect, tSql, pIdIndirizzo);
 
             if (tRs.next())
                 result = tRs.getString("name");
@@ -411,7 +441,7 @@ public class ManagerIndirizzo {
      * @throws SQLException
      * @throws ValoreNonValidoEccezione
      */
-    public synchronized Collection<Integer> ottenereInsegnamentiIndirizzo(int pIdIndirizzo)
+    public Collection<Integer> ottenereInsegnamentiIndirizzo(int pIdIndirizzo)
             throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione {
         Collection<Integer> result;
         Connection connect = null;
@@ -425,7 +455,7 @@ public class ManagerIndirizzo {
              * all'id dell'utente passato come parametro
              */
             String tSql = "SELECT id_teaching FROM " + ManagerIndirizzo.TABELLA_INDIRIZZO_AVERE_INSEGNAMENTO
-                    + " WHERE id_address = " + Utility.eNull(pIdIndirizzo);
+                    + " WHERE id_address = ?";
 
             // Otteniamo una Connessione al DataBase
             connect = DBConnessione.ottenereConnesione();
@@ -433,7 +463,7 @@ public class ManagerIndirizzo {
                 throw new ConnessioneEccezione();
 
             // Inviamo la Query al DataBase
-            ResultSet tRs = Utility.queryOperazione(connect, tSql);
+            ResultSet tRs = Utility.queryPreparata(connect, tSql, pIdIndirizzo);
 
             result = this.loadIntegersFromRs(tRs);
             return result;
@@ -6,11 +6,13 @@ import smos.exception.ValoreNonValidoEccezione;
 import smos.exception.CampoObbligatorioEccezione;
 import smos.storage.connectionManagement.DBConnessione;
 import smos.storage.connectionManagement.exception.ConnessioneEccezione;
+import smos.utility.BloccoPerChiave;
 import smos.utility.Utility;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Vector;
+import java.util.concurrent.locks.Lock;
 import java.sql.Connection;
 
 /**
@@ -22,7 +24,12 @@ import java.sql.Connection;
  * 
  */
 public class ManagerInsegnamento {
-	private static ManagerInsegnamento instance;
+	private static final ManagerInsegnamento instance = new ManagerInsegnamento();
+
+	/**
+	 * I blocchi degli insegnamenti, per nome.
+	 */
+	private static final BloccoPerChiave blocchi = new BloccoPerChiave(32);
 
 	/**
 	 * Il nome della tabella degli insegnamenti.
@@ -53,10 +60,7 @@ public class ManagerInsegnamento {
 	 * 
 	 * @return Ritorna l'istanza della classe.
 	 */
-	public static synchronized ManagerInsegnamento ottenereIstanza() {
-		if (instance == null) {
-			instance = new ManagerInsegnamento();
-		}
+	public static ManagerInsegnamento ottenereIstanza() {
 		return instance;
 	}
 
@@ -72,7 +76,7 @@ public class ManagerInsegnamento {
 	 * @throws SQLException
 	 * @throws ConnessioneEccezione
 	 */
-	public synchronized boolean esiste(Insegnamento pInsegnamento)
+	public boolean esiste(Insegnamento pInsegnamento)
 			throws CampoObbligatorioEccezione, ConnessioneEccezione, SQLException {
 
 		boolean result = false;
@@ -87,10 +91,10 @@ public class ManagerInsegnamento {
 				throw new ConnessioneEccezione();
 
 			String sql = "SELECT * FROM " + ManagerInsegnamento.TABELLA_INSEGNAMENTO
-					+ " WHERE name = " + Utility.eNull(pInsegnamento.ottenereNome());
+					+ " WHERE name = ?";
 
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, sql);
+			ResultSet tRs = Utility.queryPreparata(connect, sql, pInsegnamento.ottenereNome());
 
 			if (tRs.next())
 				result = true;
@@ -114,7 +118,7 @@ public class ManagerInsegnamento {
 	 * @throws EntitaNonTrovataEccezione
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized void inserire(Insegnamento pInsegnamento)
+	public void inserire(Insegnamento pInsegnamento)
 			throws CampoObbligatorioEccezione, ConnessioneEccezione, SQLException,
 			EntitaNonTrovataEccezione, ValoreNonValidoEccezione {
 		Connection connect = null;
@@ -128,13 +132,11 @@ public class ManagerInsegnamento {
 				throw new ConnessioneEccezione();
 			// Prepariamo la stringa Sql
 			String sql = "INSERT INTO " + ManagerInsegnamento.TABELLA_INSEGNAMENTO
-					+ " (name) " + "VALUES ("
-					+ Utility.eNull(pInsegnamento.ottenereNome()) + ")";
-
-			Utility.eseguireOperazione(connect, sql);
+					+ " (id_teaching, name) " + "VALUES (?" + ", ?" + ")";
 
-			pInsegnamento.settareId(Utility.ottenereValoreMassimo("id_teaching",
-					ManagerInsegnamento.TABELLA_INSEGNAMENTO));
+			pInsegnamento.settareId(Utility.inserirePreparata(connect,
+					ManagerInsegnamento.TABELLA_INSEGNAMENTO, "id_teaching", sql,
+					pInsegnamento.ottenereNome()));
 
 		} finally {
 			// rilascia le risorse
@@ -154,7 +156,7 @@ public class ManagerInsegnamento {
 	 * @throws EntitaNonTrovataEccezione
 	 * @throws CampoObbligatorioEccezione
 	 */
-	public synchronized void aggiornare(Insegnamento pInsegnamento)
+	public void aggiornare(Insegnamento pInsegnamento)
 			throws ConnessioneEccezione, SQLException, EntitaNonTrovataEccezione,
 			CampoObbligatorioEccezione {
 		Connection connect = null;
@@ -169,22 +171,84 @@ public class ManagerInsegnamento {
 
 			// Prepariamo la stringa SQL
 			String sql = "UPDATE " + ManagerInsegnamento.TABELLA_INSEGNAMENTO + " SET"
-					+ " name = " + Utility.eNull(pInsegnamento.ottenereNome())
-					+ " WHERE id_teaching = "
-					+ Utility.eNull(pInsegnamento.ottenereId());
+					+ " name = ?"
+					+ " WHERE id_teaching = ?";
 
 			// effettua una nuova connessione e invia la query
 			connect = DBConnessione.ottenereConnesione();
 			if (connect == null)
 				throw new ConnessioneEccezione();
 
-			Utility.eseguireOperazione(connect, sql);
+			Utility.eseguirePreparata(connect, sql, pInsegnamento.ottenereNome(), pInsegnamento.ottenereId());
 		} finally {
 			// rilascia le risorse
 			DBConnessione.rilasciareConnessione(connect);
 		}
 	}
 
+	/**
+	 * Inserisce un nuovo insegnamento nella tabella teaching, se non esiste
+	 * gia' un insegnamento con lo stesso nome. La verifica e l'inserimento
+	 * avvengono sotto il blocco del nome, quindi due richieste concorrenti non
+	 * possono inserire lo stesso insegnamento.
+	 * 
+	 * @param pInsegnamento
+	 *            L'insegnamento da inserire.
+	 * @return true se l'insegnamento e' stato inserito, false se esisteva gia'.
+	 * 
+	 * @throws SQLException
+	 * @throws ConnessioneEccezione
+	 * @throws CampoObbligatorioEccezione
+	 * @throws EntitaNonTrovataEccezione
+	 * @throws ValoreNonValidoEccezione
+	 */
+	public boolean inserireSeNonEsiste(Insegnamento pInsegnamento)
+			throws CampoObbligatorioEccezione, ConnessioneEccezione, SQLException,
+			EntitaNonTrovataEccezione, ValoreNonValidoEccezione {
+		Lock blocco = blocchi.ottenereBlocco(pInsegnamento.ottenereNome());
+		blocco.lock();
+		try {
+			if (esiste(pInsegnamento))
+				return false;
+			inserire(pInsegnamento);
+			return true;
+		} finally {
+			blocco.unlock();
+		}
+	}
+
+	/**
+	 * Aggiorna un insegnamento presente nella tabella teaching, se il nuovo
+	 * nome non appartiene gia' ad un altro insegnamento. Come per
+	 * l'inserimento, la verifica e l'aggiornamento avvengono sotto il blocco
+	 * del nome.
+	 * 
+	 * @param pInsegnamento
+	 *            L'insegnamento da modificare
+	 * @return true se l'insegnamento e' stato aggiornato, false se il nome
+	 *         appartiene ad un altro insegnamento.
+	 * 
+	 * @throws ConnessioneEccezione
+	 * @throws SQLException
+	 * @throws EntitaNonTrovataEccezione
+	 * @throws CampoObbligatorioEccezione
+	 */
+	public boolean aggiornareSeNonEsiste(Insegnamento pInsegnamento)
+			throws ConnessioneEccezione, SQLException, EntitaNonTrovataEccezione,
+			CampoObbligatorioEccezione {
+		Lock blocco = blocchi.ottenereBlocco(pInsegnamento.ottenereNome());
+		blocco.lock();
+		try {
+			if (esiste(pInsegnamento)
+					&& pInsegnamento.ottenereId() != ottenereInsegnamentoId(pInsegnamento))
+				return false;
+			aggiornare(pInsegnamento);
+			return true;
+		} finally {
+			blocco.unlock();
+		}
+	}
+
 	/**
 	 * Elimina un insegnamento dalla tabella teaching.
 	 * 
@@ -198,7 +262,7 @@ public class ManagerInsegnamento {
 	 * @throws ValoreNonValidoEccezione
 	 * 
 	 */
-	public synchronized void eliminare(Insegnamento pInsegnamento)
+	public void eliminare(Insegnamento pInsegnamento)
 			throws ConnessioneEccezione, SQLException, EntitaNonTrovataEccezione,
 			CampoObbligatorioEccezione, ValoreNonValidoEccezione {
 		Connection connect = null;
@@ -208,10 +272,9 @@ public class ManagerInsegnamento {
 			connect = DBConnessione.ottenereConnesione();
 			// Prepariamo la stringa SQL
 			String sql = "DELETE FROM " + ManagerInsegnamento.TABELLA_INSEGNAMENTO
-					+ " WHERE id_teaching = "
-					+ Utility.eNull(pInsegnamento.ottenereId());
+					+ " WHERE id_teaching = ?";
 
-			Utility.eseguireOperazione(connect, sql);
+			Utility.eseguirePreparata(connect, sql, pInsegnamento.ottenereId());
 		} finally {
 			// rilascia le risorse
 			DBConnessione.rilasciareConnessione(connect);
@@ -229,7 +292,7 @@ public class ManagerInsegnamento {
 	 * @throws ConnessioneEccezione
 	 * @throws SQLException
 	 */
-	public synchronized int ottenereInsegnamentoId(Insegnamento pInsegnamento)
+	public int ottenereInsegnamentoId(Insegnamento pInsegnamento)
 			throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException {
 		int result = 0;
 		Connection connect = null;
@@ -243,8 +306,7 @@ public class ManagerInsegnamento {
 			 * corrispondenti all'id dell'insegnamento passato come parametro.
 			 */
 			String tSql = "SELECT id_teaching FROM "
-					+ ManagerInsegnamento.TABELLA_INSEGNAMENTO + " WHERE name = "
-					+ Utility.eNull(pInsegnamento.ottenereNome());
+					+ ManagerInsegnamento.TABELLA_INSEGNAMENTO + " WHERE name = ?";
 
 			// Otteniamo una Connessione al DataBase
 			connect = DBConnessione.ottenereConnesione();
@@ -252,7 +314,7 @@ public class ManagerInsegnamento {
 				throw new ConnessioneEccezione();
 
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, tSql);
+			ResultSet tRs = Utility.queryPreparata(connect, tSql, pInsegnamento.ottenereNome());
 
 			if (tRs.next())
 				result = tRs.getInt("id_teaching");
@@ -275,7 +337,7 @@ public class ManagerInsegnamento {
 	 * @throws ConnessioneEccezione
 	 * @throws SQLException
 	 */
-	public synchronized String ottenereInsegnamentoNomePerId(int pId)
+	public String ottenereInsegnamentoNomePerId(int pId)
 			throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException {
 		String result;
 		Connection connect = null;
@@ -290,7 +352,7 @@ public class ManagerInsegnamento {
 			 * corrispondenti all'id dell'insegnamento passato come parametro
 			 */
 			String tSql = "SELECT name FROM " + ManagerInsegnamento.TABELLA_INSEGNAMENTO
-					+ " WHERE id_teaching = " + Utility.eNull(pId);
+					+ " WHERE id_teaching = ?";
 
 			// Otteniamo una Connessione al DataBase
 			connect = DBConnessione.ottenereConnesione();
@@ -298,7 +360,7 @@ public class ManagerInsegnamento {
 				throw new ConnessioneEccezione();
 
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, tSql);
+			ResultSet tRs = Utility.queryPreparata(connect, tSql, pId);
 
 			if (tRs.next())
 				result = tRs.getString("name");
@@ -324,7 +386,7 @@ public class ManagerInsegnamento {
 	 * @throws EntitaNonTrovataEccezione
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized Insegnamento ottenereInsegnamentoPerId(int pId)
+	public Insegnamento ottenereInsegnamentoPerId(int pId)
 			throws ConnessioneEccezione, SQLException, EntitaNonTrovataEccezione,
 			ValoreNonValidoEccezione {
 		Insegnamento result = null;
@@ -342,10 +404,10 @@ public class ManagerInsegnamento {
 
 			// Prepariamo la stringa SQL
 			String sql = "SELECT * FROM " + ManagerInsegnamento.TABELLA_INSEGNAMENTO
-					+ " WHERE id_teaching = " + Utility.eNull(pId);
+					+ " WHERE id_teaching = ?";
 
 			// Inviamo la Query al DataBase
-			ResultSet pRs = Utility.queryOperazione(connect, sql);
+			ResultSet pRs = Utility.queryPreparata(connect, sql, pId);
 
 			if (pRs.next())
 				result = this.loadRecordFromRs(pRs);
@@ -370,7 +432,7 @@ public class ManagerInsegnamento {
 	 * @throws ValoreNonValidoEccezione
 	 * @throws EntitaNonTrovataEccezione
 	 */
-	public synchronized Collection<Insegnamento> ottenereInsegnamenti()
+	public Collection<Insegnamento> ottenereInsegnamenti()
 			throws ConnessioneEccezione, SQLException, ValoreNonValidoEccezione,
 			EntitaNonTrovataEccezione {
 		Collection<Insegnamento> result = null;
@@ -387,7 +449,7 @@ public class ManagerInsegnamento {
 				throw new ConnessioneEccezione();
 
 			// Inviamo la Query al DataBase
-			ResultSet pRs = Utility.queryOperazione(connect, sql);
+			ResultSet pRs = Utility.queryPreparata(connect, sql);
 
 			if (pRs.next())
 				result = this.loadRecordsFromRs(pRs);
@@ -413,7 +475,7 @@ public class ManagerInsegnamento {
 	 * @throws SQLException
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized Collection<Insegnamento> ottenereInsegnamentiPerUtenteId(int pId)
+	public Collection<Insegnamento> ottenereInsegnamentiPerUtenteId(int pId)
 			throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException,
 			ValoreNonValidoEccezione {
 
@@ -431,8 +493,7 @@ public class ManagerInsegnamento {
 					+ ManagerInsegnamento.TABELLA_INSEGNANTE_CLASSE
 					+ ".id_teaching = " + ManagerInsegnamento.TABELLA_INSEGNAMENTO
 					+ ".id_teaching AND "
-					+ ManagerInsegnamento.TABELLA_INSEGNANTE_CLASSE + ".id_user = "
-					+ Utility.eNull(pId) + ")" + " ORDER BY name";
+					+ ManagerInsegnamento.TABELLA_INSEGNANTE_CLASSE + ".id_user = ?" + ")" + " ORDER BY name";
 
 			// Otteniamo una Connessione al DataBase
 			connect = DBConnessione.ottenereConnesione();
@@ -440,7 +501,7 @@ public class ManagerInsegnamento {
 				throw new ConnessioneEccezione();
 
 			// Inviamo la Query al DataBase
-			ResultSet pRs = Utility.queryOperazione(connect, sql);
+			ResultSet pRs = Utility.queryPreparata(connect, sql, pId);
 
 			if (pRs.next())
 				result = this.loadRecordsFromRs(pRs);
@@ -466,7 +527,7 @@ public class ManagerInsegnamento {
 	 * @throws SQLException
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized Collection<Insegnamento> ottenereInsegnamentiPerUtenteClasseID(int pIdInsegnante,int pIdClasse)
+	public Collection<Insegnamento> ottenereInsegnamentiPerUtenteClasseID(int pIdInsegnante,int pIdClasse)
 			throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException,
 			ValoreNonValidoEccezione {
 
@@ -484,10 +545,9 @@ public class ManagerInsegnamento {
 			String sql = "SELECT DISTINCT " + ManagerInsegnamento.TABELLA_INSEGNAMENTO
 					+ ".* FROM " + ManagerInsegnamento.TABELLA_INSEGNANTE_CLASSE
 					+ ", " + ManagerInsegnamento.TABELLA_INSEGNAMENTO + " WHERE ("
-					+ ManagerInsegnamento.TABELLA_INSEGNANTE_CLASSE + ".id_user = "
-					+ Utility.eNull(pIdInsegnante) +" AND "
+					+ ManagerInsegnamento.TABELLA_INSEGNANTE_CLASSE + ".id_user = ?" +" AND "
 					+ ManagerInsegnamento.TABELLA_INSEGNANTE_CLASSE 
-					+ ".id_teaching= " + Utility.eNull(pIdClasse)
+					+ ".id_teaching= ?"
 					+ " AND "
 					+ ManagerInsegnamento.TABELLA_INSEGNANTE_CLASSE
 					+ ".id_teaching = " + ManagerInsegnamento.TABELLA_INSEGNAMENTO
@@ -500,7 +560,7 @@ public class ManagerInsegnamento {
 				throw new ConnessioneEccezione();
 
 			// Inviamo la Query al DataBase
-			ResultSet pRs = Utility.queryOperazione(connect, sql);
+			ResultSet pRs = Utility.queryPreparata(connect, sql, pIdInsegnante, pIdClasse);
 
 			if (pRs.next())
 				result = this.loadRecordsFromRs(pRs);
@@ -525,7 +585,7 @@ public class ManagerInsegnamento {
 	 * @throws ConnessioneEccezione
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized boolean avereInsegnante(Insegnamento pInsegnamento)
+	public boolean avereInsegnante(Insegnamento pInsegnamento)
 			throws SQLException, EntitaNonTrovataEccezione, ConnessioneEccezione,
 			ValoreNonValidoEccezione {
 		Connection connect = null;
@@ -541,10 +601,9 @@ public class ManagerInsegnamento {
 			// Preparimao la stringa sql
 			String sql = "SELECT * FROM "
 					+ ManagerInsegnamento.TABELLA_INSEGNANTE_CLASSE
-					+ " WHERE id_teaching = "
-					+ Utility.eNull(pInsegnamento.ottenereId());
+					+ " WHERE id_teaching = ?";
 			// Inviamo la Query al database
-			ResultSet pRs = Utility.queryOperazione(connect, sql);
+			ResultSet pRs = Utility.queryPreparata(connect, sql, pInsegnamento.ottenereId());
 			if (pRs.next())
 				result = true;
 
@@ -569,7 +628,7 @@ public class ManagerInsegnamento {
 	 * @throws SQLException
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized Collection<Insegnamento> ottenereInsegnamentiPerClasseId(int pId)
+	public Collection<Insegnamento> ottenereInsegnamentiPerClasseId(int pId)
 			throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException,
 			ValoreNonValidoEccezione {
 
@@ -585,8 +644,7 @@ public class ManagerInsegnamento {
 					+ ".* FROM " + ManagerClasse.TABELLA_CLASSE + ", "
 					+ ManagerInsegnamento.TABELLA_INDIRIZZO_INSEGNAMENTI + ", "
 					+ ManagerInsegnamento.TABELLA_INSEGNAMENTO + " WHERE "
-					+ ManagerClasse.TABELLA_CLASSE + ".id_classroom = "
-					+ Utility.eNull(pId) + " AND "
+					+ ManagerClasse.TABELLA_CLASSE + ".id_classroom = ?" + " AND "
 					+ ManagerClasse.TABELLA_CLASSE + ".id_address = "
 					+ ManagerInsegnamento.TABELLA_INDIRIZZO_INSEGNAMENTI
 					+ ".id_address AND " + ManagerInsegnamento.TABELLA_INSEGNAMENTO
@@ -599,7 +657,7 @@ public class ManagerInsegnamento {
 				throw new ConnessioneEccezione();
 
 			// Inviamo la Query al DataBase
-			ResultSet pRs = Utility.queryOperazione(connect, sql);
+			ResultSet pRs = Utility.queryPreparata(connect, sql, pId);
 
 			if (pRs.next())
 				result = this.loadRecordsFromRs(pRs);
@@ -623,7 +681,7 @@ public class ManagerInsegnamento {
 	 * @throws SQLException
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized Collection<Insegnamento> ottenereInsegnamentiPerClasseNome(
+	public Collection<Insegnamento> ottenereInsegnamentiPerClasseNome(
 			String nome) throws EntitaNonTrovataEccezione, ConnessioneEccezione,
 			SQLException, ValoreNonValidoEccezione {
 
@@ -640,8 +698,7 @@ public class ManagerInsegnamento {
 					+ ".* FROM " + ManagerClasse.TABELLA_CLASSE + ", "
 					+ ManagerInsegnamento.TABELLA_INDIRIZZO_INSEGNAMENTI + ", "
 					+ ManagerInsegnamento.TABELLA_INSEGNAMENTO + " WHERE "
-					+ ManagerClasse.TABELLA_CLASSE + ".name = "
-					+ Utility.eNull(nome) + " AND "
+					+ ManagerClasse.TABELLA_CLASSE + ".name = ?" + " AND "
 					+ ManagerClasse.TABELLA_CLASSE + ".id_address = "
 					+ ManagerInsegnamento.TABELLA_INDIRIZZO_INSEGNAMENTI
 					+ ".id_address AND " + ManagerInsegnamento.TABELLA_INSEGNAMENTO
@@ -654,7 +711,7 @@ public class ManagerInsegnamento {
 				throw new ConnessioneEccezione();
 
 			// Inviamo la Query al DataBase
-			ResultSet pRs = Utility.queryOperazione(connect, sql);
+			ResultSet pRs = Utility.queryPreparata(connect, sql, nome);
 
 			if (pRs.next())
 				result = this.loadRecordsFromRs(pRs);
@@ -666,7 +723,7 @@ public class ManagerInsegnamento {
 		}
 	}
 	
-	public synchronized Collection<Insegnamento> ottenereInsegnamentiPerIdUtenteIdClasse(int pUtente, int pClasse) throws SQLException,
+	public Collection<Insegnamento> ottenereInsegnamentiPerIdUtenteIdClasse(int pUtente, int pClasse) throws SQLException,
 	EntitaNonTrovataEccezione, ConnessioneEccezione, ValoreNonValidoEccezione {
 		
 		
@@ -689,12 +746,10 @@ public class ManagerInsegnamento {
 				+ManagerInsegnamento.TABELLA_INSEGNAMENTO
 				+ " WHERE "
 				+ ManagerUtente.TABELLA_INSEGNANTE_CLASSE
-				+ ".id_user = "  
-				+ Utility.eNull(pUtente)
+				+ ".id_user = ?"
 				+ " AND "
 				+ ManagerUtente.TABELLA_INSEGNANTE_CLASSE
-				+ ".id_classroom= "
-				+ Utility.eNull(pClasse)
+				+ ".id_classroom= ?"
 				+ " AND "
 				+ ManagerUtente.TABELLA_INSEGNANTE_CLASSE
 				+".id_teaching ="
@@ -706,7 +761,7 @@ public class ManagerInsegnamento {
 				throw new ConnessioneEccezione();
 
 			// Inviamo la Query al DataBase
-			ResultSet pRs = Utility.queryOperazione(connect, sql);
+			ResultSet pRs = Utility.queryPreparata(connect, sql, pUtente, pClasse);
 
 			if (pRs.next())
 				result = this.loadRecordsFromRs(pRs);
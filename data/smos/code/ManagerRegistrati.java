@@ -3,9 +3,19 @@ package smos.storage;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.locks.Lock;
 
 import smos.bean.Assenza;
 import smos.bean.Ritardo;
@@ -18,6 +28,7 @@ import smos.exception.ValoreNonValidoEccezione;
 import smos.exception.CampoObbligatorioEccezione;
 import smos.storage.connectionManagement.DBConnessione;
 import smos.storage.connectionManagement.exception.ConnessioneEccezione;
+import smos.utility.BloccoPerChiave;
 import smos.utility.Utility;
 /**
  * Classe che gestisce il Registro Digitale
@@ -26,7 +37,13 @@ import smos.utility.Utility;
  */
 public class ManagerRegistrati {
 	
-	private static ManagerRegistrati instance;
+	private static final ManagerRegistrati instance = new ManagerRegistrati();
+	
+	//blocchi dei registri, per classe e data
+	private static final BloccoPerChiave blocchi = new BloccoPerChiave(32);
+	
+	//contatori delle assenze, dei ritardi e delle note per studente
+	private static final ContatoriRegistro contatori = ContatoriRegistro.ottenereIstanza();
 	
 	public final static String TABELLA_ASSENZA="absence";
 	public final static String TABELLA_RITARDO="delay";
@@ -44,10 +61,7 @@ public class ManagerRegistrati {
 	 * 
 	 * @return Ritorna l'istanza della classe.
 	 */
-	public static synchronized ManagerRegistrati ottenereIstanza(){
-		if(instance==null){
-			instance = new ManagerRegistrati();
-		}
+	public static ManagerRegistrati ottenereIstanza(){
 		return instance;
 	}
 	
@@ -59,7 +73,7 @@ public class ManagerRegistrati {
 	 * @throws ConnessioneEccezione
 	 * @throws SQLException
 	 */
-	public synchronized boolean esiste(Assenza pAssenza) throws ConnessioneEccezione, SQLException {
+	public boolean esiste(Assenza pAssenza) throws ConnessioneEccezione, SQLException {
 		
 		boolean result = false;
 		Connection connect = null;
@@ -72,11 +86,10 @@ public class ManagerRegistrati {
 
 			String sql = "SELECT * FROM " 
 				+ ManagerRegistrati.TABELLA_ASSENZA
-				+ " WHERE id_absence = "
-				+ Utility.eNull(pAssenza.ottenereIdAssenza());
+				+ " WHERE id_absence = ?";
 
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, sql);
+			ResultSet tRs = Utility.queryPreparata(connect, sql, pAssenza.ottenereIdAssenza());
 
 			if (tRs.next()){
 				result = true;
@@ -97,7 +110,7 @@ public class ManagerRegistrati {
 	 * @throws ConnessioneEccezione
 	 * @throws SQLException
 	 */
-	public synchronized boolean esiste(Ritardo pRitardo) throws ConnessioneEccezione, SQLException {
+	public boolean esiste(Ritardo pRitardo) throws ConnessioneEccezione, SQLException {
 		
 		boolean result = false;
 		Connection connect = null;
@@ -110,10 +123,9 @@ public class ManagerRegistrati {
 
 			String sql = "SELECT * FROM " 
 				+ ManagerRegistrati.TABELLA_ASSENZA
-				+ " WHERE id_delay = "
-				+ Utility.eNull(pRitardo.ottenereIdRitardo());
+				+ " WHERE id_delay = ?";
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, sql);
+			ResultSet tRs = Utility.queryPreparata(connect, sql, pRitardo.ottenereIdRitardo());
 
 			if (tRs.next())
 				result = true;
@@ -132,7 +144,7 @@ public class ManagerRegistrati {
 	 * @throws ConnessioneEccezione
 	 * @throws SQLException
 	 */
-	public synchronized boolean esiste(Giustificare pGiustificare) throws ConnessioneEccezione, SQLException {
+	public boolean esiste(Giustificare pGiustificare) throws ConnessioneEccezione, SQLException {
 		
 		boolean result = false;
 		Connection connect = null;
@@ -145,11 +157,10 @@ public class ManagerRegistrati {
 
 			String sql = "SELECT * FROM " 
 				+ ManagerRegistrati.TABELLAE_GIUSTIFICARE
-				+ " WHERE  id_justify = "
-				+ Utility.eNull(pGiustificare.ottenereIdGiustificare());
+				+ " WHERE  id_justify = ?";
 
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, sql);
+			ResultSet tRs = Utility.queryPreparata(connect, sql, pGiustificare.ottenereIdGiustificare());
 
 			if (tRs.next())
 				result = true;
@@ -169,9 +180,10 @@ public class ManagerRegistrati {
 	 * @throws EntitaNonTrovataEccezione
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized void inserireAssenza(Assenza pAssenza) throws  
+	public void inserireAssenza(Assenza pAssenza) throws  
 		ConnessioneEccezione, SQLException, EntitaNonTrovataEccezione, ValoreNonValidoEccezione{
 		
+		ContatoriRegistro.Modifica modifica = contatori.iniziareModifica();
 		Connection connect= null;
 		try{
 			
@@ -182,25 +194,27 @@ public class ManagerRegistrati {
 			String sql =
 				"INSERT INTO " 
 				+ ManagerRegistrati.TABELLA_ASSENZA 
-				+ " (id_user, date_absence, id_justify, accademic_year) " 
-				+ "VALUES (" 
-				+ Utility.eNull(pAssenza.ottenereIdUtente()) 
-				+ "," 
-				+ Utility.eNull(pAssenza.ottenereDataAssenza()) 
-				+ "," 
-				+ Utility.eNull(pAssenza.ottenereIdGiustificare()) 
-				+ "," 
-				+ Utility.eNull(pAssenza.ottenereAnnoAccademico())
+				+ " (id_absence, id_user, date_absence, id_justify, accademic_year) " 
+				+ "VALUES (?" 
+				+ ",?" 
+				+ ",?" 
+				+ ",?" 
+				+ ",?"
 				+ ")";
 		
-			Utility.eseguireOperazione(connect,sql);
-		
-			pAssenza.settareIdAssenza((Utility.ottenereValoreMassimo("id_absence",ManagerRegistrati.TABELLA_ASSENZA)));
+			pAssenza.settareIdAssenza(Utility.inserirePreparata(connect,
+					ManagerRegistrati.TABELLA_ASSENZA, "id_absence", sql,
+					pAssenza.ottenereIdUtente(), pAssenza.ottenereDataAssenza(),
+					pAssenza.ottenereIdGiustificare(), pAssenza.ottenereAnnoAccademico()));
+			if (!giustificata(pAssenza.ottenereIdGiustificare()))
+				modifica.aggiungere(pAssenza.ottenereAnnoAccademico(), pAssenza.ottenereIdUtente(),
+						ContatoriRegistro.ASSENZE, 1);
 		
 		}finally {
 		//rilascia le risorse
 		
 		DBConnessione.rilasciareConnessione(connect);
+		modifica.terminare();
 		}
 	}
 	
@@ -214,9 +228,10 @@ public class ManagerRegistrati {
 	 * @throws EntitaNonTrovataEccezione
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized void inserireRitardo(Ritardo pRitardo) throws  
+	public void inserireRitardo(Ritardo pRitardo) throws  
 		ConnessioneEccezione, SQLException, EntitaNonTrovataEccezione, ValoreNonValidoEccezione{
 		
+		ContatoriRegistro.Modifica modifica = contatori.iniziareModifica();
 		Connection connect= null;
 		try{
 			
@@ -227,25 +242,26 @@ public class ManagerRegistrati {
 			String sql =
 				"INSERT INTO " 
 				+ ManagerRegistrati.TABELLA_RITARDO 
-				+ " (id_user, date_delay, time_delay, accademic_year) " 
-				+ "VALUES (" 
-				+ Utility.eNull(pRitardo.ottenereIdUtente()) 
-				+ "," 
-				+ Utility.eNull(pRitardo.ottenereDataRitardo()) 
-				+ "," 
-				+ Utility.eNull(pRitardo.ottenereTempoRitardo()) 
-				+ "," 
-				+ Utility.eNull(pRitardo.ottenereAnnoAccademico())
+				+ " (id_delay, id_user, date_delay, time_delay, accademic_year) " 
+				+ "VALUES (?" 
+				+ ",?" 
+				+ ",?" 
+				+ ",?" 
+				+ ",?"
 				+ ")";
 		
-			Utility.eseguireOperazione(connect,sql);
-		
-			pRitardo.settareIdRitardo((Utility.ottenereValoreMassimo("id_delay",ManagerRegistrati.TABELLA_RITARDO)));
+			pRitardo.settareIdRitardo(Utility.inserirePreparata(connect,
+					ManagerRegistrati.TABELLA_RITARDO, "id_delay", sql, pRitardo.ottenereIdUtente(),
+					pRitardo.ottenereDataRitardo(), pRitardo.ottenereTempoRitardo(),
+					pRitardo.ottenereAnnoAccademico()));
+			modifica.aggiungere(pRitardo.ottenereAnnoAccademico(), pRitardo.ottenereIdUtente(),
+					ContatoriRegistro.RITARDI, 1);
 		
 		}finally {
 		//rilascia le risorse
 		
 		DBConnessione.rilasciareConnessione(connect);
+		modifica.terminare();
 		}
 	}
 	
@@ -260,9 +276,10 @@ public class ManagerRegistrati {
 	 * @throws EntitaNonTrovataEccezione
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized void inserireNota(Nota pNota) throws CampoObbligatorioEccezione,  
+	public void inserireNota(Nota pNota) throws CampoObbligatorioEccezione,  
 		ConnessioneEccezione, SQLException, EntitaNonTrovataEccezione, ValoreNonValidoEccezione{
 		
+		ContatoriRegistro.Modifica modifica = contatori.iniziareModifica();
 		Connection connect= null;
 		try{
 			if (pNota.ottenereDescrizione() == null || pNota.ottenereDescrizione().equals(""))
@@ -278,27 +295,27 @@ public class ManagerRegistrati {
 			String sql =
 				"INSERT INTO " 
 				+ ManagerRegistrati.TABELLA_NOTA 
-				+ " (id_user, date_note, description, teacher, accademic_year) " 
-				+ "VALUES (" 
-				+ Utility.eNull(pNota.ottenereIdUtente()) 
-				+ "," 
-				+ Utility.eNull(pNota.ottenereDataNota()) 
-				+ "," 
-				+ Utility.eNull(pNota.ottenereDescrizione()) 
-				+ "," 
-				+ Utility.eNull(pNota.ottenereInsegnante()) 
-				+ "," 
-				+ Utility.eNull(pNota.ottenereAnnoAccademico())
+				+ " (id_note, id_user, date_note, description, teacher, accademic_year) " 
+				+ "VALUES (?" 
+				+ ",?" 
+				+ ",?" 
+				+ ",?" 
+				+ ",?" 
+				+ ",?"
 				+ ")";
 		
-			Utility.eseguireOperazione(connect,sql);
-		
-			pNota.settareIdNota((Utility.ottenereValoreMassimo("id_note",ManagerRegistrati.TABELLA_NOTA)));
+			pNota.settareIdNota(Utility.inserirePreparata(connect,
+					ManagerRegistrati.TABELLA_NOTA, "id_note", sql, pNota.ottenereIdUtente(),
+					pNota.ottenereDataNota(), pNota.ottenereDescrizione(),
+					pNota.ottenereInsegnante(), pNota.ottenereAnnoAccademico()));
+			modifica.aggiungere(pNota.ottenereAnnoAccademico(), pNota.ottenereIdUtente(),
+					ContatoriRegistro.NOTE, 1);
 		
 		}finally {
 		//rilascia le risorse
 		
 		DBConnessione.rilasciareConnessione(connect);
+		modifica.terminare();
 		}
 	}
 	
@@ -314,7 +331,7 @@ public class ManagerRegistrati {
 	 * @throws EntitaNonTrovataEccezione
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized void inserireGiustificare(Giustificare pGiustificare, Assenza pAssenza) throws   
+	public void inserireGiustificare(Giustificare pGiustificare, Assenza pAssenza) throws   
 		ConnessioneEccezione, SQLException, EntitaNonTrovataEccezione, ValoreNonValidoEccezione{
 		
 		Connection connect= null;
@@ -328,18 +345,17 @@ public class ManagerRegistrati {
 			String sql =
 				"INSERT INTO " 
 				+ ManagerRegistrati.TABELLAE_GIUSTIFICARE 
-				+ " (id_user, date_justify, accademic_year) " 
-				+ "VALUES (" 
-				+ Utility.eNull(pGiustificare.ottenereIdUtente()) 
-				+ "," 
-				+ Utility.eNull(pGiustificare.ottenereDataGiustificare()) 
-				+ "," 
-				+ Utility.eNull(pGiustificare.ottenereAnnoAccademico())
+				+ " (id_justify, id_user, date_justify, accademic_year) " 
+				+ "VALUES (?" 
+				+ ",?" 
+				+ ",?" 
+				+ ",?"
 				+ ")";
 		
-			Utility.eseguireOperazione(connect,sql);
-		
-			pGiustificare.settareIdGiustificare((Utility.ottenereValoreMassimo("id_justify",ManagerRegistrati.TABELLAE_GIUSTIFICARE)));
+			pGiustificare.settareIdGiustificare(Utility.inserirePreparata(connect,
+					ManagerRegistrati.TABELLAE_GIUSTIFICARE, "id_justify", sql,
+					pGiustificare.ottenereIdUtente(), pGiustificare.ottenereDataGiustificare(),
+					pGiustificare.ottenereAnnoAccademico()));
 			
 			pAssenza.settareIdGiustificare(pGiustificare.ottenereIdGiustificare());
 			this.aggiornareAssenza(pAssenza);
@@ -360,8 +376,9 @@ public class ManagerRegistrati {
 	 * @throws EntitaNonTrovataEccezione
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized void eliminareAssenza (Assenza pAssenza) throws ConnessioneEccezione, 
+	public void eliminareAssenza (Assenza pAssenza) throws ConnessioneEccezione, 
 			SQLException, EntitaNonTrovataEccezione, CampoObbligatorioEccezione, ValoreNonValidoEccezione {
+		ContatoriRegistro.Modifica modifica = contatori.iniziareModifica();
 		Connection connect = null;
 		
 		
@@ -370,10 +387,12 @@ public class ManagerRegistrati {
 				//Prepariamo la stringa SQL
 				String sql = "DELETE FROM " 
 							+ ManagerRegistrati.TABELLA_ASSENZA 
-							+ " WHERE id_absence = "
-							+ Utility.eNull(pAssenza.ottenereIdAssenza());
+							+ " WHERE id_absence = ?";
 			
-				Utility.eseguireOperazione(connect, sql);
+				if (Utility.eseguirePreparata(connect, sql, pAssenza.ottenereIdAssenza()) > 0
+						&& !giustificata(pAssenza.ottenereIdGiustificare()))
+					modifica.aggiungere(pAssenza.ottenereAnnoAccademico(), pAssenza.ottenereIdUtente(),
+							ContatoriRegistro.ASSENZE, -1);
 				
 				if (!(pAssenza.ottenereIdGiustificare()==null)){
 					eliminareGiustificare(pAssenza.ottenereIdGiustificare());
@@ -381,6 +400,7 @@ public class ManagerRegistrati {
 		}finally {
 			//rilascia le risorse
 			DBConnessione.rilasciareConnessione(connect);
+			modifica.terminare();
 		}
 	}
 
@@ -394,8 +414,9 @@ public class ManagerRegistrati {
 	 * @throws EntitaNonTrovataEccezione
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized void eliminareRitardo (Ritardo pRitardo) throws ConnessioneEccezione, 
+	public void eliminareRitardo (Ritardo pRitardo) throws ConnessioneEccezione, 
 			SQLException, EntitaNonTrovataEccezione, CampoObbligatorioEccezione, ValoreNonValidoEccezione {
+		ContatoriRegistro.Modifica modifica = contatori.iniziareModifica();
 		Connection connect = null;
 		
 		
@@ -404,13 +425,15 @@ public class ManagerRegistrati {
 				//Prepariamo la stringa SQL
 				String sql = "DELETE FROM " 
 							+ ManagerRegistrati.TABELLA_RITARDO 
-							+ " WHERE id_delay = "
-							+ Utility.eNull(pRitardo.ottenereIdRitardo());
+							+ " WHERE id_delay = ?";
 			
-				Utility.eseguireOperazione(connect, sql);
+				if (Utility.eseguirePreparata(connect, sql, pRitardo.ottenereIdRitardo()) > 0)
+					modifica.aggiungere(pRitardo.ottenereAnnoAccademico(), pRitardo.ottenereIdUtente(),
+							ContatoriRegistro.RITARDI, -1);
 		}finally {
 			//rilascia le risorse
 			DBConnessione.rilasciareConnessione(connect);
+			modifica.terminare();
 		}
 	}
 
@@ -423,8 +446,9 @@ public class ManagerRegistrati {
 	 * @throws EntitaNonTrovataEccezione
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized void eliminareNota (Nota pNota) throws ConnessioneEccezione, 
+	public void eliminareNota (Nota pNota) throws ConnessioneEccezione, 
 			SQLException, EntitaNonTrovataEccezione, ValoreNonValidoEccezione {
+		ContatoriRegistro.Modifica modifica = contatori.iniziareModifica();
 		Connection connect = null;
 		
 		
@@ -433,13 +457,15 @@ public class ManagerRegistrati {
 				//Prepariamo la stringa SQL
 				String sql = "DELETE FROM " 
 							+ ManagerRegistrati.TABELLA_NOTA 
-							+ " WHERE id_note = "
-							+ Utility.eNull(pNota.ottenereIdNota());
+							+ " WHERE id_note = ?";
 			
-				Utility.eseguireOperazione(connect, sql);
+				if (Utility.eseguirePreparata(connect, sql, pNota.ottenereIdNota()) > 0)
+					modifica.aggiungere(pNota.ottenereAnnoAccademico(), pNota.ottenereIdUtente(),
+							ContatoriRegistro.NOTE, -1);
 		}finally {
 			//rilascia le risorse
 			DBConnessione.rilasciareConnessione(connect);
+			modifica.terminare();
 		}
 	}
 
@@ -452,7 +478,7 @@ public class ManagerRegistrati {
 	 * @throws EntitaNonTrovataEccezione
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized void eliminareGiustificare (int pIDGiustificare) throws ConnessioneEccezione, 
+	public void eliminareGiustificare (int pIDGiustificare) throws ConnessioneEccezione, 
 			SQLException, EntitaNonTrovataEccezione, CampoObbligatorioEccezione, ValoreNonValidoEccezione {
 		Connection connect = null;
 		
@@ -462,10 +488,9 @@ public class ManagerRegistrati {
 				//Prepariamo la stringa SQL
 				String sql = "DELETE FROM " 
 							+ ManagerRegistrati.TABELLAE_GIUSTIFICARE 
-							+ " WHERE id_justify = "
-							+ Utility.eNull(pIDGiustificare);
+							+ " WHERE id_justify = ?";
 			
-				Utility.eseguireOperazione(connect, sql);
+				Utility.eseguirePreparata(connect, sql, pIDGiustificare);
 				
 				try{
 					Assenza temp= ottenereAssenzaPerIdGiustificare(pIDGiustificare);
@@ -493,8 +518,9 @@ public class ManagerRegistrati {
 	 * @throws EntitaNonTrovataEccezione
 	 * @throws CampoObbligatorioEccezione
 	 */
-	public synchronized void aggiornareAssenza (Assenza pAssenza) throws ConnessioneEccezione,
+	public void aggiornareAssenza (Assenza pAssenza) throws ConnessioneEccezione,
 	SQLException, EntitaNonTrovataEccezione{
+		ContatoriRegistro.Modifica modifica = contatori.iniziareModifica();
 		Connection connect= null;
 		
 		try{
@@ -505,26 +531,34 @@ public class ManagerRegistrati {
 				"UPDATE " 
 				+	ManagerRegistrati.TABELLA_ASSENZA 
 				+ " SET" 
-				+ " id_user = " 
-				+ Utility.eNull(pAssenza.ottenereIdUtente()) 
-				+ ", date_absence = " 
-				+ Utility.eNull(pAssenza.ottenereDataAssenza()) 
-				+ ", id_justify = " 
-				+ Utility.eNull(pAssenza.ottenereIdGiustificare())  
-				+ ", accademic_year = " 
-				+ Utility.eNull(pAssenza.ottenereAnnoAccademico())  
-				+ " WHERE id_absence = " 
-				+ Utility.eNull(pAssenza.ottenereIdAssenza());
+				+ " id_user = ?" 
+				+ ", date_absence = ?" 
+				+ ", id_justify = ?"  
+				+ ", accademic_year = ?"  
+				+ " WHERE id_absence = ?";
 			
 			//effettua una nuova connessione e invia la query
 			connect = DBConnessione.ottenereConnesione();
 			if (connect==null)
 				throw new ConnessioneEccezione();
 			
-			Utility.eseguireOperazione(connect, sql);
+			int[] vecchio = leggereUtenteEAnno(connect, ManagerRegistrati.TABELLA_ASSENZA, "id_absence",
+					pAssenza.ottenereIdAssenza());
+			Utility.eseguirePreparata(connect, sql, pAssenza.ottenereIdUtente(),
+					pAssenza.ottenereDataAssenza(), pAssenza.ottenereIdGiustificare(),
+					pAssenza.ottenereAnnoAccademico(), pAssenza.ottenereIdAssenza());
+			//l'assenza conta solo se non giustificata, prima e dopo l'aggiornamento
+			if (vecchio != null) {
+				if (vecchio[2] == 0)
+					modifica.aggiungere(vecchio[1], vecchio[0], ContatoriRegistro.ASSENZE, -1);
+				if (!giustificata(pAssenza.ottenereIdGiustificare()))
+					modifica.aggiungere(pAssenza.ottenereAnnoAccademico(), pAssenza.ottenereIdUtente(),
+							ContatoriRegistro.ASSENZE, 1);
+			}
 		}finally {
 		//rilascia le risorse
 		DBConnessione.rilasciareConnessione(connect);
+		modifica.terminare();
 		}
 	}
 	/**
@@ -536,8 +570,9 @@ public class ManagerRegistrati {
 	 * @throws EntitaNonTrovataEccezione
 	 * @throws CampoObbligatorioEccezione
 	 */
-	public synchronized void aggiornareRitardo (Ritardo pRitardo) throws ConnessioneEccezione,
+	public void aggiornareRitardo (Ritardo pRitardo) throws ConnessioneEccezione,
 	SQLException, EntitaNonTrovataEccezione, CampoObbligatorioEccezione{
+		ContatoriRegistro.Modifica modifica = contatori.iniziareModifica();
 		Connection connect= null;
 		
 		try{
@@ -548,26 +583,31 @@ public class ManagerRegistrati {
 				"UPDATE " 
 				+	ManagerRegistrati.TABELLA_RITARDO 
 				+ " SET" 
-				+ " id_user = " 
-				+ Utility.eNull(pRitardo.ottenereIdUtente()) 
-				+ ", date_delay = " 
-				+ Utility.eNull(pRitardo.ottenereDataRitardo()) 
-				+ ", time_delay = " 
-				+ Utility.eNull(pRitardo.ottenereTempoRitardo())  
-				+ ", accademic_year = " 
-				+ Utility.eNull(pRitardo.ottenereAnnoAccademico())  
-				+ " WHERE id_delay = " 
-				+ Utility.eNull(pRitardo.ottenereIdRitardo());
+				+ " id_user = ?" 
+				+ ", date_delay = ?" 
+				+ ", time_delay = ?"  
+				+ ", accademic_year = ?"  
+				+ " WHERE id_delay = ?";
 			
 			//effettua una nuova connessione e invia la query
 			connect = DBConnessione.ottenereConnesione();
 			if (connect==null)
 				throw new ConnessioneEccezione();
 			
-			Utility.eseguireOperazione(connect, sql);
+			int[] vecchio = leggereUtenteEAnno(connect, ManagerRegistrati.TABELLA_RITARDO, "id_delay",
+					pRitardo.ottenereIdRitardo());
+			Utility.eseguirePreparata(connect, sql, pRitardo.ottenereIdUtente(),
+					pRitardo.ottenereDataRitardo(), pRitardo.ottenereTempoRitardo(),
+					pRitardo.ottenereAnnoAccademico(), pRitardo.ottenereIdRitardo());
+			if (vecchio != null) {
+				modifica.aggiungere(vecchio[1], vecchio[0], ContatoriRegistro.RITARDI, -1);
+				modifica.aggiungere(pRitardo.ottenereAnnoAccademico(), pRitardo.ottenereIdUtente(),
+						ContatoriRegistro.RITARDI, 1);
+			}
 		}finally {
 		//rilascia le risorse
 		DBConnessione.rilasciareConnessione(connect);
+		modifica.terminare();
 		}
 	}
 	
@@ -580,8 +620,9 @@ public class ManagerRegistrati {
 	 * @throws EntitaNonTrovataEccezione
 	 * @throws CampoObbligatorioEccezione
 	 */
-	public synchronized void aggiornareNota (Nota pNota) throws ConnessioneEccezione,
+	public void aggiornareNota (Nota pNota) throws ConnessioneEccezione,
 	SQLException, EntitaNonTrovataEccezione, CampoObbligatorioEccezione{
+		ContatoriRegistro.Modifica modifica = contatori.iniziareModifica();
 		Connection connect= null;
 		
 		try{
@@ -595,28 +636,32 @@ public class ManagerRegistrati {
 				"UPDATE " 
 				+	ManagerRegistrati.TABELLA_NOTA
 				+ " SET" 
-				+ " id_user = " 
-				+ Utility.eNull(pNota.ottenereIdUtente()) 
-				+ ", date_note = " 
-				+ Utility.eNull(pNota.ottenereDataNota())   
-				+ ", description = " 
-				+ Utility.eNull(pNota.ottenereDescrizione())   
-				+ ", teacher = " 
-				+ Utility.eNull(pNota.ottenereInsegnante())   
-				+ ", accademic_year = " 
-				+ Utility.eNull(pNota.ottenereAnnoAccademico())  
-				+ " WHERE id_note = " 
-				+ Utility.eNull(pNota.ottenereIdNota());
+				+ " id_user = ?" 
+				+ ", date_note = ?"   
+				+ ", description = ?"   
+				+ ", teacher = ?"   
+				+ ", accademic_year = ?"  
+				+ " WHERE id_note = ?";
 			
 			//effettua una nuova connessione e invia la query
 			connect = DBConnessione.ottenereConnesione();
 			if (connect==null)
 				throw new ConnessioneEccezione();
 			
-			Utility.eseguireOperazione(connect, sql);
+			int[] vecchio = leggereUtenteEAnno(connect, ManagerRegistrati.TABELLA_NOTA, "id_note",
+					pNota.ottenereIdNota());
+			Utility.eseguirePreparata(connect, sql, pNota.ottenereIdUtente(), pNota.ottenereDataNota(),
+					pNota.ottenereDescrizione(), pNota.ottenereInsegnante(), pNota.ottenereAnnoAccademico(),
+					pNota.ottenereIdNota());
+			if (vecchio != null) {
+				modifica.aggiungere(vecchio[1], vecchio[0], ContatoriRegistro.NOTE, -1);
+				modifica.aggiungere(pNota.ottenereAnnoAccademico(), pNota.ottenereIdUtente(),
+						ContatoriRegistro.NOTE, 1);
+			}
 		}finally {
 		//rilascia le risorse
 		DBConnessione.rilasciareConnessione(connect);
+		modifica.terminare();
 		}
 	}
 	
@@ -629,7 +674,7 @@ public class ManagerRegistrati {
 	 * @throws EntitaNonTrovataEccezione
 	 * @throws CampoObbligatorioEccezione
 	 */
-	public synchronized void aggiornareGiustificare (Giustificare pGiustificare) throws ConnessioneEccezione,
+	public void aggiornareGiustificare (Giustificare pGiustificare) throws ConnessioneEccezione,
 	SQLException, EntitaNonTrovataEccezione, CampoObbligatorioEccezione{
 		Connection connect= null;
 		
@@ -641,21 +686,19 @@ public class ManagerRegistrati {
 				"UPDATE " 
 				+	ManagerRegistrati.TABELLAE_GIUSTIFICARE
 				+ " SET" 
-				+ " id_user = " 
-				+ Utility.eNull(pGiustificare.ottenereIdUtente()) 
-				+ ", date_justify = " 
-				+ Utility.eNull(pGiustificare.ottenereDataGiustificare())   
-				+ ", accademic_year = " 
-				+ Utility.eNull(pGiustificare.ottenereAnnoAccademico())  
-				+ " WHERE id_justify = " 
-				+ Utility.eNull(pGiustificare.ottenereIdGiustificare());
+				+ " id_user = ?" 
+				+ ", date_justify = ?"   
+				+ ", accademic_year = ?"  
+				+ " WHERE id_justify = ?";
 			
 			//effettua una nuova connessione e invia la query
 			connect = DBConnessione.ottenereConnesione();
 			if (connect==null)
 				throw new ConnessioneEccezione();
 			
-			Utility.eseguireOperazione(connect, sql);
+			Utility.eseguirePreparata(connect, sql, pGiustificare.ottenereIdUtente(),
+					pGiustificare.ottenereDataGiustificare(), pGiustificare.ottenereAnnoAccademico(),
+					pGiustificare.ottenereIdGiustificare());
 		}finally {
 		//rilascia le risorse
 		DBConnessione.rilasciareConnessione(connect);
@@ -672,7 +715,7 @@ public class ManagerRegistrati {
 	 * @throws ConnessioneEccezione
 	 * @throws SQLException
 	 */
-	public synchronized Nota ottenereNotaPerId( int pIDNota)throws ValoreNonValidoEccezione,
+	public Nota ottenereNotaPerId( int pIDNota)throws ValoreNonValidoEccezione,
 			EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException{
 		Nota result=null;
 		Connection connect = null;
@@ -690,8 +733,7 @@ public class ManagerRegistrati {
 			String tSql = 
 				"SELECT * FROM " 
 				+ ManagerRegistrati.TABELLA_NOTA 
-				+ " WHERE id_note = " 
-				+ Utility.eNull(pIDNota) ;
+				+ " WHERE id_note = ?" ;
 			
 			// Otteniamo una Connessione al DataBase
 			connect = DBConnessione.ottenereConnesione();
@@ -699,7 +741,7 @@ public class ManagerRegistrati {
 				throw new ConnessioneEccezione();
 			
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, tSql);
+			ResultSet tRs = Utility.queryPreparata(connect, tSql, pIDNota);
 			
 			if (tRs.next()) 
 				result = this.loadNoteFromRs(tRs);
@@ -728,7 +770,7 @@ public class ManagerRegistrati {
 	 * @throws ConnessioneEccezione
 	 * @throws SQLException
 	 */
-	public synchronized Assenza ottenereAssenzaPerIdGiustificare( int pIDGiustificare)throws ValoreNonValidoEccezione,
+	public Assenza ottenereAssenzaPerIdGiustificare( int pIDGiustificare)throws ValoreNonValidoEccezione,
 			EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException{
 		Assenza result=null;
 		Connection connect = null;
@@ -746,8 +788,7 @@ public class ManagerRegistrati {
 			String tSql = 
 				"SELECT * FROM " 
 				+ ManagerRegistrati.TABELLA_ASSENZA 
-				+ " WHERE id_justify = " 
-				+ Utility.eNull(pIDGiustificare) ;
+				+ " WHERE id_justify = ?" ;
 			
 			// Otteniamo una Connessione al DataBase
 			connect = DBConnessione.ottenereConnesione();
@@ -755,7 +796,7 @@ public class ManagerRegistrati {
 				throw new ConnessioneEccezione();
 			
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, tSql);
+			ResultSet tRs = Utility.queryPreparata(connect, tSql, pIDGiustificare);
 			
 			if (tRs.next()) 
 				result = this.loadAbsenceFromRs(tRs);
@@ -777,7 +818,7 @@ public class ManagerRegistrati {
 	 * @throws ConnessioneEccezione
 	 * @throws SQLException
 	 */
-	public synchronized Assenza ottenereAssenzaPerIdAssenza( int pIDAssenza)throws ValoreNonValidoEccezione,
+	public Assenza ottenereAssenzaPerIdAssenza( int pIDAssenza)throws ValoreNonValidoEccezione,
 			EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException{
 		Assenza result=null;
 		Connection connect = null;
@@ -795,8 +836,7 @@ public class ManagerRegistrati {
 			String tSql = 
 				"SELECT * FROM " 
 				+ ManagerRegistrati.TABELLA_ASSENZA 
-				+ " WHERE id_absence = " 
-				+ Utility.eNull(pIDAssenza) ;
+				+ " WHERE id_absence = ?" ;
 			
 			// Otteniamo una Connessione al DataBase
 			connect = DBConnessione.ottenereConnesione();
@@ -804,7 +844,7 @@ public class ManagerRegistrati {
 				throw new ConnessioneEccezione();
 			
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, tSql);
+			ResultSet tRs = Utility.queryPreparata(connect, tSql, pIDAssenza);
 			
 			if (tRs.next()) 
 				result = this.loadAbsenceFromRs(tRs);
@@ -828,7 +868,7 @@ public class ManagerRegistrati {
 	 * @throws ConnessioneEccezione
 	 * @throws SQLException
 	 */
-	public synchronized Ritardo ottenereRitardoPerId( int pIDRitardo)throws ValoreNonValidoEccezione,
+	public Ritardo ottenereRitardoPerId( int pIDRitardo)throws ValoreNonValidoEccezione,
 			EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException{
 		Ritardo result=null;
 		Connection connect = null;
@@ -846,8 +886,7 @@ public class ManagerRegistrati {
 			String tSql = 
 				"SELECT * FROM " 
 				+ ManagerRegistrati.TABELLA_RITARDO
-				+ " WHERE id_delay = " 
-				+ Utility.eNull(pIDRitardo) ;
+				+ " WHERE id_delay = ?" ;
 			
 			// Otteniamo una Connessione al DataBase
 			connect = DBConnessione.ottenereConnesione();
@@ -855,7 +894,7 @@ public class ManagerRegistrati {
 				throw new ConnessioneEccezione();
 			
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, tSql);
+			ResultSet tRs = Utility.queryPreparata(connect, tSql, pIDRitardo);
 			
 			if (tRs.next()) 
 				result = this.loadDelayFromRs(tRs);
@@ -877,7 +916,7 @@ public class ManagerRegistrati {
 	 * @throws ConnessioneEccezione
 	 * @throws SQLException
 	 */
-	public synchronized Giustificare ottenereGiustificarePerIdGiustificare( int pIDGiustificare)throws ValoreNonValidoEccezione,
+	public Giustificare ottenereGiustificarePerIdGiustificare( int pIDGiustificare)throws ValoreNonValidoEccezione,
 			EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException{
 		Giustificare result=null;
 		Connection connect = null;
@@ -895,8 +934,7 @@ public class ManagerRegistrati {
 			String tSql = 
 				"SELECT * FROM " 
 				+ ManagerRegistrati.TABELLAE_GIUSTIFICARE 
-				+ " WHERE id_justify = " 
-				+ Utility.eNull(pIDGiustificare) ;
+				+ " WHERE id_justify = ?" ;
 			
 			// Otteniamo una Connessione al DataBase
 			connect = DBConnessione.ottenereConnesione();
@@ -904,7 +942,7 @@ public class ManagerRegistrati {
 				throw new ConnessioneEccezione();
 			
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, tSql);
+			ResultSet tRs = Utility.queryPreparata(connect, tSql, pIDGiustificare);
 			
 			if (tRs.next()) 
 				
@@ -926,7 +964,7 @@ public class ManagerRegistrati {
 	 * @throws ConnessioneEccezione
 	 * @throws SQLException
 	 */
-	public synchronized boolean avereGiustificare(Assenza pAssenza)throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException{
+	public boolean avereGiustificare(Assenza pAssenza)throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException{
 		if(!esiste(pAssenza)) throw new EntitaNonTrovataEccezione("Assenza non presente in database");
 		if(pAssenza.ottenereIdGiustificare()==null) return false;
 		return true;
@@ -942,7 +980,7 @@ public class ManagerRegistrati {
 	 * @throws SQLException
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized Giustificare ottenereGiustificarePerAssenza(Assenza pAssenza)throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
+	public Giustificare ottenereGiustificarePerAssenza(Assenza pAssenza)throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
 		if(!esiste(pAssenza)) throw new EntitaNonTrovataEccezione("Assenza non presente in database");
 		if(pAssenza.ottenereIdGiustificare()==null) return null;
 		
@@ -956,8 +994,7 @@ public class ManagerRegistrati {
 			String tSql = 
 				"SELECT * FROM " 
 				+ ManagerRegistrati.TABELLAE_GIUSTIFICARE 
-				+ " WHERE id_justify = " 
-				+ Utility.eNull(pAssenza.ottenereIdGiustificare()) ;
+				+ " WHERE id_justify = ?" ;
 			
 			// Otteniamo una Connessione al DataBase
 			connect = DBConnessione.ottenereConnesione();
@@ -965,7 +1002,7 @@ public class ManagerRegistrati {
 				throw new ConnessioneEccezione();
 			
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, tSql);
+			ResultSet tRs = Utility.queryPreparata(connect, tSql, pAssenza.ottenereIdGiustificare());
 			
 			if (tRs.next()) 
 				result = this.loadJustifyFromRs(tRs);
@@ -992,7 +1029,7 @@ public class ManagerRegistrati {
 	 * @throws SQLException
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized Collection<Assenza> ottenereAssenzaPerIDUtenteEAnnoAccademico(int pIdUtente, int pAnnoAccademico) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
+	public Collection<Assenza> ottenereAssenzaPerIDUtenteEAnnoAccademico(int pIdUtente, int pAnnoAccademico) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
 		Collection<Assenza> result=new Vector<Assenza>();
 		Connection connect = null;
 		try
@@ -1013,10 +1050,8 @@ public class ManagerRegistrati {
 			String tSql = 
 				"SELECT * FROM " 
 				+ ManagerRegistrati.TABELLA_ASSENZA 
-				+ " WHERE accademic_year = " 
-				+ Utility.eNull(pAnnoAccademico) 
-				+ " AND id_user = "
-				+ Utility.eNull(pIdUtente);
+				+ " WHERE accademic_year = ?" 
+				+ " AND id_user = ?";
 			
 			// Otteniamo una Connessione al DataBase
 			connect = DBConnessione.ottenereConnesione();
@@ -1025,7 +1060,7 @@ public class ManagerRegistrati {
 			
 			
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, tSql);
+			ResultSet tRs = Utility.queryPreparata(connect, tSql, pAnnoAccademico, pIdUtente);
 			
 			while(tRs.next())  {
 				result.add(loadAbsenceFromRs(tRs));
@@ -1049,7 +1084,7 @@ public class ManagerRegistrati {
 	 * @throws SQLException
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized Collection<Nota> ottenereNotaPerIDUtenteEAnnoAccademico(int pIdUtente, int pAnnoAccademico) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
+	public Collection<Nota> ottenereNotaPerIDUtenteEAnnoAccademico(int pIdUtente, int pAnnoAccademico) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
 		Collection<Nota> result=new Vector<Nota>();
 		Connection connect = null;
 		try
@@ -1070,10 +1105,8 @@ public class ManagerRegistrati {
 			String tSql = 
 				"SELECT * FROM " 
 				+ ManagerRegistrati.TABELLA_NOTA 
-				+ " WHERE accademic_year = " 
-				+ Utility.eNull(pAnnoAccademico) 
-				+ " AND id_user = "
-				+ Utility.eNull(pIdUtente);
+				+ " WHERE accademic_year = ?" 
+				+ " AND id_user = ?";
 			
 			// Otteniamo una Connessione al DataBase
 			connect = DBConnessione.ottenereConnesione();
@@ -1082,7 +1115,7 @@ public class ManagerRegistrati {
 			
 			
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, tSql);
+			ResultSet tRs = Utility.queryPreparata(connect, tSql, pAnnoAccademico, pIdUtente);
 			
 			while(tRs.next())  {
 				result.add(loadNoteFromRs(tRs));
@@ -1106,7 +1139,7 @@ public class ManagerRegistrati {
 	 * @throws SQLException
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized Assenza ottenereAssenzaPerIDUtenteEData(int pIdUtente, Date pData) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
+	public Assenza ottenereAssenzaPerIDUtenteEData(int pIdUtente, Date pData) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
 		Assenza result=new Assenza();
 		Connection connect = null;
 		try
@@ -1126,10 +1159,8 @@ public class ManagerRegistrati {
 			String tSql = 
 				"SELECT * FROM " 
 				+ ManagerRegistrati.TABELLA_ASSENZA 
-				+ " WHERE date_absence = " 
-				+ Utility.eNull(pData) 
-				+ " AND id_user = "
-				+ Utility.eNull(pIdUtente);
+				+ " WHERE date_absence = ?" 
+				+ " AND id_user = ?";
 			
 			// Otteniamo una Connessione al DataBase
 			connect = DBConnessione.ottenereConnesione();
@@ -1138,7 +1169,7 @@ public class ManagerRegistrati {
 			
 			
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, tSql);
+			ResultSet tRs = Utility.queryPreparata(connect, tSql, pData, pIdUtente);
 			
 			if(tRs.next())  {
 				result=loadAbsenceFromRs(tRs);
@@ -1165,7 +1196,7 @@ public class ManagerRegistrati {
 	 * @throws SQLException
 	 * @throws ValoreNonValidoEccezione
 	 */
-	public synchronized Ritardo ottenereRitardoPerIDUtenteEData(int pIdUtente, Date pData) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
+	public Ritardo ottenereRitardoPerIDUtenteEData(int pIdUtente, Date pData) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
 		Ritardo result=new Ritardo();
 		Connection connect = null;
 		try
@@ -1185,10 +1216,8 @@ public class ManagerRegistrati {
 			String tSql = 
 				"SELECT * FROM " 
 				+ ManagerRegistrati.TABELLA_RITARDO 
-				+ " WHERE date_delay = " 
-				+ Utility.eNull(pData) 
-				+ " AND id_user = "
-				+ Utility.eNull(pIdUtente);
+				+ " WHERE date_delay = ?" 
+				+ " AND id_user = ?";
 			
 			// Otteniamo una Connessione al DataBase
 			connect = DBConnessione.ottenereConnesione();
@@ -1197,7 +1226,7 @@ public class ManagerRegistrati {
 			
 			
 			// Inviamo la Query al DataBase
-			ResultSet tRs = Utility.queryOperazione(connect, tSql);
+			ResultSet tRs = Utility.queryPreparata(connect, tSql, pData, pIdUtente);
 			
 			if(tRs.next())  {
 				result=loadDelayFromRs(tRs);
@@ -1212,24 +1241,328 @@ public class ManagerRegistrati {
 	}
 	
 	
-	public synchronized Collection<RegistratiLinea> ottenereRegistratiPerClasseIDEData(int pClasseID, Date pData) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
-		
-		Collection<RegistratiLinea> result = new Vector<RegistratiLinea>();
-		ManagerUtente mg = ManagerUtente.ottenereIstanza();
-		
-		Collection<VoceElencoUtenti> students = mg.ottenereStudentePerClasseId(pClasseID);
+	/**
+	 * Metodo che restituisce il registro di una classe in una data: una riga
+	 * per ogni studente, con l'eventuale assenza (e la sua giustifica) e
+	 * l'eventuale ritardo. Le assenze e i ritardi di tutta la classe sono letti
+	 * con due sole query.
+	 * @param pClasseID
+	 * 		un intero che rappresenta l'id della classe
+	 * @param pData
+	 * 		la data del registro
+	 * @return una collezione di righe del registro, nell'ordine degli studenti
+	 * @throws EntitaNonTrovataEccezione
+	 * @throws ConnessioneEccezione
+	 * @throws SQLException
+	 * @throws ValoreNonValidoEccezione
+	 */
+	public Collection<RegistratiLinea> ottenereRegistratiPerClasseIDEData(int pClasseID, Date pData) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
+		return ottenereRegistratiPerClasseIDEIntervallo(pClasseID, pData, pData).get(giorno(pData));
+	}
+	
+	/**
+	 * Metodo che restituisce il registro di una classe per ogni giorno di un
+	 * intervallo, ad esempio un mese per il calendario del registro. Gli
+	 * studenti, le assenze e i ritardi di tutto l'intervallo sono letti con tre
+	 * query, indipendentemente dal numero di studenti e di giorni.
+	 * @param pClasseID
+	 * 		un intero che rappresenta l'id della classe
+	 * @param pInizio
+	 * 		il primo giorno dell'intervallo
+	 * @param pFine
+	 * 		l'ultimo giorno dell'intervallo, compreso
+	 * @return per ogni giorno dell'intervallo, in ordine, le righe del registro
+	 * @throws EntitaNonTrovataEccezione
+	 * @throws ConnessioneEccezione
+	 * @throws SQLException
+	 * @throws ValoreNonValidoEccezione
+	 */
+	public SortedMap<Date, Collection<RegistratiLinea>> ottenereRegistratiPerClasseIDEIntervallo(int pClasseID, Date pInizio, Date pFine) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
 		
+		Collection<VoceElencoUtenti> students = ManagerUtente.ottenereIstanza().ottenereStudentePerClasseId(pClasseID);
+		Map<Date, Map<Integer, Assenza>> absences = new HashMap<Date, Map<Integer, Assenza>>();
+		Map<Date, Map<Integer, Ritardo>> delays = new HashMap<Date, Map<Integer, Ritardo>>();
+		Connection connect = null;
+		try
+		{
+			/*
+			 * Prepariamo le stringhe SQL per recuperare le assenze e i ritardi
+			 * degli studenti della classe nell'intervallo
+			 */
+			String tSqlAbsence = 
+				"SELECT " 
+				+ ManagerRegistrati.TABELLA_ASSENZA 
+				+ ".* FROM " 
+				+ ManagerRegistrati.TABELLA_ASSENZA 
+				+ ", " 
+				+ ManagerClasse.TABLE_STUDENTE_AVERE_CLASSE 
+				+ " WHERE " 
+				+ ManagerClasse.TABLE_STUDENTE_AVERE_CLASSE 
+				+ ".id_classroom = ?" 
+				+ " AND " 
+				+ ManagerRegistrati.TABELLA_ASSENZA 
+				+ ".id_user = " 
+				+ ManagerClasse.TABLE_STUDENTE_AVERE_CLASSE 
+				+ ".id_user" 
+				+ " AND date_absence BETWEEN ? AND ?";
+			String tSqlDelay = 
+				"SELECT " 
+				+ ManagerRegistrati.TABELLA_RITARDO 
+				+ ".* FROM " 
+				+ ManagerRegistrati.TABELLA_RITARDO 
+				+ ", " 
+				+ ManagerClasse.TABLE_STUDENTE_AVERE_CLASSE 
+				+ " WHERE " 
+				+ ManagerClasse.TABLE_STUDENTE_AVERE_CLASSE 
+				+ ".id_classroom = ?" 
+				+ " AND " 
+				+ ManagerRegistrati.TABELLA_RITARDO 
+				+ ".id_user = " 
+				+ ManagerClasse.TABLE_STUDENTE_AVERE_CLASSE 
+				+ ".id_user" 
+				+ " AND date_delay BETWEEN ? AND ?";
+			
+			// Otteniamo una Connessione al DataBase
+			connect = DBConnessione.ottenereConnesione();
+			if (connect == null) 
+				throw new ConnessioneEccezione();
+			
+			// Inviamo le Query al DataBase
+			ResultSet tRs = Utility.queryPreparata(connect, tSqlAbsence, pClasseID, pInizio, pFine);
+			while (tRs.next()) {
+				Assenza absence = loadAbsenceFromRs(tRs);
+				Date day = giorno(absence.ottenereDataAssenza());
+				if (!absences.containsKey(day))
+					absences.put(day, new HashMap<Integer, Assenza>());
+				absences.get(day).put(absence.ottenereIdUtente(), absence);
+			}
+			
+			tRs = Utility.queryPreparata(connect, tSqlDelay, pClasseID, pInizio, pFine);
+			while (tRs.next()) {
+				Ritardo delay = loadDelayFromRs(tRs);
+				Date day = giorno(delay.ottenereDataRitardo());
+				if (!delays.containsKey(day))
+					delays.put(day, new HashMap<Integer, Ritardo>());
+				delays.get(day).put(delay.ottenereIdUtente(), delay);
+			}
+		}finally{
+			DBConnessione.rilasciareConnessione(connect);
+		}
 		
-		for (VoceElencoUtenti x : students){
-			RegistratiLinea temp = new RegistratiLinea();
-			temp.settareStudente(x);
-			temp.settareAssenza(this.ottenereAssenzaPerIDUtenteEData(x.ottenereId(), pData));
-			temp.settareRitardo(this.ottenereRitardoPerIDUtenteEData(x.ottenereId(), pData));
-			result.add(temp);
+		SortedMap<Date, Collection<RegistratiLinea>> result = new TreeMap<Date, Collection<RegistratiLinea>>();
+		Calendar calendar = new GregorianCalendar();
+		calendar.setTime(giorno(pInizio));
+		Date last = giorno(pFine);
+		while (!calendar.getTime().after(last)) {
+			Date day = calendar.getTime();
+			Map<Integer, Assenza> dayAbsences = absences.get(day);
+			Map<Integer, Ritardo> dayDelays = delays.get(day);
+			
+			Collection<RegistratiLinea> lines = new Vector<RegistratiLinea>();
+			for (VoceElencoUtenti x : students){
+				RegistratiLinea temp = new RegistratiLinea();
+				temp.settareStudente(x);
+				temp.settareAssenza(dayAbsences == null ? null : dayAbsences.get(x.ottenereId()));
+				temp.settareRitardo(dayDelays == null ? null : dayDelays.get(x.ottenereId()));
+				lines.add(temp);
+			}
+			result.put(day, lines);
+			calendar.add(Calendar.DAY_OF_MONTH, 1);
 		}
 		
 		return result;
 	}
+	
+	/**
+	 * Aggiorna il registro di una classe in una data. Confronta il registro
+	 * memorizzato con gli studenti assenti e ritardatari dati e applica solo
+	 * le differenze: tutti gli inserimenti, gli aggiornamenti e le
+	 * cancellazioni sono inviati come batch in un'unica transazione, quindi o
+	 * il registro viene aggiornato per intero o non viene modificato.
+	 * Cancellando un'assenza si cancella anche la sua giustifica.
+	 * @param pClasseID
+	 * 		un intero che rappresenta l'id della classe
+	 * @param pAnnoAccademico
+	 * 		l'anno accademico della classe
+	 * @param pData
+	 * 		la data del registro
+	 * @param pAssenti
+	 * 		gli id degli studenti assenti
+	 * @param pRitardi
+	 * 		per ogni id degli studenti ritardatari, l'ora di entrata
+	 * @return il registro aggiornato, senza doverlo rileggere dal database
+	 * @throws EntitaNonTrovataEccezione
+	 * @throws ConnessioneEccezione
+	 * @throws SQLException
+	 * @throws ValoreNonValidoEccezione
+	 */
+	public Collection<RegistratiLinea> aggiornareRegistro(int pClasseID, int pAnnoAccademico, Date pData, Set<Integer> pAssenti, Map<Integer, String> pRitardi) throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione{
+		
+		// due aggiornamenti concorrenti dello stesso registro non devono sovrapporsi
+		Lock blocco = blocchi.ottenereBlocco(pClasseID + "|" + giorno(pData).getTime());
+		blocco.lock();
+		try {
+			Collection<RegistratiLinea> register = ottenereRegistratiPerClasseIDEData(pClasseID, pData);
+			
+			List<Assenza> newAbsences = new ArrayList<Assenza>();
+			List<Object[]> insertAbsences = new ArrayList<Object[]>();
+			List<Object[]> deleteAbsences = new ArrayList<Object[]>();
+			List<Object[]> deleteJustifies = new ArrayList<Object[]>();
+			List<Assenza> oldAbsences = new ArrayList<Assenza>();
+			List<Ritardo> newDelays = new ArrayList<Ritardo>();
+			List<Object[]> insertDelays = new ArrayList<Object[]>();
+			List<Object[]> updateDelays = new ArrayList<Object[]>();
+			List<Object[]> deleteDelays = new ArrayList<Object[]>();
+			List<Ritardo> oldDelays = new ArrayList<Ritardo>();
+			
+			for (RegistratiLinea line : register) {
+				int idUser = line.ottenereStudente().ottenereId();
+				Assenza absence = line.ottenereAssenza();
+				Ritardo delay = line.ottenereRitardo();
+				
+				if (pAssenti.contains(idUser) && absence == null) {
+					absence = new Assenza();
+					absence.settareAnnoAccademico(pAnnoAccademico);
+					absence.settareDataAssenza(pData);
+					absence.settareIdGiustificare(0);
+					absence.settareIdUtente(idUser);
+					newAbsences.add(absence);
+					insertAbsences.add(new Object[] { idUser, pData, 0, pAnnoAccademico });
+					line.settareAssenza(absence);
+				} else if (!pAssenti.contains(idUser) && absence != null) {
+					deleteAbsences.add(new Object[] { absence.ottenereIdAssenza() });
+					if (absence.ottenereIdGiustificare() != null && absence.ottenereIdGiustificare() > 0)
+						deleteJustifies.add(new Object[] { absence.ottenereIdGiustificare() });
+					else
+						oldAbsences.add(absence);
+					line.settareAssenza(null);
+				}
+				
+				String time = pRitardi.get(idUser);
+				if (pRitardi.containsKey(idUser) && delay == null) {
+					delay = new Ritardo();
+					delay.settareAnnoAccademico(pAnnoAccademico);
+					delay.settareDataRitardo(pData);
+					delay.settareIdUtente(idUser);
+					delay.settareTempoRitardo(time);
+					newDelays.add(delay);
+					insertDelays.add(new Object[] { idUser, pData, time, pAnnoAccademico });
+					line.settareRitardo(delay);
+				} else if (pRitardi.containsKey(idUser)) {
+					if (time == null ? delay.ottenereTempoRitardo() != null : !time.equals(delay.ottenereTempoRitardo())) {
+						delay.settareTempoRitardo(time);
+						updateDelays.add(new Object[] { time, delay.ottenereIdRitardo() });
+					}
+				} else if (delay != null) {
+					deleteDelays.add(new Object[] { delay.ottenereIdRitardo() });
+					oldDelays.add(delay);
+					line.settareRitardo(null);
+				}
+			}
+			
+			if (insertAbsences.isEmpty() && deleteAbsences.isEmpty() && insertDelays.isEmpty()
+					&& updateDelays.isEmpty() && deleteDelays.isEmpty())
+				return register;
+			
+			ContatoriRegistro.Modifica modifica = contatori.iniziareModifica();
+			Connection connect = null;
+			boolean committed = false;
+			try {
+				connect = DBConnessione.ottenereConnesione();
+				if (connect == null)
+					throw new ConnessioneEccezione();
+				connect.setAutoCommit(false);
+				
+				Utility.eseguireBatch(connect, "DELETE FROM " + ManagerRegistrati.TABELLA_ASSENZA
+						+ " WHERE id_absence = ?", deleteAbsences);
+				Utility.eseguireBatch(connect, "DELETE FROM " + ManagerRegistrati.TABELLAE_GIUSTIFICARE
+						+ " WHERE id_justify = ?", deleteJustifies);
+				int[] idAbsences = Utility.inserireBatch(connect, ManagerRegistrati.TABELLA_ASSENZA,
+						"id_absence", "INSERT INTO " + ManagerRegistrati.TABELLA_ASSENZA
+						+ " (id_absence, id_user, date_absence, id_justify, accademic_year)"
+						+ " VALUES (?,?,?,?,?)", insertAbsences);
+				
+				Utility.eseguireBatch(connect, "DELETE FROM " + ManagerRegistrati.TABELLA_RITARDO
+						+ " WHERE id_delay = ?", deleteDelays);
+				Utility.eseguireBatch(connect, "UPDATE " + ManagerRegistrati.TABELLA_RITARDO
+						+ " SET time_delay = ? WHERE id_delay = ?", updateDelays);
+				int[] idDelays = Utility.inserireBatch(connect, ManagerRegistrati.TABELLA_RITARDO,
+						"id_delay", "INSERT INTO " + ManagerRegistrati.TABELLA_RITARDO
+						+ " (id_delay, id_user, date_delay, time_delay, accademic_year)"
+						+ " VALUES (?,?,?,?,?)", insertDelays);
+				
+				connect.commit();
+				committed = true;
+				
+				for (int i = 0; i < idAbsences.length; i++)
+					newAbsences.get(i).settareIdAssenza(idAbsences[i]);
+				for (int i = 0; i < idDelays.length; i++)
+					newDelays.get(i).settareIdRitardo(idDelays[i]);
+				for (Assenza absence : newAbsences)
+					modifica.aggiungere(pAnnoAccademico, absence.ottenereIdUtente(), ContatoriRegistro.ASSENZE, 1);
+				for (Assenza absence : oldAbsences)
+					modifica.aggiungere(absence.ottenereAnnoAccademico(), absence.ottenereIdUtente(),
+							ContatoriRegistro.ASSENZE, -1);
+				for (Ritardo delay : newDelays)
+					modifica.aggiungere(pAnnoAccademico, delay.ottenereIdUtente(), ContatoriRegistro.RITARDI, 1);
+				for (Ritardo delay : oldDelays)
+					modifica.aggiungere(delay.ottenereAnnoAccademico(), delay.ottenereIdUtente(),
+							ContatoriRegistro.RITARDI, -1);
+				
+				return register;
+			} finally {
+				if (connect != null) {
+					try {
+						if (!committed)
+							connect.rollback();
+						connect.setAutoCommit(true);
+					} catch (SQLException e) {
+						// la connessione verra' verificata dal pool
+					}
+				}
+				DBConnessione.rilasciareConnessione(connect);
+				modifica.terminare();
+			}
+		} finally {
+			blocco.unlock();
+		}
+	}
+	
+	/**
+	 * Ritorna la data passata senza l'ora, come e' memorizzata nel database
+	 */
+	private static Date giorno(Date pData) {
+		Calendar calendar = new GregorianCalendar();
+		calendar.setTime(pData);
+		calendar.set(Calendar.HOUR_OF_DAY, 0);
+		calendar.set(Calendar.MINUTE, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MILLISECOND, 0);
+		return new Date(calendar.getTimeInMillis());
+	}
+	
+	/**
+	 * Ritorna true se l'id della giustifica di un'assenza indica un'assenza giustificata
+	 */
+	private static boolean giustificata(Integer pIdGiustificare) {
+		return pIdGiustificare != null && pIdGiustificare.intValue() != 0;
+	}
+	
+	/**
+	 * Legge l'utente, l'anno accademico e, per le assenze, la giustifica di una
+	 * riga prima di modificarla
+	 * @return un array con id_user, accademic_year e id_justify, oppure null se
+	 * 		la riga non esiste
+	 */
+	private static int[] leggereUtenteEAnno(Connection pConnect, String pTabella, String pCampoId,
+			int pId) throws SQLException {
+		ResultSet tRs = Utility.queryPreparata(pConnect, "SELECT * FROM " + pTabella
+				+ " WHERE " + pCampoId + " = ?", pId);
+		if (!tRs.next())
+			return null;
+		int idJustify = ManagerRegistrati.TABELLA_ASSENZA.equals(pTabella) ? tRs.getInt("id_justify") : 0;
+		return new int[] { tRs.getInt("id_user"), tRs.getInt("accademic_year"), idJustify };
+	}
 
 	/**
 	 * Metodo che verifica se c'e un'assenza in una linea del registro 
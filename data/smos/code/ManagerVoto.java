@@ -25,7 +25,7 @@ import java.sql.Connection;
  * 
  */
 public class ManagerVoto {
-    private static ManagerVoto instance;
+    private static final ManagerVoto instance = new ManagerVoto();
 
     /**
      * Il nome della tabella dei voti.
@@ -44,10 +44,7 @@ public class ManagerVoto {
      * 
      * @return Ritorna l'istanza della classe.
      */
-    public static synchronized ManagerVoto ottenereIstanza() {
-        if (instance == null) {
-            instance = new ManagerVoto();
-        }
+    public static ManagerVoto ottenereIstanza() {
         return instance;
     }
 
@@ -62,7 +59,7 @@ public class ManagerVoto {
      * @throws SQLException
      * @throws ConnessioneEccezione
      */
-    public synchronized boolean esiste(Voto pVoto) throws CampoObbligatorioEccezione, ConnessioneEccezione, SQLException {
+    public boolean esiste(Voto pVoto) throws CampoObbligatorioEccezione, ConnessioneEccezione, SQLException {
 
         boolean result = false;
         Connection connect = null;
@@ -75,11 +72,10 @@ public class ManagerVoto {
             if (connect == null)
                 throw new ConnessioneEccezione();
 
-            String sql = "SELECT * FROM " + ManagerVoto.TABELLA_VOTO + " WHERE id_votes = "
-                    + Utility.eNull(pVoto.ottenereId_voti());
+            String sql = "SELECT * FROM " + ManagerVoto.TABELLA_VOTO + " WHERE id_votes = ?";
 
             // Inviamo la Query al DataBase
-            ResultSet tRs = Utility.queryOperazione(connect, sql);
+            ResultSet tRs = Utility.queryPreparata(connect, sql, pVoto.ottenereId_voti());
 
             if (tRs.next())
                 result = true;
@@ -102,7 +98,7 @@ public class ManagerVoto {
      * @throws EntitaNonTrovataEccezione
      * @throws ValoreNonValidoEccezione
      */
-    public synchronized void inserire(Voto pVoto) throws CampoObbligatorioEccezione, ConnessioneEccezione, SQLException,
+    public void inserire(Voto pVoto) throws CampoObbligatorioEccezione, ConnessioneEccezione, SQLException,
             EntitaNonTrovataEccezione, ValoreNonValidoEccezione {
         Connection connect = null;
         try {
@@ -112,15 +108,13 @@ public class ManagerVoto {
                 throw new ConnessioneEccezione();
             // Prepariamo la stringa Sql
             String sql = "INSERT INTO " + ManagerVoto.TABELLA_VOTO
-                    + " (id_user, id_teaching, written, oral, laboratory, AccademicYear, turn) " + "VALUES ("
-                    + Utility.eNull(pVoto.ottenereId_utente()) + ", " + Utility.eNull(pVoto.ottenereInsegnamento()) + ", "
-                    + Utility.eNull(pVoto.ottenereScritto()) + ", " + Utility.eNull(pVoto.ottenereOrale()) + ", "
-                    + Utility.eNull(pVoto.ottenereLaboratorio()) + ", " + Utility.eNull(pVoto.ottenereAnnoAccademico()) + ", "
-                    + Utility.eNull(pVoto.ottenereTurno()) + " )";
-
-            Utility.eseguireOperazione(connect, sql);
+                    + " (id_votes, id_user, id_teaching, written, oral, laboratory, AccademicYear, turn) " + "VALUES (?" + ", ?" + ", ?" + ", ?" + ", ?" + ", ?" + ", ?" + ", ?" + " )";
 
-            pVoto.settareId_voti(Utility.ottenereValoreMassimo("id_votes", ManagerVoto.TABELLA_VOTO));
+            pVoto.settareId_voti(Utility.inserirePreparata(connect,
+                    ManagerVoto.TABELLA_VOTO, "id_votes", sql, pVoto.ottenereId_utente(),
+                    pVoto.ottenereInsegnamento(), pVoto.ottenereScritto(), pVoto.ottenereOrale(),
+                    pVoto.ottenereLaboratorio(), pVoto.ottenereAnnoAccademico(),
+                    pVoto.ottenereTurno()));
 
         } finally {
             // rilascia le risorse
@@ -139,7 +133,7 @@ public class ManagerVoto {
      * @throws EntitaNonTrovataEccezione
      * @throws CampoObbligatorioEccezione
      */
-    public synchronized void aggiornare(Voto pVoto)
+    public void aggiornare(Voto pVoto)
             throws ConnessioneEccezione, SQLException, EntitaNonTrovataEccezione, CampoObbligatorioEccezione {
         Connection connect = null;
 
@@ -156,19 +150,18 @@ public class ManagerVoto {
             if (pVoto.ottenereTurno() < 0)
                 throw new CampoObbligatorioEccezione("Specificare il semestre ");
             // Prepariamo la stringa SQL
-            String sql = "UPDATE " + ManagerVoto.TABELLA_VOTO + " SET" + " id_user = "
-                    + Utility.eNull(pVoto.ottenereId_utente()) + "," + " id_teaching= " + Utility.eNull(pVoto.ottenereInsegnamento())
-                    + "," + " written= " + Utility.eNull(pVoto.ottenereScritto()) + "," + " oral= "
-                    + Utility.eNull(pVoto.ottenereOrale()) + "," + " laboratory= " + Utility.eNull(pVoto.ottenereLaboratorio())
-                    + "," + " accademicYear= " + Utility.eNull(pVoto.ottenereAnnoAccademico()) + "," + " turn="
-                    + Utility.eNull(pVoto.ottenereTurno()) + " WHERE id_votes = " + Utility.eNull(pVoto.ottenereId_voti());
+            String sql = "UPDATE " + ManagerVoto.TABELLA_VOTO + " SET" + " id_user = ?" + "," + " id_teaching= ?"
+                    + "," + " written= ?" + "," + " oral= ?" + "," + " laboratory= ?"
+                    + "," + " accademicYear= ?" + "," + " turn=?" + " WHERE id_votes = ?";
 
             // effettua una nuova connessione e invia la query
             connect = DBConnessione.ottenereConnesione();
             if (connect == null)
                 throw new ConnessioneEccezione();
 
-            Utility.eseguireOperazione(connect, sql);
+            Utility.eseguirePreparata(connect, sql, pVoto.ottenereId_utente(), pVoto.ottenereInsegnamento(),
+                    pVoto.ottenereScritto(), pVoto.ottenereOrale(), pVoto.ottenereLaboratorio(),
+                    pVoto.ottenereAnnoAccademico(), pVoto.ottenereTurno(), pVoto.ottenereId_voti());
         } finally {
             // rilascia le risorse
             DBConnessione.rilasciareConnessione(connect);
@@ -191,7 +184,7 @@ public class ManagerVoto {
      * @throws ConnessioneEccezione
      * @throws ValoreNonValidoEccezione
      */
-    public synchronized int ottenereIdVoto(Insegnamento pInsegnamento, int annoAccademico, int turno,
+    public int ottenereIdVoto(Insegnamento pInsegnamento, int annoAccademico, int turno,
             VoceElencoUtenti pUtente)
             throws SQLException, EntitaNonTrovataEccezione, ConnessioneEccezione, ValoreNonValidoEccezione {
         Connection connect = null;
@@ -207,13 +200,10 @@ public class ManagerVoto {
                 throw new ConnessioneEccezione();
 
             // Preparimao la stringa sql
-            String sql = "SELECT * FROM " + ManagerVoto.TABELLA_VOTO + " WHERE id_teaching = "
-                    + Utility.eNull(pInsegnamento.ottenereId()) + " AND " + ManagerVoto.TABELLA_VOTO + ".AccademicYear= "
-                    + Utility.eNull(annoAccademico) + " AND " + ManagerVoto.TABELLA_VOTO + ".turn= "
-                    + Utility.eNull(turno) + " AND " + ManagerVoto.TABELLA_VOTO + ".id_user= "
-                    + Utility.eNull(pUtente.ottenereId());
+            String sql = "SELECT * FROM " + ManagerVoto.TABELLA_VOTO + " WHERE id_teaching = ?" + " AND " + ManagerVoto.TABELLA_VOTO + ".AccademicYear= ?" + " AND " + ManagerVoto.TABELLA_VOTO + ".turn= ?" + " AND " + ManagerVoto.TABELLA_VOTO + ".id_user= ?";
             // Inviamo la Query al database
-            ResultSet pRs = Utility.queryOperazione(connect, sql);
+            ResultSet pRs = Utility.queryPreparata(connect, sql, pInsegnamento.ottenereId(), annoAccademico,
+                    turno, pUtente.ottenereId());
             if (pRs.next()) {
                 v = this.loadRecordFromRs(pRs);
                 result = v.ottenereId_voti();
@@ -241,7 +231,7 @@ public class ManagerVoto {
      * @throws ValoreNonValidoEccezione
      * 
      */
-    public synchronized void eliminare(Voto pVoto) throws ConnessioneEccezione, SQLException, EntitaNonTrovataEccezione,
+    public void eliminare(Voto pVoto) throws ConnessioneEccezione, SQLException, EntitaNonTrovataEccezione,
             CampoObbligatorioEccezione, ValoreNonValidoEccezione {
         Connection connect = null;
 
@@ -249,10 +239,9 @@ public class ManagerVoto {
             // ManagerTeaching.getInstance().teachingOnDeleteCascade(pInsegnamento);
             connect = DBConnessione.ottenereConnesione();
             // Prepariamo la stringa SQL
-            String sql = "DELETE FROM " + ManagerVoto.TABELLA_VOTO + " WHERE id_votes = "
-                    + Utility.eNull(pVoto.ottenereId_voti());
+            String sql = "DELETE FROM " + ManagerVoto.TABELLA_VOTO + " WHERE id_votes = ?";
 
-            Utility.eseguireOperazione(connect, sql);
+            Utility.eseguirePreparata(connect, sql, pVoto.ottenereId_voti());
         } finally {
             // rilascia le risorse
             DBConnessione.rilasciareConnessione(connect);
@@ -270,7 +259,7 @@ public class ManagerVoto {
      * @throws EntitaNonTrovataEccezione
      * @throws ValoreNonValidoEccezione
      */
-    public synchronized Voto ottenereVotoPerId(int pId)
+    public Voto ottenereVotoPerId(int pId)
             throws ConnessioneEccezione, SQLException, EntitaNonTrovataEccezione, ValoreNonValidoEccezione {
         Voto result = null;
         Connection connect = null;
@@ -285,10 +274,10 @@ public class ManagerVoto {
                 throw new ConnessioneEccezione();
 
             // Prepariamo la stringa SQL
-            String sql = "SELECT * FROM " + ManagerVoto.TABELLA_VOTO + " WHERE id_votes = " + Utility.eNull(pId);
+            String sql = "SELECT * FROM " + ManagerVoto.TABELLA_VOTO + " WHERE id_votes = ?";
 
             // Inviamo la Query al DataBase
-            ResultSet pRs = Utility.queryOperazione(connect, sql);
+            ResultSet pRs = Utility.queryPreparata(connect, sql, pId);
 
             if (pRs.next())
                 result = this.loadRecordFromRs(pRs);
@@ -313,7 +302,7 @@ public class ManagerVoto {
      * @throws ConnectionException
      * @throws SQLException
      */
-    public synchronized String ottenereInsegnamentoIdPerVotoId(int pId)
+    public String ottenereInsegnamentoIdPerVotoId(int pId)
             throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException {
         String result;
         Connection connect = null;
@@ -328,7 +317,7 @@ public class ManagerVoto {
              */
             String tSql = "SELECT id_teaching FROM " + ManagerVoto.TABELLA_VOTO
 
-                    + " WHERE id_votes = " + Utility.eNull(pId);
+                    + " WHERE id_votes = ?";
 
             // Otteniamo una Connessione al DataBase
             connect = DBConnessione.ottenereConnesione();
@@ -336,7 +325,7 @@ public class ManagerVoto {
                 throw new ConnessioneEccezione();
 
             // Inviamo la Query al DataBase
-            ResultSet tRs = Utility.queryOperazione(connect, tSql);
+            ResultSet tRs = Utility.queryPreparata(connect, tSql, pId);
 
             if (tRs.next())
                 result = tRs.getString("id_teaching");
@@ -359,7 +348,7 @@ public class ManagerVoto {
      * @throws ValoreNonValidoEccezione
      * @throws EntitaNonTrovataEccezione
      */
-    public synchronized Collection<Voto> ottenereVoto()
+    public Collection<Voto> ottenereVoto()
             throws ConnessioneEccezione, SQLException, ValoreNonValidoEccezione, EntitaNonTrovataEccezione {
         Collection<Voto> result = null;
         Connection connect = null;
@@ -374,7 +363,7 @@ public class ManagerVoto {
                 throw new ConnessioneEccezione();
 
             // Inviamo la Query al DataBase
-            ResultSet pRs = Utility.queryOperazione(connect, sql);
+            ResultSet pRs = Utility.queryPreparata(connect, sql);
 
             if (pRs.next())
                 result = this.loadRecordsFromRs(pRs);
@@ -399,7 +388,7 @@ public class ManagerVoto {
      * @throws SQLException
      * @throws ValoreNonValidoEccezione
      */
-    public synchronized Collection<Voto> ottenereVotoPerUtenteId(int pId)
+    public Collection<Voto> ottenereVotoPerUtenteId(int pId)
             throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione {
 
         Collection<Voto> result = null;
@@ -411,7 +400,7 @@ public class ManagerVoto {
         try {
             // Prepariamo la stringa SQL
             String sql = "SELECT " + ManagerVoto.TABELLA_VOTO + ".* FROM " + ManagerVoto.TABELLA_VOTO + " WHERE ("
-                    + ManagerVoto.TABELLA_VOTO + ".id_user = " + Utility.eNull(pId) + ")" + " ORDER BY id_user";
+                    + ManagerVoto.TABELLA_VOTO + ".id_user = ?" + ")" + " ORDER BY id_user";
 
             // Otteniamo una Connessione al DataBase
             connect = DBConnessione.ottenereConnesione();
@@ -419,7 +408,7 @@ public class ManagerVoto {
                 throw new ConnessioneEccezione();
 
             // Inviamo la Query al DataBase
-            ResultSet pRs = Utility.queryOperazione(connect, sql);
+            ResultSet pRs = Utility.queryPreparata(connect, sql, pId);
 
             if (pRs.next())
                 result = this.loadRecordsFromRs(pRs);
@@ -443,7 +432,7 @@ public class ManagerVoto {
      * @throws SQLException
      * @throws ValoreNonValidoEccezione
      */
-    public synchronized Collection<Voto> ottenereVotoPerUtenteIdAnnoTurno(int pId, int pAnno, int pTurno)
+    public Collection<Voto> ottenereVotoPerUtenteIdAnnoTurno(int pId, int pAnno, int pTurno)
             throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione {
 
         Collection<Voto> result = null;
@@ -455,9 +444,9 @@ public class ManagerVoto {
         try {
             // Prepariamo la stringa SQL
             String sql = "SELECT " + ManagerVoto.TABELLA_VOTO + ".* FROM " + ManagerVoto.TABELLA_VOTO + " WHERE ("
-                    + ManagerVoto.TABELLA_VOTO + ".id_user = " + Utility.eNull(pId) + " AND "
-                    + ManagerVoto.TABELLA_VOTO + ".accademicYear = " + Utility.eNull(pAnno) + " AND "
-                    + ManagerVoto.TABELLA_VOTO + ".turn = " + Utility.eNull(pTurno) + ")" + " ORDER BY id_user";
+                    + ManagerVoto.TABELLA_VOTO + ".id_user = ?" + " AND "
+                    + ManagerVoto.TABELLA_VOTO + ".accademicYear = ?" + " AND "
+                    + ManagerVoto.TABELLA_VOTO + ".turn = ?" + ")" + " ORDER BY id_user";
 
             // Otteniamo una Connessione al DataBase
             connect = DBConnessione.ottenereConnesione();
@@ -465,7 +454,7 @@ public class ManagerVoto {
                 throw new ConnessioneEccezione();
 
             // Inviamo la Query al DataBase
-            ResultSet pRs = Utility.queryOperazione(connect, sql);
+            ResultSet pRs = Utility.queryPreparata(connect, sql, pId, pAnno, pTurno);
 
             if (pRs.next())
                 result = this.loadRecordsFromRs(pRs);
@@ -477,7 +466,7 @@ public class ManagerVoto {
         }
     }
 
-    public synchronized void eliminareVotoPerUtenteIdAnnoTurno(int pId, int pAnno, int pTurno)
+    public void eliminareVotoPerUtenteIdAnnoTurno(int pId, int pAnno, int pTurno)
             throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException, ValoreNonValidoEccezione {
 
         Connection connect = null;
@@ -488,9 +477,8 @@ public class ManagerVoto {
         try {
             // Prepariamo la stringa SQL
             String sql = "DELETE " + ManagerVoto.TABELLA_VOTO + " FROM " + ManagerVoto.TABELLA_VOTO + " WHERE ("
-                    + ManagerVoto.TABELLA_VOTO + ".id_user=" + Utility.eNull(pId) + " AND " + ManagerVoto.TABELLA_VOTO
-                    + ".AccademicYear=" + Utility.eNull(pAnno) + " AND " + ManagerVoto.TABELLA_VOTO + ".turn="
-                    + Utility.eNull(pTurno) + ")";
+                    + ManagerVoto.TABELLA_VOTO + ".id_user=?" + " AND " + ManagerVoto.TABELLA_VOTO
+                    + ".AccademicYear=?" + " AND " + ManagerVoto.TABELLA_VOTO + ".turn=?" + ")";
 
             // Otteniamo una Connessione al DataBase
             connect = DBConnessione.ottenereConnesione();
@@ -498,7 +486,7 @@ public class ManagerVoto {
                 throw new ConnessioneEccezione();
 
             // Inviamo la Query al DataBase
-            Utility.eseguireOperazione(connect, sql);
+            Utility.eseguirePreparata(connect, sql, pId, pAnno, pTurno);
 
         } finally {
             // rilascia le risorse
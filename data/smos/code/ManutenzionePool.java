@@ -0,0 +1,103 @@
+package smos.storage.connectionManagement;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Servizio che mantiene periodicamente il pool di connessioni. Ad ogni
+ * esecuzione rilascia le connessioni attive perse, chiude una per una le
+ * connessioni pool inutilizzate da troppo tempo, verifica quelle rimaste,
+ * mantenendo cosi' aperta la connessione con MySQL, e riapre le connessioni
+ * pool fino alla dimensione minima, in modo che dopo un periodo di
+ * inattivita' la prima richiesta non debba attendere la creazione delle
+ * connessioni.
+ */
+public class ManutenzionePool implements Runnable {
+
+    private static final Logger LOGGER = Logger
+            .getLogger(ManutenzionePool.class.getName());
+
+    private PoolDiConnessioneDataSorgente manager;
+
+    private int dimensioneMinima;
+
+    private long intervallo;
+
+    private ScheduledExecutorService esecutore;
+
+    /**
+     * Crea il servizio di manutenzione di un pool.
+     *
+     * @param pManager
+     *            il pool delle connessioni da mantenere.
+     * @param pDimensioneMinima
+     *            numero minimo di connessioni pool da tenere aperte.
+     * @param pIntervallo
+     *            intervallo tra due esecuzioni, in millisecondi. Tale valore
+     *            dovra essere minore del valore della variabile globale
+     *            wait_timeout di Mysql.
+     */
+    public ManutenzionePool(PoolDiConnessioneDataSorgente pManager,
+            int pDimensioneMinima, long pIntervallo) {
+        this.manager = pManager;
+        this.dimensioneMinima = Math.max(0, Math.min(pDimensioneMinima,
+                pManager.ottenereDimensioneMassimaPool()));
+        this.intervallo = pIntervallo > 0 ? pIntervallo : 120000;
+    }
+
+    /**
+     * Avvia il servizio: la prima esecuzione, che apre le connessioni pool
+     * minime, avviene subito in background.
+     */
+    public synchronized void avviare() {
+        if (this.esecutore != null) {
+            return;
+        }
+        this.esecutore = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable pTask) {
+                Thread thread = new Thread(pTask, "ConnectionPoolMaintenance");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.esecutore.scheduleWithFixedDelay(this, 0, this.intervallo,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Esegue la manutenzione del pool. Un errore non interrompe le esecuzioni
+     * successive.
+     */
+    public void run() {
+        try {
+            this.manager.clearActive();
+            this.manager.eliminareConnessioniInattive(this.dimensioneMinima);
+            this.manager.validareConnessioniInattive(this.intervallo);
+            this.manager.preriscaldare(this.dimensioneMinima);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Manutenzione del pool di connessioni fallita", e);
+        }
+    }
+
+    /**
+     * Ferma il servizio, attendendo la fine dell'esecuzione in corso.
+     */
+    public synchronized void fermare() {
+        if (this.esecutore == null) {
+            return;
+        }
+        ExecutorService esecutore = this.esecutore;
+        this.esecutore = null;
+        esecutore.shutdownNow();
+        try {
+            esecutore.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
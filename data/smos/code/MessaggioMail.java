@@ -0,0 +1,166 @@
+package smos.utility;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * Messaggio in attesa di essere inviato dalla coda della posta. Un messaggio
+ * di riepilogo raccoglie tutte le comunicazioni dirette allo stesso
+ * destinatario fino all'ora del riepilogo; fino a quando non viene preso per
+ * l'invio e' possibile aggiungervi altre comunicazioni.
+ */
+public class MessaggioMail implements Delayed, Serializable {
+
+	private static final long serialVersionUID = -4383216570381254016L;
+
+	private final long id;
+
+	private final String mittente;
+
+	private final String destinatario;
+
+	private String oggetto;
+
+	private String testo;
+
+	private int comunicazioni = 1;
+
+	private final boolean riepilogo;
+
+	private int tentativi = 0;
+
+	private long prossimoTentativo;
+
+	// un messaggio preso per l'invio non riceve altre comunicazioni
+	private transient boolean chiuso = false;
+
+	/**
+	 * Crea un messaggio.
+	 *
+	 * @param pId
+	 *            l'id del messaggio nella coda.
+	 * @param pMittente
+	 *            l'indirizzo del mittente.
+	 * @param pDestinatario
+	 *            l'indirizzo del destinatario.
+	 * @param pOggetto
+	 *            l'oggetto del messaggio.
+	 * @param pTesto
+	 *            il testo del messaggio.
+	 * @param pRiepilogo
+	 *            true se il messaggio e' un riepilogo.
+	 * @param pInvio
+	 *            l'istante da cui il messaggio puo' essere inviato, in
+	 *            millisecondi.
+	 */
+	MessaggioMail(long pId, String pMittente, String pDestinatario, String pOggetto,
+			String pTesto, boolean pRiepilogo, long pInvio) {
+		this.id = pId;
+		this.mittente = pMittente;
+		this.destinatario = pDestinatario;
+		this.oggetto = pOggetto;
+		this.testo = pTesto;
+		this.riepilogo = pRiepilogo;
+		this.prossimoTentativo = pInvio;
+	}
+
+	/**
+	 * Aggiunge una comunicazione a un messaggio di riepilogo.
+	 *
+	 * @return false se il messaggio e' gia' stato preso per l'invio.
+	 */
+	synchronized boolean aggiungere(String pOggetto, String pTesto) {
+		if (this.chiuso)
+			return false;
+		if (this.comunicazioni == 1)
+			this.testo = this.oggetto + "\n\n" + this.testo;
+		this.comunicazioni++;
+		this.oggetto = "Riepilogo delle comunicazioni (" + this.comunicazioni + ")";
+		this.testo = this.testo + "\n\n----------\n\n" + pOggetto + "\n\n" + pTesto;
+		return true;
+	}
+
+	/**
+	 * Chiude il messaggio, prima dell'invio.
+	 */
+	synchronized void chiudere() {
+		this.chiuso = true;
+	}
+
+	/**
+	 * Crea il messaggio da inviare.
+	 *
+	 * @param pSessione
+	 *            la sessione della posta.
+	 * @return il messaggio.
+	 * @throws MessagingException
+	 */
+	synchronized MimeMessage creareMessaggio(Session pSessione) throws MessagingException {
+		MimeMessage message = new MimeMessage(pSessione);
+		message.setSubject(this.oggetto);
+		message.setText(this.testo);
+		message.setSentDate(new Date());
+		message.setFrom(new InternetAddress(this.mittente));
+		message.setRecipient(Message.RecipientType.TO, new InternetAddress(this.destinatario));
+		return message;
+	}
+
+	/**
+	 * Registra un tentativo di invio fallito.
+	 *
+	 * @param pAttesa
+	 *            l'attesa prima del prossimo tentativo, in millisecondi.
+	 * @return il numero di tentativi falliti.
+	 */
+	synchronized int registrareFallimento(long pAttesa) {
+		this.tentativi++;
+		this.prossimoTentativo = System.currentTimeMillis() + pAttesa;
+		return this.tentativi;
+	}
+
+	/**
+	 * Anticipa l'invio di un riepilogo all'istante indicato.
+	 */
+	synchronized void anticipare(long pInvio) {
+		this.prossimoTentativo = Math.min(this.prossimoTentativo, pInvio);
+	}
+
+	long ottenereId() {
+		return this.id;
+	}
+
+	String ottenereDestinatario() {
+		return this.destinatario;
+	}
+
+	boolean eRiepilogo() {
+		return this.riepilogo;
+	}
+
+	synchronized int ottenereComunicazioni() {
+		return this.comunicazioni;
+	}
+
+	synchronized int ottenereTentativi() {
+		return this.tentativi;
+	}
+
+	public synchronized long getDelay(TimeUnit pUnita) {
+		return pUnita.convert(this.prossimoTentativo - System.currentTimeMillis(),
+				TimeUnit.MILLISECONDS);
+	}
+
+	public int compareTo(Delayed pAltro) {
+		long differenza = getDelay(TimeUnit.MILLISECONDS)
+				- pAltro.getDelay(TimeUnit.MILLISECONDS);
+		return differenza < 0 ? -1 : (differenza > 0 ? 1 : 0);
+	}
+}
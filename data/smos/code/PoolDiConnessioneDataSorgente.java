@@ -12,93 +12,68 @@ import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.sql.SQLFeatureNotSupportedException;
-import java.util.List;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Properties;
-import java.util.Vector;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.sql.DataSource;
 
 /**
  * Realizzazione del pool di connessioni tramite l'implementazione
- * dell'interfaccia java.sql.DataSource. Il pool controlla periodicamente le
- * connessioni attive e quelle che sono pool, ossia quelle rilasciate ma ancora
- * utilizzabili (presenti cioe' in memoria). Il tempo di rilascio delle
- * connessioni attive e di quelle pool � rappresentato da due parametri presenti
- * all'interno della classe e che sono connectionPoolCloseTimeout e
- * inactiveMaxTimeout; tali valori cosi come tutti gli altri inerenti al pool
- * hanno un loro valore di default, parametrizzabile tramite il file di
- * properties connection.properties
+ * dell'interfaccia java.sql.DataSource. Le connessioni attive e quelle che
+ * sono pool, ossia quelle rilasciate ma ancora utilizzabili (presenti cioe' in
+ * memoria), sono controllate periodicamente da ManutenzionePool. Il tempo di
+ * rilascio delle connessioni attive e di quelle pool e' rappresentato da due
+ * parametri presenti all'interno della classe e che sono
+ * massimoInattivoPool e massimoInattivoTimeout; tali valori cosi come tutti
+ * gli altri inerenti al pool hanno un loro valore di default,
+ * parametrizzabile tramite il file di properties connection.properties
+ *
+ * Le connessioni pool sono in una coda senza lock e quelle attive in una
+ * mappa indicizzata dal ConnessioneWrapper, per cui ottenere e rilasciare una
+ * connessione costano un tempo costante. Raggiunto il limite massimo di
+ * connessioni attive, getConnection() attende in ordine di arrivo che una
+ * connessione sia rilasciata, per al piu' attesaMassima millisecondi.
  */
 public class PoolDiConnessioneDataSorgente implements DataSource {
 
     /**
-     * Thread inside della classe ConnectionPoolDataSource che stabilisce ogni
-     * connectionPoolCloseTimeout millisecondi il rilascio delle connessioni
-     * pool.
+     * Prestito di una connessione attiva: quando e da chi e' stata ottenuta e
+     * quando ha eseguito l'ultima operazione.
      */
-    private class ConnessioneChiusa extends Thread {
-
-        private long connectionActionTimestamp = 0;
-
-        private int connectionPoolCloseTimeout = 300000;
-
-        private long timeStamp = 0;
-
-        /**
-         * Costruttore che setta il tempo di rilascio delle connessioni pool
-         * 
-         * @author Di Giorgio Domenico, Cris Malinconico
-         * @param pTime
-         *            intervallo di tempo entro cui il pool svuota la lista
-         *            delle connessioni pool.
-         */
-		private ConnessioneChiusa(int pTime) {
-            setDaemon(true);
-            setName("ConnectionPoolCloser");
-            if (pTime > 0)
-            	this.connectionPoolCloseTimeout = pTime;
-        }
+    private static class Prestito {
 
-        /**
-         * Ogni volta che una connessione genera un evento con un'invocazione di
-         * getConnection() o release() il timestamp viene settato al valore
-         * temporale corrente tramite questo metodo.
-         */
-		public void connessioneEvento() {
-			this.connectionActionTimestamp = System.currentTimeMillis();
-        }
+        private final long inizio = System.currentTimeMillis();
 
-        /**
-         * Controlla ogni connectionPoolCloseTimeout millisecondi se le
-         * connessioni pool possono essere chiuse liberando in tal caso memoria.
-         */
-		public void run() {
-            boolean working = true;
-            while (working) {
-                try {
-                	this.timeStamp = System.currentTimeMillis();
-                    Thread.sleep(this.connectionPoolCloseTimeout);
-                    if (this.connectionActionTimestamp < this.timeStamp) {
-                        chiudiTutteLeConnessioni(PoolDiConnessioneDataSorgente.this.pool);
-                    }
-                } catch (InterruptedException e) {
-                    working = false;
-                    e.printStackTrace();
-                } catch (SQLException e) {
-                    working = false;
-                    e.printStackTrace();
-                }
-            }
+        private volatile long ultimaVolta = inizio;
+
+        private final String thread = Thread.currentThread().getName();
+
+        private final Throwable origine;
+
+        private Prestito(boolean pTraccia) {
+            this.origine = pTraccia ? new Throwable("Connessione ottenuta qui") : null;
         }
     }
-    
-    private List<SMOSConnessione> active = new Vector<SMOSConnessione>();
 
-    private Properties config = new Properties();
+    private static final Logger LOGGER = Logger
+            .getLogger(PoolDiConnessioneDataSorgente.class.getName());
+
+    private Map<ConnessioneWrapper, Prestito> active = new ConcurrentHashMap<ConnessioneWrapper, Prestito>();
 
-    private ConnessioneChiusa connessioneChiusa;
+    private long attesaMassima = 5000;
+
+    private Properties config = new Properties();
 
     private Driver driver;
 
@@ -106,13 +81,27 @@ public class PoolDiConnessioneDataSorgente implements DataSource {
 
     private long massimoInattivoTimeout = 20000;
 
+    private long massimoInattivoPool = 300000;
+
+    private volatile boolean chiuso = false;
+
     private int dimensioneMassimaPool;
 
-    private List<Connection> pool = new Vector<Connection>();
+    private int dimensioneCacheDichiarazioni = 32;
+
+    private AtomicInteger dimensionePool = new AtomicInteger();
+
+    private Semaphore permessi;
+
+    private Queue<ConnessioneWrapper> pool = new ConcurrentLinkedQueue<ConnessioneWrapper>();
+
+    private StatistichePool statistiche = new StatistichePool(this);
+
+    private volatile boolean tracciaPerdite = false;
 
     /**
      * Crea una nuova istanza del pool di connessioni.
-     * 
+     *
      * @param pJdbcDriverNome
      *            nome del driver jdbc
      * @param pConnessioneCompletaString
@@ -125,23 +114,23 @@ public class PoolDiConnessioneDataSorgente implements DataSource {
      *            massimo numero di connessioni attive nel pool, deve essere
      *            maggiore di 0
      * @param pPoolTempo
-     *            intervallo di tempo entro il quale il pool sar� svuotato ogni
-     *            volta delle sue connessioni pool (in ms).
+     *            tempo oltre il quale una connessione pool non utilizzata
+     *            viene chiusa (in ms).
      * @throws ClassNotFoundException
-     *             se il driver jdbc non pu� essere trovato
+     *             se il driver jdbc non puo' essere trovato
      * @throws SQLException
      *             se occorre un problema durante la connessione al database
      * @throws IllegalArgumentException
      *             se i parametri forniti in input non sono validi
      */
-	public PoolDiConnessioneDataSorgente(String pJdbcDriverNome,
+    public PoolDiConnessioneDataSorgente(String pJdbcDriverNome,
             String pConnessioneCompletaString, String pUtente, String pPassword,
             int pDimensioneMassimaPool, int pPoolTempo) throws ClassNotFoundException,
             SQLException {
 
         if (pDimensioneMassimaPool < 1) {
             throw new IllegalArgumentException(
-                    "maxPoolSize deve essere >0 ma �: " + pDimensioneMassimaPool);
+                    "maxPoolSize deve essere >0 ma e': " + pDimensioneMassimaPool);
         }
         if (pConnessioneCompletaString == null) {
             throw new IllegalArgumentException("fullConnectionString "
@@ -151,6 +140,7 @@ public class PoolDiConnessioneDataSorgente implements DataSource {
             throw new IllegalArgumentException("il nome utente ha valore Null");
         }
         this.dimensioneMassimaPool = pDimensioneMassimaPool;
+        this.permessi = new Semaphore(pDimensioneMassimaPool, true);
         this.connessioneCompletaString = pConnessioneCompletaString;
         this.config.put("user", pUtente);
         if (pPassword != null) {
@@ -158,34 +148,37 @@ public class PoolDiConnessioneDataSorgente implements DataSource {
         }
         Class.forName(pJdbcDriverNome);
         this.driver = DriverManager.getDriver(pConnessioneCompletaString);
-        this.connessioneChiusa = new ConnessioneChiusa(pPoolTempo);
-        this.connessioneChiusa.start();
+        if (pPoolTempo > 0) {
+            this.massimoInattivoPool = pPoolTempo;
+        }
     }
 
     /**
      * Restituisce la dimensione della lista delle connessioni attive.
-     * 
+     *
      * @return la dimensione della lista delle connessioni attualmente attive.
      */
-	public int dimensioneAttiva() {
+    public int dimensioneAttiva() {
         return this.active.size();
     }
 
     /**
-     * Svuota il pool di connessioni da quelle attive che non hanno pi� eseguito
-     * operazioni per inactiveMaxTimeout millisecondi.
-     * 
+     * Svuota il pool di connessioni da quelle attive che non hanno piu' eseguito
+     * operazioni per inactiveMaxTimeout millisecondi. Tali connessioni non sono
+     * state rilasciate da chi le ha ottenute e sono segnalate come perse.
+     *
      */
     protected void clearActive() {
-        long temp = 0;
-        long TIME = System.currentTimeMillis();
-        SMOSConnessione adc = null;
-
-        for (int count = 0; count < this.active.size(); count++) {
-            adc = (SMOSConnessione) this.active.get(count);
-            temp = TIME - adc.getLastTime();
-            if (temp >= this.massimoInattivoTimeout) {
-                this.rilasciare(adc.getConnection());
+        long time = System.currentTimeMillis();
+
+        for (Map.Entry<ConnessioneWrapper, Prestito> entry : this.active.entrySet()) {
+            Prestito prestito = entry.getValue();
+            if (time - prestito.ultimaVolta >= this.massimoInattivoTimeout) {
+                this.statistiche.registrarePerdita();
+                LOGGER.log(Level.WARNING, "Connessione non rilasciata, ottenuta da "
+                        + prestito.thread + " " + (time - prestito.inizio)
+                        + " ms fa", prestito.origine);
+                this.rilasciare(entry.getKey());
             }
         }
     }
@@ -193,103 +186,213 @@ public class PoolDiConnessioneDataSorgente implements DataSource {
     /**
      * Chiude tutte le connessioni del pool sia quelle attive e sia quelle che
      * sono pool.
-     * 
+     *
      * @author Di Giorgio Domenico, Cris Malinconico
      * @throws SQLException
      */
-    public synchronized void chiudiTutteLeConnessioni() throws SQLException {
-        chiudiTutteLeConnessioni(this.pool);
-        chiudiTutteLeConnessioni(this.active);
+    public void chiudiTutteLeConnessioni() throws SQLException {
+        chiudiTutteLeConnessioniInPool();
+        Iterator<ConnessioneWrapper> iterator = this.active.keySet().iterator();
+        while (iterator.hasNext()) {
+            ConnessioneWrapper conn = iterator.next();
+            if (this.active.remove(conn) != null) {
+                this.permessi.release();
+                chiudere(conn);
+            }
+        }
     }
 
     /**
-     * Chiude tutte le connessioni indicate nella lista connection.
-     * 
-     * @author Di Giorgio Domenico, Cris Malinconico
-     * @param pConnessioni
-     *            la lista delle connesioni che devono essere chiuse.
+     * Chiude, una per una, le connessioni pool non utilizzate da piu' di
+     * massimoInattivoPool millisecondi, lasciandone aperte almeno
+     * pDimensioneMinima.
+     *
+     * @param pDimensioneMinima
+     *            numero minimo di connessioni pool da mantenere.
      * @throws SQLException
      *             qualora sia impossibile chiudere una connessione.
      */
-    private synchronized void chiudiTutteLeConnessioni(List pConnessioni)
-            throws SQLException {
+    public void eliminareConnessioniInattive(int pDimensioneMinima) throws SQLException {
+        long time = System.currentTimeMillis();
+        for (ConnessioneWrapper conn : new ArrayList<ConnessioneWrapper>(this.pool)) {
+            if (this.dimensionePool.get() <= pDimensioneMinima) {
+                return;
+            }
+            if (time - conn.ottenereUltimoRilascio() >= this.massimoInattivoPool
+                    && this.pool.remove(conn)) {
+                this.dimensionePool.decrementAndGet();
+                chiudere(conn);
+            }
+        }
+    }
+
+    /**
+     * Verifica le connessioni pool non utilizzate da almeno pInattivita
+     * millisecondi, chiudendo quelle non piu' valide. La verifica mantiene
+     * inoltre aperta la connessione con MySQL, che chiude le connessioni
+     * inattive da piu' di wait_timeout.
+     *
+     * @param pInattivita
+     *            tempo di inattivita' dopo il quale verificare una connessione.
+     * @throws SQLException
+     *             qualora sia impossibile chiudere una connessione.
+     */
+    public void validareConnessioniInattive(long pInattivita) throws SQLException {
+        long time = System.currentTimeMillis();
+        for (ConnessioneWrapper conn : new ArrayList<ConnessioneWrapper>(this.pool)) {
+            if (time - conn.ottenereUltimoRilascio() < pInattivita || !this.pool.remove(conn)) {
+                continue;
+            }
+            this.dimensionePool.decrementAndGet();
+            if (conn.valida()) {
+                offrire(conn);
+            } else {
+                this.statistiche.registrareNonValida();
+                chiudere(conn);
+            }
+        }
+    }
 
-        while (pConnessioni.size() > 0) {
-            ConnessioneWrapper conn = (ConnessioneWrapper) pConnessioni.remove(0);
-            conn.chiudereConnessioneAvvolta();
+    /**
+     * Apre nuove connessioni pool fino ad averne almeno pDimensioneMinima, senza
+     * superare il numero massimo di connessioni. Le invocazioni contemporanee,
+     * dall'avvio e dalla manutenzione, sono eseguite una alla volta.
+     *
+     * @param pDimensioneMinima
+     *            numero minimo di connessioni pool.
+     * @throws SQLException
+     *             se una connessione non puo' essere creata.
+     */
+    public synchronized void preriscaldare(int pDimensioneMinima) throws SQLException {
+        while (!this.chiuso && this.dimensionePool.get() < pDimensioneMinima
+                && this.dimensionePool.get() + this.active.size() < this.dimensioneMassimaPool) {
+            ConnessioneWrapper conn = createNewConnection();
+            conn.settareUltimoRilascio(System.currentTimeMillis());
+            offrire(conn);
+        }
+    }
+
+    /**
+     * Chiude il pool: le connessioni pool sono chiuse subito e quelle attive
+     * al loro rilascio, nuove connessioni non possono essere ottenute.
+     *
+     * @throws SQLException
+     *             qualora sia impossibile chiudere una connessione.
+     */
+    public void chiudere() throws SQLException {
+        this.chiuso = true;
+        chiudiTutteLeConnessioniInPool();
+    }
+
+    /**
+     * Inserisce una connessione tra quelle pool, o la chiude se il pool e'
+     * stato chiuso.
+     */
+    private void offrire(ConnessioneWrapper pConnessione) throws SQLException {
+        this.pool.offer(pConnessione);
+        this.dimensionePool.incrementAndGet();
+        if (this.chiuso) {
+            chiudiTutteLeConnessioniInPool();
         }
     }
 
     /**
      * Chiude tutte le connessioni del pool che sono nella lista pool.
-     * 
+     *
      * @throws SQLException
      *             qualora sia impossibile chiudere una connessione.
      */
-    public synchronized void chiudiTutteLeConnessioniInPool() throws SQLException {
-        chiudiTutteLeConnessioni(this.pool);
+    public void chiudiTutteLeConnessioniInPool() throws SQLException {
+        ConnessioneWrapper conn;
+        while ((conn = this.pool.poll()) != null) {
+            this.dimensionePool.decrementAndGet();
+            chiudere(conn);
+        }
+    }
+
+    /**
+     * Chiude una connessione non piu' presente nel pool.
+     */
+    private void chiudere(ConnessioneWrapper pConnessione) throws SQLException {
+        this.statistiche.registrareChiusura();
+        pConnessione.chiudereConnessioneAvvolta();
     }
 
     /**
      * Metodo utilizzato da getConnection() per creare una nuova connessione
      * qualora nella lista delle pool non siano presenti.
-     * 
+     *
      * @return una nuova connessione al DataBase.
+     * @throws SQLException
+     *             se la connessione non puo' essere creata.
      */
-    private synchronized Connection createNewConnection() {
-        Connection rawConn = null;
+    private ConnessioneWrapper createNewConnection() throws SQLException {
         try {
-            rawConn = this.driver.connect(this.connessioneCompletaString, this.config);
-            Connection conn = new ConnessioneWrapper(rawConn, this);
-            SMOSConnessione ac = new SMOSConnessione();
-            ac.setConnection(conn);
-            ac.setLastTime(System.currentTimeMillis());
-            this.active.add(ac);
-            return conn;
+            Connection rawConn = this.driver.connect(this.connessioneCompletaString, this.config);
+            this.statistiche.registrareCreazione();
+            return new ConnessioneWrapper(rawConn, this);
         } catch (SQLException e) {
             System.out.println("Creazione della connessione fallita "
                     + "in ConnectionPoolDataSource:" + e);
-            return null;
+            throw e;
         }
     }
 
     /**
-     * Restituisce una connessione se il pool non � pieno, il controllo avviene
+     * Restituisce una connessione se il pool non e' pieno, il controllo avviene
      * prima nella lista delle connessioni pool per evitare delle creazioni
-     * inutili altrimenti una nuova connessione sar� creata.
-     * 
+     * inutili altrimenti una nuova connessione sara' creata. Se il pool e'
+     * pieno attende, dopo quelli arrivati prima, che una connessione sia
+     * rilasciata.
+     *
      * @return la connessione al database qualora fosse possibile altrimenti
      *         un'eccezione viene generata
      * @see javax.sql.DataSource getConnection()
      * @throws SQLException
      *             Se un problema occorre durante la connessione al database
-     *             incluso il fatto che il limite massimo delle connessioni
-     *             attive venga raggiunto.
+     *             incluso il fatto che nessuna connessione attiva venga
+     *             rilasciata entro il tempo di attesa massimo.
      */
-    public synchronized Connection getConnection() throws SQLException {
-
-        Connection connection = getPooledConnection(0);
+    public Connection getConnection() throws SQLException {
+        if (this.chiuso) {
+            throw new SQLException("Connection pool closed");
+        }
+        long inizio = System.nanoTime();
+        boolean ottenuto;
+        try {
+            ottenuto = this.permessi.tryAcquire(this.attesaMassima, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrotto in attesa di una connessione");
+        }
+        if (!ottenuto) {
+            this.statistiche.registrareTimeout();
+            throw new SQLException("Connection pool limit of "
+                    + this.dimensioneMassimaPool + " exceeded, waited "
+                    + this.attesaMassima + " ms");
+        }
+        this.statistiche.registrarePrestito(System.nanoTime() - inizio);
 
+        ConnessioneWrapper connection = getPooledConnection();
         if (connection == null) {
-            if (this.active.size() >= this.dimensioneMassimaPool) {
-                throw new SQLException("Connection pool limit of "
-                        + this.dimensioneMassimaPool + " exceeded");
-            } else {
+            try {
                 connection = createNewConnection();
+            } catch (SQLException e) {
+                this.permessi.release();
+                throw e;
             }
         }
-        this.connessioneChiusa.connessioneEvento();
-        //System.out.println("GET CONNECTION: " + active.size() + "/" + pool.size());
+        this.active.put(connection, new Prestito(this.tracciaPerdite));
         return connection;
     }
 
     /**
      * Metodo non implementato
-     * @param pArg1 
-     * @param pArg2 
+     * @param pArg1
+     * @param pArg2
      * @return Connection
-     * @throws SQLException 
-     * 
+     * @throws SQLException
+     *
      * @throws NonAncoraImplementatoEccezione
      */
     public Connection getConnection(String pArg1, String pArg2)
@@ -300,8 +403,8 @@ public class PoolDiConnessioneDataSorgente implements DataSource {
     /**
      * Metodo non implementato
      * @return int
-     * @throws SQLException 
-     * 
+     * @throws SQLException
+     *
      * @throws NonAncoraImplementatoEccezione
      */
     public int getLoginTimeout() throws SQLException {
@@ -311,8 +414,8 @@ public class PoolDiConnessioneDataSorgente implements DataSource {
     /**
      * Metodo non implementato
      * @return PrintWriter
-     * @throws SQLException 
-     * 
+     * @throws SQLException
+     *
      * @throws NonAncoraImplementatoEccezione
      */
     public PrintWriter getLogWriter() throws SQLException {
@@ -321,111 +424,166 @@ public class PoolDiConnessioneDataSorgente implements DataSource {
 
     /**
      * Restituisce il numero massimo di connessioni attive
-     * 
+     *
      * @return il numero massimo di connessioni attive.
      */
     public int ottenereDimensioneMassimaPool() {
         return this.dimensioneMassimaPool;
     }
 
+    /**
+     * Restituisce il numero massimo di PreparedStatement tenuti in cache da
+     * ogni connessione.
+     *
+     * @return la dimensione della cache, 0 se disattivata.
+     */
+    public int ottenereDimensioneCacheDichiarazioni() {
+        return this.dimensioneCacheDichiarazioni;
+    }
+
+    /**
+     * Setta il numero massimo di PreparedStatement tenuti in cache da ogni
+     * connessione creata in seguito.
+     *
+     * @param pDimensione
+     *            dimensione della cache, 0 per disattivarla.
+     */
+    public void settareDimensioneCacheDichiarazioni(int pDimensione) {
+        if (pDimensione >= 0) {
+            this.dimensioneCacheDichiarazioni = pDimensione;
+        }
+    }
+
+    /**
+     * Restituisce le statistiche di utilizzo del pool.
+     *
+     * @return le statistiche del pool.
+     */
+    public StatistichePool ottenereStatistiche() {
+        return this.statistiche;
+    }
+
     /**
      * Metodo utilizzato da getConnection() per stabilire se nella lista delle
      * connessioni pool ve ne sia qualcuna da poter riutilizzare.
-     * 
-     * @param pPoolIndex
-     *            indice della lista delle connessioni pool (sempre 0).
+     *
      * @return una connesssione dalla lista di quelle pool qualora ne esista
      *         una.
      */
-    private synchronized Connection getPooledConnection(int pPoolIndex) {
-        SMOSConnessione ac = new SMOSConnessione();
-        Connection connection = null;
-        if (this.pool.size() > 0) {
-            connection = (Connection) this.pool.remove(pPoolIndex);
-            ac.setConnection(connection);
-            ac.setLastTime(System.currentTimeMillis());
-            this.active.add(ac);
+    private ConnessioneWrapper getPooledConnection() {
+        ConnessioneWrapper connection = this.pool.poll();
+        if (connection != null) {
+            this.dimensionePool.decrementAndGet();
         }
-        return ac.getConnection();
+        return connection;
     }
 
     /**
      * Restituisce la dimensione della lista delle connessioni pool
-     * 
+     *
      * @return la dimensione della lista delle connessioni pool.
      */
     public int poolDimensione() {
-        return this.pool.size();
+        return this.dimensionePool.get();
     }
 
     /**
      * Rilascia una connessione, eliminandola da quelle attive ed inserendola in
-     * quelle pool per poter essere successivamente riutilizzata.
-     * 
+     * quelle pool per poter essere successivamente riutilizzata. Le
+     * dichiarazioni aperte durante il prestito sono chiuse, tranne i
+     * PreparedStatement in cache. Una connessione gia' rilasciata o non
+     * ottenuta dal pool viene ignorata.
+     *
      * @param pConnessione
      *            La connessione che deve essere ritornata al pool.
      */
-    public synchronized void rilasciare(Connection pConnessione) {
-        boolean exists = false;
-        int activeIndex = 0;
-
+    public void rilasciare(Connection pConnessione) {
         if (pConnessione != null) {
-            SMOSConnessione adc = null;
-            while ((activeIndex < this.active.size()) && (!exists)) {
-                adc = (SMOSConnessione) this.active.get(activeIndex);
-                if (adc.equals(pConnessione)) {
-                	this.active.remove(adc);
-                	this.pool.add(adc.getConnection());
-                    exists = true;
+            if (this.active.remove(pConnessione) != null) {
+                ConnessioneWrapper conn = (ConnessioneWrapper) pConnessione;
+                conn.settareUltimoRilascio(System.currentTimeMillis());
+                try {
+                    // il prossimo prestito ritrova in cache i PreparedStatement
+                    conn.closeAndReleaseStatements();
+                } catch (SQLException e) {
+                    // la connessione non e' affidabile e non torna nel pool
+                    LOGGER.log(Level.FINE, "Rilascio delle dichiarazioni fallito", e);
+                    try {
+                        chiudere(conn);
+                    } catch (SQLException ex) {
+                        LOGGER.log(Level.FINE, "Chiusura della connessione fallita", ex);
+                    }
+                    this.permessi.release();
+                    return;
+                }
+                try {
+                    offrire(conn);
+                } catch (SQLException e) {
+                    LOGGER.log(Level.FINE, "Chiusura della connessione fallita", e);
                 }
-                activeIndex++;
+                this.permessi.release();
             }
-            this.connessioneChiusa.connessioneEvento();
-            //System.out.println("RELEASE CONNECTION: " + active.size() + "/" + pool.size());
         }
     }
 
     /**
      * Setta il tempo di vita delle connessioni attive in millisecondi.
-     * 
+     *
      * @param pTimeOut
      *            tempo di vita della connessione.
      */
     public void settareAttivoTimeout(long pTimeOut) {
         if (pTimeOut > 0) {
-        	this.massimoInattivoTimeout = pTimeOut;
+            this.massimoInattivoTimeout = pTimeOut;
         }
     }
 
+    /**
+     * Setta il tempo massimo di attesa di una connessione quando il pool e'
+     * pieno, in millisecondi.
+     *
+     * @param pAttesa
+     *            tempo massimo di attesa, 0 per non attendere.
+     */
+    public void settareAttesaMassima(long pAttesa) {
+        if (pAttesa >= 0) {
+            this.attesaMassima = pAttesa;
+        }
+    }
+
+    /**
+     * Stabilisce se ricordare dove ogni connessione e' stata ottenuta, per
+     * indicarlo quando una connessione non viene rilasciata. Ha un costo ad
+     * ogni getConnection().
+     *
+     * @param pTraccia
+     *            true per ricordare dove le connessioni sono ottenute.
+     */
+    public void settareTracciaPerdite(boolean pTraccia) {
+        this.tracciaPerdite = pTraccia;
+    }
+
     /**
      * Riazzera il tempo di vita della connessione dovutocall'esecuzione di
-     * un'operazione.Da questo momento la connessione potr� essere attiva senza
+     * un'operazione.Da questo momento la connessione potra' essere attiva senza
      * eseguire alcuna operazione per altri inactiveMaxTimeout millisecondi.
-     * 
+     *
      * @param pConnessione
-     *            la connessione che ha eseguito un'operazione e quindi pu�
+     *            la connessione che ha eseguito un'operazione e quindi puo'
      *            rimanere attiva.
      */
     void settareUltimaVolta(Connection pConnessione) {
-        boolean exists = false;
-        int count = 0;
-        SMOSConnessione adc = null;
-
-        while ((count < this.active.size()) && (!exists)) {
-            adc = (SMOSConnessione) this.active.get(count);
-            count++;
-            if (adc.equals(pConnessione)) {
-                adc.setLastTime(System.currentTimeMillis());
-                exists = true;
-            }
+        Prestito prestito = this.active.get(pConnessione);
+        if (prestito != null) {
+            prestito.ultimaVolta = System.currentTimeMillis();
         }
     }
 
     /**
      * Metodo non implementato
-     * @param pArg0 
-     * @throws SQLException 
-     * 
+     * @param pArg0
+     * @throws SQLException
+     *
      * @throws NonAncoraImplementatoEccezione
      */
     public void setLoginTimeout(int pArg0) throws SQLException {
@@ -434,9 +592,9 @@ public class PoolDiConnessioneDataSorgente implements DataSource {
 
     /**
      * Metodo non implementato
-     * @param pArg0 
-     * @throws SQLException 
-     * 
+     * @param pArg0
+     * @throws SQLException
+     *
      * @throws NonAncoraImplementatoEccezione
      */
     public void setLogWriter(PrintWriter pArg0) throws SQLException {
@@ -445,7 +603,7 @@ public class PoolDiConnessioneDataSorgente implements DataSource {
 
     /**
      * Converte un oggetto della classe ConnectionPoolDataSource in String
-     * 
+     *
      * @return la rappresentazione nel tipo String del pool di connessioni.
      */
     public String toString() {
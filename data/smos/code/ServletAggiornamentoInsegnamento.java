@@ -63,12 +63,7 @@ public class ServletAggiornamentoInsegnamento extends HttpServlet {
 			teaching.settareNome((pRichiesta.getParameter("name")));
 			teaching.settareId(teaching.ottenereId());
 
-			if (!managerTeaching.esiste(teaching)) {
-				managerTeaching.aggiornare(teaching);
-			} 
-			else if(teaching.ottenereId() == managerTeaching.ottenereInsegnamentoId(teaching))
-					managerTeaching.aggiornare(teaching);
-			else {
+			if (!managerTeaching.aggiornareSeNonEsiste(teaching)) {
 
 				throw new EntitaDuplicataEccezione(
 						"Insegnamento gia esistente");
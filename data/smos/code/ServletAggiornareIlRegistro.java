@@ -4,7 +4,10 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -12,15 +15,11 @@ import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
 import smos.Ambiente;
-import smos.bean.Assenza;
 import smos.bean.Classe;
-import smos.bean.Ritardo;
 import smos.bean.RegistratiLinea;
 import smos.bean.Utente;
-import smos.bean.VoceElencoUtenti;
 import smos.exception.EntitaNonTrovataEccezione;
 import smos.exception.ValoreNonValidoEccezione;
-import smos.exception.CampoObbligatorioEccezione;
 import smos.storage.ManagerRegistrati;
 import smos.storage.ManagerUtente;
 import smos.storage.connectionManagement.exception.ConnessioneEccezione;
@@ -36,23 +35,8 @@ public class ServletAggiornareIlRegistro extends HttpServlet {
 		String messaggioDiErrore = "";
 		HttpSession session = pRichiesta.getSession();
 		
-		//Variabile booleana utilizzata per verificare se lo studente ha o meno un'assenza
-		boolean flag = false;
-		
 		//Collection utilizzata per la memorizzazione del registro di una particolare data
 		Collection<RegistratiLinea> register = null;
-		//Iteratore necessario a scorrere la collection
-		Iterator itRegister = null;
-		//Variabile temporanea necessaria a leggere le informazioni dalla collection
-		RegistratiLinea tmpRegisterLine = null;
-		//Variabile temporanea necessaria a leggere le informazioni dalla collection
-		VoceElencoUtenti student = null;
-		
-		//Variabile temporanea necessaria all'inserimento delle nuove assenze
-		Assenza tmpAbsence = null;
-		
-		//Variabile temporanea necessaria all'inserimento di nuovi ritardi
-		Ritardo tmpDelay = null;
 		
 		//Classi manager necessarie all'elaborazione
 		ManagerUtente managerUser = ManagerUtente.ottenereIstanza();
@@ -86,86 +70,28 @@ public class ServletAggiornareIlRegistro extends HttpServlet {
 		//Recupero l'oggetto classroom dalla session
 		Classe classroom = ((Classe) session.getAttribute("classroom"));
 		
-		/*Invoco il metodo della managerRegister per recuperare dal db le informazioni
-		 * inerenti il registro di una classe ad una particolare data (Assenze, Ritardi)
-		 */
-		register = managerRegister.ottenereRegistratiPerClasseIDEData(classroom.ottenereIdClasse(),date);
-			
-		if (register != null){
-			itRegister = register.iterator();
+		//Studenti assenti e ritardatari, con l'ora di entrata
+		Set<Integer> absents = new HashSet<Integer>();
+		if (absences != null){
+			for (int i=0; i<absences.length; i++){
+				absents.add(Integer.valueOf(absences[i]));
+			}
 		}
-		
-		if (itRegister != null){
-			while(itRegister.hasNext()){
-				tmpRegisterLine = (RegistratiLinea) itRegister.next();
-				//Recupero lo studente cui la register line si riferisce
-				student = tmpRegisterLine.ottenereStudente();
-				
-				//Verifico se per lo studente e' stata inserita o meno un'assenza
-				if (absences != null){
-					for (int i=0; i<absences.length; i++){
-						if (Integer.valueOf(absences[i]) == student.ottenereId()){
-							flag = true;
-							if (!managerRegister.avereAssenza(tmpRegisterLine)){
-								tmpAbsence = new Assenza();
-								tmpAbsence.settareAnnoAccademico(classroom.ottenereAnnoAccademico());
-								tmpAbsence.settareDataAssenza(date);
-								tmpAbsence.settareIdGiustificare(0);
-								tmpAbsence.settareIdUtente(student.ottenereId());
-								managerRegister.inserireAssenza(tmpAbsence);
-							}
-						}
-						
-					}
-					if (!flag){
-						if (managerRegister.avereAssenza(tmpRegisterLine)){
-							managerRegister.eliminareAssenza(tmpRegisterLine.ottenereAssenza());
-						}
-					}
-				} else {
-					if (managerRegister.avereAssenza(tmpRegisterLine)){
-						managerRegister.eliminareAssenza(tmpRegisterLine.ottenereAssenza());
-					}
-				}
-				flag = false;
-				
-				//Verifico se per lo studente e' stata inserito o meno un ritardo
-				if (delays != null){
-					for (int i=0; i<delays.length; i++){
-						if (Integer.valueOf(delays[i]) == student.ottenereId()){
-							flag = true;
-							if (!managerRegister.avereRitardo(tmpRegisterLine)){
-								tmpDelay = new Ritardo();
-								tmpDelay.settareAnnoAccademico(classroom.ottenereAnnoAccademico());
-								tmpDelay.settareDataRitardo(date);
-								tmpDelay.settareIdUtente(student.ottenereId());
-								tmpDelay.settareTempoRitardo(pRichiesta.getParameter("hour_" + student.ottenereId()));
-								managerRegister.inserireRitardo(tmpDelay);
-							} else {
-								tmpDelay = tmpRegisterLine.ottenereRitardo();
-								tmpDelay.settareTempoRitardo(pRichiesta.getParameter("hour_" + student.ottenereId()));
-								managerRegister.aggiornareRitardo(tmpDelay);
-							}
-							
-						}
-						
-					}
-					if (!flag){
-						if (managerRegister.avereRitardo(tmpRegisterLine)){
-							managerRegister.eliminareRitardo(tmpRegisterLine.ottenereRitardo());
-						}
-					}
-				} else {
-					if (managerRegister.avereRitardo(tmpRegisterLine)){
-						managerRegister.eliminareRitardo(tmpRegisterLine.ottenereRitardo());
-					}
-				}
-				flag = false;
+		Map<Integer, String> lates = new HashMap<Integer, String>();
+		if (delays != null){
+			for (int i=0; i<delays.length; i++){
+				Integer idStudent = Integer.valueOf(delays[i]);
+				lates.put(idStudent, pRichiesta.getParameter("hour_" + idStudent));
 			}
 		}
+		
+		/*Invoco il metodo della managerRegister che aggiorna in un'unica transazione
+		 * il registro di una classe ad una particolare data (Assenze, Ritardi)
+		 */
+		register = managerRegister.aggiornareRegistro(classroom.ottenereIdClasse(),
+				classroom.ottenereAnnoAccademico(), date, absents, lates);
+		session.setAttribute("register", register);
 			
-			
-
 		} catch (IOException ioException) {
 			messaggioDiErrore = Ambiente.DEFAULT_MESSAGIO_ERRORE
 					+ ioException.getMessage();
@@ -190,10 +116,6 @@ public class ServletAggiornareIlRegistro extends HttpServlet {
 			messaggioDiErrore = Ambiente.DEFAULT_MESSAGIO_ERRORE + e.getMessage();
 			gotoPage = "./error.jsp";
 			e.printStackTrace();
-		} catch (CampoObbligatorioEccezione e) {
-			messaggioDiErrore = Ambiente.DEFAULT_MESSAGIO_ERRORE + e.getMessage();
-			gotoPage = "./error.jsp";
-			e.printStackTrace();
 		}
 		
 		
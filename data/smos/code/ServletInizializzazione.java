@@ -1,9 +1,14 @@
 package smos.application;
 
+import java.io.File;
+import java.io.IOException;
+
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 
+import smos.storage.connectionManagement.DBConnessione;
+import smos.utility.MailUtility;
 import smos.utility.Utility;
 
 /**
@@ -40,9 +45,55 @@ public class ServletInizializzazione extends HttpServlet {
         Utility.settareAspettareTimeout(Integer.valueOf(config.getInitParameter("waitTimeout")));
         Utility.settareAttivoTimeout(Integer.valueOf(config.getInitParameter("activeTimeout")));
         Utility.settarePoolTimeout(Integer.valueOf(config.getInitParameter("poolTimeout")));
+        if (config.getInitParameter("borrowTimeout") != null) {
+        	Utility.settarePrestitoTimeout(Integer.valueOf(config.getInitParameter("borrowTimeout")));
+        }
+        if (config.getInitParameter("minPoolSize") != null) {
+        	Utility.settareDimensioneMinimaPool(Integer.valueOf(config.getInitParameter("minPoolSize")));
+        }
         Utility.settareTestoAPieDiPagina(config.getInitParameter("textFooter"));
         
+        //Avvio il pool di connessioni, che apre in background le connessioni minime
+        DBConnessione.avviare();
         
+        //Avvio la coda della posta, che invia le mail in background
+        String mailQueuePath = config.getInitParameter("mailQueuePath");
+        File mailQueue = (mailQueuePath != null) ? new File(mailQueuePath)
+        		: new File(System.getProperty("java.io.tmpdir"), "smos-mail");
+        try {
+        	MailUtility.avviare(mailQueue,
+        			intero(config.getInitParameter("mailQueueSize"), 10000),
+        			intero(config.getInitParameter("mailThreads"), 2),
+        			intero(config.getInitParameter("mailDigestHour"), -1));
+        } catch (IOException e) {
+        	System.out.println("Impossibile avviare la coda della posta, "
+        			+ "le mail saranno inviate subito: " + e);
+        }
+	}
+
+	/**
+	 * Ferma la coda della posta e chiude il pool di connessioni alla chiusura
+	 * dell'applicazione
+	 */
+	public void destroy() {
+		MailUtility.fermare();
+		DBConnessione.chiudere();
+	}
+
+	/**
+	 * Ritorna il valore intero di un parametro, o il valore predefinito se il
+	 * parametro non e' specificato o non e' un numero
+	 */
+	private static int intero(String pValore, int pPredefinito) {
+		if (pValore == null)
+			return pPredefinito;
+		try {
+			return Integer.parseInt(pValore.trim());
+		} catch (NumberFormatException e) {
+			System.out.println("Parametro non valido: " + pValore
+					+ ", usato il valore " + pPredefinito);
+			return pPredefinito;
+		}
 	}
 
 }
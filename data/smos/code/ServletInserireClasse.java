@@ -75,8 +75,7 @@ public class ServletInserireClasse extends HttpServlet {
 			
 			}
 			
-			if(!(managerClassroom.esiste(classroom))){
-				managerClassroom.inserire(classroom);
+			if(managerClassroom.inserireSeNonEsiste(classroom)){
 				session.setAttribute("isWizard", isWizard);
 			}else{
 				throw new EntitaDuplicataEccezione("la classe gia esiste nel database");
@@ -61,9 +61,7 @@ public class ServletInserireIndirizzo extends HttpServlet {
 				 * Verifichiamo che l' indirizzo non sia presente nel database
 				 * e lo inseriamo
 				 */
-				if(!managerAddress.esiste(address)){
-					managerAddress.inserire(address);
-				}else{
+				if(!managerAddress.inserireSeNonEsiste(address)){
 					throw new EntitaDuplicataEccezione("Indirizzo gia' esistente");
 				}
 				
@@ -61,8 +61,7 @@ public class ServletInserireInsegnamento extends HttpServlet {
 			Insegnamento teaching = new Insegnamento();
 			teaching.settareNome(pRichiesta.getParameter("name"));
 
-			if (!managerTeaching.esiste(teaching)) {
-				managerTeaching.inserire(teaching);
+			if (managerTeaching.inserireSeNonEsiste(teaching)) {
 				session.setAttribute("teaching", teaching);
 				// session.setAttribute("isWizard", isWizard);
 
@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Vector;
 
 import javax.servlet.http.HttpServlet;
@@ -15,6 +17,7 @@ import smos.Ambiente;
 import smos.bean.Utente;
 import smos.exception.EntitaNonTrovataEccezione;
 import smos.exception.ValoreNonValidoEccezione;
+import smos.storage.ContatoriRegistro;
 import smos.storage.ManagerClasse;
 import smos.storage.ManagerUtente;
 import smos.storage.connectionManagement.exception.ConnessioneEccezione;
@@ -47,13 +50,11 @@ public class ServletStatisticheDiCalcolo extends HttpServlet {
 		
 		
 		
-		int [][] unjustifiedAbsence = null;
-		
 		Collection <Utente> alertStudentNote = new Vector<Utente>();
 		
-		int [][] note = null;
+		ContatoriRegistro counters = ContatoriRegistro.ottenereIstanza();
 		
-		Utente tmpUser = null;
+		Map<Integer, Utente> students = new HashMap<Integer, Utente>();
 		
 		try {
 		
@@ -75,28 +76,15 @@ public class ServletStatisticheDiCalcolo extends HttpServlet {
 		
 		Collection <Integer> academicYearList = ManagerClasse.ottenereIstanza().ottenereAnnoAccademicoElenco();
 		
-		unjustifiedAbsence = managerUser.ottenereHighlightsStudenteAssenza(academicYear);
-		
-		if (unjustifiedAbsence != null){
-			for (int i=0; i< unjustifiedAbsence.length; i++){
-					if (unjustifiedAbsence[i][0] >= absenceLimit){
-						tmpUser = managerUser.ottenereUtentePerId(unjustifiedAbsence[i][1]);
-						alertStudentAbsence.add(tmpUser);
-					}
-			}
+		// gli studenti oltre le soglie vengono dai contatori mantenuti dal registro
+		for (Integer idStudent : counters.ottenereStudentiOltreSoglia(academicYear,
+				ContatoriRegistro.ASSENZE, absenceLimit)){
+			alertStudentAbsence.add(ottenereStudente(managerUser, students, idStudent));
 		}
 		
-		note = managerUser.ottenereHighlightsStudenteNota(academicYear);
-		
-		if (note != null){
-			for (int i=0; i< note.length; i++){
-					if (note[i][0] >= noteLimit){
-						
-							tmpUser = managerUser.ottenereUtentePerId(note[i][1]);
-						
-						alertStudentNote.add(tmpUser);
-					}
-			}
+		for (Integer idStudent : counters.ottenereStudentiOltreSoglia(academicYear,
+				ContatoriRegistro.NOTE, noteLimit)){
+			alertStudentNote.add(ottenereStudente(managerUser, students, idStudent));
 		}
 		
 		
@@ -147,6 +135,21 @@ public class ServletStatisticheDiCalcolo extends HttpServlet {
 		session.setAttribute("messaggioDiErrore", messaggioDiErrore);
 	}
 
+	/**
+	 * Ritorna uno studente, leggendolo una sola volta anche se compare in
+	 * entrambi gli elenchi
+	 */
+	private Utente ottenereStudente(ManagerUtente pManagerUser, Map<Integer, Utente> pStudents,
+			Integer pIdStudent) throws EntitaNonTrovataEccezione, ConnessioneEccezione,
+			SQLException, ValoreNonValidoEccezione {
+		Utente student = pStudents.get(pIdStudent);
+		if (student == null) {
+			student = pManagerUser.ottenereUtentePerId(pIdStudent);
+			pStudents.put(pIdStudent, student);
+		}
+		return student;
+	}
+
 	/**
 	 * Definizione del metodo doPost
 	 * 
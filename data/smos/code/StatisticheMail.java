@@ -0,0 +1,122 @@
+package smos.utility;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistiche della coda della posta: messaggi accodati, raccolti nei
+ * riepiloghi, inviati, falliti, scartati o rifiutati, connessioni con il
+ * server SMTP e tempo di invio. I contatori sono aggiornati senza lock dai
+ * thread che usano la coda.
+ */
+public class StatisticheMail implements StatisticheMailMBean {
+
+	private CodaMail coda;
+
+	private AtomicLong accodati = new AtomicLong();
+
+	private AtomicLong riepilogati = new AtomicLong();
+
+	private AtomicLong inviati = new AtomicLong();
+
+	private AtomicLong invioTotale = new AtomicLong();
+
+	private AtomicLong falliti = new AtomicLong();
+
+	private AtomicLong scartati = new AtomicLong();
+
+	private AtomicLong rifiutati = new AtomicLong();
+
+	private AtomicLong connessioni = new AtomicLong();
+
+	/**
+	 * @param pCoda
+	 *            la coda di cui raccogliere le statistiche.
+	 */
+	StatisticheMail(CodaMail pCoda) {
+		this.coda = pCoda;
+	}
+
+	void registrareAccodato() {
+		this.accodati.incrementAndGet();
+	}
+
+	void registrareRiepilogato() {
+		this.riepilogati.incrementAndGet();
+	}
+
+	/**
+	 * Registra un messaggio inviato.
+	 *
+	 * @param pDurata
+	 *            tempo di invio in nanosecondi.
+	 */
+	void registrareInvio(long pDurata) {
+		this.inviati.incrementAndGet();
+		this.invioTotale.addAndGet(pDurata);
+	}
+
+	void registrareFallimento() {
+		this.falliti.incrementAndGet();
+	}
+
+	void registrareScarto() {
+		this.scartati.incrementAndGet();
+	}
+
+	void registrareRifiuto() {
+		this.rifiutati.incrementAndGet();
+	}
+
+	void registrareConnessione() {
+		this.connessioni.incrementAndGet();
+	}
+
+	public long getAccodati() {
+		return this.accodati.get();
+	}
+
+	public long getRiepilogati() {
+		return this.riepilogati.get();
+	}
+
+	public long getInviati() {
+		return this.inviati.get();
+	}
+
+	public long getTentativiFalliti() {
+		return this.falliti.get();
+	}
+
+	public long getScartati() {
+		return this.scartati.get();
+	}
+
+	public long getRifiutati() {
+		return this.rifiutati.get();
+	}
+
+	public long getConnessioniSmtp() {
+		return this.connessioni.get();
+	}
+
+	public double getMessaggiPerConnessione() {
+		long n = this.connessioni.get();
+		return n == 0 ? 0 : (double) this.inviati.get() / n;
+	}
+
+	public double getInvioMedioMillis() {
+		long n = this.inviati.get();
+		return n == 0 ? 0 : this.invioTotale.get() / (n * 1000000.0);
+	}
+
+	public int getInCoda() {
+		return this.coda.ottenereDimensione();
+	}
+
+	public String toString() {
+		return "accodati=" + getAccodati() + " riepilogati=" + getRiepilogati()
+				+ " inviati=" + getInviati() + " falliti=" + getTentativiFalliti()
+				+ " scartati=" + getScartati() + " rifiutati=" + getRifiutati()
+				+ " connessioni=" + getConnessioniSmtp() + " inCoda=" + getInCoda();
+	}
+}
@@ -0,0 +1,58 @@
+package smos.utility;
+
+/**
+ * Interfaccia con cui le statistiche della coda della posta sono esportate
+ * tramite JMX.
+ */
+public interface StatisticheMailMBean {
+
+	/**
+	 * @return il numero di messaggi accodati.
+	 */
+	public long getAccodati();
+
+	/**
+	 * @return il numero di comunicazioni aggiunte a un riepilogo gia' in coda.
+	 */
+	public long getRiepilogati();
+
+	/**
+	 * @return il numero di messaggi inviati.
+	 */
+	public long getInviati();
+
+	/**
+	 * @return il numero di tentativi di invio falliti.
+	 */
+	public long getTentativiFalliti();
+
+	/**
+	 * @return il numero di messaggi scartati dopo l'ultimo tentativo.
+	 */
+	public long getScartati();
+
+	/**
+	 * @return il numero di messaggi rifiutati perche' la coda era piena.
+	 */
+	public long getRifiutati();
+
+	/**
+	 * @return il numero di connessioni aperte con il server SMTP.
+	 */
+	public long getConnessioniSmtp();
+
+	/**
+	 * @return il numero medio di messaggi inviati per connessione.
+	 */
+	public double getMessaggiPerConnessione();
+
+	/**
+	 * @return il tempo medio di invio di un messaggio, in millisecondi.
+	 */
+	public double getInvioMedioMillis();
+
+	/**
+	 * @return il numero di messaggi in coda.
+	 */
+	public int getInCoda();
+}
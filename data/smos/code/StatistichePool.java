@@ -0,0 +1,180 @@
+package smos.storage.connectionManagement;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistiche di utilizzo di un pool di connessioni: connessioni ottenute e
+ * relativo tempo di attesa, attese scadute, connessioni perse, create e
+ * chiuse o trovate non valide, uso della cache dei PreparedStatement. I
+ * contatori sono aggiornati senza lock dai thread che usano il pool.
+ */
+public class StatistichePool implements StatistichePoolMBean {
+
+    private PoolDiConnessioneDataSorgente pool;
+
+    private AtomicLong prestiti = new AtomicLong();
+
+    private AtomicLong attesaTotale = new AtomicLong();
+
+    private AtomicLong attesaMassima = new AtomicLong();
+
+    private AtomicLong timeout = new AtomicLong();
+
+    private AtomicLong perdite = new AtomicLong();
+
+    private AtomicLong create = new AtomicLong();
+
+    private AtomicLong chiuse = new AtomicLong();
+
+    private AtomicLong nonValide = new AtomicLong();
+
+    private AtomicLong dichiarazioniRiusate = new AtomicLong();
+
+    private AtomicLong dichiarazioniPreparate = new AtomicLong();
+
+    private AtomicLong dichiarazioniEliminate = new AtomicLong();
+
+    /**
+     * @param pPool
+     *            il pool di cui raccogliere le statistiche.
+     */
+    StatistichePool(PoolDiConnessioneDataSorgente pPool) {
+        this.pool = pPool;
+    }
+
+    /**
+     * Registra una connessione ottenuta dopo l'attesa indicata.
+     *
+     * @param pAttesa
+     *            tempo di attesa in nanosecondi.
+     */
+    void registrarePrestito(long pAttesa) {
+        this.prestiti.incrementAndGet();
+        this.attesaTotale.addAndGet(pAttesa);
+        long massima = this.attesaMassima.get();
+        while (pAttesa > massima && !this.attesaMassima.compareAndSet(massima, pAttesa)) {
+            massima = this.attesaMassima.get();
+        }
+    }
+
+    void registrareTimeout() {
+        this.timeout.incrementAndGet();
+    }
+
+    void registrarePerdita() {
+        this.perdite.incrementAndGet();
+    }
+
+    void registrareCreazione() {
+        this.create.incrementAndGet();
+    }
+
+    void registrareChiusura() {
+        this.chiuse.incrementAndGet();
+    }
+
+    void registrareNonValida() {
+        this.nonValide.incrementAndGet();
+    }
+
+    /**
+     * Registra una richiesta alla cache dei PreparedStatement.
+     * 
+     * @param pRiusata
+     *            true se il PreparedStatement era in cache.
+     */
+    void registrareDichiarazione(boolean pRiusata) {
+        if (pRiusata) {
+            this.dichiarazioniRiusate.incrementAndGet();
+        } else {
+            this.dichiarazioniPreparate.incrementAndGet();
+        }
+    }
+
+    void registrareEliminazione() {
+        this.dichiarazioniEliminate.incrementAndGet();
+    }
+
+    public long getPrestiti() {
+        return this.prestiti.get();
+    }
+
+    public double getAttesaMediaMillis() {
+        long n = this.prestiti.get();
+        return n == 0 ? 0 : this.attesaTotale.get() / (n * 1000000.0);
+    }
+
+    public double getAttesaMassimaMillis() {
+        return this.attesaMassima.get() / 1000000.0;
+    }
+
+    public long getTimeout() {
+        return this.timeout.get();
+    }
+
+    public long getPerdite() {
+        return this.perdite.get();
+    }
+
+    public long getConnessioniCreate() {
+        return this.create.get();
+    }
+
+    public long getConnessioniChiuse() {
+        return this.chiuse.get();
+    }
+
+    public long getConnessioniNonValide() {
+        return this.nonValide.get();
+    }
+
+    public long getDichiarazioniRiusate() {
+        return this.dichiarazioniRiusate.get();
+    }
+
+    public long getDichiarazioniPreparate() {
+        return this.dichiarazioniPreparate.get();
+    }
+
+    public long getDichiarazioniEliminate() {
+        return this.dichiarazioniEliminate.get();
+    }
+
+    public double getRapportoRiusoDichiarazioni() {
+        long riusate = this.dichiarazioniRiusate.get();
+        long totale = riusate + this.dichiarazioniPreparate.get();
+        return totale == 0 ? 0 : (double) riusate / totale;
+    }
+
+    public int getConnessioniAttive() {
+        return this.pool.dimensioneAttiva();
+    }
+
+    public int getConnessioniInattive() {
+        return this.pool.poolDimensione();
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        StringBuffer buf = new StringBuffer();
+
+        buf.append("[");
+        buf.append("borrows=").append(getPrestiti());
+        buf.append(", avgWaitMs=").append(getAttesaMediaMillis());
+        buf.append(", maxWaitMs=").append(getAttesaMassimaMillis());
+        buf.append(", timeouts=").append(getTimeout());
+        buf.append(", leaks=").append(getPerdite());
+        buf.append(", active=").append(getConnessioniAttive());
+        buf.append(", idle=").append(getConnessioniInattive());
+        buf.append(", created=").append(getConnessioniCreate());
+        buf.append(", closed=").append(getConnessioniChiuse());
+        buf.append(", invalid=").append(getConnessioniNonValide());
+        buf.append(", statementHits=").append(getDichiarazioniRiusate());
+        buf.append(", statementMisses=").append(getDichiarazioniPreparate());
+        buf.append(", statementEvictions=").append(getDichiarazioniEliminate());
+        buf.append("]");
+        return buf.toString();
+    }
+}
@@ -0,0 +1,79 @@
+package smos.storage.connectionManagement;
+
+/**
+ * Interfaccia con cui le statistiche del pool di connessioni sono esportate
+ * tramite JMX.
+ */
+public interface StatistichePoolMBean {
+
+    /**
+     * @return il numero di connessioni ottenute dal pool.
+     */
+    public long getPrestiti();
+
+    /**
+     * @return il tempo medio di attesa di una connessione, in millisecondi.
+     */
+    public double getAttesaMediaMillis();
+
+    /**
+     * @return il tempo massimo di attesa di una connessione, in millisecondi.
+     */
+    public double getAttesaMassimaMillis();
+
+    /**
+     * @return il numero di richieste fallite per attesa scaduta.
+     */
+    public long getTimeout();
+
+    /**
+     * @return il numero di connessioni attive non rilasciate in tempo.
+     */
+    public long getPerdite();
+
+    /**
+     * @return il numero di connessioni create con il database.
+     */
+    public long getConnessioniCreate();
+
+    /**
+     * @return il numero di connessioni chiuse con il database.
+     */
+    public long getConnessioniChiuse();
+
+    /**
+     * @return il numero di connessioni pool trovate non valide e chiuse.
+     */
+    public long getConnessioniNonValide();
+
+    /**
+     * @return il numero di PreparedStatement trovati nella cache.
+     */
+    public long getDichiarazioniRiusate();
+
+    /**
+     * @return il numero di PreparedStatement preparati, non trovati in cache.
+     */
+    public long getDichiarazioniPreparate();
+
+    /**
+     * @return il numero di PreparedStatement usciti dalla cache perche' meno
+     *         recenti.
+     */
+    public long getDichiarazioniEliminate();
+
+    /**
+     * @return la frazione dei PreparedStatement trovati nella cache.
+     */
+    public double getRapportoRiusoDichiarazioni();
+
+    /**
+     * @return il numero di connessioni attive.
+     */
+    public int getConnessioniAttive();
+
+    /**
+     * @return il numero di connessioni pool.
+     */
+    public int getConnessioniInattive();
+}
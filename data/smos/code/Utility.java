@@ -1,15 +1,16 @@
 package smos.utility;
 
 import smos.exception.EntitaNonTrovataEccezione;
+import smos.storage.connectionManagement.ConnessioneWrapper;
 import smos.storage.connectionManagement.DBConnessione;
 import smos.storage.connectionManagement.exception.ConnessioneEccezione;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.TimeZone;
+import java.util.List;
 import java.sql.*;
-import java.text.DateFormat;
 
 /**
  * Questa classe contiene un insieme di utility per la gestione del sistema.
@@ -72,9 +73,13 @@ public class Utility {
 	private static String utenteNome = "root";
 	private static String password = "";
 	private static int dimensioneMassimaPool = 200;
+	private static int dimensioneMinimaPool = 2;
 	private static int waitTimeout = 120000;
 	private static int attivoTimeout = 600000;
 	private static int poolTimeout = 27000000;	
+	private static int prestitoTimeout = 5000;
+	//Generatore degli id dei nuovi record, con blocchi di 50 id per tabella
+	private static final GeneratoreId generatore = new GeneratoreId(50);
 	
 	
 
@@ -92,8 +97,12 @@ public class Utility {
 	 * @throws EntitaNonTrovataEccezione
 	 * @throws ConnessioneEccezione
 	 * @throws SQLException
+	 * 
+	 * @deprecated gli id dei nuovi record sono assegnati da inserirePreparata,
+	 *             anche quando piu' applicazioni condividono il database.
 	 */
-	synchronized static public int ottenereValoreMassimo(String pField, String pTabello)
+	@Deprecated
+	static public int ottenereValoreMassimo(String pField, String pTabello)
 			throws EntitaNonTrovataEccezione, ConnessioneEccezione, SQLException {
 
 		int value = 0;
@@ -142,28 +151,7 @@ public class Utility {
 	 * @return Ritorna la data formattata per il database.
 	 */
 	static public String date2SQLString(java.util.Date pData, boolean pOra) {
-		
-		TimeZone tz = TimeZone.getDefault();
-		Calendar calendar = Calendar.getInstance(tz);
-		calendar.setTime(pData);
-		
-		
-		int year = calendar.get(Calendar.YEAR);
-		int month = calendar.get(Calendar.MONTH) + 1;
-		int day = calendar.get(Calendar.DATE);
-		
-		String result = year + "-" + month + "-" + day ;
-		
-		int hour = calendar.get(Calendar.HOUR_OF_DAY);
-		int min = calendar.get(Calendar.MINUTE);
-		int sec = calendar.get(Calendar.SECOND);
-		
-		if (pOra){
-			result = result + " " + hour + ":" + min + ":" + sec; 
-		}
-						
-
-		return result;
+		return CodificaData.ottenereIstanza().formattareSQL(pData, pOra);
 	}
 
 	/**
@@ -358,6 +346,189 @@ public class Utility {
 		return stmt.executeQuery(pSql);
 	}
 
+	/**
+	 * Esegue una Query SQL con parametri sul database, riutilizzando il
+	 * PreparedStatement gia' preparato dalla connessione per la stessa stringa
+	 * SQL.
+	 * 
+	 * @param pConnect
+	 *            La connessione al database.
+	 * @param pSql
+	 *            La stringa SQL, con i parametri indicati da ?.
+	 * @param pParametri
+	 *            I valori dei parametri, nell'ordine.
+	 * 
+	 * @return Il risultato della Query.
+	 * 
+	 * @throws SQLException
+	 */
+	static public ResultSet queryPreparata(Connection pConnect, String pSql,
+			Object... pParametri) throws SQLException {
+		return preparare(pConnect, pSql, pParametri).executeQuery();
+	}
+
+	/**
+	 * Esegue un'operazione con parametri sul database, riutilizzando il
+	 * PreparedStatement gia' preparato dalla connessione per la stessa stringa
+	 * SQL.
+	 * 
+	 * @param pConnessione
+	 *            La connessione al database.
+	 * @param pSql
+	 *            La stringa SQL, con i parametri indicati da ?.
+	 * @param pParametri
+	 *            I valori dei parametri, nell'ordine.
+	 * 
+	 * @return Il numero di record coinvolti nell'operazione.
+	 * 
+	 * @throws SQLException
+	 */
+	static public int eseguirePreparata(Connection pConnessione, String pSql,
+			Object... pParametri) throws SQLException {
+		PreparedStatement stmt = preparare(pConnessione, pSql, pParametri);
+		int tResult = stmt.executeUpdate();
+		if (!(pConnessione instanceof ConnessioneWrapper))
+			stmt.close();
+		return tResult;
+	}
+
+	/**
+	 * Inserisce un record nel database e ritorna il suo id, assegnato dal
+	 * generatore degli id prima dell'inserimento. Il primo parametro della
+	 * stringa SQL deve essere il campo id, a cui viene passato il nuovo id.
+	 * 
+	 * @param pConnessione
+	 *            La connessione al database.
+	 * @param pTabella
+	 *            La tabella in cui si inserisce il record.
+	 * @param pCampoId
+	 *            Il campo id della tabella.
+	 * @param pSql
+	 *            La stringa SQL dell'inserimento, con i parametri indicati da ?
+	 *            e il campo id come primo parametro.
+	 * @param pParametri
+	 *            I valori degli altri parametri, nell'ordine.
+	 * 
+	 * @return L'id del record inserito.
+	 * 
+	 * @throws SQLException
+	 */
+	static public int inserirePreparata(Connection pConnessione, String pTabella,
+			String pCampoId, String pSql, Object... pParametri)
+			throws SQLException {
+		int tId = generatore.ottenereId(pConnessione, pTabella, pCampoId);
+		eseguirePreparata(pConnessione, pSql, conId(tId, pParametri));
+		return tId;
+	}
+
+	/**
+	 * Esegue la stessa operazione con parametri per ogni riga, inviando al
+	 * database un solo batch. Se la connessione non e' in auto-commit le
+	 * operazioni fanno parte della transazione in corso.
+	 * 
+	 * @param pConnessione
+	 *            La connessione al database.
+	 * @param pSql
+	 *            La stringa SQL, con i parametri indicati da ?.
+	 * @param pRighe
+	 *            I valori dei parametri di ogni operazione, nell'ordine.
+	 * 
+	 * @return Il numero di record coinvolti da ogni operazione.
+	 * 
+	 * @throws SQLException
+	 */
+	static public int[] eseguireBatch(Connection pConnessione, String pSql,
+			List<Object[]> pRighe) throws SQLException {
+		if (pRighe.isEmpty())
+			return new int[0];
+		PreparedStatement stmt = pConnessione.prepareStatement(pSql);
+		try {
+			for (Object[] tRiga : pRighe) {
+				settareParametri(stmt, tRiga);
+				stmt.addBatch();
+			}
+			return stmt.executeBatch();
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * Inserisce piu' record nella stessa tabella, inviando al database un solo
+	 * batch, e ritorna i loro id, assegnati dal generatore degli id come in
+	 * inserirePreparata. Se la connessione non e' in auto-commit gli
+	 * inserimenti fanno parte della transazione in corso.
+	 * 
+	 * @param pConnessione
+	 *            La connessione al database.
+	 * @param pTabella
+	 *            La tabella in cui si inseriscono i record.
+	 * @param pCampoId
+	 *            Il campo id della tabella.
+	 * @param pSql
+	 *            La stringa SQL dell'inserimento, con i parametri indicati da ?
+	 *            e il campo id come primo parametro.
+	 * @param pRighe
+	 *            I valori degli altri parametri di ogni inserimento, nell'ordine.
+	 * 
+	 * @return Gli id dei record inseriti, nell'ordine delle righe.
+	 * 
+	 * @throws SQLException
+	 */
+	static public int[] inserireBatch(Connection pConnessione, String pTabella,
+			String pCampoId, String pSql, List<Object[]> pRighe) throws SQLException {
+		int[] tId = new int[pRighe.size()];
+		List<Object[]> tRighe = new ArrayList<Object[]>(pRighe.size());
+		for (int i = 0; i < tId.length; i++) {
+			tId[i] = generatore.ottenereId(pConnessione, pTabella, pCampoId);
+			tRighe.add(conId(tId[i], pRighe.get(i)));
+		}
+		eseguireBatch(pConnessione, pSql, tRighe);
+		return tId;
+	}
+
+	/**
+	 * Ritorna i parametri di un inserimento preceduti dall'id.
+	 */
+	static private Object[] conId(int pId, Object[] pParametri) {
+		Object[] tParametri = new Object[pParametri.length + 1];
+		tParametri[0] = pId;
+		System.arraycopy(pParametri, 0, tParametri, 1, pParametri.length);
+		return tParametri;
+	}
+
+	/**
+	 * Prepara la stringa SQL e ne setta i parametri.
+	 */
+	static private PreparedStatement preparare(Connection pConnessione,
+			String pSql, Object[] pParametri) throws SQLException {
+		PreparedStatement stmt;
+		if (pConnessione instanceof ConnessioneWrapper)
+			stmt = ((ConnessioneWrapper) pConnessione).preparareDallaCache(pSql);
+		else
+			stmt = pConnessione.prepareStatement(pSql);
+
+		settareParametri(stmt, pParametri);
+		return stmt;
+	}
+
+	/**
+	 * Setta i parametri di un PreparedStatement. Come in eNull, le date sono
+	 * passate al database senza l'ora.
+	 */
+	static private void settareParametri(PreparedStatement stmt,
+			Object[] pParametri) throws SQLException {
+		for (int i = 0; i < pParametri.length; i++) {
+			Object tParametro = pParametri[i];
+			if (tParametro == null)
+				stmt.setNull(i + 1, Types.NULL);
+			else if (tParametro instanceof java.util.Date)
+				stmt.setDate(i + 1, new java.sql.Date(((java.util.Date) tParametro).getTime()));
+			else
+				stmt.setObject(i + 1, tParametro);
+		}
+	}
+
 	/**
 	 * Converte un dato booleano in intero.
 	 * 
@@ -413,28 +584,7 @@ public class Utility {
 	 * @return La data convertita.
 	 */
 	static public java.util.Date String2Date(String pData) {
-		try {
-			DateFormat dfDate = DateFormat.getDateInstance();
-			java.util.Date tDate = dfDate.parse(pData,
-					new java.text.ParsePosition(0));
-			java.sql.Timestamp timeStamp = new java.sql.Timestamp(tDate
-					.getTime());
-
-			return (java.util.Date) timeStamp;
-		} catch (Exception e) {
-			try {
-				DateFormat dfDate = DateFormat.getDateInstance(
-						DateFormat.SHORT, java.util.Locale.ITALY);
-				java.util.Date tDate = dfDate.parse(pData,
-						new java.text.ParsePosition(0));
-				java.sql.Timestamp timeStamp = new java.sql.Timestamp(tDate
-						.getTime());
-
-				return (java.util.Date) timeStamp;
-			} catch (Exception e2) {
-				return null;
-			}
-		}
+		return CodificaData.ottenereIstanza().leggere(pData);
 	}
 
 	/**
@@ -447,16 +597,7 @@ public class Utility {
 	 * @return La data convertita.
 	 */
 	static public String Date2String(java.util.Date pData, boolean pOra) {
-		try {
-			DateFormat dfDate = DateFormat.getDateInstance(DateFormat.SHORT);
-			DateFormat dfTime = DateFormat.getTimeInstance(DateFormat.SHORT);
-			if (pOra)
-				return dfDate.format(pData) + " " + dfTime.format(pData);
-			else
-				return dfDate.format(pData);
-		} catch (Exception e) {
-			return "";
-		}
+		return CodificaData.ottenereIstanza().formattare(pData, pOra);
 	}
 
 	/**
@@ -653,6 +794,20 @@ public class Utility {
 		Utility.dimensioneMassimaPool = pDimensioneMassimaPool;
 	}
 
+	/**
+	 * @return il numero minimo di connessioni pool tenute aperte
+	 */
+	public static int ottenereDimensioneMinimaPool() {
+		return Utility.dimensioneMinimaPool;
+	}
+
+	/**
+	 * @param pDimensioneMinimaPool il numero minimo di connessioni pool tenute aperte
+	 */
+	public static void settareDimensioneMinimaPool(int pDimensioneMinimaPool) {
+		Utility.dimensioneMinimaPool = pDimensioneMinimaPool;
+	}
+
 	/**
 	 * @return the password
 	 */
@@ -682,6 +837,20 @@ public class Utility {
 		Utility.poolTimeout = pPoolTimeout;
 	}
 
+	/**
+	 * @return il tempo massimo di attesa di una connessione dal pool
+	 */
+	public static int ottenerePrestitoTimeout() {
+		return Utility.prestitoTimeout;
+	}
+
+	/**
+	 * @param pPrestitoTimeout il tempo massimo di attesa di una connessione dal pool
+	 */
+	public static void settarePrestitoTimeout(int pPrestitoTimeout) {
+		Utility.prestitoTimeout = pPrestitoTimeout;
+	}
+
 	/**
 	 * @return the userName
 	 */